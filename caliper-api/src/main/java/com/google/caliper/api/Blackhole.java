@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.api;
+
+/**
+ * Consumes values computed by a benchmark so that the compiler can't prove them unused and
+ * eliminate the code that computed them. Prefer this to accumulating results into a dummy field or
+ * returning them, both of which the compiler may see through.
+ *
+ * <p>Caliper supplies a {@code Blackhole} to a benchmark in two ways: as the last parameter of a
+ * benchmark method, for example {@code void timeFoo(long reps, Blackhole blackhole)}, or in any
+ * non-static field of type {@code Blackhole} declared on the benchmark class.
+ *
+ * <pre>{@code
+ * @Benchmark void hashCode(long reps, Blackhole blackhole) {
+ *   for (long i = 0; i < reps; i++) {
+ *     blackhole.consume(string.hashCode());
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>Each {@code consume} method compares its argument against values read from volatile fields.
+ * The comparisons can never succeed, but the compiler can't know that, so the argument must be
+ * computed even if the call is inlined. The cost is a couple of loads and compares per call.
+ */
+public final class Blackhole {
+  private volatile boolean boolean1 = false;
+  private volatile boolean boolean2 = true;
+  private volatile int int1 = 1;
+  private volatile int int2 = 2;
+  private volatile long long1 = 1;
+  private volatile long long2 = 2;
+  private volatile float float1 = 1;
+  private volatile float float2 = 2;
+  private volatile double double1 = 1;
+  private volatile double double2 = 2;
+  private volatile Object sentinel = new Object();
+
+  /** Only ever written if one of the impossible comparisons succeeds. */
+  @SuppressWarnings("unused")
+  private Object escaped;
+
+  /**
+   * Creates a new blackhole. Benchmarks normally have one supplied by Caliper, but creating one is
+   * harmless and can be useful when calling benchmark methods directly.
+   */
+  public Blackhole() {}
+
+  public void consume(boolean value) {
+    if (value == boolean1 & value == boolean2) {
+      escaped = value;
+    }
+  }
+
+  public void consume(int value) {
+    if (value == int1 & value == int2) {
+      escaped = value;
+    }
+  }
+
+  public void consume(long value) {
+    if (value == long1 & value == long2) {
+      escaped = value;
+    }
+  }
+
+  public void consume(float value) {
+    if (value == float1 & value == float2) {
+      escaped = value;
+    }
+  }
+
+  public void consume(double value) {
+    if (value == double1 & value == double2) {
+      escaped = value;
+    }
+  }
+
+  public void consume(Object value) {
+    if (value == sentinel) {
+      escaped = value;
+    }
+  }
+}
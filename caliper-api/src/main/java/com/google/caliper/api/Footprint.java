@@ -31,7 +31,7 @@ import java.lang.annotation.Target;
 public @interface Footprint {
   /**
    * Optionally ignore instances of the specified types (including subclasses) when measuring. For
-   * example, {@code @Footprint(ignore = Element.class) public Set<Element> set() {...}} would
+   * example, {@code @Footprint(exclude = Element.class) public Set<Element> set() {...}} would
    * measure the size of the set while ignoring the size of the elements.
    */
   Class<?>[] exclude() default {};
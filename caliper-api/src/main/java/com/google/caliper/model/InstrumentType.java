@@ -24,10 +24,18 @@ public enum InstrumentType {
   RUNTIME_MACRO,
   /** Runtime picobenchmark instrument. */
   RUNTIME_PICO,
+  /** Runtime instrument for no-arg benchmarks run in a generated reps loop. */
+  RUNTIME_LOOPED,
+  /** Runtime instrument that runs the benchmark on several threads at once. */
+  RUNTIME_THREADED,
   /** Allocation microbenchmark instrument. */
   ALLOCATION_MICRO,
   /** Allocation macrobenchmark instrument. */
   ALLOCATION_MACRO,
+  /** Allocation instrument that counts the bytes allocated by JIT-compiled benchmark code. */
+  ALLOCATION_JIT,
   /** Arbitrary measurement instrument. */
   ARBITRARY_MEASUREMENT,
+  /** Footprint instrument, which measures the memory taken by an object graph. */
+  FOOTPRINT,
 }
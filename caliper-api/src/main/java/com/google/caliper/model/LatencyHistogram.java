@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The distribution of the latencies, in nanoseconds, of individual invocations of a benchmark.
+ *
+ * <p>Latencies are counted in log-linear buckets in the style of an HDR histogram: values below 256
+ * get a bucket each and larger values are bucketed by their 8 most significant bits, so any
+ * recorded value is known to within 1% whatever its magnitude. Only non-empty buckets are stored.
+ *
+ * <p>Histograms are built with a {@link Recorder}, which uses a fixed amount of memory regardless
+ * of how many values it records.
+ */
+public final class LatencyHistogram implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  static final LatencyHistogram DEFAULT = new LatencyHistogram();
+
+  private static final int SUB_BUCKET_BITS = 8;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+  /** The number of buckets needed to cover every non-negative {@code long}. */
+  static final int BUCKET_COUNT =
+      SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT;
+
+  private int[] buckets;
+  private long[] counts;
+  private long totalCount;
+  private long min;
+  private long max;
+  // summary values, stored so that they appear in the JSON output
+  private long p50;
+  private long p99;
+  private long p999;
+
+  private LatencyHistogram() {
+    this(new int[0], new long[0], 0, 0);
+  }
+
+  private LatencyHistogram(int[] buckets, long[] counts, long min, long max) {
+    this.buckets = buckets;
+    this.counts = counts;
+    long totalCount = 0;
+    for (long count : counts) {
+      totalCount += count;
+    }
+    this.totalCount = totalCount;
+    this.min = min;
+    this.max = max;
+    this.p50 = valueAtPercentile(50);
+    this.p99 = valueAtPercentile(99);
+    this.p999 = valueAtPercentile(99.9);
+  }
+
+  /** Returns the number of recorded values. */
+  public long totalCount() {
+    return totalCount;
+  }
+
+  /** Returns the smallest recorded value, or 0 if no values were recorded. */
+  public long min() {
+    return min;
+  }
+
+  /** Returns the largest recorded value, or 0 if no values were recorded. */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * Returns the value that {@code percentile} percent of the recorded values are less than or
+   * equal to, to within the precision of the histogram. Returns 0 if no values were recorded.
+   */
+  public long valueAtPercentile(double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100, "invalid percentile: %s", percentile);
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, highestValueInBucket(buckets[i])));
+      }
+    }
+    return max;
+  }
+
+  /** Returns a histogram of the values recorded in both this histogram and {@code other}. */
+  public LatencyHistogram plus(LatencyHistogram other) {
+    if (other.totalCount == 0) {
+      return this;
+    } else if (totalCount == 0) {
+      return other;
+    }
+    int[] mergedBuckets = new int[buckets.length + other.buckets.length];
+    long[] mergedCounts = new long[mergedBuckets.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < buckets.length || j < other.buckets.length) {
+      if (j == other.buckets.length || (i < buckets.length && buckets[i] < other.buckets[j])) {
+        mergedBuckets[size] = buckets[i];
+        mergedCounts[size++] = counts[i++];
+      } else if (i == buckets.length || other.buckets[j] < buckets[i]) {
+        mergedBuckets[size] = other.buckets[j];
+        mergedCounts[size++] = other.counts[j++];
+      } else {
+        mergedBuckets[size] = buckets[i];
+        mergedCounts[size++] = counts[i++] + other.counts[j++];
+      }
+    }
+    return new LatencyHistogram(
+        Arrays.copyOf(mergedBuckets, size),
+        Arrays.copyOf(mergedCounts, size),
+        Math.min(min, other.min),
+        Math.max(max, other.max));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    } else if (obj instanceof LatencyHistogram) {
+      LatencyHistogram that = (LatencyHistogram) obj;
+      return Arrays.equals(this.buckets, that.buckets)
+          && Arrays.equals(this.counts, that.counts)
+          && this.min == that.min
+          && this.max == that.max;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(Arrays.hashCode(buckets), Arrays.hashCode(counts), min, max);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("totalCount", totalCount)
+        .add("min", min)
+        .add("p50", p50)
+        .add("p99", p99)
+        .add("p99.9", p999)
+        .add("max", max)
+        .toString();
+  }
+
+  static int bucketFor(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = highestBit - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT
+        + (highestBit - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT
+        + (int) (value >>> shift)
+        - HALF_SUB_BUCKET_COUNT;
+  }
+
+  static long lowestValueInBucket(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    int offset = bucket - SUB_BUCKET_COUNT;
+    int shift = offset / HALF_SUB_BUCKET_COUNT + 1;
+    return (long) (offset % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT) << shift;
+  }
+
+  static long highestValueInBucket(int bucket) {
+    if (bucket == BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return lowestValueInBucket(bucket + 1) - 1;
+  }
+
+  /**
+   * Records values into a fixed-size array of bucket counts. Recording a value does not allocate,
+   * so a recorder may be used inside a timed region.
+   */
+  public static final class Recorder {
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private long totalCount;
+
+    /** Records a single value. Negative values are recorded as 0. */
+    public void record(long value) {
+      value = Math.max(0, value);
+      counts[bucketFor(value)]++;
+      totalCount++;
+      if (value < min) {
+        min = value;
+      }
+      if (value > max) {
+        max = value;
+      }
+    }
+
+    /** Returns the number of values recorded since the last {@link #reset()}. */
+    public long totalCount() {
+      return totalCount;
+    }
+
+    /** Returns a histogram of the values recorded since the last {@link #reset()}. */
+    public LatencyHistogram snapshot() {
+      if (totalCount == 0) {
+        return DEFAULT;
+      }
+      int size = 0;
+      for (long count : counts) {
+        if (count != 0) {
+          size++;
+        }
+      }
+      int[] buckets = new int[size];
+      long[] bucketCounts = new long[size];
+      int next = 0;
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] != 0) {
+          buckets[next] = i;
+          bucketCounts[next++] = counts[i];
+        }
+      }
+      return new LatencyHistogram(buckets, bucketCounts, min, max);
+    }
+
+    /** Discards all recorded values. */
+    public void reset() {
+      Arrays.fill(counts, 0);
+      min = Long.MAX_VALUE;
+      max = Long.MIN_VALUE;
+      totalCount = 0;
+    }
+  }
+}
@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Multimaps;
 import java.io.Serializable;
@@ -45,6 +46,7 @@ public class Measurement implements Serializable {
   @ExcludeFromJson
   private int id;
   private Value value;
+  private Value correctedValue;
 
   private double weight;
   private String description;
@@ -57,6 +59,7 @@ public class Measurement implements Serializable {
 
   private Measurement(Builder builder) {
     this.value = builder.value;
+    this.correctedValue = builder.correctedValue;
     this.description = builder.description;
     this.weight = builder.weight;
   }
@@ -68,6 +71,7 @@ public class Measurement implements Serializable {
     } else if (obj instanceof Measurement) {
       Measurement that = (Measurement) obj;
       return this.value.equals(that.value)
+          && Objects.equal(this.correctedValue, that.correctedValue)
           && this.weight == that.weight
           && this.description.equals(that.description);
     } else {
@@ -77,13 +81,14 @@ public class Measurement implements Serializable {
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(value, weight, description);
+    return Objects.hashCode(value, correctedValue, weight, description);
   }
 
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
         .add("value", value)
+        .add("correctedValue", correctedValue)
         .add("weight", weight)
         .add("description", description)
         .toString();
@@ -93,6 +98,14 @@ public class Measurement implements Serializable {
     return value;
   }
 
+  /**
+   * Returns the measured value with the overhead of the measuring harness itself subtracted, for
+   * measurements whose instrument calibrates that overhead.
+   */
+  public Optional<Value> correctedValue() {
+    return Optional.fromNullable(correctedValue);
+  }
+
   public double weight() {
     return weight;
   }
@@ -103,6 +116,7 @@ public class Measurement implements Serializable {
 
   public static final class Builder {
     private Value value;
+    private Value correctedValue;
     private Double weight;
     private String description;
 
@@ -111,6 +125,11 @@ public class Measurement implements Serializable {
       return this;
     }
 
+    public Builder correctedValue(Value correctedValue) {
+      this.correctedValue = checkNotNull(correctedValue);
+      return this;
+    }
+
     public Builder weight(double weight) {
       checkArgument(weight > 0);
       this.weight = weight;
@@ -31,17 +31,20 @@ public final class Run {
   private UUID id;
   private String label;
   private Instant startTime;
+  private String experimentDesign;
 
   private Run() {
     this.id = Defaults.UUID;
     this.label = "";
     this.startTime = Defaults.INSTANT;
+    this.experimentDesign = "";
   }
 
   private Run(Builder builder) {
     this.id = builder.id;
     this.label = builder.label;
     this.startTime = builder.startTime;
+    this.experimentDesign = builder.experimentDesign;
   }
 
   public UUID id() {
@@ -56,6 +59,14 @@ public final class Run {
     return startTime;
   }
 
+  /**
+   * Returns how the combinations of user parameters that the run's experiments were run with were
+   * chosen, including the seed of any random choices, e.g. "pairwise (seed 42)".
+   */
+  public String experimentDesign() {
+    return experimentDesign;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == this) {
@@ -64,7 +75,8 @@ public final class Run {
       Run that = (Run) obj;
       return this.id.equals(that.id)
           && this.label.equals(that.label)
-          && this.startTime.equals(that.startTime);
+          && this.startTime.equals(that.startTime)
+          && this.experimentDesign.equals(that.experimentDesign);
     } else {
       return false;
     }
@@ -72,7 +84,7 @@ public final class Run {
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(id, label, startTime);
+    return Objects.hashCode(id, label, startTime, experimentDesign);
   }
 
   @Override
@@ -81,6 +93,7 @@ public final class Run {
         .add("id", id)
         .add("label", label)
         .add("startTime", startTime)
+        .add("experimentDesign", experimentDesign)
         .toString();
   }
 
@@ -88,6 +101,7 @@ public final class Run {
     private UUID id;
     private String label = "";
     private Instant startTime;
+    private String experimentDesign = "";
 
     public Builder(UUID id) {
       this.id = checkNotNull(id);
@@ -103,6 +117,11 @@ public final class Run {
       return this;
     }
 
+    public Builder experimentDesign(String experimentDesign) {
+      this.experimentDesign = checkNotNull(experimentDesign);
+      return this;
+    }
+
     public Run build() {
       checkState(id != null);
       checkState(startTime != null);
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -36,6 +37,9 @@ public final class Trial { // used to be Result
   private InstrumentSpec instrumentSpec;
   private Scenario scenario;
   private List<Measurement> measurements;
+  private LatencyHistogram latencyHistogram;
+  private TrialPosition position;
+  private String pruned;
 
   private Trial() {
     this.id = Defaults.UUID;
@@ -51,6 +55,9 @@ public final class Trial { // used to be Result
     this.instrumentSpec = builder.instrumentSpec;
     this.scenario = builder.scenario;
     this.measurements = Lists.newArrayList(builder.measurements);
+    this.latencyHistogram = builder.latencyHistogram;
+    this.position = builder.position;
+    this.pruned = builder.pruned;
   }
 
   public UUID id() {
@@ -73,6 +80,28 @@ public final class Trial { // used to be Result
     return ImmutableList.copyOf(measurements);
   }
 
+  /**
+   * Returns the distribution of individual invocation latencies, if the instrument that ran this
+   * trial recorded one.
+   */
+  public Optional<LatencyHistogram> latencyHistogram() {
+    return Optional.fromNullable(latencyHistogram);
+  }
+
+  /** Returns where this trial fell in its run, if that was recorded. */
+  public Optional<TrialPosition> position() {
+    return Optional.fromNullable(position);
+  }
+
+  /**
+   * Returns why this trial's experiment was pruned from its run before getting its full number of
+   * trials, if it was. The measurements of a pruned experiment are only enough to show that it was
+   * slower than another experiment, not to say precisely how much slower.
+   */
+  public Optional<String> pruned() {
+    return Optional.fromNullable(pruned);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == this) {
@@ -83,7 +112,10 @@ public final class Trial { // used to be Result
           && this.run.equals(that.run)
           && this.instrumentSpec.equals(that.instrumentSpec)
           && this.scenario.equals(that.scenario)
-          && this.measurements.equals(that.measurements);
+          && this.measurements.equals(that.measurements)
+          && Objects.equal(this.latencyHistogram, that.latencyHistogram)
+          && Objects.equal(this.position, that.position)
+          && Objects.equal(this.pruned, that.pruned);
     } else {
       return false;
     }
@@ -91,7 +123,8 @@ public final class Trial { // used to be Result
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(id, run, instrumentSpec, scenario, measurements);
+    return Objects.hashCode(
+        id, run, instrumentSpec, scenario, measurements, latencyHistogram, position, pruned);
   }
 
   @Override
@@ -102,6 +135,9 @@ public final class Trial { // used to be Result
         .add("instrumentSpec", instrumentSpec)
         .add("scenario", scenario)
         .add("measurements", measurements)
+        .add("latencyHistogram", latencyHistogram)
+        .add("position", position)
+        .add("pruned", pruned)
         .toString();
   }
 
@@ -111,6 +147,9 @@ public final class Trial { // used to be Result
     private InstrumentSpec instrumentSpec;
     private Scenario scenario;
     private final List<Measurement> measurements = Lists.newArrayList();
+    private LatencyHistogram latencyHistogram;
+    private TrialPosition position;
+    private String pruned;
 
     public Builder(UUID id) {
       this.id = checkNotNull(id);
@@ -157,6 +196,21 @@ public final class Trial { // used to be Result
       return this;
     }
 
+    public Builder latencyHistogram(LatencyHistogram latencyHistogram) {
+      this.latencyHistogram = checkNotNull(latencyHistogram);
+      return this;
+    }
+
+    public Builder position(TrialPosition position) {
+      this.position = checkNotNull(position);
+      return this;
+    }
+
+    public Builder pruned(String reason) {
+      this.pruned = checkNotNull(reason);
+      return this;
+    }
+
     public Trial build() {
       checkState(run != null);
       checkState(instrumentSpec != null);
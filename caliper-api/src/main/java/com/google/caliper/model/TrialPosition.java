@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import org.joda.time.Instant;
+
+/**
+ * Where a trial fell in its run: its place in the order the run's trials were scheduled in, how
+ * that order was chosen, when the trial started, how many trials its worker had already run and the
+ * CPUs its worker was pinned to. Comparing results by position shows, and allows correcting for,
+ * drift in the machine over the course of the run.
+ */
+public final class TrialPosition {
+  static final TrialPosition DEFAULT = new TrialPosition();
+
+  private int number;
+  private String order;
+  private long seed;
+  private Instant startTime;
+  private int priorWorkerTrials;
+  private String cpuAffinity;
+
+  private TrialPosition() {
+    this.number = 0;
+    this.order = "";
+    this.seed = 0;
+    this.startTime = Defaults.INSTANT;
+    this.priorWorkerTrials = 0;
+    this.cpuAffinity = "";
+  }
+
+  private TrialPosition(Builder builder) {
+    this.number = builder.number;
+    this.order = builder.order;
+    this.seed = builder.seed;
+    this.startTime = builder.startTime;
+    this.priorWorkerTrials = builder.priorWorkerTrials;
+    this.cpuAffinity = builder.cpuAffinity;
+  }
+
+  /** Returns the 1-based position of the trial in the order the run's trials were scheduled in. */
+  public int number() {
+    return number;
+  }
+
+  /** Returns how the order of the run's trials was chosen, e.g. "shuffled". */
+  public String order() {
+    return order;
+  }
+
+  /** Returns the seed of the random choices made in ordering the run's trials. */
+  public long seed() {
+    return seed;
+  }
+
+  /** Returns when the trial was started. */
+  public Instant startTime() {
+    return startTime;
+  }
+
+  /**
+   * Returns how many trials the trial's worker had run before it, or 0 if the trial had a fresh
+   * worker.
+   */
+  public int priorWorkerTrials() {
+    return priorWorkerTrials;
+  }
+
+  /**
+   * Returns the command the trial's worker was pinned to its CPUs with, e.g. "taskset -c 2-5", or
+   * an empty string if it wasn't pinned.
+   */
+  public String cpuAffinity() {
+    return cpuAffinity;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    } else if (obj instanceof TrialPosition) {
+      TrialPosition that = (TrialPosition) obj;
+      return this.number == that.number
+          && this.order.equals(that.order)
+          && this.seed == that.seed
+          && this.startTime.equals(that.startTime)
+          && this.priorWorkerTrials == that.priorWorkerTrials
+          && this.cpuAffinity.equals(that.cpuAffinity);
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(number, order, seed, startTime, priorWorkerTrials, cpuAffinity);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("number", number)
+        .add("order", order)
+        .add("seed", seed)
+        .add("startTime", startTime)
+        .add("priorWorkerTrials", priorWorkerTrials)
+        .add("cpuAffinity", cpuAffinity)
+        .toString();
+  }
+
+  public static final class Builder {
+    private int number;
+    private String order = "";
+    private long seed;
+    private Instant startTime;
+    private int priorWorkerTrials;
+    private String cpuAffinity = "";
+
+    public Builder number(int number) {
+      this.number = number;
+      return this;
+    }
+
+    public Builder order(String order) {
+      this.order = checkNotNull(order);
+      return this;
+    }
+
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public Builder startTime(Instant startTime) {
+      this.startTime = checkNotNull(startTime);
+      return this;
+    }
+
+    public Builder priorWorkerTrials(int priorWorkerTrials) {
+      checkArgument(priorWorkerTrials >= 0);
+      this.priorWorkerTrials = priorWorkerTrials;
+      return this;
+    }
+
+    public Builder cpuAffinity(String cpuAffinity) {
+      this.cpuAffinity = checkNotNull(cpuAffinity);
+      return this;
+    }
+
+    public TrialPosition build() {
+      checkState(number > 0);
+      checkState(startTime != null);
+      return new TrialPosition(this);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link LatencyHistogram}. */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+  @Test
+  public void bucketsCoverEveryValue() {
+    long[] values = {0, 1, 255, 256, 257, 511, 512, 1000, 123456789, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = LatencyHistogram.bucketFor(value);
+      assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKET_COUNT);
+      assertTrue(LatencyHistogram.lowestValueInBucket(bucket) <= value);
+      assertTrue(LatencyHistogram.highestValueInBucket(bucket) >= value);
+    }
+    assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void bucketsWithinOnePercent() {
+    for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+      long low = LatencyHistogram.lowestValueInBucket(bucket);
+      long high = LatencyHistogram.highestValueInBucket(bucket);
+      assertEquals(bucket, LatencyHistogram.bucketFor(low));
+      assertEquals(bucket, LatencyHistogram.bucketFor(high));
+      assertTrue((double) (high - low) / Math.max(1, low) < 0.01);
+    }
+  }
+
+  @Test
+  public void percentiles() {
+    LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+    for (int i = 1; i <= 1000; i++) {
+      recorder.record(i * 1000L);
+    }
+    LatencyHistogram histogram = recorder.snapshot();
+    assertEquals(1000, histogram.totalCount());
+    assertEquals(1000, histogram.min());
+    assertEquals(1000000, histogram.max());
+    assertWithinOnePercent(500000, histogram.valueAtPercentile(50));
+    assertWithinOnePercent(990000, histogram.valueAtPercentile(99));
+    assertWithinOnePercent(999000, histogram.valueAtPercentile(99.9));
+    assertEquals(1000000, histogram.valueAtPercentile(100));
+  }
+
+  @Test
+  public void plus() {
+    LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+    recorder.record(10);
+    recorder.record(5000);
+    LatencyHistogram first = recorder.snapshot();
+    recorder.reset();
+    recorder.record(10);
+    recorder.record(70000);
+    LatencyHistogram second = recorder.snapshot();
+
+    recorder.reset();
+    recorder.record(10);
+    recorder.record(5000);
+    recorder.record(10);
+    recorder.record(70000);
+    assertEquals(recorder.snapshot(), first.plus(second));
+    assertEquals(first.plus(second), second.plus(first));
+  }
+
+  @Test
+  public void empty() {
+    LatencyHistogram empty = new LatencyHistogram.Recorder().snapshot();
+    assertEquals(0, empty.totalCount());
+    assertEquals(0, empty.valueAtPercentile(99));
+    LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+    recorder.record(42);
+    LatencyHistogram histogram = recorder.snapshot();
+    assertEquals(histogram, empty.plus(histogram));
+    assertEquals(histogram, histogram.plus(empty));
+  }
+
+  private static void assertWithinOnePercent(long expected, long actual) {
+    assertTrue(
+        "expected " + expected + " but was " + actual,
+        Math.abs(actual - expected) <= expected / 100);
+  }
+}
@@ -16,14 +16,23 @@
 
 package com.google.caliper.bridge;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.google.caliper.util.ShortDuration;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import java.io.Serializable;
+import java.math.BigDecimal;
 
-/** A message representing output produced by the JVM when {@code -XX:+PrintGC} is enabled. */
-public final class GcLogMessage extends LogMessage {
+/**
+ * A message reporting garbage collection in the worker VM. It is either parsed from the output
+ * produced by the JVM when {@code -XX:+PrintGC} is enabled, in which case it represents a single
+ * collection, or sent by the worker after reading its garbage collector MXBeans, in which case it
+ * may sum up several collections by the same collector.
+ */
+public final class GcLogMessage extends LogMessage implements Serializable {
   private static final long serialVersionUID = 1L;
 
   /** The type of the garbage collection performed. */
@@ -33,19 +42,33 @@ public final class GcLogMessage extends LogMessage {
   }
 
   private final Type type;
-  private final ShortDuration duration;
+  // ShortDuration isn't Serializable
+  private final long durationPicos;
+  private final long count;
 
   GcLogMessage(Type type, ShortDuration duration) {
+    this(type, duration, 1);
+  }
+
+  public GcLogMessage(Type type, ShortDuration duration, long count) {
+    checkArgument(count > 0, "count must be positive: %s", count);
     this.type = checkNotNull(type);
-    this.duration = checkNotNull(duration);
+    this.durationPicos = duration.toPicos();
+    this.count = count;
   }
 
   public Type type() {
     return type;
   }
 
+  /** Returns the total time taken by the collections. */
   public ShortDuration duration() {
-    return duration;
+    return ShortDuration.of(BigDecimal.valueOf(durationPicos, 3), NANOSECONDS);
+  }
+
+  /** Returns the number of collections this message represents. */
+  public long count() {
+    return count;
   }
 
   @Override
@@ -55,7 +78,7 @@ public final class GcLogMessage extends LogMessage {
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(type, duration);
+    return Objects.hashCode(type, durationPicos, count);
   }
 
   @Override
@@ -64,7 +87,9 @@ public final class GcLogMessage extends LogMessage {
       return true;
     } else if (obj instanceof GcLogMessage) {
       GcLogMessage that = (GcLogMessage) obj;
-      return this.type == that.type && this.duration.equals(that.duration);
+      return this.type == that.type
+          && this.durationPicos == that.durationPicos
+          && this.count == that.count;
     } else {
       return false;
     }
@@ -72,6 +97,10 @@ public final class GcLogMessage extends LogMessage {
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this).addValue(type).add("duration", duration).toString();
+    return MoreObjects.toStringHelper(this)
+        .addValue(type)
+        .add("duration", duration())
+        .add("count", count)
+        .toString();
   }
 }
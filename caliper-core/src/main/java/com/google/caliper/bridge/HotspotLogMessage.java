@@ -16,13 +16,39 @@
 
 package com.google.caliper.bridge;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Optional;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
 /**
- * A message representing output produced by the JVM when {@code -XX:+PrintCompliation} is enabled.
+ * A message reporting JIT compilation in the worker VM. It is either parsed from the output
+ * produced by the JVM when {@code -XX:+PrintCompliation} is enabled, or sent by the worker after
+ * seeing the compilation MXBean's total compilation time go up, in which case it carries the
+ * increase.
  */
-public final class HotspotLogMessage extends LogMessage {
+public final class HotspotLogMessage extends LogMessage implements Serializable {
   private static final long serialVersionUID = 1L;
 
-  HotspotLogMessage() {}
+  // ShortDuration isn't Serializable; negative if unknown
+  private final long compilationTimePicos;
+
+  HotspotLogMessage() {
+    this.compilationTimePicos = -1;
+  }
+
+  public HotspotLogMessage(ShortDuration compilationTime) {
+    this.compilationTimePicos = compilationTime.toPicos();
+  }
+
+  /** Returns the time spent compiling, if known. */
+  public Optional<ShortDuration> compilationTime() {
+    return (compilationTimePicos < 0)
+        ? Optional.<ShortDuration>absent()
+        : Optional.of(ShortDuration.of(BigDecimal.valueOf(compilationTimePicos, 3), NANOSECONDS));
+  }
 
   @Override
   public void accept(LogMessageVisitor visitor) {
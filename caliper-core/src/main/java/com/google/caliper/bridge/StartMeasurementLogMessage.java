@@ -16,13 +16,40 @@
 
 package com.google.caliper.bridge;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Optional;
 import java.io.Serializable;
+import java.math.BigDecimal;
 
 /** A message signaling that the timing interval has started in the worker. */
 // TODO(gak): rename in terms of measurement
 public class StartMeasurementLogMessage extends LogMessage implements Serializable {
   private static final long serialVersionUID = 1L;
 
+  // ShortDuration isn't Serializable; negative if no GC was forced
+  private final long gcBarrierPicos;
+
+  public StartMeasurementLogMessage() {
+    this.gcBarrierPicos = -1;
+  }
+
+  /**
+   * Creates a message for a measurement that was preceded by a forced garbage collection that took
+   * the given time.
+   */
+  public StartMeasurementLogMessage(ShortDuration gcBarrierTime) {
+    this.gcBarrierPicos = gcBarrierTime.toPicos();
+  }
+
+  /** Returns how long the garbage collection forced before the measurement took, if any. */
+  public Optional<ShortDuration> gcBarrierTime() {
+    return (gcBarrierPicos < 0)
+        ? Optional.<ShortDuration>absent()
+        : Optional.of(ShortDuration.of(BigDecimal.valueOf(gcBarrierPicos, 3), NANOSECONDS));
+  }
+
   @Override
   public void accept(LogMessageVisitor visitor) {
     visitor.visit(this);
@@ -30,11 +57,12 @@ public class StartMeasurementLogMessage extends LogMessage implements Serializab
 
   @Override
   public int hashCode() {
-    return StartMeasurementLogMessage.class.hashCode();
+    return StartMeasurementLogMessage.class.hashCode() ^ Long.valueOf(gcBarrierPicos).hashCode();
   }
 
   @Override
   public boolean equals(Object obj) {
-    return obj instanceof StartMeasurementLogMessage;
+    return obj instanceof StartMeasurementLogMessage
+        && ((StartMeasurementLogMessage) obj).gcBarrierPicos == gcBarrierPicos;
   }
 }
@@ -16,25 +16,40 @@
 
 package com.google.caliper.bridge;
 
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import java.io.Serializable;
+import javax.annotation.Nullable;
 
 /** A message signaling that the timing interval has ended in the worker. */
 public class StopMeasurementLogMessage extends LogMessage implements Serializable {
   private static final long serialVersionUID = 1L;
 
   private final ImmutableList<Measurement> measurements;
+  @Nullable private final LatencyHistogram latencyHistogram;
 
   public StopMeasurementLogMessage(Iterable<Measurement> measurements) {
+    this(measurements, Optional.<LatencyHistogram>absent());
+  }
+
+  public StopMeasurementLogMessage(
+      Iterable<Measurement> measurements, Optional<LatencyHistogram> latencyHistogram) {
     this.measurements = ImmutableList.copyOf(measurements);
+    this.latencyHistogram = latencyHistogram.orNull();
   }
 
   public ImmutableList<Measurement> measurements() {
     return measurements;
   }
 
+  /** Returns the latencies of the individual invocations timed for this measurement, if any. */
+  public Optional<LatencyHistogram> latencyHistogram() {
+    return Optional.fromNullable(latencyHistogram);
+  }
+
   @Override
   public void accept(LogMessageVisitor visitor) {
     visitor.visit(this);
@@ -42,7 +57,7 @@ public class StopMeasurementLogMessage extends LogMessage implements Serializabl
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(measurements);
+    return Objects.hashCode(measurements, latencyHistogram);
   }
 
   @Override
@@ -51,7 +66,8 @@ public class StopMeasurementLogMessage extends LogMessage implements Serializabl
       return true;
     } else if (obj instanceof StopMeasurementLogMessage) {
       StopMeasurementLogMessage that = (StopMeasurementLogMessage) obj;
-      return this.measurements.equals(that.measurements);
+      return this.measurements.equals(that.measurements)
+          && Objects.equal(this.latencyHistogram, that.latencyHistogram);
     } else {
       return false;
     }
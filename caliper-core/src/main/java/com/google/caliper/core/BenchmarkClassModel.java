@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.auto.value.AutoValue;
 import com.google.caliper.Param;
+import com.google.caliper.api.Blackhole;
 import com.google.caliper.api.VmOptions;
 import com.google.caliper.util.InvalidCommandException;
 import com.google.common.base.Optional;
@@ -69,11 +70,16 @@ public abstract class BenchmarkClassModel implements Serializable {
     for (Method method : clazz.getDeclaredMethods()) {
       builder.methodsBuilder().add(MethodModel.of(method));
     }
+    boolean hasBlackholeField = false;
     for (Field field : clazz.getDeclaredFields()) {
       if (field.isAnnotationPresent(Param.class)) {
         builder.parametersBuilder().put(field.getName(), Parameters.validateAndGetDefaults(field));
+      } else if (field.getType().equals(Blackhole.class)
+          && !Modifier.isStatic(field.getModifiers())) {
+        hasBlackholeField = true;
       }
     }
+    builder.setHasBlackholeField(hasBlackholeField);
     VmOptions vmOptions = clazz.getAnnotation(VmOptions.class);
     if (vmOptions != null) {
       builder.vmOptionsBuilder().add(vmOptions.value());
@@ -109,6 +115,9 @@ public abstract class BenchmarkClassModel implements Serializable {
   /** Returns the set of all methods declared on the class. */
   public abstract ImmutableSet<MethodModel> methods();
 
+  /** Returns whether the class declares a non-static {@link Blackhole} field. */
+  public abstract boolean hasBlackholeField();
+
   /**
    * Returns the set of parameter fields for the class and their default values as a map from field
    * name to set of default values.
@@ -162,6 +171,9 @@ public abstract class BenchmarkClassModel implements Serializable {
     /** Returns a builder for adding to the set of methods on the class. */
     abstract ImmutableSet.Builder<MethodModel> methodsBuilder();
 
+    /** Sets whether the class declares a non-static {@link Blackhole} field. */
+    abstract Builder setHasBlackholeField(boolean hasBlackholeField);
+
     /** Returns a builder for adding to the map of parameters for the class. */
     public abstract ImmutableMap.Builder<String, ImmutableSet<String>> parametersBuilder();
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.memory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A thread-safe set that compares its elements by identity. Elements are spread by their identity
+ * hash code over a number of stripes, each an identity hash set with its own lock, so threads
+ * adding different objects rarely contend.
+ *
+ * <p>Iteration is over a copy of each stripe in turn, so it isn't a consistent snapshot of the
+ * whole set if elements are added concurrently, and it doesn't support removal.
+ */
+final class ConcurrentIdentitySet extends AbstractSet<Object> {
+  private final Set<Object>[] stripes;
+  private final int mask;
+
+  /** Creates a set with at least the given number of stripes. */
+  @SuppressWarnings("unchecked") // generic array creation
+  ConcurrentIdentitySet(int minStripes) {
+    Preconditions.checkArgument(minStripes > 0, "minStripes must be positive: %s", minStripes);
+    int stripeCount = Integer.highestOneBit(minStripes);
+    if (stripeCount < minStripes) {
+      stripeCount <<= 1;
+    }
+    this.stripes = new Set[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    }
+    this.mask = stripeCount - 1;
+  }
+
+  private Set<Object> stripeFor(Object o) {
+    int hash = System.identityHashCode(o);
+    // spread the high bits down, as the low bits of identity hash codes may be poorly distributed
+    return stripes[(hash ^ (hash >>> 16)) & mask];
+  }
+
+  @Override
+  public boolean add(Object o) {
+    Set<Object> stripe = stripeFor(o);
+    synchronized (stripe) {
+      return stripe.add(o);
+    }
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    Set<Object> stripe = stripeFor(o);
+    synchronized (stripe) {
+      return stripe.contains(o);
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    Set<Object> stripe = stripeFor(o);
+    synchronized (stripe) {
+      return stripe.remove(o);
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Set<Object> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public Iterator<Object> iterator() {
+    ImmutableList.Builder<Object> snapshot = ImmutableList.builder();
+    for (Set<Object> stripe : stripes) {
+      synchronized (stripe) {
+        snapshot.addAll(stripe);
+      }
+    }
+    return snapshot.build().iterator();
+  }
+}
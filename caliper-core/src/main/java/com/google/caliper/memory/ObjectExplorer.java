@@ -16,8 +16,7 @@
 
 package com.google.caliper.memory;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.Lists;
 import java.lang.ref.Reference;
 import java.lang.reflect.Array;
@@ -27,12 +26,9 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayDeque;
-import java.util.Collections;
 import java.util.Deque;
 import java.util.EnumSet;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 
@@ -113,18 +109,23 @@ public final class ObjectExplorer {
       @Nonnull Object value = chain.getValue();
       Class<?> valueClass = value.getClass();
       if (valueClass.isArray()) {
-        boolean isPrimitive = valueClass.getComponentType().isPrimitive();
         /*
          * Since we push paths to explore in a stack, we push references found in the array in
          * reverse order, so when we pop them, they will be in the array's order.
          */
-        for (int i = Array.getLength(value) - 1; i >= 0; i--) {
-          Object childValue = Array.get(value, i);
-          if (isPrimitive) {
-            if (features.contains(Feature.VISIT_PRIMITIVES)) {
-              visitor.visit(chain.appendArrayIndex(i, childValue));
+        if (valueClass.getComponentType().isPrimitive()) {
+          // boxing every element is expensive, so only do it for visitors that want them
+          if (features.contains(Feature.VISIT_PRIMITIVES)) {
+            for (int i = Array.getLength(value) - 1; i >= 0; i--) {
+              visitor.visit(chain.appendArrayIndex(i, Array.get(value, i)));
             }
-          } else if (childValue == null) {
+          }
+          continue;
+        }
+        Object[] array = (Object[]) value;
+        for (int i = array.length - 1; i >= 0; i--) {
+          Object childValue = array[i];
+          if (childValue == null) {
             if (features.contains(Feature.VISIT_NULL)) {
               visitor.visit(chain.appendArrayIndex(i, childValue));
             }
@@ -138,19 +139,14 @@ public final class ObjectExplorer {
          * them to the stack in reverse order, so when we pop them, we get them in the original
          * (declaration) order.
          */
-        final Field[] fields = getAllFields(value);
+        ClassFields classFields = getClassFields(valueClass);
+        final Field[] fields = classFields.fields;
         for (int j = fields.length - 1; j >= 0; j--) {
           final Field field = fields[j];
-          if (field.getDeclaringClass().equals(Reference.class)
-              && !field.getName().equals("referent")) {
+          if (field.getType().isPrimitive() && !features.contains(Feature.VISIT_PRIMITIVES)) {
             continue;
           }
-          Object childValue = null;
-          try {
-            childValue = fieldGetHelper(value, field);
-          } catch (Exception e) {
-            throw new AssertionError(e);
-          }
+          Object childValue = readField(value, field.getType(), classFields.offsets[j]);
           if (childValue == null) { // handling nulls
             if (features.contains(Feature.VISIT_NULL)) {
               visitor.visit(chain.appendField(field, childValue));
@@ -172,73 +168,81 @@ public final class ObjectExplorer {
     return visitor.result();
   }
 
-  /** A stateful predicate that allows exploring an object (the tail of the chain) only once. */
-  static class AtMostOncePredicate implements Predicate<Chain> {
-    private final Set<Object> seen =
-        Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+  /**
+   * The instance fields of a class that are explored, with their offsets, so that reading them
+   * needs no reflection. Of the fields declared by {@link Reference}, only the referent is
+   * explored.
+   */
+  static final class ClassFields {
+    final Field[] fields;
+    final long[] offsets;
 
-    @Override
-    public boolean apply(Chain chain) {
-      return seen.add(chain.getValue());
-    }
-  }
+    /** The reference fields among {@link #fields}. */
+    final Field[] referenceFields;
 
-  static final Predicate<Chain> notEnumFieldsOrClasses =
-      new Predicate<Chain>() {
-        @Override
-        public boolean apply(Chain chain) {
-          return !(Enum.class.isAssignableFrom(chain.getValueType())
-              || chain.getValue() instanceof Class<?>);
-        }
-      };
+    /** The offsets of the {@link #referenceFields}. */
+    final long[] referenceOffsets;
 
-  static final Function<Chain, Object> chainToObject =
-      new Function<Chain, Object>() {
-        @Override
-        public Object apply(Chain chain) {
-          return chain.getValue();
-        }
-      };
+    /** The declared types of the {@link #referenceFields}. */
+    final Class<?>[] referenceTypes;
 
-  /** A cache of {@code Field}s that are accessible for a given {@code Class<?>}. */
-  private static final ConcurrentHashMap<Class<?>, Field[]> clazzFields =
-      new ConcurrentHashMap<Class<?>, Field[]>();
+    /** The types of the primitive fields among {@link #fields}. */
+    final ImmutableMultiset<Class<?>> primitiveTypes;
 
-  private static Field[] getAllFields(Object o) {
-    Class<?> clazz = o.getClass();
-    return getAllFields(clazz);
+    private ClassFields(Class<?> clazz) {
+      List<Field> fields = Lists.newArrayListWithCapacity(8);
+      List<Field> referenceFields = Lists.newArrayListWithCapacity(8);
+      ImmutableMultiset.Builder<Class<?>> primitiveTypes = ImmutableMultiset.builder();
+      for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          // add only non-static fields
+          if (Modifier.isStatic(field.getModifiers())
+              || (c.equals(Reference.class) && !field.getName().equals("referent"))) {
+            continue;
+          }
+          fields.add(field);
+          if (field.getType().isPrimitive()) {
+            primitiveTypes.add(field.getType());
+          } else {
+            referenceFields.add(field);
+          }
+        }
+      }
+      this.fields = fields.toArray(new Field[0]);
+      this.offsets = offsetsOf(fields);
+      this.referenceFields = referenceFields.toArray(new Field[0]);
+      this.referenceOffsets = offsetsOf(referenceFields);
+      this.referenceTypes = new Class<?>[referenceFields.size()];
+      for (int i = 0; i < referenceTypes.length; i++) {
+        referenceTypes[i] = referenceFields.get(i).getType();
+      }
+      this.primitiveTypes = primitiveTypes.build();
+    }
+
+    private static long[] offsetsOf(List<Field> fields) {
+      long[] offsets = new long[fields.size()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = UNSAFE.objectFieldOffset(fields.get(i));
+      }
+      return offsets;
+    }
   }
 
-  /**
-   * Keep a cache of fields per class of interest.
-   *
-   * @param clazz - the {@code Class<?>} to interrogate.
-   * @return An array of fields of the given class.
-   */
-  private static Field[] getAllFields(Class<?> clazz) {
-    Field[] f = clazzFields.get(clazz);
+  /** A cache of the {@link ClassFields} of each class of interest. */
+  private static final ConcurrentHashMap<Class<?>, ClassFields> classFieldsCache =
+      new ConcurrentHashMap<Class<?>, ClassFields>();
+
+  /** Returns the explored fields of the given class. */
+  static ClassFields getClassFields(Class<?> clazz) {
+    ClassFields f = classFieldsCache.get(clazz);
     if (f == null) {
-      f = computeAllFields(clazz);
-      Field[] u = clazzFields.putIfAbsent(clazz, f);
+      f = new ClassFields(clazz);
+      ClassFields u = classFieldsCache.putIfAbsent(clazz, f);
       return u == null ? f : u;
     }
     return f;
   }
 
-  private static Field[] computeAllFields(Class<?> clazz) {
-    List<Field> fields = Lists.newArrayListWithCapacity(8);
-    while (clazz != null) {
-      for (Field field : clazz.getDeclaredFields()) {
-        // add only non-static fields
-        if (!Modifier.isStatic(field.getModifiers())) {
-          fields.add(field);
-        }
-      }
-      clazz = clazz.getSuperclass();
-    }
-    return fields.toArray(new Field[0]);
-  }
-
   /**
    * Enumeration of features that may be optionally requested for an object traversal.
    *
@@ -283,19 +287,14 @@ public final class ObjectExplorer {
     UNSAFE = unsafe;
   }
 
+  /** Returns the value of the reference field at the given offset of an object. */
+  static Object readReference(Object obj, long fieldOffset) {
+    return UNSAFE.getObject(obj, fieldOffset);
+  }
+
   // We use sun.misc.Unsafe to get the contents of a field because,
   // unlike reflective access, it can cross module boundaries
-  private static Object fieldGetHelper(Object obj, Field field) {
-    Object fieldBase;
-    long fieldOffset;
-    if ((field.getModifiers() & Modifier.STATIC) == 0) {
-      fieldBase = obj;
-      fieldOffset = UNSAFE.objectFieldOffset(field);
-    } else {
-      fieldBase = UNSAFE.staticFieldBase(field);
-      fieldOffset = UNSAFE.staticFieldOffset(field);
-    }
-    Class<?> type = field.getType();
+  private static Object readField(Object fieldBase, Class<?> type, long fieldOffset) {
     if (!type.isPrimitive()) {
       return UNSAFE.getObject(fieldBase, fieldOffset);
     } else {
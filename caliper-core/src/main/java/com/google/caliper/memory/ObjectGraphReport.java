@@ -0,0 +1,503 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.memory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Longs;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A breakdown of where the memory of an object graph goes: a histogram of the shallow size of the
+ * objects of each class, and the retained size of each object, i.e. the size of the objects that
+ * are only reachable from the root through it.
+ *
+ * <p>The graph is the same as the one measured by {@link ObjectGraphMeasurer}. Retained sizes are
+ * computed from the dominator tree of the graph, using the iterative algorithm of Cooper, Harvey
+ * and Kennedy.
+ */
+public final class ObjectGraphReport {
+  /** The number and total shallow size of the objects of one class. */
+  public static final class ClassStats {
+    private final Class<?> type;
+    private int instances;
+    private long bytes;
+
+    private ClassStats(Class<?> type) {
+      this.type = type;
+    }
+
+    public Class<?> getType() {
+      return type;
+    }
+
+    public int getInstances() {
+      return instances;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("type", type.getName())
+          .add("instances", instances)
+          .add("bytes", bytes)
+          .toString();
+    }
+  }
+
+  /** An object of the graph, with the number and size of the objects it retains. */
+  public static final class RetainedSubgraph {
+    private final String path;
+    private final Class<?> type;
+    private final int retainedObjects;
+    private final long retainedBytes;
+
+    private RetainedSubgraph(String path, Class<?> type, int retainedObjects, long retainedBytes) {
+      this.path = path;
+      this.type = type;
+      this.retainedObjects = retainedObjects;
+      this.retainedBytes = retainedBytes;
+    }
+
+    /**
+     * Returns the path of fields and array indices through which the object was first reached
+     * from the root, such as {@code root.table[3].value}.
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public Class<?> getType() {
+      return type;
+    }
+
+    /** Returns the number of objects retained by this object, including itself. */
+    public int getRetainedObjects() {
+      return retainedObjects;
+    }
+
+    /** Returns the size of the objects retained by this object, including itself. */
+    public long getRetainedBytes() {
+      return retainedBytes;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("path", path)
+          .add("type", type.getName())
+          .add("retainedObjects", retainedObjects)
+          .add("retainedBytes", retainedBytes)
+          .toString();
+    }
+  }
+
+  private final ImmutableList<ClassStats> classHistogram;
+  private final Class<?>[] types;
+  private final int[] parents;
+  private final int[] links;
+  private final int[] retainedObjects;
+  private final long[] retainedBytes;
+
+  private ObjectGraphReport(
+      ImmutableList<ClassStats> classHistogram,
+      Class<?>[] types,
+      int[] parents,
+      int[] links,
+      int[] retainedObjects,
+      long[] retainedBytes) {
+    this.classHistogram = classHistogram;
+    this.types = types;
+    this.parents = parents;
+    this.links = links;
+    this.retainedObjects = retainedObjects;
+    this.retainedBytes = retainedBytes;
+  }
+
+  /**
+   * Explores the graph reachable from the given root, as {@link ObjectGraphMeasurer#measure(Object,
+   * Predicate, ObjectLayout)} does, and reports on it.
+   *
+   * @param rootObject the root object of the object graph
+   * @param objectAcceptor a predicate that returns {@code true} for objects to be explored (and
+   *     treated as part of the footprint), or {@code false} to forbid the traversal to traverse the
+   *     given object
+   * @param layout the layout used to estimate the size of each object
+   */
+  public static ObjectGraphReport create(
+      Object rootObject, Predicate<Object> objectAcceptor, ObjectLayout layout) {
+    Preconditions.checkNotNull(rootObject, "rootObject");
+    Preconditions.checkNotNull(objectAcceptor, "predicate");
+    Preconditions.checkNotNull(layout, "layout");
+    Graph graph = new GraphBuilder(objectAcceptor).explore(rootObject);
+    if (graph.nodes == 0) {
+      // the root itself was rejected, so nothing is part of the footprint
+      return new ObjectGraphReport(
+          ImmutableList.<ClassStats>of(),
+          new Class<?>[0],
+          new int[0],
+          new int[0],
+          new int[0],
+          new long[0]);
+    }
+
+    int nodes = graph.nodes;
+    Map<Class<?>, ClassStats> statsByClass = new HashMap<Class<?>, ClassStats>();
+    // only the classes of the objects are kept, so that the report doesn't retain the graph
+    Class<?>[] types = new Class<?>[nodes];
+    long[] shallowBytes = new long[nodes];
+    for (int i = 0; i < nodes; i++) {
+      Object value = graph.objects.get(i);
+      types[i] = value.getClass();
+      shallowBytes[i] = layout.sizeOf(value);
+      ClassStats stats = statsByClass.get(value.getClass());
+      if (stats == null) {
+        stats = new ClassStats(value.getClass());
+        statsByClass.put(value.getClass(), stats);
+      }
+      stats.instances++;
+      stats.bytes += shallowBytes[i];
+    }
+    ImmutableList<ClassStats> classHistogram =
+        new Ordering<ClassStats>() {
+          @Override
+          public int compare(ClassStats left, ClassStats right) {
+            return Longs.compare(right.bytes, left.bytes);
+          }
+        }.immutableSortedCopy(statsByClass.values());
+
+    // Dominators are computed in reverse postorder, in which every node comes after its dominator.
+    int[] successorStarts = new int[nodes + 1];
+    int[] successors =
+        csr(graph.edgeSources, graph.edgeTargets, graph.edges, nodes, successorStarts);
+    int[] predecessorStarts = new int[nodes + 1];
+    int[] predecessors =
+        csr(graph.edgeTargets, graph.edgeSources, graph.edges, nodes, predecessorStarts);
+    int[] reversePostorder = reversePostorder(successors, successorStarts);
+    int[] postorderIndex = new int[nodes];
+    for (int i = 0; i < nodes; i++) {
+      postorderIndex[reversePostorder[i]] = nodes - 1 - i;
+    }
+    int[] dominators =
+        dominators(reversePostorder, postorderIndex, predecessors, predecessorStarts);
+
+    // each node's retained size is added to its dominator's after all the nodes it dominates
+    int[] retainedObjects = new int[nodes];
+    Arrays.fill(retainedObjects, 1);
+    long[] retainedBytes = shallowBytes;
+    for (int i = nodes - 1; i > 0; i--) {
+      int node = reversePostorder[i];
+      retainedObjects[dominators[node]] += retainedObjects[node];
+      retainedBytes[dominators[node]] += retainedBytes[node];
+    }
+    return new ObjectGraphReport(
+        classHistogram, types, graph.parents, graph.links, retainedObjects, retainedBytes);
+  }
+
+  /** Returns the number and size of the objects of each class, largest first. */
+  public ImmutableList<ClassStats> classHistogram() {
+    return classHistogram;
+  }
+
+  /** Returns the total size of the objects of the graph. */
+  public long totalBytes() {
+    return (retainedBytes.length == 0) ? 0 : retainedBytes[0];
+  }
+
+  /**
+   * Returns the objects, other than the root, that retain the most memory, largest first. The
+   * subgraphs retained by these objects may be nested in one another.
+   */
+  public ImmutableList<RetainedSubgraph> largestRetainedSubgraphs(int count) {
+    Preconditions.checkArgument(count >= 0, "count must not be negative: %s", count);
+    List<Integer> nodes = new ArrayList<Integer>(types.length);
+    for (int i = 1; i < types.length; i++) {
+      nodes.add(i);
+    }
+    List<Integer> largest =
+        Ordering.from(
+                new Comparator<Integer>() {
+                  @Override
+                  public int compare(Integer left, Integer right) {
+                    return Longs.compare(retainedBytes[left], retainedBytes[right]);
+                  }
+                })
+            .greatestOf(nodes, count);
+    ImmutableList.Builder<RetainedSubgraph> result = ImmutableList.builder();
+    for (int node : largest) {
+      result.add(
+          new RetainedSubgraph(
+              pathOf(node), types[node], retainedObjects[node], retainedBytes[node]));
+    }
+    return result.build();
+  }
+
+  /** Returns the path of fields and array indices through which a node was first reached. */
+  private String pathOf(int node) {
+    List<Integer> path = new ArrayList<Integer>();
+    for (int n = node; n != 0; n = parents[n]) {
+      path.add(n);
+    }
+    StringBuilder builder = new StringBuilder("root");
+    for (int i = path.size() - 1; i >= 0; i--) {
+      int n = path.get(i);
+      Class<?> parentType = types[parents[n]];
+      if (parentType.isArray()) {
+        builder.append('[').append(links[n]).append(']');
+      } else {
+        Field field = ObjectExplorer.getClassFields(parentType).referenceFields[links[n]];
+        builder.append('.').append(field.getName());
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * The nodes and edges of an explored graph. Node 0 is the root. Rather than the path to each
+   * node, only the last link of it is kept: the node it was first reached from, and the index of
+   * the reference among that node's {@link ObjectExplorer.ClassFields#referenceFields} or array
+   * elements.
+   */
+  private static final class Graph {
+    final List<Object> objects = new ArrayList<Object>();
+
+    int nodes;
+    int[] parents = new int[16];
+    int[] links = new int[16];
+
+    int[] edgeSources = new int[16];
+    int[] edgeTargets = new int[16];
+    int edges;
+
+    int addNode(Object value, int parent, int link) {
+      if (nodes == parents.length) {
+        parents = Arrays.copyOf(parents, nodes * 2);
+        links = Arrays.copyOf(links, nodes * 2);
+      }
+      objects.add(value);
+      parents[nodes] = parent;
+      links[nodes] = link;
+      return nodes++;
+    }
+
+    void addEdge(int source, int target) {
+      if (edges == edgeSources.length) {
+        edgeSources = Arrays.copyOf(edgeSources, edges * 2);
+        edgeTargets = Arrays.copyOf(edgeTargets, edges * 2);
+      }
+      edgeSources[edges] = source;
+      edgeTargets[edges] = target;
+      edges++;
+    }
+  }
+
+  /**
+   * Numbers the objects of the graph and records the references between them. Like {@link
+   * ObjectExplorer}, it explores the graph depth first, following the references of each object in
+   * order, so that each object is first reached through the same path; but it reads the fields
+   * through the offsets cached in {@link ObjectExplorer.ClassFields} and creates no {@link Chain}.
+   */
+  private static final class GraphBuilder {
+    private final Predicate<Object> objectAcceptor;
+    private final Map<Object, Integer> indices = new IdentityHashMap<Object, Integer>();
+    private final Graph graph = new Graph();
+
+    /** The references still to be followed, as pairs of the referring node and the link index. */
+    private int[] pending = new int[32];
+    private int pendingSize;
+
+    GraphBuilder(Predicate<Object> objectAcceptor) {
+      this.objectAcceptor = objectAcceptor;
+    }
+
+    Graph explore(Object rootObject) {
+      // as in ObjectGraphMeasurer, enums and classes are shared values, not part of the graph
+      if (!(rootObject instanceof Enum<?>)
+          && !(rootObject instanceof Class<?>)
+          && objectAcceptor.apply(rootObject)) {
+        indices.put(rootObject, graph.addNode(rootObject, -1, -1));
+        push(0);
+      }
+      while (pendingSize > 0) {
+        int link = pending[--pendingSize];
+        int source = pending[--pendingSize];
+        Object sourceValue = graph.objects.get(source);
+        Object value;
+        Class<?> declaredType;
+        if (sourceValue.getClass().isArray()) {
+          value = ((Object[]) sourceValue)[link];
+          declaredType = sourceValue.getClass().getComponentType();
+        } else {
+          ObjectExplorer.ClassFields fields =
+              ObjectExplorer.getClassFields(sourceValue.getClass());
+          value = ObjectExplorer.readReference(sourceValue, fields.referenceOffsets[link]);
+          declaredType = fields.referenceTypes[link];
+        }
+        if (value != null) {
+          follow(source, link, value, declaredType);
+        }
+      }
+      return graph;
+    }
+
+    private void follow(int source, int link, Object value, Class<?> declaredType) {
+      if (Enum.class.isAssignableFrom(declaredType) || value instanceof Class<?>) {
+        return;
+      }
+      Integer index = indices.get(value);
+      if (index == null) {
+        if (!objectAcceptor.apply(value)) {
+          return;
+        }
+        index = graph.addNode(value, source, link);
+        indices.put(value, index);
+        push(index);
+      }
+      graph.addEdge(source, index);
+    }
+
+    /**
+     * Queues the references of the given node in reverse order, so that they are followed in
+     * order.
+     */
+    private void push(int node) {
+      Object value = graph.objects.get(node);
+      Class<?> valueClass = value.getClass();
+      int references;
+      if (valueClass.isArray()) {
+        references = valueClass.getComponentType().isPrimitive() ? 0 : ((Object[]) value).length;
+      } else {
+        references = ObjectExplorer.getClassFields(valueClass).referenceOffsets.length;
+      }
+      int size = pendingSize + 2 * references;
+      if (size > pending.length) {
+        pending = Arrays.copyOf(pending, Math.max(pending.length * 2, size));
+      }
+      for (int i = references - 1; i >= 0; i--) {
+        pending[pendingSize++] = node;
+        pending[pendingSize++] = i;
+      }
+    }
+  }
+
+  /**
+   * Groups the given edges by source into compressed sparse rows: the targets of the edges from
+   * node {@code n} are at indices {@code starts[n]} to {@code starts[n + 1]} of the result.
+   */
+  private static int[] csr(int[] sources, int[] targets, int edges, int nodes, int[] starts) {
+    for (int i = 0; i < edges; i++) {
+      starts[sources[i] + 1]++;
+    }
+    for (int n = 0; n < nodes; n++) {
+      starts[n + 1] += starts[n];
+    }
+    int[] next = Arrays.copyOf(starts, nodes);
+    int[] result = new int[edges];
+    for (int i = 0; i < edges; i++) {
+      result[next[sources[i]]++] = targets[i];
+    }
+    return result;
+  }
+
+  /** Returns the nodes in reverse postorder of a depth-first search from node 0. */
+  private static int[] reversePostorder(int[] successors, int[] starts) {
+    int nodes = starts.length - 1;
+    int[] order = new int[nodes];
+    int position = nodes;
+    boolean[] visited = new boolean[nodes];
+    int[] stack = new int[nodes];
+    int[] nextEdge = new int[nodes];
+    int depth = 0;
+    stack[depth++] = 0;
+    visited[0] = true;
+    nextEdge[0] = starts[0];
+    while (depth > 0) {
+      int node = stack[depth - 1];
+      if (nextEdge[node] < starts[node + 1]) {
+        int successor = successors[nextEdge[node]++];
+        if (!visited[successor]) {
+          visited[successor] = true;
+          nextEdge[successor] = starts[successor];
+          stack[depth++] = successor;
+        }
+      } else {
+        order[--position] = node;
+        depth--;
+      }
+    }
+    return order;
+  }
+
+  /** Returns the immediate dominator of each node; the root is its own dominator. */
+  private static int[] dominators(
+      int[] reversePostorder, int[] postorderIndex, int[] predecessors, int[] starts) {
+    int nodes = reversePostorder.length;
+    int[] dominators = new int[nodes];
+    Arrays.fill(dominators, -1);
+    dominators[0] = 0;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = 1; i < nodes; i++) {
+        int node = reversePostorder[i];
+        int dominator = -1;
+        for (int p = starts[node]; p < starts[node + 1]; p++) {
+          int predecessor = predecessors[p];
+          if (dominators[predecessor] == -1) {
+            continue;
+          }
+          if (dominator == -1) {
+            dominator = predecessor;
+          } else {
+            dominator = intersect(dominator, predecessor, dominators, postorderIndex);
+          }
+        }
+        if (dominators[node] != dominator) {
+          dominators[node] = dominator;
+          changed = true;
+        }
+      }
+    }
+    return dominators;
+  }
+
+  private static int intersect(int a, int b, int[] dominators, int[] postorderIndex) {
+    while (a != b) {
+      while (postorderIndex[a] < postorderIndex[b]) {
+        a = dominators[a];
+      }
+      while (postorderIndex[b] < postorderIndex[a]) {
+        b = dominators[b];
+      }
+    }
+    return a;
+  }
+}
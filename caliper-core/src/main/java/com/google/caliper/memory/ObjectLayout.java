@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.memory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A model of how a VM lays out objects in memory, used to estimate how many bytes an object graph
+ * occupies.
+ *
+ * <p>Every object is modeled as a header followed by its instance fields, or for an array, by a
+ * 4-byte length and its elements, with the total rounded up to the object alignment. Fields are
+ * assumed to be packed with no gaps between them, which is close to what HotSpot does but may
+ * slightly underestimate classes whose superclasses end in a gap.
+ */
+public final class ObjectLayout {
+  /**
+   * The layout of a 64-bit HotSpot VM with compressed oops and class pointers, the default for
+   * heaps smaller than 32GB.
+   */
+  public static final ObjectLayout HOTSPOT_64_COMPRESSED = new ObjectLayout(12, true, 8);
+
+  /** The layout of a 64-bit HotSpot VM run with {@code -XX:-UseCompressedOops}. */
+  public static final ObjectLayout HOTSPOT_64 = new ObjectLayout(16, false, 8);
+
+  private final int headerBytes;
+  private final int referenceBytes;
+  private final int alignment;
+
+  /** A cache of the bytes taken by the instance fields of each class. */
+  private final ConcurrentHashMap<Class<?>, Long> fieldBytes =
+      new ConcurrentHashMap<Class<?>, Long>();
+
+  /**
+   * Constructs a layout.
+   *
+   * @param headerBytes the size of an object header, including the class pointer
+   * @param compressedOops whether references take 4 bytes rather than 8
+   * @param alignment the alignment of objects, which must be a power of two
+   */
+  public ObjectLayout(int headerBytes, boolean compressedOops, int alignment) {
+    Preconditions.checkArgument(headerBytes > 0, "Header size must be positive: %s", headerBytes);
+    Preconditions.checkArgument(
+        alignment > 0 && Integer.bitCount(alignment) == 1,
+        "Alignment must be a power of two: %s",
+        alignment);
+    this.headerBytes = headerBytes;
+    this.referenceBytes = compressedOops ? 4 : 8;
+    this.alignment = alignment;
+  }
+
+  /**
+   * Returns the estimated size in bytes of the given object itself, not counting any object it
+   * refers to.
+   */
+  public long sizeOf(Object object) {
+    Class<?> clazz = object.getClass();
+    if (clazz.isArray()) {
+      int elementBytes = sizeOfValue(clazz.getComponentType());
+      long base = headerBytes + 4;
+      if (elementBytes == 8) {
+        // 8-byte elements are 8-byte aligned, even after a 12-byte header and 4-byte length
+        base = align(base, 8);
+      }
+      return align(base + (long) Array.getLength(object) * elementBytes, alignment);
+    }
+    return align(headerBytes + fieldBytes(clazz), alignment);
+  }
+
+  private long fieldBytes(Class<?> clazz) {
+    Long bytes = fieldBytes.get(clazz);
+    if (bytes == null) {
+      long sum = 0;
+      for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            sum += sizeOfValue(field.getType());
+          }
+        }
+      }
+      bytes = sum;
+      fieldBytes.putIfAbsent(clazz, bytes);
+    }
+    return bytes;
+  }
+
+  /** Returns the number of bytes taken by a field or array element of the given type. */
+  private int sizeOfValue(Class<?> type) {
+    if (!type.isPrimitive()) {
+      return referenceBytes;
+    } else if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    } else {
+      return 1;
+    }
+  }
+
+  private static long align(long size, int alignment) {
+    return (size + alignment - 1) & -alignment;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("headerBytes", headerBytes)
+        .add("referenceBytes", referenceBytes)
+        .add("alignment", alignment)
+        .toString();
+  }
+}
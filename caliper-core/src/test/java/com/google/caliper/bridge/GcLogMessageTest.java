@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.bridge;
+
+import static com.google.caliper.bridge.GcLogMessage.Type.FULL;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Optional;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that the VM event messages sent by the worker survive the trip to the runner. */
+@RunWith(JUnit4.class)
+public class GcLogMessageTest {
+
+  @Test
+  public void gcLogMessage_serializes() throws Exception {
+    GcLogMessage message = new GcLogMessage(FULL, ShortDuration.of(1234, MICROSECONDS), 3);
+    GcLogMessage copy = roundTrip(message);
+    assertEquals(message, copy);
+    assertEquals(FULL, copy.type());
+    assertEquals(ShortDuration.of(1234, MICROSECONDS), copy.duration());
+    assertEquals(3, copy.count());
+  }
+
+  @Test
+  public void hotspotLogMessage_serializes() throws Exception {
+    HotspotLogMessage message = new HotspotLogMessage(ShortDuration.of(7, MILLISECONDS));
+    assertEquals(
+        Optional.of(ShortDuration.of(7, MILLISECONDS)), roundTrip(message).compilationTime());
+    assertFalse(roundTrip(new HotspotLogMessage()).compilationTime().isPresent());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T roundTrip(T object) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(object);
+    out.close();
+    return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+  }
+}
@@ -16,9 +16,22 @@
 
 package com.google.caliper.memory;
 
+import com.google.caliper.memory.ObjectExplorer.Feature;
 import com.google.caliper.memory.ObjectGraphMeasurer.Footprint;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import junit.framework.TestCase;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -160,5 +173,197 @@ public class ObjectGraphMeasurerTest extends TestCase {
     assertEquals(new ObjectGraphMeasurer.Footprint(2, 1, 0, NO_PRIMITIVES), footprint);
   }
 
+  @SuppressWarnings("unused") // unused test fields
+  static final Object primitiveArrays =
+      new Object() {
+        int[] ints = new int[3];
+        byte[] noBytes = new byte[0];
+        char[] chars = "hello".toCharArray();
+        long[][] longs = {new long[2], null, new long[4]};
+        double[] doubles = new double[1];
+        double[] sameDoubles = doubles;
+      };
+
+  @Test
+  public void testPrimitiveArrays() {
+    ImmutableMultiset<Class<?>> primitives =
+        ImmutableMultiset.<Class<?>>builder()
+            .addCopies(int.class, 3)
+            .addCopies(char.class, 5)
+            .addCopies(long.class, 6)
+            .addCopies(double.class, 1)
+            .build();
+    assertEquals(
+        new ObjectGraphMeasurer.Footprint(8, 8, 1, primitives),
+        ObjectGraphMeasurer.measure(primitiveArrays));
+    assertMatchesChainTraversal(primitiveArrays, Predicates.alwaysTrue());
+  }
+
+  static class IntHolder {
+    int value;
+  }
+
+  static class TaggedReference extends WeakReference<Object> {
+    int tag;
+    long stamp;
+
+    TaggedReference(Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+    }
+  }
+
+  /**
+   * Test that of a {@link java.lang.ref.Reference}'s own fields only the referent is followed, so
+   * its queue isn't part of the graph, while the fields of its subclasses still are.
+   */
+  @Test
+  public void testReferenceFieldsOtherThanReferentAreSkipped() {
+    IntHolder referent = new IntHolder();
+    TaggedReference reference = new TaggedReference(referent, new ReferenceQueue<Object>());
+    ImmutableMultiset<Class<?>> primitives =
+        ImmutableMultiset.<Class<?>>builder()
+            .addCopies(int.class, 2)
+            .addCopies(long.class, 1)
+            .build();
+    assertEquals(
+        new ObjectGraphMeasurer.Footprint(2, 1, 0, primitives),
+        ObjectGraphMeasurer.measure(reference));
+    assertMatchesChainTraversal(reference, Predicates.alwaysTrue());
+  }
+
+  static class Point {
+    int x;
+    int y;
+
+    Point(int x) {
+      this.x = x;
+    }
+  }
+
+  static class LabeledPoint extends Point {
+    long z;
+    boolean visible;
+    Object label;
+
+    LabeledPoint(int x, Object label) {
+      super(x);
+      this.label = label;
+    }
+  }
+
+  /**
+   * Test that the primitive fields of each class, including inherited ones, are counted once per
+   * instance, and not at all for rejected instances.
+   */
+  @Test
+  public void testPrimitivesOfManyInstances() {
+    Object[] points = new Object[150];
+    Object label = new Object();
+    for (int i = 0; i < 100; i++) {
+      points[i] = new LabeledPoint(i, i % 2 == 0 ? label : null);
+    }
+    for (int i = 100; i < 150; i++) {
+      points[i] = new Point(i);
+    }
+    ImmutableMultiset<Class<?>> primitives =
+        ImmutableMultiset.<Class<?>>builder()
+            .addCopies(int.class, 300)
+            .addCopies(long.class, 100)
+            .addCopies(boolean.class, 100)
+            .build();
+    // the array, the points and the label; the array's elements and the even points' labels
+    assertEquals(
+        new ObjectGraphMeasurer.Footprint(152, 200, 50, primitives),
+        ObjectGraphMeasurer.measure(points));
+    assertMatchesChainTraversal(points, Predicates.alwaysTrue());
+
+    Predicate<Object> rejectOddPoints =
+        new Predicate<Object>() {
+          @Override
+          public boolean apply(Object object) {
+            return !(object instanceof Point) || ((Point) object).x % 2 == 0;
+          }
+        };
+    assertMatchesChainTraversal(points, rejectOddPoints);
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    Map<String, Object> graph = new HashMap<>();
+    for (int i = 0; i < 10000; i++) {
+      graph.put("key" + i, i % 2 == 0 ? new long[i % 5] : new Object[] {DummyEnum.VALUE, graph});
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertEquals(
+          ObjectGraphMeasurer.measure(
+              graph, Predicates.alwaysTrue(), ObjectLayout.HOTSPOT_64_COMPRESSED),
+          ObjectGraphMeasurer.measureInParallel(
+              graph, Predicates.alwaysTrue(), ObjectLayout.HOTSPOT_64_COMPRESSED, pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Asserts that measuring the graph gives the same footprint as counting it with an {@link
+   * ObjectVisitor}, which sees every reference and primitive value through a {@link Chain}.
+   */
+  private static void assertMatchesChainTraversal(Object root, Predicate<Object> objectAcceptor) {
+    assertEquals(
+        ObjectExplorer.exploreObject(
+            root,
+            new CountingVisitor(objectAcceptor, ObjectLayout.HOTSPOT_64_COMPRESSED),
+            EnumSet.of(Feature.VISIT_PRIMITIVES, Feature.VISIT_NULL)),
+        ObjectGraphMeasurer.measure(root, objectAcceptor, ObjectLayout.HOTSPOT_64_COMPRESSED));
+  }
+
+  /** Counts an object graph one {@link Chain} at a time. */
+  private static final class CountingVisitor implements ObjectVisitor<Footprint> {
+    private final Predicate<Object> objectAcceptor;
+    private final ObjectLayout layout;
+    private final Set<Object> seen =
+        Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private int objects = 0;
+    // -1 to account for the root, which has no reference leading to it
+    private int nonNullReferences = -1;
+    private int nullReferences = 0;
+    private final Multiset<Class<?>> primitives = HashMultiset.create();
+    private long bytes = 0;
+
+    CountingVisitor(Predicate<Object> objectAcceptor, ObjectLayout layout) {
+      this.objectAcceptor = objectAcceptor;
+      this.layout = layout;
+    }
+
+    @Override
+    public Traversal visit(Chain chain) {
+      if (chain.isPrimitive()) {
+        primitives.add(chain.getValueType());
+        return Traversal.SKIP;
+      }
+      Object value = chain.getValue();
+      if (value == null) {
+        nullReferences++;
+        return Traversal.SKIP;
+      }
+      nonNullReferences++;
+      if (Enum.class.isAssignableFrom(chain.getValueType())
+          || value instanceof Class<?>
+          || !seen.add(value)
+          || !objectAcceptor.apply(value)) {
+        return Traversal.SKIP;
+      }
+      objects++;
+      bytes += layout.sizeOf(value);
+      return Traversal.EXPLORE;
+    }
+
+    @Override
+    public Footprint result() {
+      return new Footprint(objects, nonNullReferences, nullReferences, primitives, bytes);
+    }
+  }
+
   private static final ImmutableMultiset<Class<?>> NO_PRIMITIVES = ImmutableMultiset.of();
 }
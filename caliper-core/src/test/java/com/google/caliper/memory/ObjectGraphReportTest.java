@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.caliper.memory.ObjectGraphReport.ClassStats;
+import com.google.caliper.memory.ObjectGraphReport.RetainedSubgraph;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ObjectGraphReport}. */
+@RunWith(JUnit4.class)
+public class ObjectGraphReportTest {
+  private static final ObjectLayout LAYOUT = ObjectLayout.HOTSPOT_64_COMPRESSED;
+
+  /** 24 bytes: a 12-byte header and two compressed references, padded to 8 bytes. */
+  static class Node {
+    Object left;
+    Object right;
+
+    Node(Object left, Object right) {
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  /** 24 bytes: a 12-byte header and three compressed references. */
+  static final class LabeledNode extends Node {
+    Object label;
+
+    LabeledNode(Object label, Object left, Object right) {
+      super(left, right);
+      this.label = label;
+    }
+  }
+
+  @Test
+  public void classHistogram() {
+    Node root = new Node(new long[2], new Node(new long[4], null));
+    ImmutableList<ClassStats> histogram =
+        ObjectGraphReport.create(root, Predicates.alwaysTrue(), LAYOUT).classHistogram();
+    assertEquals(2, histogram.size());
+    assertEquals(long[].class, histogram.get(0).getType());
+    assertEquals(2, histogram.get(0).getInstances());
+    assertEquals(32 + 48, histogram.get(0).getBytes());
+    assertEquals(Node.class, histogram.get(1).getType());
+    assertEquals(2, histogram.get(1).getInstances());
+    assertEquals(24 + 24, histogram.get(1).getBytes());
+  }
+
+  @Test
+  public void sharedObjectsAreRetainedByTheirDominator() {
+    long[] shared = new long[4];
+    Node owner = new Node(new Node(shared, null), new Node(shared, null));
+    Node root = new Node(owner, new long[2]);
+    ObjectGraphReport report = ObjectGraphReport.create(root, Predicates.alwaysTrue(), LAYOUT);
+
+    assertEquals(24 * 4 + 48 + 32, report.totalBytes());
+    ImmutableList<RetainedSubgraph> largest = report.largestRetainedSubgraphs(2);
+    assertEquals("root.left", largest.get(0).getPath());
+    assertEquals(4, largest.get(0).getRetainedObjects());
+    assertEquals(24 * 3 + 48, largest.get(0).getRetainedBytes());
+    // the shared array is retained by neither of the nodes that refer to it
+    assertEquals(48, largest.get(1).getRetainedBytes());
+    assertEquals("root.left.left.left", largest.get(1).getPath());
+  }
+
+  @Test
+  public void cycles() {
+    Node a = new Node(null, null);
+    Node b = new Node(a, null);
+    a.left = b;
+    Node root = new Node(a, b);
+    ObjectGraphReport report = ObjectGraphReport.create(root, Predicates.alwaysTrue(), LAYOUT);
+    assertEquals(72, report.totalBytes());
+    for (RetainedSubgraph subgraph : report.largestRetainedSubgraphs(2)) {
+      assertEquals(24, subgraph.getRetainedBytes());
+    }
+  }
+
+  @Test
+  public void pathsThroughArraysAndInheritedFields() {
+    Object[] array = {null, new long[16]};
+    LabeledNode root = new LabeledNode(new long[8], array, null);
+    ObjectGraphReport report = ObjectGraphReport.create(root, Predicates.alwaysTrue(), LAYOUT);
+
+    assertEquals(24 + 24 + 144 + 80, report.totalBytes());
+    ImmutableList<RetainedSubgraph> largest = report.largestRetainedSubgraphs(3);
+    assertEquals("root.left", largest.get(0).getPath());
+    assertEquals(Object[].class, largest.get(0).getType());
+    assertEquals(24 + 144, largest.get(0).getRetainedBytes());
+    assertEquals("root.left[1]", largest.get(1).getPath());
+    assertEquals(long[].class, largest.get(1).getType());
+    assertEquals("root.label", largest.get(2).getPath());
+    assertEquals(80, largest.get(2).getRetainedBytes());
+  }
+
+  @Test
+  public void rejectedObjectsAreNotPartOfTheGraph() {
+    Node root = new Node(new long[4], new Node(null, null));
+    Predicate<Object> notLongArrays =
+        new Predicate<Object>() {
+          @Override
+          public boolean apply(Object input) {
+            return !(input instanceof long[]);
+          }
+        };
+    ObjectGraphReport report = ObjectGraphReport.create(root, notLongArrays, LAYOUT);
+
+    assertEquals(48, report.totalBytes());
+    assertEquals(1, report.classHistogram().size());
+    ImmutableList<RetainedSubgraph> largest = report.largestRetainedSubgraphs(5);
+    assertEquals(1, largest.size());
+    assertEquals("root.right", largest.get(0).getPath());
+  }
+
+  @Test
+  public void rejectedRootGivesAnEmptyReport() {
+    // enums and classes are never explored
+    assertEmpty(ObjectGraphReport.create(Thread.State.NEW, Predicates.alwaysTrue(), LAYOUT));
+    assertEmpty(ObjectGraphReport.create(Node.class, Predicates.alwaysTrue(), LAYOUT));
+    assertEmpty(ObjectGraphReport.create(new Node(null, null), Predicates.alwaysFalse(), LAYOUT));
+  }
+
+  private static void assertEmpty(ObjectGraphReport report) {
+    assertEquals(0, report.totalBytes());
+    assertEquals(ImmutableList.of(), report.classHistogram());
+    assertEquals(ImmutableList.of(), report.largestRetainedSubgraphs(5));
+  }
+}
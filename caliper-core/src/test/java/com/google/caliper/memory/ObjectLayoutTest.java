@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Predicates;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ObjectLayout}. */
+@RunWith(JUnit4.class)
+public class ObjectLayoutTest {
+  private static final ObjectLayout COMPRESSED = ObjectLayout.HOTSPOT_64_COMPRESSED;
+  private static final ObjectLayout UNCOMPRESSED = ObjectLayout.HOTSPOT_64;
+
+  @SuppressWarnings("unused") // fields only contribute to the size
+  static class IntAndReference {
+    int i;
+    Object o;
+  }
+
+  @SuppressWarnings("unused") // fields only contribute to the size
+  static class SubclassWithLong extends IntAndReference {
+    long l;
+  }
+
+  @Test
+  public void objects() {
+    assertEquals(16, COMPRESSED.sizeOf(new Object()));
+    assertEquals(16, UNCOMPRESSED.sizeOf(new Object()));
+    assertEquals(24, COMPRESSED.sizeOf(new IntAndReference()));
+    assertEquals(32, UNCOMPRESSED.sizeOf(new IntAndReference()));
+    assertEquals(32, COMPRESSED.sizeOf(new SubclassWithLong()));
+    assertEquals(40, UNCOMPRESSED.sizeOf(new SubclassWithLong()));
+  }
+
+  @Test
+  public void arrays() {
+    assertEquals(16, COMPRESSED.sizeOf(new byte[0]));
+    assertEquals(24, COMPRESSED.sizeOf(new byte[5]));
+    assertEquals(56, COMPRESSED.sizeOf(new Object[10]));
+    assertEquals(104, UNCOMPRESSED.sizeOf(new Object[10]));
+    assertEquals(32, COMPRESSED.sizeOf(new long[2]));
+    assertEquals(40, UNCOMPRESSED.sizeOf(new long[2]));
+  }
+
+  @Test
+  public void alignment() {
+    ObjectLayout unaligned = new ObjectLayout(12, true, 1);
+    assertEquals(12, unaligned.sizeOf(new Object()));
+    assertEquals(21, unaligned.sizeOf(new byte[5]));
+  }
+
+  @Test
+  public void measuredFootprintIncludesBytes() {
+    Object[] array = {new Object(), new IntAndReference()};
+    ObjectGraphMeasurer.Footprint footprint =
+        ObjectGraphMeasurer.measure(array, Predicates.alwaysTrue(), COMPRESSED);
+    assertEquals(3, footprint.getObjects());
+    assertEquals(24 + 16 + 24, footprint.getBytes());
+  }
+}
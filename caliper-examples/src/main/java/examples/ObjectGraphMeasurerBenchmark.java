@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package examples;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.caliper.memory.ObjectGraphMeasurer;
+import com.google.caliper.memory.ObjectLayout;
+import com.google.common.base.Predicates;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the time to measure a large cache-like object graph scales with the number of
+ * threads used. A parallelism of 0 measures on the calling thread without a pool.
+ */
+public class ObjectGraphMeasurerBenchmark {
+  @Param({"0", "1", "2", "4", "8"})
+  private int parallelism;
+
+  @Param({"1000000"})
+  private int entries;
+
+  private Map<String, Object> cache;
+  private ForkJoinPool pool;
+
+  @BeforeExperiment
+  void setUp() {
+    cache = new HashMap<String, Object>();
+    for (int i = 0; i < entries; i++) {
+      cache.put("key" + i, i % 2 == 0 ? new long[i % 16] : new Object[] {"value" + i, null});
+    }
+    if (parallelism > 0) {
+      pool = new ForkJoinPool(parallelism);
+    }
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Benchmark
+  long measure(int reps) {
+    long dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      ObjectGraphMeasurer.Footprint footprint =
+          pool == null
+              ? ObjectGraphMeasurer.measure(
+                  cache, Predicates.alwaysTrue(), ObjectLayout.HOTSPOT_64_COMPRESSED)
+              : ObjectGraphMeasurer.measureInParallel(
+                  cache, Predicates.alwaysTrue(), ObjectLayout.HOTSPOT_64_COMPRESSED, pool);
+      dummy += footprint.getBytes();
+    }
+    return dummy;
+  }
+}
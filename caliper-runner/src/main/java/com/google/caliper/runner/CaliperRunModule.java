@@ -19,11 +19,13 @@ package com.google.caliper.runner;
 import com.google.caliper.core.BenchmarkClassModel;
 import com.google.caliper.model.Host;
 import com.google.caliper.runner.experiment.BenchmarkParameters;
+import com.google.caliper.runner.config.CaliperConfig;
 import com.google.caliper.runner.options.CaliperOptions;
 import com.google.caliper.runner.target.Target;
 import com.google.caliper.runner.worker.dryrun.DryRunComponent;
 import com.google.caliper.runner.worker.targetinfo.TargetInfo;
 import com.google.caliper.runner.worker.trial.TrialComponent;
+import com.google.caliper.runner.worker.trial.TrialOrder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
 import dagger.Module;
@@ -39,6 +41,13 @@ abstract class CaliperRunModule {
     return experimentingCaliperRun;
   }
 
+  @Provides
+  @RunScoped
+  static TrialOrder provideTrialOrder(CaliperConfig config, TrialJournal journal) {
+    // A resumed run orders its trials as the run it resumes did.
+    return TrialOrder.create(config, journal.resumedTrialOrderSeed());
+  }
+
   @Provides
   @BenchmarkParameters
   static ImmutableSetMultimap<String, String> provideBenchmarkParameters(
@@ -22,6 +22,8 @@ import com.google.caliper.json.GsonModule;
 import com.google.caliper.model.Run;
 import com.google.caliper.runner.config.CaliperConfig;
 import com.google.caliper.runner.config.CaliperConfigModule;
+import com.google.caliper.runner.config.InvalidConfigurationException;
+import com.google.caliper.runner.experiment.ExperimentDesign;
 import com.google.caliper.runner.options.CaliperOptions;
 import com.google.caliper.runner.options.OptionsModule;
 import com.google.caliper.runner.server.ServerModule;
@@ -31,6 +33,7 @@ import com.google.caliper.runner.worker.WorkerOutputModule;
 import com.google.caliper.runner.worker.targetinfo.TargetInfoComponent;
 import com.google.caliper.runner.worker.targetinfo.TargetInfoFactory;
 import com.google.caliper.runner.worker.targetinfo.TargetInfoFromWorkerFactory;
+import com.google.caliper.runner.worker.trial.MaxParallelism;
 import com.google.caliper.runner.worker.trial.TrialExecutor;
 import com.google.caliper.util.OutputModule;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -61,9 +64,9 @@ import org.joda.time.Instant;
   subcomponents = {TargetInfoComponent.class, CaliperRunComponent.class}
 )
 abstract class CaliperRunnerModule {
-  private CaliperRunnerModule() {}
+  private static final String MAX_PARALLELISM_OPTION = "runner.maxParallelism";
 
-  private static final String RUNNER_MAX_PARALLELISM_OPTION = "runner.maxParallelism";
+  private CaliperRunnerModule() {}
 
   @Provides
   static Instant provideInstant() {
@@ -78,7 +81,11 @@ abstract class CaliperRunnerModule {
   @Provides
   @Singleton
   static Run provideRun(UUID uuid, CaliperOptions caliperOptions, Instant startTime) {
-    return new Run.Builder(uuid).label(caliperOptions.runName()).startTime(startTime).build();
+    // A resumed run keeps the ID of the run it resumes.
+    return new Run.Builder(caliperOptions.resumeRunId().or(uuid))
+        .label(caliperOptions.runName())
+        .startTime(startTime)
+        .build();
   }
 
   @Provides
@@ -93,9 +100,32 @@ abstract class CaliperRunnerModule {
   @Provides
   @Singleton
   @TrialExecutor
-  static ListeningExecutorService provideTrialExecutorService(CaliperConfig config) {
-    int poolSize = Integer.parseInt(config.properties().get(RUNNER_MAX_PARALLELISM_OPTION));
-    return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(poolSize));
+  static ListeningExecutorService provideTrialExecutorService() {
+    // TrialScheduler limits how many trials run at once, so this doesn't need to.
+    return MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+  }
+
+  @Provides
+  @MaxParallelism
+  static int provideMaxParallelism(CaliperConfig config) {
+    String value = config.properties().get(MAX_PARALLELISM_OPTION);
+    try {
+      int maxParallelism = Integer.parseInt(value);
+      if (maxParallelism > 0) {
+        return maxParallelism;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidConfigurationException(
+        String.format("%s must be a positive integer, but was %s", MAX_PARALLELISM_OPTION, value));
+  }
+
+  @Provides
+  @Singleton
+  static ExperimentDesign provideExperimentDesign(CaliperConfig config, TrialJournal journal) {
+    // A resumed run chooses the same experiments as the run it resumes.
+    return ExperimentDesign.create(config, journal.resumedExperimentDesignSeed());
   }
 
   @Binds
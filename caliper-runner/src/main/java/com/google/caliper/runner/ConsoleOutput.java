@@ -18,10 +18,12 @@ package com.google.caliper.runner;
 
 import com.google.caliper.model.BenchmarkSpec;
 import com.google.caliper.model.InstrumentSpec;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.model.Scenario;
 import com.google.caliper.model.Trial;
 import com.google.caliper.model.VmSpec;
+import com.google.caliper.runner.experiment.Experiment;
 import com.google.caliper.runner.worker.trial.TrialFailureException;
 import com.google.caliper.runner.worker.trial.TrialResult;
 import com.google.caliper.util.Stdout;
@@ -55,7 +57,7 @@ final class ConsoleOutput implements Closeable {
   private final Set<BenchmarkSpec> benchmarkSpecs = Sets.newHashSet();
   private int numMeasurements = 0;
   private int trialsCompleted = 0;
-  private final int numberOfTrials;
+  private int numberOfTrials;
   private final Stopwatch stopwatch;
 
   ConsoleOutput(@Stdout PrintWriter stdout, int numberOfTrials, Stopwatch stopwatch) {
@@ -76,6 +78,17 @@ final class ConsoleOutput implements Closeable {
     stdout.flush();
   }
 
+  /** Prints a short message when an experiment is pruned from a racing run. */
+  void processPrunedExperiment(Experiment experiment, String reason) {
+    stdout.printf("Pruned experiment %s: %s%n", experiment, reason);
+    stdout.flush();
+  }
+
+  /** Notes that the given number of the expected trials won't be run, since they weren't needed. */
+  void processSkippedTrials(int count) {
+    numberOfTrials -= count;
+  }
+
   /** Prints a summary of a successful trial result. */
   void processTrial(TrialResult result) {
     trialsCompleted++;
@@ -117,25 +130,35 @@ final class ConsoleOutput implements Closeable {
                   })
               .toSet();
       double[] weightedValues = new double[measurements.size()];
+      double[] correctedWeightedValues = new double[measurements.size()];
+      boolean allCorrected = true;
       int i = 0;
       for (Measurement measurement : measurements) {
         weightedValues[i] = measurement.value().magnitude() / measurement.weight();
+        if (measurement.correctedValue().isPresent()) {
+          correctedWeightedValues[i] =
+              measurement.correctedValue().get().magnitude() / measurement.weight();
+        } else {
+          allCorrected = false;
+        }
         i++;
       }
-      Map<Integer, Double> quartiles =
-          Quantiles.quartiles().indexes(1, 2, 3).computeInPlace(weightedValues);
-      Stats stats = Stats.of(weightedValues);
       String unit = Iterables.getOnlyElement(units);
+      String label = entry.getKey() + (unit.isEmpty() ? "" : "(" + unit + ")");
+      printSummary(label, weightedValues);
+      if (allCorrected) {
+        printSummary(label + ", overhead subtracted", correctedWeightedValues);
+      }
+    }
+    if (trial.latencyHistogram().isPresent()) {
+      LatencyHistogram latencies = trial.latencyHistogram().get();
       stdout.printf(
-          "    %s%s: min=%.2f, 1st qu.=%.2f, median=%.2f, mean=%.2f, 3rd qu.=%.2f, max=%.2f%n",
-          entry.getKey(),
-          unit.isEmpty() ? "" : "(" + unit + ")",
-          stats.min(),
-          quartiles.get(1),
-          quartiles.get(2),
-          stats.mean(),
-          quartiles.get(3),
-          stats.max());
+          "    latency(ns): count=%d, p50=%d, p99=%d, p99.9=%d, max=%d%n",
+          latencies.totalCount(),
+          latencies.valueAtPercentile(50),
+          latencies.valueAtPercentile(99),
+          latencies.valueAtPercentile(99.9),
+          latencies.max());
     }
 
     instrumentSpecs.add(trial.instrumentSpec());
@@ -145,6 +168,20 @@ final class ConsoleOutput implements Closeable {
     numMeasurements += trial.measurements().size();
   }
 
+  private void printSummary(String label, double[] values) {
+    Map<Integer, Double> quartiles = Quantiles.quartiles().indexes(1, 2, 3).computeInPlace(values);
+    Stats stats = Stats.of(values);
+    stdout.printf(
+        "    %s: min=%.2f, 1st qu.=%.2f, median=%.2f, mean=%.2f, 3rd qu.=%.2f, max=%.2f%n",
+        label,
+        stats.min(),
+        quartiles.get(1),
+        quartiles.get(2),
+        stats.mean(),
+        quartiles.get(3),
+        stats.max());
+  }
+
   @Override
   public void close() {
     if (trialsCompleted == numberOfTrials) { // if we finished all the trials
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.caliper.model.Measurement;
+import com.google.caliper.runner.experiment.Experiment;
+import com.google.caliper.runner.instrument.Instrument;
+import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.math.Stats;
+import com.google.common.primitives.Doubles;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the trials of a run's experiments in rounds, pruning experiments that are clearly worse than
+ * others between rounds (successive halving).
+ *
+ * <p>Experiments race in heats: experiments of the same benchmark method, measured by the same
+ * instrument on the same target, whose measurements can be compared. Each heat has a budget of the
+ * configured number of trials for each of its experiments. After each round, an experiment is
+ * dominated by another in its heat if, for every kind of measurement both have where the
+ * instrument says smaller is better, its mean is more than {@value #STANDARD_ERRORS} standard
+ * errors above the other's, and the other's is that far below. Other kinds of measurement, such as
+ * a throughput, are ignored. Once both experiments have had at least two trials, the means and
+ * standard errors are those of their trials' means, since measurements within a trial vary less
+ * than trials do. Before that they are those of the individual measurements, and the loser's mean
+ * must also be at least {@value #MIN_SINGLE_TRIAL_RATIO} times the winner's. Up to half of a heat's remaining
+ * experiments, the most clearly dominated first, are pruned each round and get no more trials. The
+ * trials they didn't use go to the experiments left in the heat, for as long as at least two of
+ * them are left to compare.
+ *
+ * <p>Heats with no measurements that can be ranked this way aren't pruned, and every experiment
+ * gets its configured number of trials regardless.
+ */
+final class ExperimentRace {
+  /** How many standard errors apart two experiments' means must be for one to dominate. */
+  private static final double STANDARD_ERRORS = 3.0;
+
+  /**
+   * How many times the winner's mean the loser's must be for it to be dominated while either has
+   * had only one trial.
+   */
+  private static final double MIN_SINGLE_TRIAL_RATIO = 1.5;
+
+  private final int trialsPerExperiment;
+  private final Map<Experiment, Entrant> entrants = Maps.newLinkedHashMap();
+  private final List<Heat> heats = Lists.newArrayList();
+  private int round = 0;
+
+  ExperimentRace(Iterable<Experiment> experiments, int trialsPerExperiment) {
+    checkArgument(trialsPerExperiment > 0, "trials must be positive: %s", trialsPerExperiment);
+    this.trialsPerExperiment = trialsPerExperiment;
+    Map<List<Object>, Heat> heatsByKey = Maps.newHashMap();
+    for (Experiment experiment : experiments) {
+      List<Object> key =
+          ImmutableList.<Object>of(experiment.instrumentedMethod(), experiment.target());
+      Heat heat = heatsByKey.get(key);
+      if (heat == null) {
+        heat = new Heat(experiment.instrumentedMethod().instrument());
+        heatsByKey.put(key, heat);
+        heats.add(heat);
+      }
+      Entrant entrant = new Entrant(experiment, heat);
+      heat.entrants.add(entrant);
+      heat.budget += trialsPerExperiment;
+      entrants.put(experiment, entrant);
+    }
+  }
+
+  /**
+   * Counts a trial of the given experiment that was run before the race started, such as by an
+   * interrupted run that is being resumed. Its measurements are {@linkplain #record recorded} like
+   * those of any other trial.
+   */
+  void resumed(Experiment experiment) {
+    Entrant entrant = entrant(experiment);
+    entrant.trials++;
+    entrant.heat.budget--;
+  }
+
+  /**
+   * Returns the experiments to run a trial of in the next round, or an empty list if the race is
+   * over.
+   */
+  ImmutableList<Experiment> nextRound() {
+    while (true) {
+      round++;
+      ImmutableList.Builder<Experiment> result = ImmutableList.builder();
+      boolean more = false;
+      for (Heat heat : heats) {
+        List<Entrant> contenders = heat.contenders();
+        // Entrants that haven't had their own trials yet come first, in case the budget runs out.
+        List<Entrant> owed = Lists.newArrayList();
+        List<Entrant> extra = Lists.newArrayList();
+        for (Entrant entrant : contenders) {
+          if (entrant.trials < trialsPerExperiment) {
+            owed.add(entrant);
+          } else if (contenders.size() > 1) {
+            extra.add(entrant);
+          }
+        }
+        for (Entrant entrant : Iterables.concat(owed, extra)) {
+          if (heat.budget == 0) {
+            break;
+          }
+          more = true;
+          if (entrant.trials < round) {
+            entrant.trials++;
+            heat.budget--;
+            result.add(entrant.experiment);
+          }
+        }
+      }
+      ImmutableList<Experiment> experiments = result.build();
+      if (!experiments.isEmpty() || !more) {
+        return experiments;
+      }
+    }
+  }
+
+  /** Records the measurements of a completed trial of the given experiment. */
+  void record(Experiment experiment, Iterable<Measurement> measurements) {
+    Entrant entrant = entrant(experiment);
+    Map<String, double[]> totals = Maps.newLinkedHashMap();
+    for (Measurement measurement : measurements) {
+      String description = measurement.description();
+      entrant.values.put(description, measurement.value().magnitude() / measurement.weight());
+      double[] total = totals.get(description);
+      if (total == null) {
+        total = new double[2];
+        totals.put(description, total);
+      }
+      total[0] += measurement.value().magnitude();
+      total[1] += measurement.weight();
+    }
+    for (Map.Entry<String, double[]> total : totals.entrySet()) {
+      entrant.trialMeans.put(total.getKey(), total.getValue()[0] / total.getValue()[1]);
+    }
+  }
+
+  /**
+   * Prunes the experiments that are dominated by others in their heats, and returns them, each
+   * with the reason it was pruned.
+   */
+  ImmutableMap<Experiment, String> prune() {
+    ImmutableMap.Builder<Experiment, String> result = ImmutableMap.builder();
+    for (Heat heat : heats) {
+      List<Entrant> contenders = heat.contenders();
+      if (contenders.size() < 2) {
+        continue;
+      }
+      final Map<Entrant, Double> margins = Maps.newHashMap();
+      Map<Entrant, Entrant> dominators = Maps.newHashMap();
+      for (Entrant entrant : contenders) {
+        for (Entrant other : contenders) {
+          Optional<Double> margin = margin(heat.instrument, other, entrant);
+          if (margin.isPresent()
+              && (!margins.containsKey(entrant) || margin.get() > margins.get(entrant))) {
+            margins.put(entrant, margin.get());
+            dominators.put(entrant, other);
+          }
+        }
+      }
+      List<Entrant> dominated = Lists.newArrayList(margins.keySet());
+      Collections.sort(
+          dominated,
+          new Comparator<Entrant>() {
+            @Override
+            public int compare(Entrant a, Entrant b) {
+              return Double.compare(margins.get(b), margins.get(a));
+            }
+          });
+      int limit = Math.min(dominated.size(), contenders.size() / 2);
+      for (Entrant entrant : dominated.subList(0, limit)) {
+        entrant.pruned =
+            Optional.of(
+                String.format(
+                    "dominated by %s after %d trial(s)",
+                    dominators.get(entrant).experiment, entrant.trials));
+        result.put(entrant.experiment, entrant.pruned.get());
+      }
+    }
+    return result.build();
+  }
+
+  /** Returns whether the given experiment has been pruned. */
+  boolean isPruned(Experiment experiment) {
+    return entrant(experiment).pruned.isPresent();
+  }
+
+  /** Returns the number of trials left unused in the heats' budgets. */
+  int unusedTrials() {
+    int unused = 0;
+    for (Heat heat : heats) {
+      unused += heat.budget;
+    }
+    return unused;
+  }
+
+  /**
+   * If {@code winner} dominates {@code loser}, returns the smallest ratio of the loser's mean to
+   * the winner's over the kinds of measurement they both have where smaller is better, which shows
+   * how clearly it lost.
+   */
+  private static Optional<Double> margin(Instrument instrument, Entrant winner, Entrant loser) {
+    if (winner == loser) {
+      return Optional.absent();
+    }
+    double margin = Double.POSITIVE_INFINITY;
+    boolean compared = false;
+    for (String description : Sets.intersection(winner.values.keySet(), loser.values.keySet())) {
+      if (!instrument.smallerIsBetter(description)) {
+        continue;
+      }
+      boolean singleTrial =
+          winner.trialMeans.get(description).size() < 2
+              || loser.trialMeans.get(description).size() < 2;
+      List<Double> winnerValues =
+          singleTrial ? winner.values.get(description) : winner.trialMeans.get(description);
+      List<Double> loserValues =
+          singleTrial ? loser.values.get(description) : loser.trialMeans.get(description);
+      if (winnerValues.size() < 2 || loserValues.size() < 2) {
+        return Optional.absent();
+      }
+      Stats winnerStats = Stats.of(Doubles.toArray(winnerValues));
+      Stats loserStats = Stats.of(Doubles.toArray(loserValues));
+      double upper = winnerStats.mean() + STANDARD_ERRORS * standardError(winnerStats);
+      double lower = loserStats.mean() - STANDARD_ERRORS * standardError(loserStats);
+      double ratio = loserStats.mean() / winnerStats.mean();
+      if (lower <= upper || (singleTrial && ratio < MIN_SINGLE_TRIAL_RATIO)) {
+        return Optional.absent();
+      }
+      margin = Math.min(margin, ratio);
+      compared = true;
+    }
+    return compared ? Optional.of(margin) : Optional.<Double>absent();
+  }
+
+  private static double standardError(Stats stats) {
+    return stats.sampleStandardDeviation() / Math.sqrt(stats.count());
+  }
+
+  private Entrant entrant(Experiment experiment) {
+    Entrant entrant = entrants.get(experiment);
+    checkArgument(entrant != null, "not in the race: %s", experiment);
+    return entrant;
+  }
+
+  /** Experiments whose measurements can be compared, and the trials they have left to run. */
+  private static final class Heat {
+    final Instrument instrument;
+    final List<Entrant> entrants = Lists.newArrayList();
+    int budget = 0;
+
+    Heat(Instrument instrument) {
+      this.instrument = instrument;
+    }
+
+    /** Returns the entrants that haven't been pruned. */
+    List<Entrant> contenders() {
+      List<Entrant> result = Lists.newArrayList();
+      for (Entrant entrant : entrants) {
+        if (!entrant.pruned.isPresent()) {
+          result.add(entrant);
+        }
+      }
+      return result;
+    }
+  }
+
+  /** An experiment in the race. */
+  private static final class Entrant {
+    final Experiment experiment;
+    final Heat heat;
+    /** The individual measurements of each kind. */
+    final ListMultimap<String, Double> values = ArrayListMultimap.create();
+    /** The mean of each trial's measurements of each kind. */
+    final ListMultimap<String, Double> trialMeans = ArrayListMultimap.create();
+    int trials = 0;
+    Optional<String> pruned = Optional.absent();
+
+    Entrant(Experiment experiment, Heat heat) {
+      this.experiment = experiment;
+      this.heat = heat;
+    }
+  }
+}
@@ -14,9 +14,6 @@
 
 package com.google.caliper.runner;
 
-import static com.google.common.util.concurrent.Futures.catchingAsync;
-import static com.google.common.util.concurrent.Futures.transformAsync;
-import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Level.WARNING;
@@ -27,6 +24,9 @@ import com.google.caliper.core.BenchmarkClassModel;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.caliper.core.UserCodeException;
 import com.google.caliper.model.Measurement;
+import com.google.caliper.model.Trial;
+import com.google.caliper.runner.config.CaliperConfig;
+import com.google.caliper.runner.config.InvalidConfigurationException;
 import com.google.caliper.runner.experiment.Experiment;
 import com.google.caliper.runner.experiment.ExperimentSelector;
 import com.google.caliper.runner.instrument.Instrument;
@@ -34,30 +34,36 @@ import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
 import com.google.caliper.runner.options.CaliperOptions;
 import com.google.caliper.runner.target.Target;
 import com.google.caliper.runner.worker.ProxyWorkerException;
+import com.google.caliper.runner.worker.WorkerPool;
 import com.google.caliper.runner.worker.WorkerRunner;
 import com.google.caliper.runner.worker.dryrun.DryRunComponent;
 import com.google.caliper.runner.worker.trial.TrialComponent;
 import com.google.caliper.runner.worker.trial.TrialComponent.TrialRunner;
 import com.google.caliper.runner.worker.trial.TrialExecutor;
 import com.google.caliper.runner.worker.trial.TrialFailureException;
+import com.google.caliper.runner.worker.trial.TrialOrder;
 import com.google.caliper.runner.worker.trial.TrialResult;
+import com.google.caliper.runner.worker.trial.TrialSpec;
 import com.google.caliper.util.Stdout;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Predicates;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Queues;
-import com.google.common.util.concurrent.AsyncFunction;
-import com.google.common.util.concurrent.Futures;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -69,6 +75,8 @@ import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
@@ -82,15 +90,8 @@ public final class ExperimentingCaliperRun implements CaliperRun {
 
   private static final Logger logger = Logger.getLogger(ExperimentingCaliperRun.class.getName());
 
-  private static final AsyncFunction<Throwable, Object> FALLBACK_TO_NULL =
-      new AsyncFunction<Throwable, Object>() {
-        final ListenableFuture<Object> nullFuture = Futures.immediateFuture(null);
-
-        @Override
-        public ListenableFuture<Object> apply(Throwable t) throws Exception {
-          return nullFuture;
-        }
-      };
+  private static final String DRY_RUN_SHARD_SIZE_OPTION = "runner.dryRunShardSize";
+  private static final String PRUNING_OPTION = "runner.pruning";
 
   private final CaliperOptions options;
   private final PrintWriter stdout;
@@ -99,7 +100,13 @@ public final class ExperimentingCaliperRun implements CaliperRun {
   private final ImmutableSet<ResultProcessor> resultProcessors;
   private final ExperimentSelector selector;
   private final ListeningExecutorService trialExecutor;
+  private final TrialScheduler trialScheduler;
+  private final TrialOrder trialOrder;
+  private final TrialJournal journal;
+  private final WorkerPool workerPool;
   private final Provider<DryRunComponent.Builder> dryRunComponentBuilder;
+  private final int dryRunShardSize;
+  private final boolean pruning;
   private final TrialRunner trialRunner;
 
   @Inject
@@ -112,7 +119,12 @@ public final class ExperimentingCaliperRun implements CaliperRun {
       ImmutableSet<ResultProcessor> resultProcessors,
       ExperimentSelector selector,
       @TrialExecutor ListeningExecutorService trialExecutor,
+      TrialScheduler trialScheduler,
+      TrialOrder trialOrder,
+      TrialJournal journal,
+      WorkerPool workerPool,
       Provider<DryRunComponent.Builder> dryRunComponentBuilder,
+      CaliperConfig config,
       TrialComponent.Builder trialComponentBuilder) {
     this.options = options;
     this.stdout = stdout;
@@ -121,7 +133,13 @@ public final class ExperimentingCaliperRun implements CaliperRun {
     this.resultProcessors = resultProcessors;
     this.selector = selector;
     this.trialExecutor = trialExecutor;
+    this.trialScheduler = trialScheduler;
+    this.trialOrder = trialOrder;
+    this.journal = journal;
+    this.workerPool = workerPool;
     this.dryRunComponentBuilder = dryRunComponentBuilder;
+    this.dryRunShardSize = dryRunShardSize(config);
+    this.pruning = pruning(config);
     this.trialRunner = trialComponentBuilder.trialRunner(trialExecutor);
   }
 
@@ -140,8 +158,19 @@ public final class ExperimentingCaliperRun implements CaliperRun {
     stdout.format("This selection yields %s experiments.%n", allExperiments.size());
     stdout.flush();
 
+    // Read the journal of a run being resumed before doing anything else, in case it's missing.
+    ImmutableListMultimap<Experiment, TrialJournal.Entry> completedTrials =
+        journal.completedTrials(allExperiments);
+
     // always dry run first.
-    ImmutableSet<Experiment> experimentsToRun = dryRun(allExperiments);
+    ImmutableSet<Experiment> experimentsToRun;
+    try {
+      experimentsToRun = dryRun(allExperiments);
+    } catch (RuntimeException e) {
+      // Wait for the cancelled dry runs to stop their workers.
+      shutdownAndAwaitTermination(trialExecutor, 5, SECONDS);
+      throw e;
+    }
     if (experimentsToRun.size() != allExperiments.size()) {
       stdout.format(
           "%d experiments were skipped.%n", allExperiments.size() - experimentsToRun.size());
@@ -160,35 +189,42 @@ public final class ExperimentingCaliperRun implements CaliperRun {
 
     int totalTrials = experimentsToRun.size() * options.trialsPerScenario();
     Stopwatch stopwatch = Stopwatch.createStarted();
-    Multimap<InstrumentedMethod, TrialResult> resultsByInstrumentedMethod = HashMultimap.create();
-    List<ListenableFuture<TrialResult>> pendingTrials =
-        scheduleTrials(experimentsToRun, totalTrials);
+    // Without pruning, every trial's number and experiment is known before any of them run.
+    Optional<List<Experiment>> plannedTrials =
+        pruning
+            ? Optional.<List<Experiment>>absent()
+            : Optional.of(planTrials(experimentsToRun, totalTrials));
+    ListMultimap<Experiment, TrialJournal.Entry> resumedTrials =
+        resumedTrials(completedTrials, experimentsToRun, plannedTrials);
+    if (!resumedTrials.isEmpty()) {
+      stdout.format("Resuming run: %d trials were already completed.%n", resumedTrials.size());
+    }
+    Optional<ExperimentRace> race =
+        pruning
+            ? Optional.of(new ExperimentRace(experimentsToRun, options.trialsPerScenario()))
+            : Optional.<ExperimentRace>absent();
     ConsoleOutput output = new ConsoleOutput(stdout, totalTrials, stopwatch);
+    Results results = new Results(output, race);
+    journal.open(selector.design().seed(), trialOrder.seed());
     try {
-      // Process results as they complete.
-      for (ListenableFuture<TrialResult> trialFuture : inCompletionOrder(pendingTrials)) {
-        try {
-          TrialResult result = trialFuture.get();
-          output.processTrial(result);
-          for (ResultProcessor resultProcessor : resultProcessors) {
-            resultProcessor.processTrial(result.getTrial());
-          }
-          resultsByInstrumentedMethod.put(result.getExperiment().instrumentedMethod(), result);
-        } catch (ExecutionException e) {
-          if (e.getCause() instanceof TrialFailureException) {
-            output.processFailedTrial((TrialFailureException) e.getCause());
-          } else {
-            cancelAll(pendingTrials);
-            throw Throwables.propagate(e.getCause());
-          }
-        } catch (InterruptedException e) {
-          cancelAll(pendingTrials);
-          throw new RuntimeException(e);
+      int lastTrialNumber = 0;
+      for (Map.Entry<Experiment, TrialJournal.Entry> resumed : resumedTrials.entries()) {
+        if (race.isPresent()) {
+          race.get().resumed(resumed.getKey());
         }
+        TrialJournal.Entry entry = resumed.getValue();
+        results.process(new TrialResult(entry.trial, resumed.getKey(), ImmutableList.<String>of()));
+        lastTrialNumber = Math.max(lastTrialNumber, entry.trialNumber);
+      }
+      if (race.isPresent()) {
+        runRace(race.get(), lastTrialNumber + 1, results);
+      } else {
+        awaitTrials(scheduleTrials(plannedTrials.get(), resumedTrials), results);
       }
+      results.finish();
       // Allow our instruments to do validation across all trials for a given benchmark
       for (Map.Entry<InstrumentedMethod, Collection<TrialResult>> entry :
-          resultsByInstrumentedMethod.asMap().entrySet()) {
+          results.byInstrumentedMethod.asMap().entrySet()) {
         InstrumentedMethod instrumentedMethod = entry.getKey();
         Optional<String> message =
             instrumentedMethod.validateMeasurements(measurements(entry.getValue()));
@@ -212,6 +248,157 @@ public final class ExperimentingCaliperRun implements CaliperRun {
         logger.log(WARNING, "Could not close a result processor: " + resultProcessor, e);
       }
     }
+
+    // The run is complete, so it won't need to be resumed.
+    try {
+      journal.delete();
+    } catch (IOException e) {
+      logger.log(WARNING, "Could not delete the journal: " + journal.file(), e);
+    }
+  }
+
+  /**
+   * Returns the journal entries of the trials of the given experiments that were completed before
+   * the run was resumed, with distinct trial numbers and at most the configured number for each
+   * experiment. If the trials were planned, only the entries of planned trials are returned: those
+   * whose trial number is planned for the same experiment.
+   */
+  private ListMultimap<Experiment, TrialJournal.Entry> resumedTrials(
+      ImmutableListMultimap<Experiment, TrialJournal.Entry> completedTrials,
+      ImmutableSet<Experiment> experiments,
+      Optional<List<Experiment>> plannedTrials) {
+    ListMultimap<Experiment, TrialJournal.Entry> result = ArrayListMultimap.create();
+    for (Experiment experiment : experiments) {
+      Set<Integer> trialNumbers = Sets.newHashSet();
+      for (TrialJournal.Entry entry : completedTrials.get(experiment)) {
+        if (trialNumbers.size() == options.trialsPerScenario()) {
+          break;
+        }
+        int number = entry.trialNumber;
+        if (plannedTrials.isPresent()
+            && (number < 1
+                || number > plannedTrials.get().size()
+                || !plannedTrials.get().get(number - 1).equals(experiment))) {
+          continue;
+        }
+        if (trialNumbers.add(number)) {
+          result.put(experiment, entry);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Processes the results of trials as they complete, and notes experiments as they are pruned.
+   *
+   * <p>When experiments are racing, their trials aren't passed to the result processors until it's
+   * known whether they will be pruned, so that the trials of pruned experiments can be marked.
+   */
+  private final class Results {
+    final ConsoleOutput output;
+    final Optional<ExperimentRace> race;
+    final Multimap<InstrumentedMethod, TrialResult> byInstrumentedMethod = HashMultimap.create();
+    final ListMultimap<Experiment, Trial> heldTrials = ArrayListMultimap.create();
+
+    Results(ConsoleOutput output, Optional<ExperimentRace> race) {
+      this.output = output;
+      this.race = race;
+    }
+
+    void process(TrialResult result) {
+      output.processTrial(result);
+      byInstrumentedMethod.put(result.getExperiment().instrumentedMethod(), result);
+      if (race.isPresent()) {
+        race.get().record(result.getExperiment(), result.getTrial().measurements());
+        heldTrials.put(result.getExperiment(), result.getTrial());
+      } else {
+        report(result.getTrial());
+      }
+    }
+
+    void pruned(Experiment experiment, String reason) {
+      output.processPrunedExperiment(experiment, reason);
+      for (Trial trial : heldTrials.removeAll(experiment)) {
+        report(markPruned(trial, reason));
+      }
+    }
+
+    /** Reports the trials of the experiments that weren't pruned. */
+    void finish() {
+      for (Trial trial : heldTrials.values()) {
+        report(trial);
+      }
+      heldTrials.clear();
+    }
+
+    private void report(Trial trial) {
+      for (ResultProcessor resultProcessor : resultProcessors) {
+        resultProcessor.processTrial(trial);
+      }
+    }
+  }
+
+  /** Returns a copy of the given trial, marked as a trial of an experiment that was pruned. */
+  private static Trial markPruned(Trial trial, String reason) {
+    Trial.Builder builder =
+        new Trial.Builder(trial.id())
+            .run(trial.run())
+            .instrumentSpec(trial.instrumentSpec())
+            .scenario(trial.scenario())
+            .addAllMeasurements(trial.measurements())
+            .pruned(reason);
+    if (trial.latencyHistogram().isPresent()) {
+      builder.latencyHistogram(trial.latencyHistogram().get());
+    }
+    if (trial.position().isPresent()) {
+      builder.position(trial.position().get());
+    }
+    return builder.build();
+  }
+
+  /** Waits for the given trials to complete, processing their results as they do. */
+  private void awaitTrials(List<ListenableFuture<TrialResult>> pendingTrials, Results results) {
+    for (ListenableFuture<TrialResult> trialFuture : inCompletionOrder(pendingTrials)) {
+      try {
+        TrialResult result = trialFuture.get();
+        journal.record(result);
+        results.process(result);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof TrialFailureException) {
+          results.output.processFailedTrial((TrialFailureException) e.getCause());
+        } else {
+          cancelAll(pendingTrials);
+          throw Throwables.propagate(e.getCause());
+        }
+      } catch (InterruptedException e) {
+        cancelAll(pendingTrials);
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Runs the trials of racing experiments a round at a time, in the configured {@link TrialOrder}
+   * within each round, pruning the experiments that are dominated after each round.
+   */
+  private void runRace(ExperimentRace race, int firstTrialNumber, Results results) {
+    int trialNumber = firstTrialNumber;
+    int roundNumber = 0;
+    for (ImmutableList<Experiment> round = race.nextRound();
+        !round.isEmpty();
+        round = race.nextRound()) {
+      List<ListenableFuture<TrialResult>> pendingTrials = Lists.newArrayList();
+      for (Experiment experiment : trialOrder.orderRound(round, roundNumber++)) {
+        pendingTrials.add(scheduleTrial(experiment, trialNumber++));
+      }
+      awaitTrials(pendingTrials, results);
+      for (Map.Entry<Experiment, String> pruned : race.prune().entrySet()) {
+        results.pruned(pruned.getKey(), pruned.getValue());
+      }
+    }
+    results.output.processSkippedTrials(race.unusedTrials());
   }
 
   private static Iterable<ImmutableList<Measurement>> measurements(Iterable<TrialResult> results) {
@@ -254,6 +441,10 @@ public final class ExperimentingCaliperRun implements CaliperRun {
                       }
                     }));
     stdout.println("  User parameters:   " + selector.userParameters());
+    stdout.println("  Experiment design:   " + selector.design());
+    stdout.println("  Trial order:   " + trialOrder);
+    stdout.println("  Pruning:   " + (pruning ? "halving" : "none"));
+    stdout.println("  Journal:   " + journal.file());
     stdout.println(
         "  Target VMs:  "
             + FluentIterable.from(selector.targets())
@@ -268,90 +459,175 @@ public final class ExperimentingCaliperRun implements CaliperRun {
   }
 
   /**
-   * Schedule all the trials.
+   * Plans all the trials, returning the experiment of each trial in the order of the trial numbers.
    *
-   * <p>This method arranges all the trials to run according to their scheduling criteria. The trial
-   * executor instance is responsible for enforcing max parallelism.
+   * <p>This method arranges all the trials to run according to their scheduling criteria, in the
+   * configured {@link TrialOrder}. Trials that can run in parallel are planned first.
    */
-  private List<ListenableFuture<TrialResult>> scheduleTrials(
-      ImmutableSet<Experiment> experimentsToRun, int totalTrials) {
-    List<ListenableFuture<TrialResult>> pendingTrials = Lists.newArrayListWithCapacity(totalTrials);
-    List<Producer<TrialResult>> serialTrials = Lists.newArrayList();
-    /** This is 1-indexed because it's only used for display to users. E.g. "Trial 1 of 27" */
-    int trialNumber = 1;
-    for (int i = 0; i < options.trialsPerScenario(); i++) {
-      for (Experiment experiment : experimentsToRun) {
-        Producer<TrialResult> trialResultProducer =
-            trialRunner.trialResultProducer(experiment, trialNumber++);
-        switch (experiment.getTrialSchedulingPolicy()) {
-          case PARALLEL:
-            pendingTrials.add(trialResultProducer.get());
-            break;
-          case SERIAL:
-            serialTrials.add(trialResultProducer);
-            break;
-        }
+  private List<Experiment> planTrials(ImmutableSet<Experiment> experimentsToRun, int totalTrials) {
+    List<Experiment> trials = Lists.newArrayListWithCapacity(totalTrials);
+    List<Experiment> serialTrials = Lists.newArrayList();
+    for (Experiment experiment :
+        trialOrder.order(experimentsToRun.asList(), options.trialsPerScenario())) {
+      switch (experiment.getTrialSchedulingPolicy()) {
+        case PARALLEL:
+          trials.add(experiment);
+          break;
+        case SERIAL:
+          serialTrials.add(experiment);
+          break;
       }
     }
-    // A future representing the completion of all prior tasks. Futures.successfulAsList allows us
-    // to ignore failure.
-    ListenableFuture<?> previous = Futures.successfulAsList(pendingTrials);
-    for (final Producer<TrialResult> trialResultProducer : serialTrials) {
-      // each of these trials can only start after all prior trials have finished, so we use
-      // Futures.transform to force the sequencing.
-      ListenableFuture<TrialResult> current =
-          transformAsync(
-              previous,
-              new AsyncFunction<Object, TrialResult>() {
-                @Override
-                public ListenableFuture<TrialResult> apply(Object ignored) {
-                  return trialResultProducer.get();
-                }
-              },
-              directExecutor());
-      pendingTrials.add(current);
-      // ignore failure of the prior task.
-      previous = catchingAsync(current, Throwable.class, FALLBACK_TO_NULL, directExecutor());
+    trials.addAll(serialTrials);
+    return trials;
+  }
+
+  /**
+   * Schedule all the planned trials.
+   *
+   * <p>The trial scheduler is responsible for starting each trial once there are enough resources
+   * for it, and for running trials that can't run in parallel alone. Trials that were completed
+   * before the run was resumed keep their numbers, but aren't run again.
+   */
+  private List<ListenableFuture<TrialResult>> scheduleTrials(
+      List<Experiment> plannedTrials, ListMultimap<Experiment, TrialJournal.Entry> resumedTrials) {
+    List<ListenableFuture<TrialResult>> pendingTrials =
+        Lists.newArrayListWithCapacity(plannedTrials.size());
+    Set<Integer> completed = Sets.newHashSet();
+    for (TrialJournal.Entry entry : resumedTrials.values()) {
+      completed.add(entry.trialNumber);
+    }
+    for (int i = 0; i < plannedTrials.size(); i++) {
+      /** This is 1-indexed because it's only used for display to users. E.g. "Trial 1 of 27" */
+      int trialNumber = i + 1;
+      if (!completed.contains(trialNumber)) {
+        pendingTrials.add(scheduleTrial(plannedTrials.get(i), trialNumber));
+      }
     }
     return pendingTrials;
   }
 
+  /**
+   * Schedules the trial with the given number of the given experiment. Until the trial is done, the
+   * worker pool keeps idle workers that could run it.
+   */
+  private ListenableFuture<TrialResult> scheduleTrial(Experiment experiment, int trialNumber) {
+    ListenableFuture<TrialResult> trial =
+        trialScheduler.schedule(
+            experiment, trialRunner.trialResultProducer(experiment, trialNumber));
+    final Optional<String> reuseKey = TrialSpec.reuseKey(experiment, benchmarkClass);
+    if (reuseKey.isPresent()) {
+      workerPool.addPendingRequest(reuseKey.get());
+      trial.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              workerPool.removePendingRequest(reuseKey.get());
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+    return trial;
+  }
+
   /**
    * Attempts to run each given experiment once on the target for that experiment. Returns a set of
-   * all of the experiments that didn't throw a {@link SkipThisScenarioException}.
+   * all of the experiments that didn't throw a {@link SkipThisScenarioException}, in the order they
+   * were given in.
+   *
+   * <p>The experiments for each target are split into shards of at most {@code
+   * runner.dryRunShardSize} experiments, each dry-run by its own worker. The shards are run on the
+   * trial executor, started by the trial scheduler as resources allow. If any shard fails, the
+   * others are cancelled and its failure is thrown.
    */
   ImmutableSet<Experiment> dryRun(Iterable<Experiment> experiments)
       throws InvalidBenchmarkException {
     // TODO(cgdecker): Use Multimaps.index once lambdas/method references can be used in runner.
     ImmutableSetMultimap<Target, Experiment> experimentsByTarget = indexByTarget(experiments);
 
-    // For now, run dry-runs for each target in serial so we don't have multiple dry-run workers
-    // running at the same time. Since currently workers are necessarily all on the same device,
-    // creating too many workers at the same time could eat up too much of the system resources or
-    // even fail completely (if each worker requests a high -Xms or there are just many workers, for
-    // example). Once multiple devices are supported, we should be able to safely run workers on
-    // different devices in parallel.
-    ImmutableSet.Builder<Experiment> results = ImmutableSet.builder();
+    List<ListenableFuture<ImmutableSet<Experiment>>> pendingShards = Lists.newArrayList();
     for (Target target : experimentsByTarget.keySet()) {
-      WorkerRunner<ImmutableSet<Experiment>> runner =
-          dryRunComponentBuilder
-              .get()
-              .experiments(experimentsByTarget.get(target))
-              .build()
-              .workerRunner();
+      for (List<Experiment> shard :
+          Iterables.partition(experimentsByTarget.get(target), dryRunShardSize)) {
+        final WorkerRunner<ImmutableSet<Experiment>> runner =
+            dryRunComponentBuilder
+                .get()
+                .experiments(ImmutableSet.copyOf(shard))
+                .build()
+                .workerRunner();
+        pendingShards.add(
+            trialScheduler.scheduleDryRun(
+                target,
+                new Producer<ImmutableSet<Experiment>>() {
+                  @Override
+                  public ListenableFuture<ImmutableSet<Experiment>> get() {
+                    return trialExecutor.submit(
+                        new Callable<ImmutableSet<Experiment>>() {
+                          @Override
+                          public ImmutableSet<Experiment> call() {
+                            return runner.runWorker();
+                          }
+                        });
+                  }
+                }));
+      }
+    }
 
+    Set<Experiment> survivors = Sets.newHashSet();
+    for (ListenableFuture<ImmutableSet<Experiment>> shard : inCompletionOrder(pendingShards)) {
       try {
-        results.addAll(runner.runWorker());
-      } catch (ProxyWorkerException e) {
-        if (e.exceptionType().equals(UserCodeException.class.getName())) {
-          throw new UserCodeException(e.message(), e);
-        } else if (e.exceptionType().equals(InvalidBenchmarkException.class.getName())) {
-          throw new InvalidBenchmarkException(e.message(), e);
-        }
-        throw e;
+        survivors.addAll(shard.get());
+      } catch (ExecutionException e) {
+        // Fail fast: there's no point in finishing the other shards.
+        cancelAll(pendingShards);
+        throw dryRunFailure(e.getCause());
+      } catch (InterruptedException e) {
+        cancelAll(pendingShards);
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
       }
     }
-    return results.build();
+    return FluentIterable.from(experiments).filter(Predicates.in(survivors)).toSet();
+  }
+
+  /** Returns the exception to throw for the given failure of a dry-run worker. */
+  private static RuntimeException dryRunFailure(Throwable failure) {
+    if (failure instanceof ProxyWorkerException) {
+      ProxyWorkerException e = (ProxyWorkerException) failure;
+      if (e.exceptionType().equals(UserCodeException.class.getName())) {
+        return new UserCodeException(e.message(), e);
+      } else if (e.exceptionType().equals(InvalidBenchmarkException.class.getName())) {
+        return new InvalidBenchmarkException(e.message(), e);
+      }
+    }
+    Throwables.throwIfUnchecked(failure);
+    return new RuntimeException(failure);
+  }
+
+  private static int dryRunShardSize(CaliperConfig config) {
+    String value = config.properties().get(DRY_RUN_SHARD_SIZE_OPTION);
+    try {
+      int shardSize = Integer.parseInt(value);
+      if (shardSize > 0) {
+        return shardSize;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidConfigurationException(
+        String.format(
+            "%s must be a positive integer, but was %s", DRY_RUN_SHARD_SIZE_OPTION, value));
+  }
+
+  private static boolean pruning(CaliperConfig config) {
+    String value = config.properties().get(PRUNING_OPTION);
+    if (value == null || value.isEmpty() || value.equals("none")) {
+      return false;
+    } else if (value.equals("halving")) {
+      return true;
+    }
+    throw new InvalidConfigurationException(
+        String.format("%s must be none or halving, but was %s", PRUNING_OPTION, value));
   }
 
   private ImmutableSetMultimap<Target, Experiment> indexByTarget(Iterable<Experiment> experiments) {
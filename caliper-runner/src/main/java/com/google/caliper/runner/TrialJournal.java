@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.logging.Level.SEVERE;
+
+import com.google.caliper.model.Run;
+import com.google.caliper.model.Trial;
+import com.google.caliper.runner.experiment.Experiment;
+import com.google.caliper.runner.options.CaliperDirectory;
+import com.google.caliper.runner.options.CaliperOptions;
+import com.google.caliper.runner.worker.trial.TrialResult;
+import com.google.caliper.util.InvalidCommandException;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.UUID;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * A durable record of the trials a run has completed, so that a run that is interrupted (by a
+ * crash, an OOM or a reboot) can be resumed with {@code --resume <run-id>} rather than started
+ * over.
+ *
+ * <p>The journal is a file in the Caliper directory named for the run's ID. Its first line of JSON
+ * is a header with the seeds the run's experiments were chosen and its trials ordered with, which
+ * the resumed run reuses so that its trials are the same. It then has one line per completed trial:
+ * the experiment it was a trial of, the trial's number and the trial itself. Each line is synced to
+ * disk before the next trial is recorded. A line left incomplete by a crash is ignored when the
+ * journal is read back. The journal is deleted when the run completes.
+ */
+@Singleton
+final class TrialJournal {
+  private static final Logger logger = Logger.getLogger(TrialJournal.class.getName());
+
+  /** The first line of the journal. */
+  private static final class Header {
+    Long experimentDesignSeed;
+    Long trialOrderSeed;
+  }
+
+  /** A line of the journal after the first. */
+  static final class Entry {
+    String experiment;
+    int trialNumber;
+    Trial trial;
+  }
+
+  private final File file;
+  private final Gson gson;
+  private final Optional<UUID> resumeRunId;
+
+  @GuardedBy("this")
+  private Optional<FileOutputStream> output = Optional.absent();
+
+  @GuardedBy("this")
+  private boolean failed = false;
+
+  /** The header of the journal of the run being resumed, once read. */
+  @GuardedBy("this")
+  private Header resumedHeader;
+
+  @Inject
+  TrialJournal(
+      @CaliperDirectory File caliperDirectory, Run run, Gson gson, CaliperOptions options) {
+    this.file = new File(new File(caliperDirectory, "journal"), run.id() + ".json");
+    this.gson = gson;
+    this.resumeRunId = options.resumeRunId();
+  }
+
+  /** Returns the journal file. */
+  File file() {
+    return file;
+  }
+
+  /**
+   * Returns the seed the experiments of the run being resumed were chosen with, or absent if no run
+   * is being resumed or its journal doesn't record it.
+   *
+   * @throws InvalidCommandException if the journal of the run being resumed doesn't exist
+   */
+  Optional<Long> resumedExperimentDesignSeed() {
+    return Optional.fromNullable(resumedHeader().experimentDesignSeed);
+  }
+
+  /**
+   * Returns the seed the trials of the run being resumed were ordered with, or absent if no run is
+   * being resumed or its journal doesn't record it.
+   *
+   * @throws InvalidCommandException if the journal of the run being resumed doesn't exist
+   */
+  Optional<Long> resumedTrialOrderSeed() {
+    return Optional.fromNullable(resumedHeader().trialOrderSeed);
+  }
+
+  private synchronized Header resumedHeader() {
+    if (resumedHeader == null) {
+      resumedHeader = new Header();
+      if (resumeRunId.isPresent()) {
+        checkResumable();
+        String line;
+        try {
+          line = Files.asCharSource(file, Charsets.UTF_8).readFirstLine();
+        } catch (IOException e) {
+          throw new InvalidCommandException("Can't read the journal %s: %s", file, e);
+        }
+        try {
+          Header header = line == null ? null : gson.fromJson(line, Header.class);
+          if (header != null) {
+            resumedHeader = header;
+          }
+        } catch (JsonParseException e) {
+          logger.warning(String.format("Ignoring an unreadable header in %s: %s", file, line));
+        }
+      }
+    }
+    return resumedHeader;
+  }
+
+  /**
+   * Returns the entries for trials of the given experiments that were recorded in the journal of
+   * the run being resumed, by experiment. If no run is being resumed, returns no entries.
+   *
+   * @throws InvalidCommandException if the journal of the run being resumed doesn't exist
+   */
+  ImmutableListMultimap<Experiment, Entry> completedTrials(Iterable<Experiment> experiments) {
+    if (!resumeRunId.isPresent()) {
+      return ImmutableListMultimap.of();
+    }
+    checkResumable();
+    ImmutableMap.Builder<String, Experiment> experimentsByKey = ImmutableMap.builder();
+    for (Experiment experiment : experiments) {
+      experimentsByKey.put(key(experiment), experiment);
+    }
+    ImmutableMap<String, Experiment> byKey = experimentsByKey.build();
+
+    ImmutableListMultimap.Builder<Experiment, Entry> result = ImmutableListMultimap.builder();
+    try {
+      for (String line : Files.readLines(file, Charsets.UTF_8)) {
+        Entry entry;
+        try {
+          entry = gson.fromJson(line, Entry.class);
+        } catch (JsonParseException e) {
+          // Most likely the last line, cut short when the run was interrupted.
+          logger.warning(String.format("Ignoring an unreadable entry in %s: %s", file, line));
+          continue;
+        }
+        if (entry == null || entry.trial == null) {
+          // The header, or a line that isn't an entry.
+          continue;
+        }
+        Experiment experiment = byKey.get(entry.experiment);
+        if (experiment == null) {
+          logger.warning(
+              String.format(
+                  "Ignoring a trial of %s from %s, which isn't selected by this run.",
+                  entry.experiment, file));
+          continue;
+        }
+        result.put(experiment, entry);
+      }
+    } catch (IOException e) {
+      throw new InvalidCommandException("Can't read the journal %s: %s", file, e);
+    }
+    return result.build();
+  }
+
+  private void checkResumable() {
+    if (!file.isFile()) {
+      throw new InvalidCommandException(
+          "Can't resume run %s: there is no journal for it at %s", resumeRunId.get(), file);
+    }
+  }
+
+  /**
+   * Opens the journal for recording trials, starting it with the given seeds if it's new. A resumed
+   * run adds to the journal it's resuming.
+   */
+  synchronized void open(long experimentDesignSeed, long trialOrderSeed) {
+    if (output.isPresent() || failed) {
+      return;
+    }
+    try {
+      Files.createParentDirs(file);
+      boolean isNew = !file.exists() || file.length() == 0;
+      output = Optional.of(new FileOutputStream(file, true));
+      if (isNew) {
+        Header header = new Header();
+        header.experimentDesignSeed = experimentDesignSeed;
+        header.trialOrderSeed = trialOrderSeed;
+        write(gson.toJson(header));
+      }
+    } catch (IOException e) {
+      failed = true;
+      logger.log(
+          SEVERE,
+          String.format("Couldn't start the journal %s; the run can't be resumed.", file),
+          e);
+    }
+  }
+
+  /**
+   * Appends the given completed trial to the journal, and syncs it to disk.
+   *
+   * @throws IllegalStateException if the journal hasn't been {@linkplain #open opened}
+   */
+  synchronized void record(TrialResult result) {
+    if (failed) {
+      return;
+    }
+    checkState(output.isPresent(), "The journal %s hasn't been opened", file);
+    Entry entry = new Entry();
+    entry.experiment = key(result.getExperiment());
+    entry.trialNumber =
+        result.getTrial().position().isPresent() ? result.getTrial().position().get().number() : 0;
+    entry.trial = result.getTrial();
+    try {
+      write(gson.toJson(entry));
+    } catch (IOException e) {
+      failed = true;
+      logger.log(
+          SEVERE,
+          String.format(
+              "Couldn't write trial %s to the journal %s; the run can't be fully resumed.",
+              result.getTrial().id(), file),
+          e);
+    }
+  }
+
+  @GuardedBy("this")
+  private void write(String line) throws IOException {
+    Writer writer = new OutputStreamWriter(output.get(), Charsets.UTF_8);
+    writer.write(line + "\n");
+    writer.flush();
+    output.get().getFD().sync();
+  }
+
+  /** Closes the journal and, since the run completed, deletes it. */
+  synchronized void delete() throws IOException {
+    if (output.isPresent()) {
+      output.get().close();
+      output = Optional.absent();
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Couldn't delete " + file);
+    }
+  }
+
+  /** Returns the key identifying an experiment in the journal, which is stable between runs. */
+  private static String key(Experiment experiment) {
+    return experiment.toString();
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.caliper.core.BenchmarkClassModel;
+import com.google.caliper.runner.experiment.Experiment;
+import com.google.caliper.runner.experiment.TrialSchedulingPolicy;
+import com.google.caliper.runner.target.LocalDevice;
+import com.google.caliper.runner.target.Target;
+import com.google.caliper.runner.worker.trial.MaxParallelism;
+import com.google.caliper.runner.worker.trial.TrialSpec;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import dagger.producers.Producer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.logging.Logger;
+import javax.inject.Inject;
+
+/**
+ * Starts trials once the resources they need are free, rather than as soon as a thread is free.
+ *
+ * <p>Each trial on the local machine needs a core and enough memory for its worker's heap (from the
+ * {@code -Xmx} it will be run with, or the VM's default of a quarter of physical memory) plus some
+ * allowance for the rest of the VM. A trial is started when it needs no more than is free, and
+ * fewer than {@code runner.maxParallelism} trials are running. Trials whose instrument isn't
+ * {@linkplain com.google.caliper.runner.instrument.Instrument#parallelizable() parallelizable} are
+ * run alone, with nothing else running. A trial that needs more than the whole machine is run alone
+ * too, rather than never. Dry runs are scheduled the same way, and can always run in parallel since
+ * they take no measurements.
+ *
+ * <p>Trials are started in the order they are scheduled: a trial that has to wait for resources
+ * also holds up the trials scheduled after it, so that large trials aren't starved by small ones.
+ */
+final class TrialScheduler {
+  private static final Logger logger = Logger.getLogger(TrialScheduler.class.getName());
+
+  /**
+   * A rough allowance for the memory a VM uses outside its heap: metaspace, the code cache, thread
+   * stacks and GC data structures.
+   */
+  private static final long NON_HEAP_BYTES = 256L << 20;
+
+  /** What a trial needs in order to run. */
+  @VisibleForTesting
+  static final class Demand {
+    /** The demand of a trial that must run with nothing else running. */
+    static final Demand EXCLUSIVE = new Demand(0, 0, true);
+
+    final int cores;
+    final long memoryBytes;
+    final boolean exclusive;
+
+    Demand(int cores, long memoryBytes, boolean exclusive) {
+      this.cores = cores;
+      this.memoryBytes = memoryBytes;
+      this.exclusive = exclusive;
+    }
+  }
+
+  private final BenchmarkClassModel benchmarkClass;
+  private final int maxParallelism;
+  private final int cores;
+  private final long memoryBytes;
+
+  private final Queue<PendingTrial<?>> queue = new ArrayDeque<>();
+  private int runningTrials = 0;
+  private boolean exclusiveTrialRunning = false;
+  private int usedCores = 0;
+  private long usedMemoryBytes = 0;
+
+  @Inject
+  TrialScheduler(BenchmarkClassModel benchmarkClass, @MaxParallelism int maxParallelism) {
+    this(
+        benchmarkClass,
+        maxParallelism,
+        Runtime.getRuntime().availableProcessors(),
+        memoryForTrials());
+  }
+
+  /**
+   * Creates a scheduler for a machine with the given number of cores and bytes of memory free for
+   * workers. A negative number of bytes means the memory is unknown, so it isn't accounted for.
+   */
+  @VisibleForTesting
+  TrialScheduler(
+      BenchmarkClassModel benchmarkClass, int maxParallelism, int cores, long memoryBytes) {
+    checkArgument(maxParallelism > 0, "maxParallelism must be positive: %s", maxParallelism);
+    this.benchmarkClass = benchmarkClass;
+    this.maxParallelism = maxParallelism;
+    this.cores = cores;
+    this.memoryBytes = memoryBytes < 0 ? Long.MAX_VALUE : memoryBytes;
+  }
+
+  /**
+   * Returns the memory on this machine that is free for workers, after the runner's own heap, or -1
+   * if it can't be determined.
+   */
+  private static long memoryForTrials() {
+    try {
+      OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+      if (os instanceof com.sun.management.OperatingSystemMXBean) {
+        long physicalMemory =
+            ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        return Math.max(0, physicalMemory - Runtime.getRuntime().maxMemory() - NON_HEAP_BYTES);
+      }
+    } catch (LinkageError e) {
+      // not a HotSpot-like VM
+    }
+    logger.fine("Couldn't determine the physical memory size; not limiting trials by memory");
+    return -1;
+  }
+
+  /**
+   * Schedules a trial of the given experiment, which is run by calling {@code trial}. Returns a
+   * future for its result. Cancelling the future before the trial is started means it is never
+   * started.
+   */
+  <T> ListenableFuture<T> schedule(Experiment experiment, Producer<T> trial) {
+    return schedule(demand(experiment), trial);
+  }
+
+  /**
+   * Schedules a dry run on the given target, which is run by calling {@code dryRun}. Returns a
+   * future for its result.
+   */
+  <T> ListenableFuture<T> scheduleDryRun(Target target, Producer<T> dryRun) {
+    // Dry-run workers are only given the benchmark class's own VM options.
+    return schedule(demand(target, target.vm().args(benchmarkClass.vmOptions())), dryRun);
+  }
+
+  @VisibleForTesting
+  <T> ListenableFuture<T> schedule(Demand demand, Producer<T> trial) {
+    PendingTrial<T> pending = new PendingTrial<>(demand, trial);
+    synchronized (this) {
+      queue.add(pending);
+    }
+    startTrials();
+    return pending.result;
+  }
+
+  private Demand demand(Experiment experiment) {
+    if (experiment.getTrialSchedulingPolicy() == TrialSchedulingPolicy.SERIAL) {
+      return Demand.EXCLUSIVE;
+    }
+    return demand(experiment.target(), TrialSpec.trialVmOptions(experiment, benchmarkClass));
+  }
+
+  private Demand demand(Target target, Iterable<String> vmOptions) {
+    if (!(target.device() instanceof LocalDevice)) {
+      // The resources of other devices aren't known; only limit their parallelism.
+      return new Demand(0, 0, false);
+    }
+    long heapBytes = maxHeapBytes(vmOptions);
+    if (heapBytes < 0) {
+      heapBytes = memoryBytes == Long.MAX_VALUE ? 0 : (memoryBytes + NON_HEAP_BYTES) / 4;
+    }
+    return new Demand(1, heapBytes + NON_HEAP_BYTES, false);
+  }
+
+  /**
+   * Returns the maximum heap size set by the given VM options, or -1 if they don't set it. If it's
+   * set more than once, the last setting wins, as it does for the VM.
+   */
+  @VisibleForTesting
+  static long maxHeapBytes(Iterable<String> vmOptions) {
+    long result = -1;
+    for (String option : vmOptions) {
+      String size;
+      if (option.startsWith("-Xmx")) {
+        size = option.substring("-Xmx".length());
+      } else if (option.startsWith("-XX:MaxHeapSize=")) {
+        size = option.substring("-XX:MaxHeapSize=".length());
+      } else {
+        continue;
+      }
+      long bytes = parseSize(size);
+      if (bytes >= 0) {
+        result = bytes;
+      }
+    }
+    return result;
+  }
+
+  /** Parses a VM memory size such as "512m", or returns -1 if it isn't one. */
+  private static long parseSize(String size) {
+    if (size.isEmpty()) {
+      return -1;
+    }
+    int shift = 0;
+    switch (Ascii.toLowerCase(size.charAt(size.length() - 1))) {
+      case 'k':
+        shift = 10;
+        break;
+      case 'm':
+        shift = 20;
+        break;
+      case 'g':
+        shift = 30;
+        break;
+      case 't':
+        shift = 40;
+        break;
+      default:
+        break;
+    }
+    String digits = shift == 0 ? size : size.substring(0, size.length() - 1);
+    try {
+      return Long.parseLong(digits) << shift;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Starts as many trials from the front of the queue as there are resources free for. */
+  private void startTrials() {
+    List<PendingTrial<?>> toStart = new ArrayList<>();
+    synchronized (this) {
+      while (!queue.isEmpty()) {
+        PendingTrial<?> next = queue.peek();
+        if (next.result.isCancelled()) {
+          queue.remove();
+          continue;
+        }
+        if (!canStart(next.demand)) {
+          break;
+        }
+        queue.remove();
+        runningTrials++;
+        exclusiveTrialRunning = next.demand.exclusive;
+        usedCores += next.demand.cores;
+        usedMemoryBytes += next.demand.memoryBytes;
+        toStart.add(next);
+      }
+    }
+    // Start the trials outside the lock, since a trial that finishes immediately calls back in.
+    for (PendingTrial<?> trial : toStart) {
+      trial.start();
+    }
+  }
+
+  private boolean canStart(Demand demand) {
+    if (runningTrials == 0) {
+      return true;
+    }
+    return !exclusiveTrialRunning
+        && !demand.exclusive
+        && runningTrials < maxParallelism
+        && usedCores + demand.cores <= cores
+        && usedMemoryBytes + demand.memoryBytes <= memoryBytes;
+  }
+
+  private void finished(Demand demand) {
+    synchronized (this) {
+      runningTrials--;
+      exclusiveTrialRunning = false;
+      usedCores -= demand.cores;
+      usedMemoryBytes -= demand.memoryBytes;
+    }
+    startTrials();
+  }
+
+  /** A trial waiting to be started. */
+  private final class PendingTrial<T> {
+    final Demand demand;
+    final Producer<T> trial;
+    final SettableFuture<T> result = SettableFuture.create();
+
+    PendingTrial(Demand demand, Producer<T> trial) {
+      this.demand = demand;
+      this.trial = trial;
+    }
+
+    void start() {
+      ListenableFuture<T> future;
+      try {
+        future = trial.get();
+      } catch (RuntimeException e) {
+        future = Futures.immediateFailedFuture(e);
+      }
+      result.setFuture(future);
+      future.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              finished(demand);
+            }
+          },
+          directExecutor());
+    }
+  }
+}
@@ -23,6 +23,7 @@ import com.google.caliper.model.InstrumentSpec;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.annotation.concurrent.Immutable;
 
@@ -49,6 +50,13 @@ public final class InstrumentConfig {
     return options;
   }
 
+  /** Returns a copy of this configuration with the given option set to the given value. */
+  public InstrumentConfig withOption(String option, String value) {
+    Map<String, String> newOptions = new LinkedHashMap<String, String>(options);
+    newOptions.put(option, value);
+    return new Builder().className(className).addAllOptions(newOptions).build();
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == this) {
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.experiment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.caliper.runner.config.CaliperConfig;
+import com.google.caliper.runner.config.InvalidConfigurationException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.math.IntMath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * How the combinations of user parameter values to run experiments with are chosen.
+ *
+ * <p>By default every combination is run, but the number of combinations grows exponentially with
+ * the number of parameters. A sparse design instead chooses combinations directly from the values
+ * of each parameter, without expanding every combination, up to a budget of experiments:
+ *
+ * <ul>
+ *   <li>A pairwise design chooses combinations that together contain every pair of values of every
+ *       two parameters, which is usually far fewer than all combinations.
+ *   <li>A Latin hypercube design chooses combinations that each use every value of each parameter
+ *       about equally often, spreading them over the whole space.
+ * </ul>
+ *
+ * <p>The random choices are made with a seed that is recorded with the run, so the same
+ * combinations can be chosen again.
+ */
+public final class ExperimentDesign {
+  private static final String DESIGN_OPTION = "runner.experimentDesign";
+  private static final String BUDGET_OPTION = "runner.experimentBudget";
+  private static final String SEED_OPTION = "runner.experimentDesignSeed";
+
+  /** How many candidates to consider for each combination chosen for a pairwise design. */
+  private static final int PAIRWISE_CANDIDATES = 20;
+
+  /** A way of choosing combinations of parameter values. */
+  public enum Mode {
+    /** Every combination of parameter values is chosen. */
+    FULL,
+
+    /** Combinations are chosen until every pair of values of any two parameters is covered. */
+    PAIRWISE,
+
+    /** Combinations are chosen so that each parameter's values are used equally often. */
+    LATIN_HYPERCUBE;
+
+    @Override
+    public String toString() {
+      return Ascii.toLowerCase(name()).replace('_', '-');
+    }
+  }
+
+  private final Mode mode;
+  private final long seed;
+  private final Optional<Integer> budget;
+
+  /**
+   * Returns the configured experiment design, using the given seed, if any, rather than the
+   * configured one.
+   */
+  public static ExperimentDesign create(CaliperConfig config, Optional<Long> seed) {
+    Mode mode = mode(config.properties().get(DESIGN_OPTION));
+    long configuredSeed = seed(config.properties().get(SEED_OPTION));
+    return new ExperimentDesign(
+        mode, seed.or(configuredSeed), budget(config.properties().get(BUDGET_OPTION)));
+  }
+
+  @VisibleForTesting
+  ExperimentDesign(Mode mode, long seed, Optional<Integer> budget) {
+    this.mode = mode;
+    this.seed = seed;
+    this.budget = budget;
+  }
+
+  private static Mode mode(String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return Mode.FULL;
+    }
+    for (Mode mode : Mode.values()) {
+      if (mode.toString().equals(value)) {
+        return mode;
+      }
+    }
+    throw new InvalidConfigurationException(
+        String.format(
+            "%s must be one of full, pairwise or latin-hypercube, but was %s",
+            DESIGN_OPTION, value));
+  }
+
+  private static long seed(String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return new Random().nextLong();
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new InvalidConfigurationException(
+          String.format("%s must be an integer, but was %s", SEED_OPTION, value), e);
+    }
+  }
+
+  private static Optional<Integer> budget(String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return Optional.absent();
+    }
+    try {
+      int budget = Integer.parseInt(value);
+      if (budget > 0) {
+        return Optional.of(budget);
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidConfigurationException(
+        String.format("%s must be a positive integer, but was %s", BUDGET_OPTION, value));
+  }
+
+  /** Returns the way combinations of parameter values are chosen. */
+  public Mode mode() {
+    return mode;
+  }
+
+  /** Returns the seed of the random choices made in choosing combinations. */
+  public long seed() {
+    return seed;
+  }
+
+  /**
+   * Returns combinations of values chosen from the given values for each parameter, for a sparse
+   * design. Each combination is a list with one value for each parameter, in the same order. If
+   * there's a budget, at most as many combinations are chosen as the budget allows for when each
+   * combination is run as {@code experimentsPerCombination} experiments.
+   */
+  public ImmutableList<List<String>> sample(
+      List<? extends List<String>> values, int experimentsPerCombination) {
+    checkArgument(mode != Mode.FULL, "not a sparse design: %s", mode);
+    checkArgument(experimentsPerCombination > 0);
+    int maxCombinations =
+        budget.isPresent()
+            ? Math.max(1, budget.get() / experimentsPerCombination)
+            : Integer.MAX_VALUE;
+    Random random = new Random(seed);
+    List<int[]> rows =
+        mode == Mode.PAIRWISE
+            ? pairwise(sizes(values), maxCombinations, random)
+            : latinHypercube(sizes(values), maxCombinations, random);
+
+    // Different rows of a Latin hypercube can pick the same values when parameters have few values.
+    Set<List<String>> result = Sets.newLinkedHashSet();
+    for (int[] row : rows) {
+      List<String> combination = Lists.newArrayListWithCapacity(row.length);
+      for (int i = 0; i < row.length; i++) {
+        combination.add(values.get(i).get(row[i]));
+      }
+      result.add(ImmutableList.copyOf(combination));
+    }
+    return ImmutableList.copyOf(result);
+  }
+
+  private static int[] sizes(List<? extends List<String>> values) {
+    int[] sizes = new int[values.size()];
+    for (int i = 0; i < sizes.length; i++) {
+      checkArgument(!values.get(i).isEmpty(), "no values for parameter %s", i);
+      sizes[i] = values.get(i).size();
+    }
+    return sizes;
+  }
+
+  /**
+   * Chooses rows of value indexes greedily, each covering as many pairs of values that no earlier
+   * row covers as it can, until every pair is covered or there are {@code maxRows} rows.
+   */
+  private static List<int[]> pairwise(int[] sizes, int maxRows, Random random) {
+    int n = sizes.length;
+    List<int[]> rows = new ArrayList<int[]>();
+    if (n < 2) {
+      // There are no pairs, so just use each value once.
+      for (int v = 0; v < (n == 0 ? 1 : sizes[0]) && rows.size() < maxRows; v++) {
+        rows.add(n == 0 ? new int[0] : new int[] {v});
+      }
+      return rows;
+    }
+    PairSet uncovered = new PairSet(sizes);
+    for (int a = 0; a < n; a++) {
+      for (int b = a + 1; b < n; b++) {
+        for (int va = 0; va < sizes[a]; va++) {
+          for (int vb = 0; vb < sizes[b]; vb++) {
+            uncovered.add(a, va, b, vb);
+          }
+        }
+      }
+    }
+    while (!uncovered.isEmpty() && rows.size() < maxRows) {
+      // Every candidate covers one particular uncovered pair, so each row makes progress.
+      int[] pair = uncovered.get(random.nextInt(uncovered.size()));
+      int[] best = null;
+      int bestCovered = -1;
+      for (int c = 0; c < PAIRWISE_CANDIDATES; c++) {
+        int[] row = candidate(sizes, pair, uncovered, random);
+        int covered = uncovered.countCovered(row);
+        if (covered > bestCovered) {
+          best = row;
+          bestCovered = covered;
+        }
+      }
+      uncovered.removeCovered(best);
+      rows.add(best);
+    }
+    return rows;
+  }
+
+  /**
+   * Returns a row containing the given pair of values, with each other parameter's value chosen in
+   * turn, in a random order, to cover the most uncovered pairs with the values already chosen.
+   */
+  private static int[] candidate(int[] sizes, int[] pair, PairSet uncovered, Random random) {
+    int n = sizes.length;
+    int[] row = new int[n];
+    Arrays.fill(row, -1);
+    row[pair[0]] = pair[1];
+    row[pair[2]] = pair[3];
+    List<Integer> order = new ArrayList<Integer>();
+    for (int a = 0; a < n; a++) {
+      if (row[a] < 0) {
+        order.add(a);
+      }
+    }
+    Collections.shuffle(order, random);
+    for (int a : order) {
+      int bestValue = 0;
+      int bestCovered = -1;
+      int ties = 0;
+      for (int v = 0; v < sizes[a]; v++) {
+        int covered = 0;
+        for (int b = 0; b < n; b++) {
+          if (row[b] >= 0 && uncovered.contains(a, v, b, row[b])) {
+            covered++;
+          }
+        }
+        if (covered > bestCovered) {
+          bestValue = v;
+          bestCovered = covered;
+          ties = 1;
+        } else if (covered == bestCovered && random.nextInt(++ties) == 0) {
+          bestValue = v;
+        }
+      }
+      row[a] = bestValue;
+    }
+    return row;
+  }
+
+  /**
+   * Chooses rows of value indexes such that, for each parameter, the rows divide evenly among its
+   * values. With no limit, there are as many rows as the most values any parameter has; otherwise
+   * there are as many as the limit allows, up to the number of combinations.
+   */
+  private static List<int[]> latinHypercube(int[] sizes, int maxRows, Random random) {
+    int rowCount = 1;
+    int combinations = 1;
+    for (int size : sizes) {
+      rowCount = Math.max(rowCount, size);
+      combinations = IntMath.saturatedMultiply(combinations, size);
+    }
+    if (maxRows != Integer.MAX_VALUE) {
+      rowCount = Math.min(maxRows, combinations);
+    }
+    int[][] rows = new int[rowCount][sizes.length];
+    for (int a = 0; a < sizes.length; a++) {
+      List<Integer> strata = new ArrayList<Integer>(rowCount);
+      for (int i = 0; i < rowCount; i++) {
+        strata.add(i);
+      }
+      Collections.shuffle(strata, random);
+      for (int i = 0; i < rowCount; i++) {
+        rows[i][a] = (int) ((long) strata.get(i) * sizes[a] / rowCount);
+      }
+    }
+    return Arrays.asList(rows);
+  }
+
+  /** A set of pairs of values of two different parameters, which can be picked from at random. */
+  private static final class PairSet {
+    private final int[] sizes;
+    private final int maxSize;
+    private final Set<Long> pairs = Sets.newHashSet();
+    private final List<Long> list = new ArrayList<Long>();
+
+    PairSet(int[] sizes) {
+      this.sizes = sizes;
+      int maxSize = 0;
+      for (int size : sizes) {
+        maxSize = Math.max(maxSize, size);
+      }
+      this.maxSize = maxSize;
+    }
+
+    private long key(int a, int va, int b, int vb) {
+      if (a > b) {
+        return key(b, vb, a, va);
+      }
+      return (((long) a * sizes.length + b) * maxSize + va) * maxSize + vb;
+    }
+
+    void add(int a, int va, int b, int vb) {
+      long key = key(a, va, b, vb);
+      if (pairs.add(key)) {
+        list.add(key);
+      }
+    }
+
+    boolean contains(int a, int va, int b, int vb) {
+      return pairs.contains(key(a, va, b, vb));
+    }
+
+    boolean isEmpty() {
+      return pairs.isEmpty();
+    }
+
+    int size() {
+      return pairs.size();
+    }
+
+    /** Returns the {@code index}th pair still in the set, as {a, va, b, vb}. */
+    int[] get(int index) {
+      // Pairs removed from the set are only dropped from the list when one is picked.
+      list.retainAll(pairs);
+      long key = list.get(index);
+      int vb = (int) (key % maxSize);
+      key /= maxSize;
+      int va = (int) (key % maxSize);
+      key /= maxSize;
+      return new int[] {(int) (key / sizes.length), va, (int) (key % sizes.length), vb};
+    }
+
+    int countCovered(int[] row) {
+      int count = 0;
+      for (int a = 0; a < row.length; a++) {
+        for (int b = a + 1; b < row.length; b++) {
+          if (contains(a, row[a], b, row[b])) {
+            count++;
+          }
+        }
+      }
+      return count;
+    }
+
+    void removeCovered(int[] row) {
+      for (int a = 0; a < row.length; a++) {
+        for (int b = a + 1; b < row.length; b++) {
+          pairs.remove(key(a, row[a], b, row[b]));
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (mode == Mode.FULL) {
+      return mode.toString();
+    }
+    return mode
+        + " (seed "
+        + seed
+        + (budget.isPresent() ? ", budget " + budget.get() + " experiments" : "")
+        + ")";
+  }
+}
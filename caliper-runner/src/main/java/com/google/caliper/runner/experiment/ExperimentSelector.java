@@ -21,6 +21,7 @@ import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
 import com.google.caliper.runner.target.Target;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -34,21 +35,25 @@ import javax.inject.Inject;
 
 /**
  * A set of {@link Experiment experiments} constructed by taking all possible combinations of
- * instruments, benchmark methods, user parameters and targets.
+ * instruments, benchmark methods and targets with the combinations of user parameters chosen by the
+ * {@link ExperimentDesign} (by default, all of them).
  */
 public final class ExperimentSelector {
   private final ImmutableSet<InstrumentedMethod> instrumentedMethods;
   private final ImmutableSet<Target> targets;
   private final ImmutableSetMultimap<String, String> userParameters;
+  private final ExperimentDesign design;
 
   @Inject
   ExperimentSelector(
       ImmutableSet<InstrumentedMethod> instrumentedMethods,
       ImmutableSet<Target> targets,
-      @BenchmarkParameters ImmutableSetMultimap<String, String> userParameters) {
+      @BenchmarkParameters ImmutableSetMultimap<String, String> userParameters,
+      ExperimentDesign design) {
     this.instrumentedMethods = instrumentedMethods;
     this.targets = targets;
     this.userParameters = userParameters;
+    this.design = design;
   }
 
   // TODO(gak): put this someplace more sensible
@@ -75,13 +80,25 @@ public final class ExperimentSelector {
     return userParameters;
   }
 
+  /** Returns how the combinations of user parameters to run experiments with are chosen. */
+  public ExperimentDesign design() {
+    return design;
+  }
+
   /** Returns the full set of experiments to be run. */
   public ImmutableSet<Experiment> selectExperiments() {
+    // A sparse design chooses combinations without expanding all of them, so only the chosen
+    // combinations are ever built.
+    Iterable<List<String>> userParamsChoices =
+        design.mode() == ExperimentDesign.Mode.FULL
+            ? cartesian(userParameters)
+            : design.sample(
+                values(userParameters), Math.max(1, instrumentedMethods.size() * targets.size()));
     ImmutableSet.Builder<Experiment> experiments = ImmutableSet.builder();
     int id = 1;
     for (InstrumentedMethod instrumentedMethod : instrumentedMethods) {
       for (Target target : targets) {
-        for (List<String> userParamsChoice : cartesian(userParameters)) {
+        for (List<String> userParamsChoice : userParamsChoices) {
           ImmutableMap<String, String> theseUserParams =
               zip(userParameters.keySet(), userParamsChoice);
           experiments.add(Experiment.create(id++, instrumentedMethod, theseUserParams, target));
@@ -97,6 +114,15 @@ public final class ExperimentSelector {
     return Sets.cartesianProduct(paramsAsMap.values().asList());
   }
 
+  private static ImmutableList<ImmutableList<String>> values(
+      ImmutableSetMultimap<String, String> multimap) {
+    ImmutableList.Builder<ImmutableList<String>> result = ImmutableList.builder();
+    for (String key : multimap.keySet()) {
+      result.add(multimap.get(key).asList());
+    }
+    return result.build();
+  }
+
   protected static <K, V> ImmutableMap<K, V> zip(Set<K> keys, Collection<V> values) {
     ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
 
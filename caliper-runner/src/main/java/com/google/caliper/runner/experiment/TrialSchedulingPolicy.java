@@ -17,10 +17,12 @@ package com.google.caliper.runner.experiment;
 /**
  * The scheduling policy for a particular trial.
  *
- * <p>TODO(lukes): Currently this is extremely simple. Trials can be scheduled in parallel with
- * other trials or not. In the future, this should use some kind of cost modeling.
+ * <p>Trials that may run in parallel are started alongside other trials as long as there are enough
+ * cores and memory free for them.
  */
 public enum TrialSchedulingPolicy {
+  /** The trial may run alongside other trials. */
   PARALLEL,
+  /** The trial must run with no other trial running. */
   SERIAL
 }
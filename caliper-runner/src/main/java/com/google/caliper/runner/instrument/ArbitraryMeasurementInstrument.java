@@ -24,6 +24,7 @@ import com.google.caliper.core.BenchmarkClassModel.MethodModel;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.caliper.model.ArbitraryMeasurement;
 import com.google.caliper.model.InstrumentType;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.runner.config.SupportsVmType;
 import com.google.caliper.runner.config.VmType;
@@ -82,6 +83,18 @@ public final class ArbitraryMeasurementInstrument extends Instrument {
     return false;
   }
 
+  @Override
+  public boolean workersReusable() {
+    // The measurement is whatever the method returns, which is computed afresh in each trial.
+    return true;
+  }
+
+  @Override
+  public boolean smallerIsBetter(String description) {
+    // The measurement can be anything, so there's no telling which experiments did better.
+    return false;
+  }
+
   private final class ArbitraryMeasurementInstrumentedMethod extends InstrumentedMethod {
     protected ArbitraryMeasurementInstrumentedMethod(MethodModel benchmarkMethod) {
       super(benchmarkMethod);
@@ -127,6 +140,11 @@ public final class ArbitraryMeasurementInstrument extends Instrument {
       return ImmutableList.copyOf(measurement.asSet());
     }
 
+    @Override
+    public Optional<LatencyHistogram> getLatencyHistogram() {
+      return Optional.absent();
+    }
+
     @Override
     public void visit(StopMeasurementLogMessage logMessage) {
       this.measurement = Optional.of(Iterables.getOnlyElement(logMessage.measurements()));
@@ -19,6 +19,8 @@ package com.google.caliper.runner.instrument;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.caliper.Benchmark;
+import com.google.caliper.api.Blackhole;
+import com.google.caliper.core.BenchmarkClassModel;
 import com.google.caliper.core.BenchmarkClassModel.MethodModel;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.common.collect.ImmutableList;
@@ -29,6 +31,7 @@ final class BenchmarkMethods {
   private static final ImmutableList<String> MACROBENCHMARK_PARAMS = ImmutableList.of();
   private static final ImmutableList<String> MICROBENCHMARK_PARAMS = ImmutableList.of("int");
   private static final ImmutableList<String> PICOBENCHMARK_PARAMS = ImmutableList.of("long");
+  private static final String BLACKHOLE_PARAM = Blackhole.class.getName();
 
   private BenchmarkMethods() {}
 
@@ -39,6 +42,10 @@ final class BenchmarkMethods {
 
     static Type of(MethodModel benchmarkMethod) {
       ImmutableList<String> parameterTypes = benchmarkMethod.parameterTypes();
+      if (takesBlackhole(benchmarkMethod)) {
+        // the blackhole is supplied by the worker and doesn't affect how the method is timed
+        parameterTypes = parameterTypes.subList(0, parameterTypes.size() - 1);
+      }
       if (parameterTypes.equals(MACROBENCHMARK_PARAMS)) {
         return MACRO;
       } else if (parameterTypes.equals(MICROBENCHMARK_PARAMS)) {
@@ -51,6 +58,33 @@ final class BenchmarkMethods {
     }
   }
 
+  /** Returns whether the last parameter of the given method is a {@link Blackhole}. */
+  static boolean takesBlackhole(MethodModel method) {
+    ImmutableList<String> parameterTypes = method.parameterTypes();
+    return !parameterTypes.isEmpty()
+        && parameterTypes.get(parameterTypes.size() - 1).equals(BLACKHOLE_PARAM);
+  }
+
+  /** Returns whether the given method takes a {@code long} reps parameter. */
+  static boolean isPicobenchmark(MethodModel method) {
+    try {
+      return Type.of(method) == Type.PICO;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns whether the given reps-loop benchmark method has no visible way to keep the results of
+   * its loop alive: it returns nothing, takes no {@link Blackhole} and its class has no {@code
+   * Blackhole} field. The JIT compiler may then eliminate some or all of the loop body.
+   */
+  static boolean mayDiscardResults(BenchmarkClassModel benchmarkClass, MethodModel method) {
+    return !method.returnType().isPresent()
+        && !takesBlackhole(method)
+        && !benchmarkClass.hasBlackholeField();
+  }
+
   /**
    * Several instruments look for benchmark methods like {@code timeBlah(int reps)}; this is the
    * centralized code that identifies such methods.
@@ -24,4 +24,6 @@ final class CommonInstrumentOptions {
   static final String GC_BEFORE_EACH_OPTION = "gcBeforeEach";
   static final String WARMUP_OPTION = "warmup";
   static final String MAX_WARMUP_WALL_TIME_OPTION = "maxWarmupWallTime";
+  static final String TIMING_INTERVAL_OPTION = "timingInterval";
+  static final String MEASURE_ALLOCATIONS_OPTION = "measureAllocations";
 }
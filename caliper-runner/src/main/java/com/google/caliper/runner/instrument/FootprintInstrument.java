@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import com.google.caliper.api.Footprint;
+import com.google.caliper.core.BenchmarkClassModel.MethodModel;
+import com.google.caliper.core.InvalidBenchmarkException;
+import com.google.caliper.model.InstrumentType;
+import com.google.caliper.runner.config.SupportsVmType;
+import com.google.caliper.runner.config.VmType;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Instrument for measuring the memory footprint of the object graph returned by a {@link
+ * Footprint} method. The size in bytes is estimated from the number and types of the objects in
+ * the graph, using a layout model configured by the instrument options.
+ */
+@SupportsVmType(VmType.JVM)
+public final class FootprintInstrument extends Instrument {
+  /** The size of an object header in bytes, including the class pointer. */
+  static final String OBJECT_HEADER_BYTES_OPTION = "objectHeaderBytes";
+
+  /** Whether references take 4 bytes rather than 8. */
+  static final String COMPRESSED_OOPS_OPTION = "compressedOops";
+
+  /** The alignment of objects in bytes. */
+  static final String OBJECT_ALIGNMENT_OPTION = "objectAlignment";
+
+  /**
+   * The name of a numeric {@code @Param} giving the number of elements in the measured object, by
+   * which its size is divided to report the number of bytes per element.
+   */
+  static final String SIZE_PARAM_OPTION = "sizeParam";
+
+  /**
+   * The number of classes taking the most bytes, and of objects retaining the most bytes, to
+   * report in addition to the totals. 0 reports only the totals.
+   */
+  static final String REPORT_TOP_OPTION = "reportTop";
+
+  private static final ImmutableSet<String> PRIMITIVE_TYPES =
+      ImmutableSet.of("boolean", "byte", "char", "short", "int", "float", "long", "double");
+
+  @Override
+  public boolean isBenchmarkMethod(MethodModel method) {
+    return method.isAnnotationPresent(Footprint.class);
+  }
+
+  @Override
+  public InstrumentedMethod createInstrumentedMethod(MethodModel benchmarkMethod)
+      throws InvalidBenchmarkException {
+    if (!benchmarkMethod.parameterTypes().isEmpty()) {
+      throw new InvalidBenchmarkException(
+          "Footprint methods should take no parameters: " + benchmarkMethod.name());
+    }
+
+    if (!benchmarkMethod.returnType().isPresent()
+        || PRIMITIVE_TYPES.contains(benchmarkMethod.returnType().get())) {
+      throw new InvalidBenchmarkException(
+          "Footprint methods must return the object to measure: " + benchmarkMethod.name());
+    }
+
+    return new FootprintInstrumentedMethod(benchmarkMethod);
+  }
+
+  @Override
+  public boolean parallelizable() {
+    // The footprint of an object graph doesn't depend on what else is running on the machine.
+    return true;
+  }
+
+  @Override
+  public boolean workersReusable() {
+    // Nor on what has run in the VM before.
+    return true;
+  }
+
+  private final class FootprintInstrumentedMethod extends InstrumentedMethod {
+    FootprintInstrumentedMethod(MethodModel benchmarkMethod) {
+      super(benchmarkMethod);
+    }
+
+    @Override
+    public InstrumentType type() {
+      return InstrumentType.FOOTPRINT;
+    }
+
+    @Override
+    public MeasurementCollectingVisitor getMeasurementCollectingVisitor() {
+      // The footprint is the same every time, so there is no point measuring it more than once.
+      return new Instrument.DefaultMeasurementCollectingVisitor(
+          ImmutableSet.of("objects", "references", "primitives", "bytes"), 1);
+    }
+  }
+
+  @Override
+  public ImmutableSet<String> instrumentOptions() {
+    return ImmutableSet.of(
+        OBJECT_HEADER_BYTES_OPTION,
+        COMPRESSED_OOPS_OPTION,
+        OBJECT_ALIGNMENT_OPTION,
+        SIZE_PARAM_OPTION,
+        REPORT_TOP_OPTION);
+  }
+}
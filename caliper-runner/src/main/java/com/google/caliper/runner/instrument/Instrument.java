@@ -25,6 +25,7 @@ import com.google.caliper.core.BenchmarkClassModel.MethodModel;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.caliper.model.InstrumentSpec;
 import com.google.caliper.model.InstrumentType;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.runner.config.VmConfig;
 import com.google.common.annotations.VisibleForTesting;
@@ -75,6 +76,24 @@ public abstract class Instrument {
     return false;
   }
 
+  /**
+   * Indicates that trials using this instrument can be run by a worker that has already run other
+   * trials, because their measurements don't depend on the state (such as compiled code) that
+   * earlier trials leave behind in the VM.
+   */
+  public boolean workersReusable() {
+    return false;
+  }
+
+  /**
+   * Indicates that smaller measurements with the given description made by this instrument are
+   * better, so that an experiment whose measurements are clearly larger than another's can be
+   * pruned from a racing run. Measurements for which this returns false aren't used for pruning.
+   */
+  public boolean smallerIsBetter(String description) {
+    return true;
+  }
+
   /** The application of an instrument to a particular benchmark method. */
   // TODO(gak): consider passing in Instrument explicitly for DI
   public abstract class InstrumentedMethod {
@@ -159,6 +178,15 @@ public abstract class Instrument {
     return ImmutableSet.of();
   }
 
+  /**
+   * Defines the subset of {@link #instrumentOptions()} that accept a comma-separated list of
+   * values. Like the values of a {@code @Param} field, each value is run as a separate instrument
+   * configuration, so every benchmark method is measured once per value.
+   */
+  protected ImmutableSet<String> sweptOptions() {
+    return ImmutableSet.of();
+  }
+
   /**
    * Returns some arguments that should be added to the command line when invoking this instrument's
    * worker.
@@ -223,6 +251,11 @@ public abstract class Instrument {
       return ImmutableList.copyOf(measurementsByDescription.values());
     }
 
+    @Override
+    public Optional<LatencyHistogram> getLatencyHistogram() {
+      return Optional.absent();
+    }
+
     @Override
     public ImmutableList<String> getMessages() {
       return ImmutableList.of();
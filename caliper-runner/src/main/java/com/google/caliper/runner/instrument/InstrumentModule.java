@@ -30,9 +30,13 @@ import com.google.caliper.util.InvalidCommandException;
 import com.google.caliper.util.ShortDuration;
 import com.google.caliper.util.Stderr;
 import com.google.caliper.util.Util;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import dagger.MapKey;
 import dagger.Module;
@@ -40,6 +44,7 @@ import dagger.Provides;
 import dagger.multibindings.IntoMap;
 import java.io.PrintWriter;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -66,6 +71,13 @@ public abstract class InstrumentModule {
     return new ArbitraryMeasurementInstrument();
   }
 
+  @Provides
+  @IntoMap
+  @InstrumentClassKey(FootprintInstrument.class)
+  static Instrument provideFootprintInstrument() {
+    return new FootprintInstrument();
+  }
+
   @Provides
   @IntoMap
   @InstrumentClassKey(RuntimeInstrument.class)
@@ -74,6 +86,13 @@ public abstract class InstrumentModule {
     return new RuntimeInstrument(nanoTimeGranularity);
   }
 
+  @Provides
+  @IntoMap
+  @InstrumentClassKey(ThreadedRuntimeInstrument.class)
+  static Instrument provideThreadedRuntimeInstrument() {
+    return new ThreadedRuntimeInstrument();
+  }
+
   @RunScoped
   @Provides
   static ImmutableSet<Instrument> provideInstruments(
@@ -110,13 +129,18 @@ public abstract class InstrumentModule {
         }
 
         if (isSupportedByAllVms(clazz, vmTypes)) {
-          Instrument instrument = instrumentProvider.get();
-          InstrumentInjectorModule injectorModule =
-              new InstrumentInjectorModule(instrumentConfig, instrumentName);
-          InstrumentComponent instrumentComponent =
-              DaggerInstrumentComponent.builder().instrumentInjectorModule(injectorModule).build();
-          instrumentComponent.injectInstrument(instrument);
-          builder.add(instrument);
+          ImmutableSet<String> sweptOptions = instrumentProvider.get().sweptOptions();
+          for (InstrumentConfig sweptConfig : sweepOptions(instrumentConfig, sweptOptions)) {
+            Instrument instrument = instrumentProvider.get();
+            InstrumentInjectorModule injectorModule =
+                new InstrumentInjectorModule(sweptConfig, instrumentName);
+            InstrumentComponent instrumentComponent =
+                DaggerInstrumentComponent.builder()
+                    .instrumentInjectorModule(injectorModule)
+                    .build();
+            instrumentComponent.injectInstrument(instrument);
+            builder.add(instrument);
+          }
         } else {
           stderr.format(
               "Instrument %s not supported on at least one target VM; ignoring\n", className);
@@ -128,6 +152,33 @@ public abstract class InstrumentModule {
     return builder.build();
   }
 
+  /**
+   * Expands each of the given options whose value in the config is a comma-separated list into one
+   * config per value, returning the cartesian product over all such options.
+   */
+  @VisibleForTesting
+  static ImmutableList<InstrumentConfig> sweepOptions(
+      InstrumentConfig config, ImmutableSet<String> sweptOptions) {
+    List<InstrumentConfig> configs = Lists.newArrayList(config);
+    for (String option : sweptOptions) {
+      String values = config.options().get(option);
+      if (values == null) {
+        continue;
+      }
+      List<InstrumentConfig> expanded = Lists.newArrayList();
+      for (InstrumentConfig partial : configs) {
+        for (String value : Splitter.on(',').trimResults().omitEmptyStrings().split(values)) {
+          expanded.add(partial.withOption(option, value));
+        }
+      }
+      if (expanded.isEmpty()) {
+        throw new InvalidCommandException("No values given for instrument option %s", option);
+      }
+      configs = expanded;
+    }
+    return ImmutableList.copyOf(configs);
+  }
+
   /**
    * If the user is running the benchmark against multiple VMs, we can only use instruments that all
    * of those VMs support.
@@ -146,16 +197,27 @@ public abstract class InstrumentModule {
   static ImmutableSet<InstrumentedMethod> provideInstrumentedMethods(
       CaliperOptions options,
       BenchmarkClassModel benchmarkClass,
-      ImmutableSet<Instrument> instruments)
+      ImmutableSet<Instrument> instruments,
+      @Stderr PrintWriter stderr)
       throws InvalidBenchmarkException {
     ImmutableSet.Builder<InstrumentedMethod> builder = ImmutableSet.builder();
     ImmutableSet<String> benchmarkMethodNames = options.benchmarkMethodNames();
     Set<String> unusedBenchmarkNames = new HashSet<String>(benchmarkMethodNames);
+    Set<String> warnedBenchmarkNames = new HashSet<String>();
     for (Instrument instrument : instruments) {
       for (MethodModel method : findAllBenchmarkMethods(benchmarkClass, instrument)) {
         if (benchmarkMethodNames.isEmpty() || benchmarkMethodNames.contains(method.name())) {
           builder.add(instrument.createInstrumentedMethod(method));
           unusedBenchmarkNames.remove(method.name());
+          if (BenchmarkMethods.isPicobenchmark(method)
+              && BenchmarkMethods.mayDiscardResults(benchmarkClass, method)
+              && warnedBenchmarkNames.add(method.name())) {
+            stderr.format(
+                "WARNING: %s returns void and doesn't use a Blackhole, so the JIT compiler may "
+                    + "eliminate the work done in its loop. Pass the results to a Blackhole "
+                    + "parameter or field.%n",
+                method.name());
+          }
         }
       }
     }
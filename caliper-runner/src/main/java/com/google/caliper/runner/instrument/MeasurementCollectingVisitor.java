@@ -15,7 +15,9 @@
 package com.google.caliper.runner.instrument;
 
 import com.google.caliper.bridge.LogMessageVisitor;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 /** {@link LogMessageVisitor} for collecting benchmark measurements. */
@@ -30,6 +32,12 @@ public interface MeasurementCollectingVisitor extends LogMessageVisitor {
   /** Returns the collected measurements. */
   ImmutableList<Measurement> getMeasurements();
 
+  /**
+   * Returns the latencies of the individual invocations timed for the collected measurements, if
+   * the worker recorded them.
+   */
+  Optional<LatencyHistogram> getLatencyHistogram();
+
   /**
    * Returns all the messages created while collecting measurments.
    *
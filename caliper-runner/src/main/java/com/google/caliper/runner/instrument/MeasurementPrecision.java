@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import com.google.caliper.model.Measurement;
+import com.google.common.math.Stats;
+import com.google.common.math.StatsAccumulator;
+
+/** Estimates how precisely a set of measurements pins down the mean time per rep. */
+final class MeasurementPrecision {
+  private MeasurementPrecision() {}
+
+  /** Two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom. */
+  private static final double[] T_95 = {
+    12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+    2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+    2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+  };
+
+  private static final double Z_95 = 1.959964;
+
+  /**
+   * Returns the half-width of the 95% confidence interval on the mean value per rep of the given
+   * measurements, as a fraction of that mean. Returns {@link Double#POSITIVE_INFINITY} if there are
+   * too few measurements to tell, or the mean is zero.
+   */
+  static double relativeHalfWidth(Iterable<Measurement> measurements) {
+    StatsAccumulator accumulator = new StatsAccumulator();
+    for (Measurement measurement : measurements) {
+      accumulator.add(measurement.value().magnitude() / measurement.weight());
+    }
+    if (accumulator.count() < 2 || accumulator.mean() == 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return halfWidth(accumulator.snapshot()) / Math.abs(accumulator.mean());
+  }
+
+  /**
+   * Returns the half-width of the 95% confidence interval on the mean of the given values, which
+   * must number at least two.
+   */
+  static double halfWidth(Stats stats) {
+    double standardError = stats.sampleStandardDeviation() / Math.sqrt(stats.count());
+    return tQuantile95(stats.count() - 1) * standardError;
+  }
+
+  /**
+   * Returns the two-sided 95% quantile of Student's t distribution. Beyond the table, uses the
+   * first terms of the Cornish-Fisher expansion around the normal quantile, which is accurate to
+   * well under 0.1% there.
+   */
+  static double tQuantile95(long degreesOfFreedom) {
+    if (degreesOfFreedom <= T_95.length) {
+      return T_95[(int) degreesOfFreedom - 1];
+    }
+    double z = Z_95;
+    double df = degreesOfFreedom;
+    return z
+        + (z * z * z + z) / (4 * df)
+        + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96 * df * df);
+  }
+}
@@ -17,6 +17,8 @@ package com.google.caliper.runner.instrument;
 import static com.google.caliper.runner.instrument.CommonInstrumentOptions.GC_BEFORE_EACH_OPTION;
 import static com.google.caliper.runner.instrument.CommonInstrumentOptions.MAX_WARMUP_WALL_TIME_OPTION;
 import static com.google.caliper.runner.instrument.CommonInstrumentOptions.MEASUREMENTS_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.MEASURE_ALLOCATIONS_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.TIMING_INTERVAL_OPTION;
 import static com.google.caliper.runner.instrument.CommonInstrumentOptions.WARMUP_OPTION;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -34,17 +36,22 @@ import com.google.caliper.bridge.StopMeasurementLogMessage;
 import com.google.caliper.core.BenchmarkClassModel.MethodModel;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.caliper.model.InstrumentType;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.runner.config.SupportsVmType;
 import com.google.caliper.runner.config.VmType;
+import com.google.caliper.util.InvalidCommandException;
 import com.google.caliper.util.ShortDuration;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.math.StatsAccumulator;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.util.List;
@@ -56,7 +63,11 @@ import javax.inject.Inject;
 @SupportsVmType({VmType.JVM, VmType.ANDROID})
 public class RuntimeInstrument extends Instrument {
   private static final String SUGGEST_GRANULARITY_OPTION = "suggestGranularity";
-  private static final String TIMING_INTERVAL_OPTION = "timingInterval";
+  private static final String AUTO_LOOP_OPTION = "autoLoop";
+  private static final String SAMPLE_TIME_OPTION = "sampleTime";
+  private static final String TARGET_PRECISION_OPTION = "targetPrecision";
+  private static final String MAX_MEASUREMENTS_OPTION = "maxMeasurements";
+  private static final String MIN_WARMUP_OPTION = "minWarmup";
 
   private static final Logger logger = Logger.getLogger(RuntimeInstrument.class.getName());
 
@@ -80,11 +91,17 @@ public class RuntimeInstrument extends Instrument {
   protected ImmutableSet<String> instrumentOptions() {
     return ImmutableSet.of(
         WARMUP_OPTION,
+        MIN_WARMUP_OPTION,
         MAX_WARMUP_WALL_TIME_OPTION,
         TIMING_INTERVAL_OPTION,
         MEASUREMENTS_OPTION,
         GC_BEFORE_EACH_OPTION,
-        SUGGEST_GRANULARITY_OPTION);
+        SUGGEST_GRANULARITY_OPTION,
+        AUTO_LOOP_OPTION,
+        SAMPLE_TIME_OPTION,
+        TARGET_PRECISION_OPTION,
+        MAX_MEASUREMENTS_OPTION,
+        MEASURE_ALLOCATIONS_OPTION);
   }
 
   @Override
@@ -99,6 +116,14 @@ public class RuntimeInstrument extends Instrument {
     try {
       switch (BenchmarkMethods.Type.of(benchmarkMethod)) {
         case MACRO:
+          if (shouldAutoLoop(benchmarkMethod)) {
+            return new LoopedBenchmarkInstrumentedMethod(benchmarkMethod);
+          }
+          if (measureAllocations()) {
+            throw new InvalidBenchmarkException(
+                "The %s option isn't supported for macrobenchmarks: %s",
+                MEASURE_ALLOCATIONS_OPTION, benchmarkMethod.name());
+          }
           return new MacrobenchmarkInstrumentedMethod(benchmarkMethod);
         case MICRO:
           return new MicrobenchmarkInstrumentedMethod(benchmarkMethod);
@@ -109,12 +134,39 @@ public class RuntimeInstrument extends Instrument {
       }
     } catch (IllegalArgumentException e) {
       throw new InvalidBenchmarkException(
-          "Benchmark methods must have no arguments or accept "
-              + "a single int or long parameter: %s",
+          "Benchmark methods must have no arguments or accept a single int or long "
+              + "parameter, optionally followed by a Blackhole: %s",
           benchmarkMethod.name());
     }
   }
 
+  /**
+   * Returns whether the given no-arg benchmark method should be run in a generated reps loop and
+   * timed like a picobenchmark rather than timed one invocation at a time. Methods explicitly
+   * annotated with {@link Macrobenchmark} always get per-invocation timing, since they may rely on
+   * {@code @BeforeRep} and {@code @AfterRep} running around each invocation.
+   */
+  private boolean shouldAutoLoop(MethodModel benchmarkMethod) {
+    return Boolean.parseBoolean(options.get(AUTO_LOOP_OPTION))
+        && !benchmarkMethod.isAnnotationPresent(Macrobenchmark.class);
+  }
+
+  /**
+   * Returns whether the given measurement is of time, rather than of something measured alongside
+   * it such as the bytes allocated.
+   */
+  private static boolean isRuntime(Measurement measurement) {
+    return measurement.description().equals("runtime");
+  }
+
+  private boolean measureAllocations() {
+    return Boolean.parseBoolean(options.get(MEASURE_ALLOCATIONS_OPTION));
+  }
+
+  private String toNanosString(String optionName) {
+    return String.valueOf(ShortDuration.valueOf(options.get(optionName)).to(NANOSECONDS));
+  }
+
   private class MacrobenchmarkInstrumentedMethod extends InstrumentedMethod {
     MacrobenchmarkInstrumentedMethod(MethodModel benchmarkMethod) {
       super(benchmarkMethod);
@@ -125,10 +177,25 @@ public class RuntimeInstrument extends Instrument {
       return InstrumentType.RUNTIME_MACRO;
     }
 
+    @Override
+    public ImmutableMap<String, String> workerOptions() {
+      return ImmutableMap.of(
+          GC_BEFORE_EACH_OPTION,
+          options.get(GC_BEFORE_EACH_OPTION),
+          SAMPLE_TIME_OPTION,
+          options.get(SAMPLE_TIME_OPTION),
+          TIMING_INTERVAL_OPTION + "Nanos",
+          toNanosString(TIMING_INTERVAL_OPTION));
+    }
+
     @Override
     public MeasurementCollectingVisitor getMeasurementCollectingVisitor() {
+      int measurements = Integer.parseInt(options.get(MEASUREMENTS_OPTION));
       return new SingleInvocationMeasurementCollector(
-          Integer.parseInt(options.get(MEASUREMENTS_OPTION)),
+          measurements,
+          maxMeasurements(measurements),
+          targetPrecision(),
+          minWarmup(),
           ShortDuration.valueOf(options.get(WARMUP_OPTION)),
           ShortDuration.valueOf(options.get(MAX_WARMUP_WALL_TIME_OPTION)));
     }
@@ -145,17 +212,19 @@ public class RuntimeInstrument extends Instrument {
           TIMING_INTERVAL_OPTION + "Nanos",
           toNanosString(TIMING_INTERVAL_OPTION),
           GC_BEFORE_EACH_OPTION,
-          options.get(GC_BEFORE_EACH_OPTION));
-    }
-
-    private String toNanosString(String optionName) {
-      return String.valueOf(ShortDuration.valueOf(options.get(optionName)).to(NANOSECONDS));
+          options.get(GC_BEFORE_EACH_OPTION),
+          MEASURE_ALLOCATIONS_OPTION,
+          String.valueOf(measureAllocations()));
     }
 
     @Override
     public MeasurementCollectingVisitor getMeasurementCollectingVisitor() {
+      int measurements = getMeasurementsPerTrial();
       return new RepBasedMeasurementCollector(
-          getMeasurementsPerTrial(),
+          measurements,
+          maxMeasurements(measurements),
+          targetPrecision(),
+          minWarmup(),
           ShortDuration.valueOf(options.get(WARMUP_OPTION)),
           ShortDuration.valueOf(options.get(MAX_WARMUP_WALL_TIME_OPTION)));
     }
@@ -172,6 +241,9 @@ public class RuntimeInstrument extends Instrument {
       ShortDuration reasonableUpperBound = nanoTimeGranularity.times(1000);
       for (ImmutableList<Measurement> measurements : trialResults) {
         for (Measurement measurement : measurements) {
+          if (!isRuntime(measurement)) {
+            continue;
+          }
           hasResults = true;
           double nanos = measurement.value().magnitude() / measurement.weight();
           if (nanos < reasonableUpperBound.to(NANOSECONDS)) {
@@ -213,6 +285,48 @@ public class RuntimeInstrument extends Instrument {
     return measurementsPerTrial;
   }
 
+  /**
+   * Returns the target relative half-width of the 95% confidence interval on the mean time per rep,
+   * as a fraction, or 0 if trials should always stop after the configured number of measurements.
+   */
+  private double targetPrecision() {
+    @Nullable String targetPrecision = options.get(TARGET_PRECISION_OPTION);
+    if (targetPrecision == null) {
+      return 0;
+    }
+    try {
+      double percent = Double.parseDouble(CharMatcher.is('%').trimTrailingFrom(targetPrecision));
+      if (percent >= 0) {
+        return percent / 100;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidCommandException(
+        "Instrument option %s must be a non-negative percentage: %s",
+        TARGET_PRECISION_OPTION, targetPrecision);
+  }
+
+  /**
+   * Returns the least time to spend warming up before checking for a steady state. Without the
+   * option, warmup always lasts for the full {@code warmup} duration.
+   */
+  private ShortDuration minWarmup() {
+    ShortDuration warmup = ShortDuration.valueOf(options.get(WARMUP_OPTION));
+    @Nullable String minWarmup = options.get(MIN_WARMUP_OPTION);
+    return (minWarmup == null)
+        ? warmup
+        : Ordering.natural().min(ShortDuration.valueOf(minWarmup), warmup);
+  }
+
+  /** Returns the most measurements to take when aiming for the target precision. */
+  private int maxMeasurements(int minMeasurements) {
+    @Nullable String maxMeasurements = options.get(MAX_MEASUREMENTS_OPTION);
+    return (maxMeasurements == null)
+        ? minMeasurements
+        : Math.max(minMeasurements, Integer.parseInt(maxMeasurements));
+  }
+
   private class PicobenchmarkInstrumentedMethod extends RuntimeInstrumentedMethod {
     PicobenchmarkInstrumentedMethod(MethodModel benchmarkMethod) {
       super(benchmarkMethod);
@@ -224,13 +338,50 @@ public class RuntimeInstrument extends Instrument {
     }
   }
 
+  private class LoopedBenchmarkInstrumentedMethod extends RuntimeInstrumentedMethod {
+    LoopedBenchmarkInstrumentedMethod(MethodModel benchmarkMethod) {
+      super(benchmarkMethod);
+    }
+
+    @Override
+    public InstrumentType type() {
+      return InstrumentType.RUNTIME_LOOPED;
+    }
+  }
+
+  /**
+   * Collects measurements until the configured number have been taken.
+   *
+   * <p>Warmup ends once the time per rep has reached a steady state (see {@link
+   * SteadyStateDetector}), as long as at least {@code minWarmup} has been spent in the benchmark
+   * method. It ends regardless once {@code warmup} has been spent in the benchmark method or {@code
+   * maxWarmupWallTime} has passed.
+   *
+   * <p>If a target precision is set, collection then continues until the 95% confidence interval
+   * on the mean time per rep is narrower than the target or the maximum number of measurements has
+   * been taken, whichever comes first, and the precision achieved is reported in the trial's
+   * messages.
+   */
   private abstract static class RuntimeMeasurementCollector extends AbstractLogMessageVisitor
       implements MeasurementCollectingVisitor {
     final int targetMeasurements;
+    final int maxMeasurements;
+    final double targetPrecision;
+    final ShortDuration minWarmup;
     final ShortDuration warmup;
     final ShortDuration maxWarmupWallTime;
+    final SteadyStateDetector steadyStateDetector = new SteadyStateDetector();
     final List<Measurement> measurements = Lists.newArrayList();
+    /** Measurements of something other than runtime, such as the bytes allocated. */
+    final List<Measurement> otherMeasurements = Lists.newArrayList();
+    Optional<LatencyHistogram> latencyHistogram = Optional.absent();
     ShortDuration elapsedWarmup = ShortDuration.zero();
+    ShortDuration totalGcBarrierTime = ShortDuration.zero();
+    ShortDuration maxGcBarrierTime = ShortDuration.zero();
+    int gcBarriers = 0;
+    int warmupMeasurements = 0;
+    boolean steadyStateReached = false;
+    boolean notifiedAboutWarmup = false;
     boolean measuring = false;
     boolean invalidateMeasurements = false;
     boolean notifiedAboutGc = false;
@@ -240,32 +391,52 @@ public class RuntimeInstrument extends Instrument {
     final List<String> messages = Lists.newArrayList();
 
     RuntimeMeasurementCollector(
-        int targetMeasurements, ShortDuration warmup, ShortDuration maxWarmupWallTime) {
+        int targetMeasurements,
+        int maxMeasurements,
+        double targetPrecision,
+        ShortDuration minWarmup,
+        ShortDuration warmup,
+        ShortDuration maxWarmupWallTime) {
       this.targetMeasurements = targetMeasurements;
+      this.maxMeasurements = maxMeasurements;
+      this.targetPrecision = targetPrecision;
+      this.minWarmup = minWarmup;
       this.warmup = warmup;
       this.maxWarmupWallTime = maxWarmupWallTime;
     }
 
     @Override
     public void visit(GcLogMessage logMessage) {
-      if (measuring && isWarmupComplete() && !notifiedAboutGc) {
-        gcWhileMeasuring();
-        notifiedAboutGc = true;
+      if (measuring && isWarmupComplete()) {
+        invalidateMeasurements = discardsInterferedMeasurements();
+        if (!notifiedAboutGc) {
+          gcWhileMeasuring();
+          notifiedAboutGc = true;
+        }
       }
     }
 
+    /**
+     * Returns whether a measurement that was timed while a GC or JIT compilation happened should be
+     * discarded, rather than only warned about.
+     */
+    abstract boolean discardsInterferedMeasurements();
+
     abstract void gcWhileMeasuring();
 
     @Override
     public void visit(HotspotLogMessage logMessage) {
-      if (isWarmupComplete()) {
-        if (measuring && notifiedAboutMeasuringJit) {
+      if (!isWarmupComplete()) {
+        steadyStateDetector.compilationOccurred();
+      } else if (measuring) {
+        invalidateMeasurements = discardsInterferedMeasurements();
+        if (!notifiedAboutMeasuringJit) {
           hotspotWhileMeasuring();
           notifiedAboutMeasuringJit = true;
-        } else if (notifiedAboutJit) {
-          hotspotWhileNotMeasuring();
-          notifiedAboutJit = true;
         }
+      } else if (!notifiedAboutJit) {
+        hotspotWhileNotMeasuring();
+        notifiedAboutJit = true;
       }
     }
 
@@ -280,6 +451,14 @@ public class RuntimeInstrument extends Instrument {
       if (!timeSinceStartOfTrial.isRunning()) {
         timeSinceStartOfTrial.start();
       }
+      if (logMessage.gcBarrierTime().isPresent()) {
+        ShortDuration barrierTime = logMessage.gcBarrierTime().get();
+        totalGcBarrierTime = totalGcBarrierTime.plus(barrierTime);
+        if (barrierTime.compareTo(maxGcBarrierTime) > 0) {
+          maxGcBarrierTime = barrierTime;
+        }
+        gcBarriers++;
+      }
     }
 
     @Override
@@ -287,16 +466,37 @@ public class RuntimeInstrument extends Instrument {
       checkState(measuring);
       ImmutableList<Measurement> newMeasurements = logMessage.measurements();
       if (!isWarmupComplete()) {
+        double nanos = 0;
+        double reps = 0;
         for (Measurement measurement : newMeasurements) {
+          if (!isRuntime(measurement)) {
+            continue;
+          }
           // TODO(gak): eventually we will need to resolve different units
           checkArgument("ns".equals(measurement.value().unit()));
           elapsedWarmup =
               elapsedWarmup.plus(
                   ShortDuration.of(
                       BigDecimal.valueOf(measurement.value().magnitude()), NANOSECONDS));
+          nanos += measurement.value().magnitude();
+          reps += measurement.weight();
+        }
+        warmupMeasurements++;
+        if (reps > 0) {
+          steadyStateDetector.addMeasurement(nanos / reps);
+          steadyStateReached = steadyStateDetector.isSteady();
         }
       } else {
-        if (!measuredWarmupDurationReached()) {
+        if (steadyStateWarmupComplete() && !measuredWarmupDurationReached()) {
+          if (!notifiedAboutWarmup) {
+            messages.add(
+                String.format(
+                    "Warmup reached a steady state after %s in the benchmark method "
+                        + "(%d measurements).",
+                    elapsedWarmup, warmupMeasurements));
+            notifiedAboutWarmup = true;
+          }
+        } else if (!measuredWarmupDurationReached()) {
           messages.add(
               String.format(
                   "WARNING: Warmup was interrupted because it took longer than %s of wall-clock "
@@ -308,24 +508,56 @@ public class RuntimeInstrument extends Instrument {
         if (invalidateMeasurements) {
           logger.fine(String.format("Discarding %s as they were marked invalid.", newMeasurements));
         } else {
-          this.measurements.addAll(newMeasurements);
+          for (Measurement measurement : newMeasurements) {
+            if (isRuntime(measurement)) {
+              measurements.add(measurement);
+            } else {
+              otherMeasurements.add(measurement);
+            }
+          }
+          addLatencies(logMessage.latencyHistogram());
         }
       }
       invalidateMeasurements = false;
       measuring = false;
     }
 
+    private void addLatencies(Optional<LatencyHistogram> newLatencies) {
+      if (newLatencies.isPresent()) {
+        latencyHistogram =
+            Optional.of(
+                latencyHistogram.isPresent()
+                    ? latencyHistogram.get().plus(newLatencies.get())
+                    : newLatencies.get());
+      }
+    }
+
     @Override
     public ImmutableList<Measurement> getMeasurements() {
-      return ImmutableList.copyOf(measurements);
+      return new ImmutableList.Builder<Measurement>()
+          .addAll(measurements)
+          .addAll(otherMeasurements)
+          .build();
+    }
+
+    @Override
+    public Optional<LatencyHistogram> getLatencyHistogram() {
+      return latencyHistogram;
     }
 
     boolean measuredWarmupDurationReached() {
       return elapsedWarmup.compareTo(warmup) >= 0;
     }
 
+    boolean steadyStateWarmupComplete() {
+      return steadyStateReached && elapsedWarmup.compareTo(minWarmup) >= 0;
+    }
+
     @Override
     public boolean isWarmupComplete() {
+      if (steadyStateWarmupComplete()) {
+        return true;
+      }
       // Fast macro-benchmarks (up to tens of ms) need lots of measurements to reach 10s of
       // measured warmup time. Because of the per-measurement overhead of running @BeforeRep and
       // @AfterRep, warmup can take very long.
@@ -337,30 +569,119 @@ public class RuntimeInstrument extends Instrument {
 
     @Override
     public boolean isDoneCollecting() {
-      return measurements.size() >= targetMeasurements;
+      if (measurements.size() < targetMeasurements) {
+        return false;
+      }
+      return targetPrecision == 0
+          || measurements.size() >= maxMeasurements
+          || MeasurementPrecision.relativeHalfWidth(measurements) <= targetPrecision;
     }
 
     @Override
     public ImmutableList<String> getMessages() {
-      return ImmutableList.copyOf(messages);
+      return new ImmutableList.Builder<String>()
+          .addAll(messages)
+          .addAll(precisionMessage().asSet())
+          .addAll(correctedValueMessage().asSet())
+          .addAll(gcBarrierMessage().asSet())
+          .build();
+    }
+
+    /**
+     * Returns a message about the time spent forcing garbage collections before measurements,
+     * which adds to the wall-clock time of the trial but not to the measurements.
+     */
+    private Optional<String> gcBarrierMessage() {
+      if (gcBarriers == 0) {
+        return Optional.absent();
+      }
+      return Optional.of(
+          String.format(
+              "Forcing GC before each measurement took %s in total (%d collections, at most %s "
+                  + "each).",
+              totalGcBarrierTime, gcBarriers, maxGcBarrierTime));
+    }
+
+    /** Returns a message about the precision achieved, if aiming for a target precision. */
+    private Optional<String> precisionMessage() {
+      if (targetPrecision == 0 || measurements.isEmpty()) {
+        return Optional.absent();
+      }
+      double precision = MeasurementPrecision.relativeHalfWidth(measurements);
+      return Optional.of(
+          (precision <= targetPrecision)
+              ? String.format(
+                  "Took %d measurements: the 95%% confidence interval on the mean is within "
+                      + "%.2f%% of it.",
+                  measurements.size(), precision * 100)
+              : String.format(
+                  "WARNING: Stopped at the maximum of %d measurements with the 95%% confidence "
+                      + "interval on the mean within %.2f%% of it, short of the %.2f%% target. "
+                      + "Consider raising %s.",
+                  measurements.size(),
+                  precision * 100,
+                  targetPrecision * 100,
+                  MAX_MEASUREMENTS_OPTION));
+    }
+
+    /**
+     * Returns a warning if, with the overhead of the timing harness subtracted, the time per rep
+     * can't be told apart from zero. The benchmark is then measuring little but the harness, and
+     * its results can't be compared with other benchmarks or VMs.
+     */
+    private Optional<String> correctedValueMessage() {
+      StatsAccumulator correctedNanosPerRep = new StatsAccumulator();
+      for (Measurement measurement : measurements) {
+        if (measurement.correctedValue().isPresent()) {
+          correctedNanosPerRep.add(
+              measurement.correctedValue().get().magnitude() / measurement.weight());
+        }
+      }
+      if (correctedNanosPerRep.count() < 2) {
+        return Optional.absent();
+      }
+      double halfWidth = MeasurementPrecision.halfWidth(correctedNanosPerRep.snapshot());
+      if (correctedNanosPerRep.mean() > halfWidth) {
+        return Optional.absent();
+      }
+      return Optional.of(
+          String.format(
+              "WARNING: With the measured overhead of the timing loop subtracted, the time per "
+                  + "rep (%.3f ns, 95%% confidence interval +/- %.3f ns) is indistinguishable from "
+                  + "zero. The benchmark may have been optimized away.",
+              correctedNanosPerRep.mean(), halfWidth));
     }
   }
 
   private static final class RepBasedMeasurementCollector extends RuntimeMeasurementCollector {
     RepBasedMeasurementCollector(
-        int measurementsPerTrial, ShortDuration warmup, ShortDuration maxWarmupWallTime) {
-      super(measurementsPerTrial, warmup, maxWarmupWallTime);
+        int measurementsPerTrial,
+        int maxMeasurements,
+        double targetPrecision,
+        ShortDuration minWarmup,
+        ShortDuration warmup,
+        ShortDuration maxWarmupWallTime) {
+      super(
+          measurementsPerTrial,
+          maxMeasurements,
+          targetPrecision,
+          minWarmup,
+          warmup,
+          maxWarmupWallTime);
+    }
+
+    @Override
+    boolean discardsInterferedMeasurements() {
+      return true;
     }
 
     @Override
     void gcWhileMeasuring() {
-      invalidateMeasurements = true;
       messages.add("ERROR: GC occurred during timing. Measurements were discarded.");
     }
 
     @Override
     void hotspotWhileMeasuring() {
-      invalidateMeasurements = true;
       messages.add(
           "ERROR: Hotspot compilation occurred during timing: warmup is likely insufficent. "
               + "Measurements were discarded.");
@@ -378,8 +699,24 @@ public class RuntimeInstrument extends Instrument {
       extends RuntimeMeasurementCollector {
 
     SingleInvocationMeasurementCollector(
-        int measurementsPerTrial, ShortDuration warmup, ShortDuration maxWarmupWallTime) {
-      super(measurementsPerTrial, warmup, maxWarmupWallTime);
+        int measurementsPerTrial,
+        int maxMeasurements,
+        double targetPrecision,
+        ShortDuration minWarmup,
+        ShortDuration warmup,
+        ShortDuration maxWarmupWallTime) {
+      super(
+          measurementsPerTrial,
+          maxMeasurements,
+          targetPrecision,
+          minWarmup,
+          warmup,
+          maxWarmupWallTime);
+    }
+
+    @Override
+    boolean discardsInterferedMeasurements() {
+      return false;
     }
 
     @Override
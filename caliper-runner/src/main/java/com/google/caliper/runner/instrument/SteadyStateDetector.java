@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import com.google.common.collect.EvictingQueue;
+import com.google.common.math.PairedStatsAccumulator;
+import com.google.common.math.StatsAccumulator;
+
+/**
+ * Watches the time per rep of successive warmup measurements to tell when a benchmark has reached
+ * a steady state: the last {@value #WINDOW} measurements were taken with no JIT compilation in
+ * between, and the least-squares line through them is either statistically flat or drifts by less
+ * than {@value #MAX_DRIFT_PERCENT}% of their mean across the window.
+ */
+final class SteadyStateDetector {
+  static final int WINDOW = 6;
+  static final int MAX_DRIFT_PERCENT = 2;
+
+  private final EvictingQueue<Double> window = EvictingQueue.create(WINDOW);
+
+  /** Records the mean time per rep of the latest warmup measurement. */
+  void addMeasurement(double timePerRep) {
+    window.add(timePerRep);
+  }
+
+  /**
+   * Notes that a method was compiled. Measurements taken before the compilation say nothing about
+   * the steady state, so they are forgotten.
+   */
+  void compilationOccurred() {
+    window.clear();
+  }
+
+  /** Returns whether the measurements seen since the last compilation look steady. */
+  boolean isSteady() {
+    if (window.size() < WINDOW) {
+      return false;
+    }
+    PairedStatsAccumulator points = new PairedStatsAccumulator();
+    int x = 0;
+    for (double time : window) {
+      points.add(x++, time);
+    }
+    double mean = points.yStats().mean();
+    if (mean <= 0) {
+      return true;
+    }
+    double slope = points.leastSquaresFit().slope();
+    double drift = Math.abs(slope) * (WINDOW - 1) / mean;
+    return drift * 100 <= MAX_DRIFT_PERCENT
+        || Math.abs(slope) <= MeasurementPrecision.tQuantile95(WINDOW - 2) * standardError(points);
+  }
+
+  /** Returns the standard error of the slope of the least-squares line through the points. */
+  private static double standardError(PairedStatsAccumulator points) {
+    long n = points.count();
+    double sumOfSquaredXDeviations = points.xStats().populationVariance() * n;
+    double sumOfSquaredYDeviations = points.yStats().populationVariance() * n;
+    double sumOfProducts = points.populationCovariance() * n;
+    double sumOfSquaredResiduals =
+        Math.max(
+            0,
+            sumOfSquaredYDeviations - sumOfProducts * sumOfProducts / sumOfSquaredXDeviations);
+    return Math.sqrt(sumOfSquaredResiduals / (n - 2) / sumOfSquaredXDeviations);
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.GC_BEFORE_EACH_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.MAX_WARMUP_WALL_TIME_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.MEASUREMENTS_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.MEASURE_ALLOCATIONS_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.TIMING_INTERVAL_OPTION;
+import static com.google.caliper.runner.instrument.CommonInstrumentOptions.WARMUP_OPTION;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.bridge.AbstractLogMessageVisitor;
+import com.google.caliper.bridge.GcLogMessage;
+import com.google.caliper.bridge.HotspotLogMessage;
+import com.google.caliper.bridge.StartMeasurementLogMessage;
+import com.google.caliper.bridge.StopMeasurementLogMessage;
+import com.google.caliper.core.BenchmarkClassModel.MethodModel;
+import com.google.caliper.core.InvalidBenchmarkException;
+import com.google.caliper.model.InstrumentType;
+import com.google.caliper.model.LatencyHistogram;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.runner.config.SupportsVmType;
+import com.google.caliper.runner.config.VmType;
+import com.google.caliper.util.InvalidCommandException;
+import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * An instrument that measures how a benchmark method performs when it is run on several threads at
+ * once, all sharing the same benchmark instance. Accepts the same methods as {@link
+ * RuntimeInstrument} other than {@code @Macrobenchmark}s.
+ *
+ * <p>In each measurement, every thread waits at a common barrier and then runs the same number of
+ * reps, timing them itself. The worker reports a {@value #RUNTIME_DESCRIPTION} measurement for each
+ * thread (so the per-thread time per rep) and one {@value #THROUGHPUT_DESCRIPTION} measurement of
+ * the total reps completed per second across all threads.
+ *
+ * <p>The {@code threads} option is swept: {@code -Cinstrument.threaded.options.threads=1,2,4}
+ * measures every benchmark with 1, 2 and 4 threads, as though the thread count were a parameter.
+ */
+@SupportsVmType({VmType.JVM, VmType.ANDROID})
+public final class ThreadedRuntimeInstrument extends Instrument {
+  static final String THREADS_OPTION = "threads";
+
+  static final String RUNTIME_DESCRIPTION = "runtime";
+  static final String THROUGHPUT_DESCRIPTION = "throughput";
+
+  public ThreadedRuntimeInstrument() {
+    setInstrumentName("threaded"); // default
+  }
+
+  @Override
+  public boolean isBenchmarkMethod(MethodModel method) {
+    return method.isAnnotationPresent(Benchmark.class) || BenchmarkMethods.isTimeMethod(method);
+  }
+
+  @Override
+  protected ImmutableSet<String> instrumentOptions() {
+    return ImmutableSet.of(
+        THREADS_OPTION,
+        WARMUP_OPTION,
+        MAX_WARMUP_WALL_TIME_OPTION,
+        TIMING_INTERVAL_OPTION,
+        MEASUREMENTS_OPTION,
+        GC_BEFORE_EACH_OPTION,
+        MEASURE_ALLOCATIONS_OPTION);
+  }
+
+  @Override
+  protected ImmutableSet<String> sweptOptions() {
+    return ImmutableSet.of(THREADS_OPTION);
+  }
+
+  @Override
+  public InstrumentedMethod createInstrumentedMethod(MethodModel benchmarkMethod)
+      throws InvalidBenchmarkException {
+    checkNotNull(benchmarkMethod);
+    checkArgument(isBenchmarkMethod(benchmarkMethod));
+    if (Modifier.isStatic(benchmarkMethod.modifiers())) {
+      throw new InvalidBenchmarkException(
+          "Benchmark methods must not be static: %s", benchmarkMethod.name());
+    }
+    try {
+      BenchmarkMethods.Type.of(benchmarkMethod);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidBenchmarkException(
+          "Benchmark methods must have no arguments or accept a single int or long "
+              + "parameter, optionally followed by a Blackhole: %s",
+          benchmarkMethod.name());
+    }
+    // Accepted only so that asking for allocations fails rather than being silently ignored; the
+    // threads share the benchmark, so the bytes allocated by each can't be told apart.
+    if (Boolean.parseBoolean(options.get(MEASURE_ALLOCATIONS_OPTION))) {
+      throw new InvalidBenchmarkException(
+          "The %s option isn't supported for threaded benchmarks: %s",
+          MEASURE_ALLOCATIONS_OPTION, benchmarkMethod.name());
+    }
+    return new ThreadedInstrumentedMethod(benchmarkMethod);
+  }
+
+  @Override
+  public boolean smallerIsBetter(String description) {
+    // Throughput is the one measurement where more is better.
+    return !description.equals(THROUGHPUT_DESCRIPTION);
+  }
+
+  /** Returns the number of threads this instrument runs benchmarks on. */
+  int threads() {
+    String threads = options.get(THREADS_OPTION);
+    try {
+      int result = Integer.parseInt(threads);
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidCommandException(
+        "Instrument option %s must be a positive integer: %s", THREADS_OPTION, threads);
+  }
+
+  @Override
+  public String toString() {
+    return name() + "[" + THREADS_OPTION + "=" + options.get(THREADS_OPTION) + "]";
+  }
+
+  private final class ThreadedInstrumentedMethod extends InstrumentedMethod {
+    ThreadedInstrumentedMethod(MethodModel benchmarkMethod) {
+      super(benchmarkMethod);
+    }
+
+    @Override
+    public InstrumentType type() {
+      return InstrumentType.RUNTIME_THREADED;
+    }
+
+    @Override
+    public ImmutableMap<String, String> workerOptions() {
+      return ImmutableMap.of(
+          THREADS_OPTION,
+          String.valueOf(threads()),
+          TIMING_INTERVAL_OPTION + "Nanos",
+          String.valueOf(timingInterval().to(NANOSECONDS)),
+          GC_BEFORE_EACH_OPTION,
+          options.get(GC_BEFORE_EACH_OPTION));
+    }
+
+    private ShortDuration timingInterval() {
+      return ShortDuration.valueOf(options.get(TIMING_INTERVAL_OPTION));
+    }
+
+    @Override
+    public MeasurementCollectingVisitor getMeasurementCollectingVisitor() {
+      return new ThreadedMeasurementCollector(
+          Integer.parseInt(options.get(MEASUREMENTS_OPTION)),
+          ShortDuration.valueOf(options.get(WARMUP_OPTION)),
+          ShortDuration.valueOf(options.get(MAX_WARMUP_WALL_TIME_OPTION)));
+    }
+  }
+
+  /**
+   * Collects the measurements from a number of rounds, each of which produces a measurement per
+   * thread plus a throughput measurement. Warmup is counted in the wall time of the rounds, which
+   * is the time taken by the slowest thread.
+   */
+  private static final class ThreadedMeasurementCollector extends AbstractLogMessageVisitor
+      implements MeasurementCollectingVisitor {
+    final int targetRounds;
+    final ShortDuration warmup;
+    final ShortDuration maxWarmupWallTime;
+    final List<Measurement> measurements = Lists.newArrayList();
+    final List<String> messages = Lists.newArrayList();
+    final Stopwatch timeSinceStartOfTrial = Stopwatch.createUnstarted();
+    ShortDuration elapsedWarmup = ShortDuration.zero();
+    int rounds = 0;
+    boolean measuring = false;
+    boolean notifiedAboutGc = false;
+    boolean notifiedAboutJit = false;
+
+    ThreadedMeasurementCollector(
+        int targetRounds, ShortDuration warmup, ShortDuration maxWarmupWallTime) {
+      this.targetRounds = targetRounds;
+      this.warmup = warmup;
+      this.maxWarmupWallTime = maxWarmupWallTime;
+    }
+
+    @Override
+    public void visit(GcLogMessage logMessage) {
+      if (measuring && isWarmupComplete() && !notifiedAboutGc) {
+        messages.add(
+            "WARNING: GC occurred during timing. With several threads allocating at once this is "
+                + "often unavoidable, but consider running with a larger heap size.");
+        notifiedAboutGc = true;
+      }
+    }
+
+    @Override
+    public void visit(HotspotLogMessage logMessage) {
+      if (measuring && isWarmupComplete() && !notifiedAboutJit) {
+        messages.add(
+            "WARNING: Hotspot compilation occurred during timing. "
+                + "Consider running with a longer warmup.");
+        notifiedAboutJit = true;
+      }
+    }
+
+    @Override
+    public void visit(StartMeasurementLogMessage logMessage) {
+      checkState(!measuring);
+      measuring = true;
+      if (!timeSinceStartOfTrial.isRunning()) {
+        timeSinceStartOfTrial.start();
+      }
+    }
+
+    @Override
+    public void visit(StopMeasurementLogMessage logMessage) {
+      checkState(measuring);
+      measuring = false;
+      ImmutableList<Measurement> newMeasurements = logMessage.measurements();
+      if (!isWarmupComplete()) {
+        double slowestThreadNanos = 0;
+        for (Measurement measurement : newMeasurements) {
+          if (measurement.description().equals(RUNTIME_DESCRIPTION)) {
+            checkArgument("ns".equals(measurement.value().unit()));
+            slowestThreadNanos = Math.max(slowestThreadNanos, measurement.value().magnitude());
+          }
+        }
+        elapsedWarmup =
+            elapsedWarmup.plus(ShortDuration.of((long) slowestThreadNanos, NANOSECONDS));
+      } else {
+        measurements.addAll(newMeasurements);
+        rounds++;
+      }
+    }
+
+    @Override
+    public boolean isWarmupComplete() {
+      return elapsedWarmup.compareTo(warmup) >= 0
+          || timeSinceStartOfTrial.elapsed(MILLISECONDS) > maxWarmupWallTime.to(MILLISECONDS);
+    }
+
+    @Override
+    public boolean isDoneCollecting() {
+      return rounds >= targetRounds;
+    }
+
+    @Override
+    public ImmutableList<Measurement> getMeasurements() {
+      return ImmutableList.copyOf(measurements);
+    }
+
+    @Override
+    public Optional<LatencyHistogram> getLatencyHistogram() {
+      return Optional.absent();
+    }
+
+    @Override
+    public ImmutableList<String> getMessages() {
+      return ImmutableList.copyOf(messages);
+    }
+  }
+}
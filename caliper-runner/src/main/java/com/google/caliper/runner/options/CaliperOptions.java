@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import java.io.File;
+import java.util.UUID;
 
 /** Options provided by the user on the command line when starting the Caliper runner. */
 public interface CaliperOptions {
@@ -88,6 +89,12 @@ public interface CaliperOptions {
   /** Returns the name to give this benchmark run. */
   String runName();
 
+  /**
+   * Returns the ID of an interrupted run to resume, if any. The resumed run keeps that ID, and only
+   * runs the trials that aren't in the run's journal.
+   */
+  Optional<UUID> resumeRunId();
+
   /** Returns whether or not to print the configuration to the console. */
   boolean printConfiguration();
 
@@ -38,6 +38,7 @@ import com.google.common.collect.Ordering;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Implementation of {@link CaliperOptions} that uses {@link CommandLineParser} to parse command
@@ -204,6 +205,27 @@ public final class ParsedOptions implements CaliperOptions {
     return runName;
   }
 
+  // --------------------------------------------------------------------------
+  // Resuming an interrupted run
+  // --------------------------------------------------------------------------
+
+  private Optional<UUID> resumeRunId = Optional.absent();
+
+  @Option("--resume")
+  private void setResumeRunId(String runId) throws InvalidCommandException {
+    dryRunIncompatible("resume");
+    try {
+      this.resumeRunId = Optional.of(UUID.fromString(runId));
+    } catch (IllegalArgumentException e) {
+      throw new InvalidCommandException("Invalid run id: " + runId);
+    }
+  }
+
+  @Override
+  public Optional<UUID> resumeRunId() {
+    return resumeRunId;
+  }
+
   // --------------------------------------------------------------------------
   // Device
   // --------------------------------------------------------------------------
@@ -486,6 +508,7 @@ public final class ParsedOptions implements CaliperOptions {
         .add("vms", this.vmNames())
         .add("vmArguments", this.vmArguments())
         .add("trials", this.trialsPerScenario())
+        .add("resumeRunId", this.resumeRunId())
         .add("printConfig", this.printConfiguration())
         .add("delimiter", this.delimiter)
         .add("caliperConfigFile", this.caliperConfigFile)
@@ -523,6 +546,9 @@ public final class ParsedOptions implements CaliperOptions {
           " -l, --time-limit   maximum length of time allowed for a single trial; use 0 to allow ",
           "                    trials to run indefinitely. (default: 30s) ",
           " -r, --run-name     a user-friendly string used to identify the run",
+          " --resume           id of an interrupted run to resume; the trials that the run",
+          "                    completed are reloaded from its journal and only the missing",
+          "                    trials are run",
           " -p, --print-config print the effective configuration that will be used by Caliper",
           " -d, --delimiter    separator used in options that take multiple values (default: ',')",
           " -c, --config       location of Caliper's configuration file (default:",
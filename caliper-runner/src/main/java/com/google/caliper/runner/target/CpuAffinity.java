@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.target;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.Iterator;
+
+/**
+ * A set of CPUs that a VM process should be pinned to, and the command used to pin it. Devices that
+ * can't pin processes ignore it.
+ */
+public final class CpuAffinity {
+
+  /** A command that runs another command pinned to a set of CPUs. */
+  public enum Command {
+    /** {@code taskset -c <cpus>}: pins the process's threads to the CPUs. */
+    TASKSET {
+      @Override
+      ImmutableList<String> prefix(String cpuList) {
+        return ImmutableList.of("taskset", "-c", cpuList);
+      }
+    },
+
+    /**
+     * {@code numactl --physcpubind=<cpus> --localalloc}: pins the process's threads to the CPUs and
+     * allocates its memory on the NUMA node of the CPU that first touches it, which is one of them.
+     */
+    NUMACTL {
+      @Override
+      ImmutableList<String> prefix(String cpuList) {
+        return ImmutableList.of("numactl", "--physcpubind=" + cpuList, "--localalloc");
+      }
+    };
+
+    abstract ImmutableList<String> prefix(String cpuList);
+  }
+
+  private final Command command;
+  private final ImmutableSortedSet<Integer> cpus;
+
+  private CpuAffinity(Command command, ImmutableSortedSet<Integer> cpus) {
+    this.command = checkNotNull(command);
+    this.cpus = cpus;
+  }
+
+  /** Returns an affinity that uses the given command to pin a process to the given CPUs. */
+  public static CpuAffinity create(Command command, Iterable<Integer> cpus) {
+    ImmutableSortedSet<Integer> cpuSet = ImmutableSortedSet.copyOf(cpus);
+    checkArgument(!cpuSet.isEmpty(), "no CPUs");
+    checkArgument(cpuSet.first() >= 0, "negative CPU number: %s", cpuSet.first());
+    return new CpuAffinity(command, cpuSet);
+  }
+
+  /** Returns the command used to pin the process. */
+  public Command command() {
+    return command;
+  }
+
+  /** Returns the CPUs the process is pinned to. */
+  public ImmutableSortedSet<Integer> cpus() {
+    return cpus;
+  }
+
+  /** Returns the CPUs as a list of ranges in the format {@code taskset} takes, e.g. "2-5,8". */
+  public String cpuList() {
+    StringBuilder builder = new StringBuilder();
+    Iterator<Integer> iterator = cpus.iterator();
+    int start = iterator.next();
+    int end = start;
+    while (iterator.hasNext()) {
+      int cpu = iterator.next();
+      if (cpu != end + 1) {
+        appendRange(builder, start, end);
+        start = cpu;
+      }
+      end = cpu;
+    }
+    appendRange(builder, start, end);
+    return builder.toString();
+  }
+
+  private static void appendRange(StringBuilder builder, int start, int end) {
+    if (builder.length() > 0) {
+      builder.append(',');
+    }
+    builder.append(start);
+    if (end != start) {
+      builder.append('-').append(end);
+    }
+  }
+
+  /** Returns the arguments to put before a command to run it with this affinity. */
+  public ImmutableList<String> commandPrefix() {
+    return command.prefix(cpuList());
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof CpuAffinity) {
+      CpuAffinity that = (CpuAffinity) obj;
+      return this.command == that.command && this.cpus.equals(that.cpus);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * command.hashCode() + cpus.hashCode();
+  }
+
+  /** Returns the command prefix, e.g. "taskset -c 2-5". */
+  @Override
+  public String toString() {
+    return Joiner.on(' ').join(commandPrefix());
+  }
+}
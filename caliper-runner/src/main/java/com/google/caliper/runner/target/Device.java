@@ -88,6 +88,14 @@ public abstract class Device extends AbstractIdleService {
   /** Returns the VM configuration to use for this device when the user doesn't specify one. */
   public abstract VmConfig defaultVmConfig();
 
+  /**
+   * Returns whether this device pins processes to the CPUs given by {@link
+   * VmProcess.Spec#cpuAffinity()}. Devices that don't ignore it.
+   */
+  public boolean supportsCpuAffinity() {
+    return false;
+  }
+
   /** Starts a process on the device to run a VM using the given VM process spec. */
   public final VmProcess startVm(VmProcess.Spec spec, VmProcess.Logger logger) throws Exception {
     final VmProcess process = doStartVm(spec, logger);
@@ -182,6 +182,11 @@ public final class LocalDevice extends Device {
     }
   }
 
+  @Override
+  public boolean supportsCpuAffinity() {
+    return true;
+  }
+
   @Override
   public VmProcess doStartVm(VmProcess.Spec spec, VmProcess.Logger logger) throws Exception {
     ProcessBuilder builder = new ProcessBuilder().redirectErrorStream(redirectErrorStream);
@@ -196,7 +201,11 @@ public final class LocalDevice extends Device {
 
   @VisibleForTesting
   ImmutableList<String> createCommand(VmProcess.Spec spec) {
-    return new ImmutableList.Builder<String>()
+    ImmutableList.Builder<String> command = new ImmutableList.Builder<String>();
+    if (spec.cpuAffinity().isPresent()) {
+      command.addAll(spec.cpuAffinity().get().commandPrefix());
+    }
+    return command
         .add(spec.target().vmExecutablePath())
         .addAll(spec.vmOptions())
         .add(spec.mainClass())
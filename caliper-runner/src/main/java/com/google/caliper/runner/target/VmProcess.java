@@ -16,6 +16,7 @@
 
 package com.google.caliper.runner.target;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import java.io.InputStream;
 import java.util.HashSet;
@@ -91,6 +92,9 @@ public abstract class VmProcess {
 
     /** Returns a list of args to pass to the main class. */
     ImmutableList<String> mainArgs();
+
+    /** Returns the CPUs to pin the process to, if it should be pinned. */
+    Optional<CpuAffinity> cpuAffinity();
   }
 
   /** A logger for information on and output from a {@link VmProcess}. */
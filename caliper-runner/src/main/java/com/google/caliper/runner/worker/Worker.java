@@ -20,6 +20,8 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.caliper.bridge.LogMessage;
 import com.google.caliper.bridge.OpenedSocket;
 import com.google.caliper.bridge.StopMeasurementLogMessage;
+import com.google.caliper.bridge.VmOptionLogMessage;
+import com.google.caliper.bridge.WorkerRequest;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.runner.target.Device;
 import com.google.caliper.runner.target.VmProcess;
@@ -44,8 +46,10 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.text.ParseException;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -95,6 +99,14 @@ public final class Worker extends AbstractService {
           Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).build()));
   private final BlockingQueue<StreamItem> outputQueue = Queues.newLinkedBlockingQueue();
 
+  /**
+   * The VM options the process printed when it started. The process only prints them once, so they
+   * are kept to be read again by each request after the first.
+   */
+  private final List<LogMessage> vmOptionMessages = new CopyOnWriteArrayList<>();
+
+  private final AtomicInteger requestsSent = new AtomicInteger();
+
   private final WorkerSpec spec;
   private final Device device;
   private final ListenableFuture<OpenedSocket> socketFuture;
@@ -254,15 +266,23 @@ public final class Worker extends AbstractService {
   }
 
   /**
-   * Schedules the {@code WorkerRequest} to be sent to the worker once a connection is established.
+   * Schedules the given request to be sent to the worker once a connection is established. A worker
+   * that has finished handling a {@link com.google.caliper.bridge.TrialRequest} waits for another
+   * request until its writer is closed, so it may be sent further trial requests.
    */
-  void sendRequest() {
+  void sendRequest(final WorkerRequest request) {
+    if (requestsSent.getAndIncrement() > 0) {
+      // Let the processor of this request see the VM options, as the processor of the first did.
+      for (LogMessage message : vmOptionMessages) {
+        outputQueue.add(new StreamItem(message));
+      }
+    }
     socketFuture.addListener(
         new Runnable() {
           @Override
           public void run() {
             try {
-              sendMessage(spec.request());
+              sendMessage(request);
             } catch (IOException ignore) {
               // sendMessage will have already called notifyFailed
             }
@@ -271,6 +291,11 @@ public final class Worker extends AbstractService {
         MoreExecutors.directExecutor());
   }
 
+  /** Returns the number of requests that have been sent to the worker. */
+  public int requestsSent() {
+    return requestsSent.get();
+  }
+
   /**
    * Write a line of data to the worker process over the socket.
    *
@@ -452,6 +477,9 @@ public final class Worker extends AbstractService {
           output.log(streamName, line);
           LogMessage logMessage = logMessageParser.parse(line);
           if (logMessage != null) {
+            if (logMessage instanceof VmOptionLogMessage) {
+              vmOptionMessages.add(logMessage);
+            }
             outputQueue.put(new StreamItem(logMessage));
           }
         }
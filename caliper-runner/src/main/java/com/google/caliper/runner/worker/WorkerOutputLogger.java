@@ -65,9 +65,17 @@ final class WorkerOutputLogger implements Logger, Flushable, Closeable {
 
   /** Prints header information to the file. */
   synchronized void printHeader() {
+    printHeader(workerSpec);
+  }
+
+  /**
+   * Prints header information about the given spec to the file, for when a worker that was started
+   * for another spec is reused to run it.
+   */
+  synchronized void printHeader(WorkerSpec spec) {
     checkOpened();
     // make the file self describing
-    workerSpec.printInfoHeader(writer);
+    spec.printInfoHeader(writer);
     writer.println();
   }
 
@@ -21,7 +21,7 @@ import dagger.Binds;
 import dagger.Module;
 import dagger.multibindings.IntoSet;
 
-/** Configures the {@link WorkerOutputFactory}. */
+/** Configures the {@link WorkerOutputFactory} and the {@link WorkerPool} of reusable workers. */
 @Module
 public abstract class WorkerOutputModule {
   private WorkerOutputModule() {}
@@ -30,6 +30,10 @@ public abstract class WorkerOutputModule {
   @IntoSet
   abstract Service bindWorkerOutputFactoryService(WorkerOutputFactoryService impl);
 
+  @Binds
+  @IntoSet
+  abstract Service bindWorkerPool(WorkerPool impl);
+
   @Binds
   abstract WorkerOutputFactory bindWorkerOutputFactory(WorkerOutputFactoryService impl);
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.worker;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.caliper.runner.config.CaliperConfig;
+import com.google.caliper.runner.config.InvalidConfigurationException;
+import com.google.caliper.runner.target.CpuAffinity;
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.AbstractIdleService;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Keeps workers that have finished running a request so that they can run further requests, saving
+ * the cost of starting and warming up a new VM for each.
+ *
+ * <p>Only requests whose {@linkplain WorkerSpec#reuseKey() spec allows it} are run by reused
+ * workers, and only if {@code runner.reuseWorkers} is set. A worker is only reused for a spec with
+ * the same key as the spec it was started for, pinned to the same CPUs. Idle workers are shut down
+ * with this service.
+ *
+ * <p>At most {@code runner.maxIdleWorkers} workers are kept idle; parking another shuts down the one
+ * that has been idle longest. Callers may also tell the pool about the requests they have yet to
+ * run with {@link #addPendingRequest} and {@link #removePendingRequest}, in which case the idle
+ * workers for a key are shut down as soon as no pending request has that key.
+ */
+@Singleton
+public final class WorkerPool extends AbstractIdleService {
+  private static final Logger logger = Logger.getLogger(WorkerPool.class.getName());
+
+  private static final String REUSE_WORKERS_OPTION = "runner.reuseWorkers";
+  private static final String MAX_IDLE_WORKERS_OPTION = "runner.maxIdleWorkers";
+
+  /** How long to wait for idle workers to exit once their writers are closed. */
+  private static final long SHUTDOWN_WAIT_SECONDS = 5;
+
+  private final boolean enabled;
+  private final int maxIdleWorkers;
+
+  /** The idle workers, longest idle first. */
+  @GuardedBy("this")
+  private final List<IdleWorker> idleWorkers = Lists.newArrayList();
+
+  @GuardedBy("this")
+  private final Multiset<String> pendingRequests = HashMultiset.create();
+
+  @Inject
+  WorkerPool(CaliperConfig config) {
+    this.enabled = reuseWorkers(config.properties().get(REUSE_WORKERS_OPTION));
+    this.maxIdleWorkers = maxIdleWorkers(config.properties().get(MAX_IDLE_WORKERS_OPTION));
+  }
+
+  private static boolean reuseWorkers(String value) {
+    if (value == null || value.isEmpty() || value.equals("false")) {
+      return false;
+    } else if (value.equals("true")) {
+      return true;
+    }
+    throw new InvalidConfigurationException(
+        String.format("%s must be true or false, but was %s", REUSE_WORKERS_OPTION, value));
+  }
+
+  private static int maxIdleWorkers(String value) {
+    try {
+      int maxIdleWorkers = Integer.parseInt(value);
+      if (maxIdleWorkers >= 0) {
+        return maxIdleWorkers;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidConfigurationException(
+        String.format(
+            "%s must be a non-negative integer, but was %s", MAX_IDLE_WORKERS_OPTION, value));
+  }
+
+  /**
+   * Returns whether the worker that runs the given spec's request will be kept for reuse once it
+   * has finished, rather than being told to exit.
+   */
+  public boolean reuses(WorkerSpec spec) {
+    return enabled && spec.reuseKey().isPresent();
+  }
+
+  /**
+   * Notes that a request for a spec with the given {@linkplain WorkerSpec#reuseKey() key} is yet to
+   * be run, so that idle workers with that key are kept until it has been.
+   */
+  public synchronized void addPendingRequest(String reuseKey) {
+    pendingRequests.add(reuseKey);
+  }
+
+  /**
+   * Notes that a request added with {@link #addPendingRequest} has been run or abandoned. If no
+   * other pending request has the same key, the idle workers with that key are shut down.
+   */
+  public void removePendingRequest(String reuseKey) {
+    List<Worker> unneeded = Lists.newArrayList();
+    synchronized (this) {
+      pendingRequests.remove(reuseKey);
+      if (pendingRequests.contains(reuseKey)) {
+        return;
+      }
+      for (Iterator<IdleWorker> i = idleWorkers.iterator(); i.hasNext(); ) {
+        IdleWorker idle = i.next();
+        if (idle.reuseKey.equals(reuseKey)) {
+          unneeded.add(idle.worker);
+          i.remove();
+        }
+      }
+    }
+    for (Worker worker : unneeded) {
+      stopIdleWorker(worker);
+    }
+  }
+
+  /** Takes an idle worker that can run the given spec's request, if there is one. */
+  synchronized Optional<Worker> take(WorkerSpec spec) {
+    if (!reuses(spec)) {
+      return Optional.absent();
+    }
+    // Take the worker that has been idle for the shortest time.
+    for (int i = idleWorkers.size() - 1; i >= 0; i--) {
+      IdleWorker idle = idleWorkers.get(i);
+      if (!idle.canRun(spec)) {
+        continue;
+      }
+      idleWorkers.remove(i);
+      if (idle.worker.isRunning()) {
+        return Optional.of(idle.worker);
+      }
+      // The worker died while it was idle.
+      idle.worker.outputLogger().close();
+    }
+    return Optional.absent();
+  }
+
+  /**
+   * Keeps the given worker, which has finished running the given spec's request, shutting down the
+   * longest idle worker instead if there are already as many idle workers as allowed.
+   */
+  void park(WorkerSpec spec, Worker worker) {
+    Worker evicted;
+    synchronized (this) {
+      idleWorkers.add(new IdleWorker(spec.reuseKey().get(), spec.cpuAffinity(), worker));
+      if (idleWorkers.size() <= maxIdleWorkers) {
+        return;
+      }
+      evicted = idleWorkers.remove(0).worker;
+    }
+    stopIdleWorker(evicted);
+  }
+
+  /** Tells an idle worker to exit, without waiting for it to. */
+  private static void stopIdleWorker(Worker worker) {
+    try {
+      worker.closeWriter();
+    } catch (IOException | IllegalStateException e) {
+      logger.log(Level.FINE, String.format("Worker [%s] already closed.", worker.name()), e);
+    }
+    // Stopping lets the worker exit once it has read EOF, or kills it if it doesn't.
+    worker.stopAsync();
+    worker.outputLogger().close();
+  }
+
+  @Override
+  protected void startUp() {}
+
+  @Override
+  protected void shutDown() {
+    ImmutableList<Worker> workers;
+    synchronized (this) {
+      ImmutableList.Builder<Worker> builder = ImmutableList.builder();
+      for (IdleWorker idle : idleWorkers) {
+        builder.add(idle.worker);
+      }
+      workers = builder.build();
+      idleWorkers.clear();
+    }
+    // Tell all the workers to exit before waiting for any of them.
+    for (Worker worker : workers) {
+      try {
+        worker.closeWriter();
+      } catch (IOException | IllegalStateException e) {
+        logger.log(Level.FINE, String.format("Worker [%s] already closed.", worker.name()), e);
+      }
+    }
+    long deadlineNanos = System.nanoTime() + SECONDS.toNanos(SHUTDOWN_WAIT_SECONDS);
+    for (Worker worker : workers) {
+      try {
+        awaitEof(worker, deadlineNanos);
+        // Reading EOF stops the worker, unless it timed out or failed.
+        worker.stopAsync().awaitTerminated(deadlineNanos - System.nanoTime(), NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        worker.stopAsync();
+      } catch (TimeoutException | IllegalStateException e) {
+        logger.warning(String.format("Worker [%s] failed to exit cleanly.", worker.name()));
+      } finally {
+        worker.outputLogger().close();
+      }
+    }
+  }
+
+  /** Discards the worker's remaining output until it exits or the deadline passes. */
+  private static void awaitEof(Worker worker, long deadlineNanos) throws InterruptedException {
+    while (worker.isRunning()) {
+      Worker.StreamItem item = worker.readItem(deadlineNanos - System.nanoTime(), NANOSECONDS);
+      if (item.kind() != Worker.StreamItem.Kind.DATA) {
+        return;
+      }
+    }
+  }
+
+  /** A worker waiting to be reused, with what it was started for. */
+  private static final class IdleWorker {
+    final String reuseKey;
+    final Optional<CpuAffinity> cpuAffinity;
+    final Worker worker;
+
+    IdleWorker(String reuseKey, Optional<CpuAffinity> cpuAffinity, Worker worker) {
+      this.reuseKey = reuseKey;
+      this.cpuAffinity = cpuAffinity;
+      this.worker = worker;
+    }
+
+    boolean canRun(WorkerSpec spec) {
+      return reuseKey.equals(spec.reuseKey().get()) && cpuAffinity.equals(spec.cpuAffinity());
+    }
+  }
+}
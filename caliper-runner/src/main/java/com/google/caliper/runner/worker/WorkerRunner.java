@@ -20,10 +20,11 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.google.caliper.runner.options.CaliperOptions;
+import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.io.Files;
-import com.google.common.util.concurrent.Service.State;
+import dagger.Lazy;
 import java.io.File;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -34,6 +35,10 @@ import org.joda.time.Duration;
 /**
  * An object that starts a worker, reads data from it, processes that data with a {@link
  * WorkerProcessor}, and finally returns a result.
+ *
+ * <p>If the {@link WorkerPool} reuses workers for the spec, an idle worker is taken from the pool
+ * instead of starting a new one if there is one, and the worker is returned to the pool rather than
+ * stopped once the processor is done.
  */
 @WorkerScoped
 public final class WorkerRunner<R> {
@@ -42,48 +47,65 @@ public final class WorkerRunner<R> {
   /** The time that the worker has to clean up after running. */
   private static final Duration WORKER_CLEANUP_DURATION = Duration.standardSeconds(2);
 
-  private final Worker worker;
+  private final Lazy<Worker> newWorker;
+  private final WorkerSpec spec;
+  private final WorkerPool workerPool;
   private final WorkerProcessor<R> processor;
   private final boolean printWorkerLog;
 
+  private Worker worker = null;
   private File outputFile = null;
 
   private boolean doneProcessing = false;
   private boolean done = false;
 
   @Inject
-  WorkerRunner(Worker worker, WorkerProcessor<R> processor, CaliperOptions options) {
-    this.worker = worker;
+  WorkerRunner(
+      Lazy<Worker> newWorker,
+      WorkerSpec spec,
+      WorkerPool workerPool,
+      WorkerProcessor<R> processor,
+      CaliperOptions options) {
+    this.newWorker = newWorker;
+    this.spec = spec;
+    this.workerPool = workerPool;
     this.processor = processor;
     this.printWorkerLog = options.printWorkerLog();
   }
 
   /**
-   * Starts up the worker process and runs it to completion, processing data received from it with
-   * the provided {@link WorkerProcessor}. Returns the result object produced by the processor.
+   * Starts up the worker process, or takes an idle one, and runs it until the provided {@link
+   * WorkerProcessor} is done processing the data received from it. Returns the result object
+   * produced by the processor.
    */
   public R runWorker() {
-    checkState(worker.state() == State.NEW, "You can only invoke the run loop once");
+    checkState(worker == null, "You can only invoke the run loop once");
 
-    // logger must be opened before starting worker
+    Optional<Worker> idleWorker = workerPool.take(spec);
+    worker = idleWorker.isPresent() ? idleWorker.get() : newWorker.get();
     WorkerOutputLogger workerLogger = worker.outputLogger();
-    try {
-      workerLogger.open();
-    } catch (IOException e) {
-      throw processor.newWorkerException(
-          String.format("Failed to open output logger for worker [%s].", worker.name()), e);
+    if (!idleWorker.isPresent()) {
+      // logger must be opened before starting worker
+      try {
+        workerLogger.open();
+      } catch (IOException e) {
+        throw processor.newWorkerException(
+            String.format("Failed to open output logger for worker [%s].", worker.name()), e);
+      }
+      worker.startAsync();
     }
     outputFile = workerLogger.outputFile();
 
-    worker.startAsync();
+    boolean keepWorker = false;
     try {
-      workerLogger.printHeader();
+      // A reused worker logs each spec's output after the header for that spec.
+      workerLogger.printHeader(spec);
 
       long timeLimitNanos = processor.timeLimit().to(NANOSECONDS);
       Stopwatch stopwatch = Stopwatch.createUnstarted();
 
       worker.awaitRunning();
-      worker.sendRequest();
+      worker.sendRequest(spec.request());
 
       stopwatch.start();
       while (!done) {
@@ -110,7 +132,10 @@ public final class WorkerRunner<R> {
         switch (item.kind()) {
           case DATA:
             doneProcessing = processor.handleMessage(item.content(), worker);
-            if (doneProcessing) {
+            if (doneProcessing && workerPool.reuses(spec)) {
+              // The worker is waiting for another request rather than exiting.
+              done = true;
+            } else if (doneProcessing) {
               // The worker should be done now; give it WORKER_CLEANUP_DURATION nanos to finish
               // shutting down.
               long cleanupTimeNanos = MILLISECONDS.toNanos(WORKER_CLEANUP_DURATION.getMillis());
@@ -141,7 +166,9 @@ public final class WorkerRunner<R> {
         }
       }
 
-      return processor.getResult();
+      R result = processor.getResult();
+      keepWorker = workerPool.reuses(spec);
+      return result;
     } catch (WorkerException e) {
       throw e;
     } catch (Throwable e) {
@@ -149,11 +176,17 @@ public final class WorkerRunner<R> {
       Throwables.throwIfUnchecked(e);
       throw new RuntimeException(e);
     } finally {
-      worker.stopAsync();
-      try {
+      if (keepWorker) {
         workerLogger.ensureFileIsSaved();
-      } finally {
-        workerLogger.close();
+        workerLogger.flush();
+        workerPool.park(spec, worker);
+      } else {
+        worker.stopAsync();
+        try {
+          workerLogger.ensureFileIsSaved();
+        } finally {
+          workerLogger.close();
+        }
       }
     }
   }
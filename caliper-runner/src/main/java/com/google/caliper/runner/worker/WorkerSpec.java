@@ -20,8 +20,10 @@ import static com.google.common.base.Functions.toStringFunction;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.caliper.bridge.WorkerRequest;
+import com.google.caliper.runner.target.CpuAffinity;
 import com.google.caliper.runner.target.Target;
 import com.google.caliper.runner.target.VmProcess;
+import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import java.io.PrintWriter;
@@ -85,6 +87,21 @@ public abstract class WorkerSpec implements VmProcess.Spec {
     return args;
   }
 
+  /** Returns the CPUs to pin the worker to. By default, the worker isn't pinned. */
+  @Override
+  public Optional<CpuAffinity> cpuAffinity() {
+    return Optional.absent();
+  }
+
+  /**
+   * Returns a key for the VM that runs this spec's request, if the request may be run by a worker
+   * that has already run another: workers for specs with equal keys and {@linkplain #cpuAffinity()
+   * CPU affinities} run in identical VMs. By default, the request must be run by a fresh worker.
+   */
+  public Optional<String> reuseKey() {
+    return Optional.absent();
+  }
+
   /** Returns the request to send to the worker once it starts. */
   public abstract WorkerRequest request();
 
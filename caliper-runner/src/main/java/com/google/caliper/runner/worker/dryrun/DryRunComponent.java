@@ -27,8 +27,9 @@ import java.util.Set;
 /**
  * Component for dry-running experiments on a worker and getting the results.
  *
- * <p>Dry-runs for all experiments that are to be run on a single target are done in a single worker
- * process so as to avoid the overhead of creating potentially hundreds of worker processes.
+ * <p>Dry-runs for a shard of the experiments that are to be run on a single target are done in a
+ * single worker process so as to avoid the overhead of creating potentially hundreds of worker
+ * processes.
  */
 @WorkerScoped
 @Subcomponent(modules = DryRunModule.class)
@@ -56,7 +56,13 @@ final class DryRunSpec extends WorkerSpec {
 
   @Override
   public String name() {
-    return "dry-run-" + target.name();
+    // The experiments for a target may be split between several workers; name each by the first
+    // of its experiments.
+    int firstId = Integer.MAX_VALUE;
+    for (Experiment experiment : experiments) {
+      firstId = Math.min(firstId, experiment.id());
+    }
+    return "dry-run-" + target.name() + "-" + firstId;
   }
 
   @Override
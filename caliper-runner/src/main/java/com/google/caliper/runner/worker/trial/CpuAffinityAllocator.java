@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.worker.trial;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.caliper.runner.config.CaliperConfig;
+import com.google.caliper.runner.config.InvalidConfigurationException;
+import com.google.caliper.runner.target.CpuAffinity;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Optional;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Hands out disjoint sets of CPUs to trials running at the same time, so that parallel workers
+ * don't migrate between and contend for the same cores.
+ *
+ * <p>The lowest-numbered CPUs (which usually also handle most interrupts) are never handed out, and
+ * are left for the runner's own threads and the rest of the system. The remaining CPUs are split
+ * evenly into one set per trial that may run in parallel; any left over are also left unused.
+ */
+@Singleton
+public final class CpuAffinityAllocator {
+  private static final Logger logger = Logger.getLogger(CpuAffinityAllocator.class.getName());
+
+  private static final String CPU_AFFINITY_OPTION = "runner.cpuAffinity";
+  private static final String RESERVED_CPUS_OPTION = "runner.reservedCpus";
+  private static final String MAX_PARALLELISM_OPTION = "runner.maxParallelism";
+
+  private final Queue<CpuAffinity> available = new ConcurrentLinkedQueue<>();
+
+  @Inject
+  CpuAffinityAllocator(CaliperConfig config, @MaxParallelism int maxParallelism) {
+    this(
+        command(config.properties().get(CPU_AFFINITY_OPTION)),
+        Runtime.getRuntime().availableProcessors(),
+        intOption(config, RESERVED_CPUS_OPTION, 1),
+        maxParallelism);
+  }
+
+  @VisibleForTesting
+  CpuAffinityAllocator(
+      Optional<CpuAffinity.Command> command, int cpus, int reservedCpus, int maxParallelism) {
+    checkArgument(maxParallelism > 0, "maxParallelism must be positive: %s", maxParallelism);
+    if (!command.isPresent()) {
+      return;
+    }
+    int cpusPerTrial = (cpus - reservedCpus) / maxParallelism;
+    if (cpusPerTrial < 1) {
+      logger.warning(
+          String.format(
+              "Not pinning trials to CPUs: %d CPUs, less %d reserved, can't be split between %d "
+                  + "parallel trials. Lower %s or %s.",
+              cpus, reservedCpus, maxParallelism, RESERVED_CPUS_OPTION, MAX_PARALLELISM_OPTION));
+      return;
+    }
+    for (int i = 0; i < maxParallelism; i++) {
+      int first = reservedCpus + i * cpusPerTrial;
+      available.add(
+          CpuAffinity.create(
+              command.get(),
+              ContiguousSet.create(
+                  Range.closedOpen(first, first + cpusPerTrial), DiscreteDomain.integers())));
+    }
+  }
+
+  private static Optional<CpuAffinity.Command> command(String value) {
+    if (value == null || value.equals("none")) {
+      return Optional.absent();
+    }
+    for (CpuAffinity.Command command : CpuAffinity.Command.values()) {
+      if (Ascii.toLowerCase(command.name()).equals(value)) {
+        return Optional.of(command);
+      }
+    }
+    throw new InvalidConfigurationException(
+        String.format(
+            "%s must be one of none, taskset or numactl, but was %s", CPU_AFFINITY_OPTION, value));
+  }
+
+  private static int intOption(CaliperConfig config, String name, int defaultValue) {
+    String value = config.properties().get(name);
+    try {
+      return value == null ? defaultValue : Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new InvalidConfigurationException(
+          String.format("%s must be an integer, but was %s", name, value), e);
+    }
+  }
+
+  /**
+   * Takes a set of CPUs that no other running trial is pinned to, or returns absent if trials
+   * aren't pinned or every set is taken.
+   */
+  Optional<CpuAffinity> acquire() {
+    return Optional.fromNullable(available.poll());
+  }
+
+  /** Returns a set of CPUs taken by {@link #acquire()} once the trial pinned to it is done. */
+  void release(Optional<CpuAffinity> affinity) {
+    if (affinity.isPresent()) {
+      available.add(affinity.get());
+    }
+  }
+
+  /** Takes a set of CPUs as {@link #acquire()} does, in a lease that gives them back once done. */
+  Lease lease() {
+    return new Lease(acquire());
+  }
+
+  /** Returns a lease of no CPUs, for a trial that isn't pinned. */
+  Lease unpinnedLease() {
+    return new Lease(Optional.<CpuAffinity>absent());
+  }
+
+  /** The CPUs, if any, that one trial is pinned to. */
+  public final class Lease {
+    private final Optional<CpuAffinity> affinity;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Lease(Optional<CpuAffinity> affinity) {
+      this.affinity = affinity;
+    }
+
+    Optional<CpuAffinity> affinity() {
+      return affinity;
+    }
+
+    /** Gives the CPUs back once the trial is done. Only the first call has any effect. */
+    void release() {
+      if (released.compareAndSet(false, true)) {
+        CpuAffinityAllocator.this.release(affinity);
+      }
+    }
+  }
+
+  /** Returns the sets of CPUs not currently taken. */
+  @VisibleForTesting
+  ImmutableList<CpuAffinity> available() {
+    return ImmutableList.copyOf(available);
+  }
+}
@@ -16,8 +16,12 @@
 
 package com.google.caliper.runner.worker.trial;
 
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
 import com.google.caliper.runner.experiment.Experiment;
 import com.google.caliper.runner.worker.WorkerScoped;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import dagger.BindsInstance;
 import dagger.producers.Producer;
 import dagger.producers.Production;
@@ -31,6 +35,9 @@ public interface TrialComponent {
 
   Producer<TrialResult> trialResult();
 
+  /** The CPUs the trial is pinned to, which are released once the trial is done. */
+  Producer<CpuAffinityAllocator.Lease> cpuAffinityLease();
+
   /** An object that can run a trial of an {@link Experiment}. */
   interface TrialRunner {
     /**
@@ -61,7 +68,23 @@ public interface TrialComponent {
       return new TrialRunner() {
         @Override
         public Producer<TrialResult> trialResultProducer(Experiment experiment, int trialNumber) {
-          return experiment(experiment).trialNumber(trialNumber).build().trialResult();
+          final TrialComponent trial = experiment(experiment).trialNumber(trialNumber).build();
+          return new Producer<TrialResult>() {
+            @Override
+            public ListenableFuture<TrialResult> get() {
+              ListenableFuture<TrialResult> result = trial.trialResult().get();
+              // However the trial ends, give its CPUs back before anything else sees it's done.
+              result.addListener(
+                  new Runnable() {
+                    @Override
+                    public void run() {
+                      Futures.getUnchecked(trial.cpuAffinityLease().get()).release();
+                    }
+                  },
+                  directExecutor());
+              return result;
+            }
+          };
         }
       };
     }
@@ -19,23 +19,29 @@ package com.google.caliper.runner.worker.trial;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.caliper.model.Host;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Run;
 import com.google.caliper.model.Scenario;
 import com.google.caliper.model.Trial;
+import com.google.caliper.model.TrialPosition;
 import com.google.caliper.runner.experiment.Experiment;
+import com.google.caliper.runner.experiment.ExperimentDesign;
 import com.google.caliper.runner.instrument.MeasurementCollectingVisitor;
+import com.google.caliper.runner.target.CpuAffinity;
 import com.google.caliper.runner.target.Target;
 import com.google.caliper.runner.worker.WorkerModule;
 import com.google.caliper.runner.worker.WorkerProcessor;
 import com.google.caliper.runner.worker.WorkerRunner;
 import com.google.caliper.runner.worker.WorkerScoped;
 import com.google.caliper.runner.worker.WorkerSpec;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import dagger.Binds;
 import dagger.Provides;
 import dagger.producers.ProducerModule;
 import dagger.producers.Produces;
 import java.util.UUID;
+import org.joda.time.Instant;
 
 /** Configuration for running a trial. */
 @ProducerModule(includes = WorkerModule.class)
@@ -62,6 +68,18 @@ abstract class TrialModule {
     return experiment.target();
   }
 
+  @Provides
+  @WorkerScoped
+  static CpuAffinityAllocator.Lease provideCpuAffinityLease(
+      Target target, CpuAffinityAllocator allocator) {
+    return target.device().supportsCpuAffinity() ? allocator.lease() : allocator.unpinnedLease();
+  }
+
+  @Provides
+  static Optional<CpuAffinity> provideCpuAffinity(CpuAffinityAllocator.Lease lease) {
+    return lease.affinity();
+  }
+
   @Binds
   abstract WorkerSpec bindWorkerSpec(TrialSpec spec);
 
@@ -77,18 +95,43 @@ abstract class TrialModule {
 
   @Provides
   static TrialResultFactory provideTrialFactory(
-      @TrialId final UUID trialId, final Run run, final Host host, final Experiment experiment) {
+      @TrialId final UUID trialId,
+      Run run,
+      ExperimentDesign design,
+      final Host host,
+      final Experiment experiment,
+      @TrialNumber int trialNumber,
+      TrialOrder trialOrder,
+      Optional<CpuAffinity> cpuAffinity,
+      Instant now) {
+    // The run is created before the configuration that chooses the experiment design is loaded
+    // (logging is configured per run), so the design is recorded with each trial's copy of the run.
+    final Run trialRun =
+        new Run.Builder(run.id())
+            .label(run.label())
+            .startTime(run.startTime())
+            .experimentDesign(design.toString())
+            .build();
+    // This is provided as the trial's worker is created, just before it's started.
+    final TrialPosition.Builder position =
+        new TrialPosition.Builder()
+            .number(trialNumber)
+            .order(trialOrder.mode().toString())
+            .seed(trialOrder.seed())
+            .startTime(now)
+            .cpuAffinity(cpuAffinity.isPresent() ? cpuAffinity.get().toString() : "");
     return new TrialResultFactory() {
       @Override
       public TrialResult newTrialResult(
           VmDataCollectingVisitor dataCollectingVisitor,
-          MeasurementCollectingVisitor measurementCollectingVisitor) {
+          MeasurementCollectingVisitor measurementCollectingVisitor,
+          int priorWorkerTrials) {
         checkState(measurementCollectingVisitor.isDoneCollecting());
         // TODO(lukes): should the trial messages be part of the Trial datastructure?  It seems like
         // the web UI could make use of them.
-        return new TrialResult(
+        Trial.Builder trial =
             new Trial.Builder(trialId)
-                .run(run)
+                .run(trialRun)
                 .instrumentSpec(experiment.instrumentedMethod().instrument().getSpec())
                 .scenario(
                     new Scenario.Builder()
@@ -96,7 +139,14 @@ abstract class TrialModule {
                         .vmSpec(dataCollectingVisitor.vmSpec())
                         .benchmarkSpec(experiment.benchmarkSpec()))
                 .addAllMeasurements(measurementCollectingVisitor.getMeasurements())
-                .build(),
+                .position(position.priorWorkerTrials(priorWorkerTrials).build());
+        Optional<LatencyHistogram> latencyHistogram =
+            measurementCollectingVisitor.getLatencyHistogram();
+        if (latencyHistogram.isPresent()) {
+          trial.latencyHistogram(latencyHistogram.get());
+        }
+        return new TrialResult(
+            trial.build(),
             experiment,
             measurementCollectingVisitor.getMessages());
       }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.worker.trial;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.caliper.runner.config.CaliperConfig;
+import com.google.caliper.runner.config.InvalidConfigurationException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The order to run the trials of a run's experiments in.
+ *
+ * <p>Running every experiment's trials in the same place in each round lets slow drift in the
+ * machine (temperature, background jobs) bias some experiments against others. Shuffling the
+ * trials, or interleaving them so that each experiment takes each place in turn, spreads every
+ * experiment's trials over the whole run instead. The random choices are made with a seed that is
+ * recorded with every trial, so the order can be reproduced.
+ */
+public final class TrialOrder {
+  private static final String ORDER_OPTION = "runner.trialOrder";
+  private static final String SEED_OPTION = "runner.trialOrderSeed";
+
+  /** A way of ordering trials. */
+  public enum Mode {
+    /** Each round runs one trial of every experiment, in the order they were selected in. */
+    SEQUENTIAL,
+
+    /** All trials are shuffled together. */
+    SHUFFLED,
+
+    /**
+     * Each round runs one trial of every experiment, in an order given by the rows of a balanced
+     * Latin square over the (shuffled) experiments. Over each full cycle of rounds, every
+     * experiment runs once in every place and, if there are an even number of experiments,
+     * immediately follows every other experiment once.
+     */
+    INTERLEAVED;
+
+    @Override
+    public String toString() {
+      return Ascii.toLowerCase(name());
+    }
+  }
+
+  private final Mode mode;
+  private final long seed;
+
+  /**
+   * Returns the configured trial order, using the given seed, if any, rather than the configured
+   * one.
+   */
+  public static TrialOrder create(CaliperConfig config, Optional<Long> seed) {
+    Mode mode = mode(config.properties().get(ORDER_OPTION));
+    long configuredSeed = seed(config.properties().get(SEED_OPTION));
+    return new TrialOrder(mode, seed.or(configuredSeed));
+  }
+
+  @VisibleForTesting
+  TrialOrder(Mode mode, long seed) {
+    this.mode = mode;
+    this.seed = seed;
+  }
+
+  private static Mode mode(String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return Mode.SEQUENTIAL;
+    }
+    for (Mode mode : Mode.values()) {
+      if (mode.toString().equals(value)) {
+        return mode;
+      }
+    }
+    throw new InvalidConfigurationException(
+        String.format(
+            "%s must be one of sequential, shuffled or interleaved, but was %s",
+            ORDER_OPTION, value));
+  }
+
+  private static long seed(String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return new Random().nextLong();
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new InvalidConfigurationException(
+          String.format("%s must be an integer, but was %s", SEED_OPTION, value), e);
+    }
+  }
+
+  /** Returns the way trials are ordered. */
+  public Mode mode() {
+    return mode;
+  }
+
+  /** Returns the seed of the random choices made in ordering trials. */
+  public long seed() {
+    return seed;
+  }
+
+  /**
+   * Returns the order to run {@code trialsPerExperiment} trials of each of the given experiments
+   * in, as a list in which each experiment appears that many times.
+   */
+  public <T> ImmutableList<T> order(List<T> experiments, int trialsPerExperiment) {
+    checkArgument(trialsPerExperiment >= 0, "negative trial count: %s", trialsPerExperiment);
+    ImmutableList.Builder<T> result = ImmutableList.builder();
+    Random random = new Random(seed);
+    switch (mode) {
+      case SEQUENTIAL:
+        for (int i = 0; i < trialsPerExperiment; i++) {
+          result.addAll(experiments);
+        }
+        break;
+      case SHUFFLED:
+        List<T> trials = new ArrayList<T>();
+        for (int i = 0; i < trialsPerExperiment; i++) {
+          trials.addAll(experiments);
+        }
+        Collections.shuffle(trials, random);
+        result.addAll(trials);
+        break;
+      case INTERLEAVED:
+        List<T> shuffled = new ArrayList<T>(experiments);
+        Collections.shuffle(shuffled, random);
+        for (int round = 0; round < trialsPerExperiment; round++) {
+          addWilliamsRow(shuffled, round, result);
+        }
+        break;
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the order to run one trial of each of the given experiments in, in the given round (0
+   * for the first) of a run that decides which experiments to run a round at a time. Each round is
+   * ordered differently: a different shuffle, or the next row of the interleaving.
+   */
+  public <T> ImmutableList<T> orderRound(List<T> experiments, int round) {
+    checkArgument(round >= 0, "negative round: %s", round);
+    switch (mode) {
+      case SEQUENTIAL:
+        return ImmutableList.copyOf(experiments);
+      case SHUFFLED:
+        List<T> trials = new ArrayList<T>(experiments);
+        // A different seed for each round, spread out since nearby seeds give similar shuffles.
+        Collections.shuffle(trials, new Random(seed + round * 0x9E3779B97F4A7C15L));
+        return ImmutableList.copyOf(trials);
+      case INTERLEAVED:
+        List<T> shuffled = new ArrayList<T>(experiments);
+        Collections.shuffle(shuffled, new Random(seed));
+        ImmutableList.Builder<T> result = ImmutableList.builder();
+        addWilliamsRow(shuffled, round, result);
+        return result.build();
+    }
+    throw new AssertionError(mode);
+  }
+
+  /** Adds the given row of a Williams design over the given experiments to {@code result}. */
+  private static <T> void addWilliamsRow(
+      List<T> experiments, int row, ImmutableList.Builder<T> result) {
+    int n = experiments.size();
+    for (int place = 0; place < n; place++) {
+      result.add(experiments.get((williamsColumn(place, n) + row) % n));
+    }
+  }
+
+  /**
+   * Returns the entry at the given place in the first row of a Williams design for {@code n}
+   * treatments: 0, 1, n-1, 2, n-2, ... Each following row adds 1 (mod n) to every entry. For even
+   * {@code n}, the rows form a Latin square in which every treatment immediately follows every
+   * other exactly once.
+   */
+  private static int williamsColumn(int place, int n) {
+    return place % 2 == 1 ? (place + 1) / 2 : (n - place / 2) % n;
+  }
+
+  @Override
+  public String toString() {
+    return mode == Mode.SEQUENTIAL ? mode.toString() : mode + " (seed " + seed + ")";
+  }
+}
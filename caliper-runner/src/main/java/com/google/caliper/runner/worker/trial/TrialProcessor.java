@@ -22,7 +22,9 @@ import com.google.caliper.runner.options.CaliperOptions;
 import com.google.caliper.runner.worker.FailureLogMessageVisitor;
 import com.google.caliper.runner.worker.Worker;
 import com.google.caliper.runner.worker.WorkerException;
+import com.google.caliper.runner.worker.WorkerPool;
 import com.google.caliper.runner.worker.WorkerProcessor;
+import com.google.caliper.runner.worker.WorkerSpec;
 import com.google.caliper.util.ShortDuration;
 import java.io.IOException;
 import javax.annotation.Nullable;
@@ -41,17 +43,25 @@ final class TrialProcessor extends WorkerProcessor<TrialResult> {
   // its data.
   private final VmDataCollectingVisitor dataCollectingVisitor;
   private final MeasurementCollectingVisitor measurementCollectingVisitor;
+  private final WorkerSpec spec;
+  private final WorkerPool workerPool;
+
+  private int priorWorkerTrials = 0;
 
   @Inject
   TrialProcessor(
       MeasurementCollectingVisitor measurementCollectingVisitor,
       CaliperOptions options,
       TrialResultFactory trialFactory,
-      VmDataCollectingVisitor dataCollectingVisitor) {
+      VmDataCollectingVisitor dataCollectingVisitor,
+      WorkerSpec spec,
+      WorkerPool workerPool) {
     this.options = options;
     this.trialFactory = trialFactory;
     this.measurementCollectingVisitor = measurementCollectingVisitor;
     this.dataCollectingVisitor = dataCollectingVisitor;
+    this.spec = spec;
+    this.workerPool = workerPool;
   }
 
   @Override
@@ -61,6 +71,7 @@ final class TrialProcessor extends WorkerProcessor<TrialResult> {
 
   @Override
   public boolean handleMessage(LogMessage message, Worker worker) throws IOException {
+    priorWorkerTrials = worker.requestsSent() - 1;
     message.accept(FailureLogMessageVisitor.INSTANCE);
     message.accept(measurementCollectingVisitor);
     message.accept(dataCollectingVisitor);
@@ -79,7 +90,8 @@ final class TrialProcessor extends WorkerProcessor<TrialResult> {
       worker.sendMessage(
           new ShouldContinueMessage(
               !doneCollecting, measurementCollectingVisitor.isWarmupComplete()));
-      if (doneCollecting) {
+      if (doneCollecting && !workerPool.reuses(spec)) {
+        // Let the worker exit, rather than waiting for another trial.
         worker.closeWriter();
       }
     }
@@ -101,6 +113,7 @@ final class TrialProcessor extends WorkerProcessor<TrialResult> {
 
   @Override
   public TrialResult getResult() {
-    return trialFactory.newTrialResult(dataCollectingVisitor, measurementCollectingVisitor);
+    return trialFactory.newTrialResult(
+        dataCollectingVisitor, measurementCollectingVisitor, priorWorkerTrials);
   }
 }
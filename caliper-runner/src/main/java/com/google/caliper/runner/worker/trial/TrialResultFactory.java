@@ -22,7 +22,12 @@ import com.google.caliper.runner.instrument.MeasurementCollectingVisitor;
  * A factory for producing {@link TrialResult TrialResults} based on data collected from visitors.
  */
 interface TrialResultFactory {
-  /** Returns a new {@link Trial}. */
+  /**
+   * Returns a new {@link Trial}, run by a worker that had already run {@code priorWorkerTrials}
+   * other trials.
+   */
   TrialResult newTrialResult(
-      VmDataCollectingVisitor vmData, MeasurementCollectingVisitor measurementData);
+      VmDataCollectingVisitor vmData,
+      MeasurementCollectingVisitor measurementData,
+      int priorWorkerTrials);
 }
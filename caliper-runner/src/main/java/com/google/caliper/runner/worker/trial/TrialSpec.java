@@ -22,8 +22,12 @@ import com.google.caliper.core.BenchmarkClassModel;
 import com.google.caliper.runner.experiment.Experiment;
 import com.google.caliper.runner.instrument.Instrument;
 import com.google.caliper.runner.server.LocalPort;
+import com.google.caliper.runner.target.CpuAffinity;
+import com.google.caliper.runner.target.Vm;
 import com.google.caliper.runner.worker.WorkerSpec;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import java.io.PrintWriter;
 import java.util.UUID;
@@ -35,6 +39,7 @@ public final class TrialSpec extends WorkerSpec {
   private final Experiment experiment;
   private final BenchmarkClassModel benchmarkClass;
   private final int trialNumber;
+  private final Optional<CpuAffinity> cpuAffinity;
 
   @VisibleForTesting
   @Inject
@@ -43,11 +48,13 @@ public final class TrialSpec extends WorkerSpec {
       @LocalPort int port,
       Experiment experiment,
       BenchmarkClassModel benchmarkClass,
-      @TrialNumber int trialNumber) {
+      @TrialNumber int trialNumber,
+      Optional<CpuAffinity> cpuAffinity) {
     super(experiment.target(), id, id, port, experiment.benchmarkSpec().className());
     this.experiment = experiment;
     this.benchmarkClass = benchmarkClass;
     this.trialNumber = trialNumber;
+    this.cpuAffinity = cpuAffinity;
   }
 
   @Override
@@ -55,6 +62,32 @@ public final class TrialSpec extends WorkerSpec {
     return "trial-" + trialNumber;
   }
 
+  @Override
+  public Optional<CpuAffinity> cpuAffinity() {
+    return cpuAffinity;
+  }
+
+  @Override
+  public Optional<String> reuseKey() {
+    return reuseKey(experiment, benchmarkClass);
+  }
+
+  /**
+   * Returns the {@linkplain #reuseKey() reuse key} of the specs for trials of the given experiment,
+   * which doesn't depend on the CPUs a trial is pinned to, so it's known before the trial is
+   * started.
+   */
+  public static Optional<String> reuseKey(
+      Experiment experiment, BenchmarkClassModel benchmarkClass) {
+    if (!experiment.instrumentedMethod().instrument().workersReusable()) {
+      return Optional.absent();
+    }
+    // Apart from its CPUs, the worker's VM is fully determined by the target and its options.
+    return Optional.of(
+        Joiner.on(' ')
+            .join(experiment.target().name(), trialVmOptions(experiment, benchmarkClass)));
+  }
+
   @Override
   public WorkerRequest request() {
     return new TrialRequest(experiment.toExperimentSpec());
@@ -62,11 +95,26 @@ public final class TrialSpec extends WorkerSpec {
 
   @Override
   public ImmutableList<String> additionalVmOptions() {
+    return additionalVmOptions(experiment, benchmarkClass);
+  }
+
+  /**
+   * Returns the full list of VM options that a trial of the given experiment will be run with, for
+   * deciding what resources the trial needs before it is started.
+   */
+  public static ImmutableList<String> trialVmOptions(
+      Experiment experiment, BenchmarkClassModel benchmarkClass) {
+    return experiment.target().vm().args(additionalVmOptions(experiment, benchmarkClass));
+  }
+
+  private static ImmutableList<String> additionalVmOptions(
+      Experiment experiment, BenchmarkClassModel benchmarkClass) {
     Instrument instrument = experiment.instrumentedMethod().instrument();
+    Vm vm = experiment.target().vm();
     return new ImmutableList.Builder<String>()
         .addAll(benchmarkClass.vmOptions())
-        .addAll(target().vm().trialArgs())
-        .addAll(instrument.getExtraCommandLineArgs(target().vm().config()))
+        .addAll(vm.trialArgs())
+        .addAll(instrument.getExtraCommandLineArgs(vm.config()))
         .build();
   }
 
@@ -75,5 +123,8 @@ public final class TrialSpec extends WorkerSpec {
     writer.println("Trial Number: " + trialNumber);
     writer.println("Trial Id: " + id());
     writer.println("Experiment: " + experiment);
+    if (cpuAffinity.isPresent()) {
+      writer.println("CPU Affinity: " + cpuAffinity.get());
+    }
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.core.BenchmarkClassModel.MethodModel;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.model.Value;
+import com.google.caliper.runner.experiment.Experiment;
+import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
+import com.google.caliper.runner.instrument.RuntimeInstrument;
+import com.google.caliper.runner.instrument.ThreadedRuntimeInstrument;
+import com.google.caliper.runner.target.LocalDevice;
+import com.google.caliper.runner.target.Target;
+import com.google.caliper.util.ShortDuration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link ExperimentRace}. */
+@RunWith(JUnit4.class)
+public class ExperimentRaceTest {
+  private Experiment fast;
+  private Experiment alsoFast;
+  private Experiment slow;
+
+  @Before
+  public void setUp() throws Exception {
+    RuntimeInstrument instrument = new RuntimeInstrument(ShortDuration.of(100, NANOSECONDS));
+    InstrumentedMethod method =
+        instrument.createInstrumentedMethod(
+            MethodModel.of(FooBenchmark.class.getDeclaredMethod("myBenchmark", long.class)));
+    Target target = LocalDevice.builder().build().createDefaultTarget();
+    fast = Experiment.create(1, method, ImmutableMap.of("size", "1"), target);
+    alsoFast = Experiment.create(2, method, ImmutableMap.of("size", "2"), target);
+    slow = Experiment.create(3, method, ImmutableMap.of("size", "3"), target);
+  }
+
+  @Test
+  public void prunesDominatedExperimentAndSharesItsTrials() {
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(fast, alsoFast, slow), 2);
+    assertEquals(ImmutableList.of(fast, alsoFast, slow), race.nextRound());
+    race.record(fast, measurements(10, 11, 10, 11));
+    race.record(alsoFast, measurements(10, 12, 11, 10));
+    race.record(slow, measurements(100, 101, 100, 102));
+    assertEquals(ImmutableList.of(slow), race.prune().keySet().asList());
+    assertTrue(race.isPruned(slow));
+
+    assertEquals(ImmutableList.of(fast, alsoFast), race.nextRound());
+    race.record(fast, measurements(12, 11, 12, 11));
+    race.record(alsoFast, measurements(10, 10, 11, 10));
+    assertTrue(race.prune().isEmpty());
+
+    // the trial the slow experiment didn't use goes to one of the close contenders
+    assertEquals(ImmutableList.of(fast), race.nextRound());
+    assertEquals(ImmutableList.of(), race.nextRound());
+    assertEquals(0, race.unusedTrials());
+  }
+
+  @Test
+  public void closeExperimentsGetTheirTrials() {
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(fast, alsoFast), 2);
+    for (int round = 0; round < 2; round++) {
+      assertEquals(ImmutableList.of(fast, alsoFast), race.nextRound());
+      race.record(fast, measurements(10 + round, 11 + round, 10 + round, 11 + round));
+      race.record(alsoFast, measurements(11 - round, 12 - round, 11 - round, 10 - round));
+      assertTrue(race.prune().isEmpty());
+    }
+    assertEquals(ImmutableList.of(), race.nextRound());
+    assertFalse(race.isPruned(alsoFast));
+  }
+
+  @Test
+  public void prunesAtMostHalfEachRound() {
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(fast, alsoFast, slow), 3);
+    race.nextRound();
+    race.record(fast, measurements(10, 11, 10, 11));
+    race.record(alsoFast, measurements(50, 51, 50, 51));
+    race.record(slow, measurements(100, 101, 100, 102));
+    // both are dominated, but only the most clearly dominated goes
+    assertEquals(ImmutableList.of(slow), race.prune().keySet().asList());
+    assertEquals(ImmutableList.of(alsoFast), race.prune().keySet().asList());
+    assertEquals(ImmutableList.of(fast), race.nextRound());
+  }
+
+  @Test
+  public void singleTrialNeedsAClearRatio() {
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(fast, slow), 2);
+    race.nextRound();
+    race.record(fast, measurements(10, 10.1, 10, 10.1));
+    race.record(slow, measurements(13, 13.1, 13, 13.1));
+    // many standard errors apart, but only 1.3 times slower after one trial
+    assertTrue(race.prune().isEmpty());
+  }
+
+  @Test
+  public void comparesTrialMeansOnceThereAreTwo() {
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(fast, slow), 2);
+    race.nextRound();
+    race.record(fast, measurements(10, 10.1, 10, 10.1));
+    race.record(slow, measurements(13, 13.1, 13, 13.1));
+    race.prune();
+    race.nextRound();
+    race.record(fast, measurements(12, 12.1, 12, 12.1));
+    race.record(slow, measurements(15, 15.1, 15, 15.1));
+    // the measurements are far apart, but the trials vary too much to tell
+    assertTrue(race.prune().isEmpty());
+  }
+
+  @Test
+  public void resumedTrialsCount() {
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(fast, alsoFast), 2);
+    race.resumed(fast);
+    race.resumed(fast);
+    race.resumed(alsoFast);
+    assertEquals(ImmutableList.of(alsoFast), race.nextRound());
+    assertEquals(ImmutableList.of(), race.nextRound());
+  }
+
+  @Test
+  public void throughputIsNotSmallerIsBetter() throws Exception {
+    ThreadedRuntimeInstrument instrument = new ThreadedRuntimeInstrument();
+    instrument.setOptions(ImmutableMap.of("threads", "2"));
+    InstrumentedMethod method =
+        instrument.createInstrumentedMethod(
+            MethodModel.of(FooBenchmark.class.getDeclaredMethod("myBenchmark", long.class)));
+    Target target = fast.target();
+    Experiment quick = Experiment.create(1, method, ImmutableMap.of("size", "1"), target);
+    Experiment sluggish = Experiment.create(2, method, ImmutableMap.of("size", "2"), target);
+
+    ExperimentRace race = new ExperimentRace(ImmutableList.of(quick, sluggish), 2);
+    race.nextRound();
+    race.record(
+        quick,
+        ImmutableList.<Measurement>builder()
+            .addAll(measurements(10, 11, 10, 11))
+            .addAll(measurements("throughput", "hz", 200, 190, 200, 190))
+            .build());
+    race.record(
+        sluggish,
+        ImmutableList.<Measurement>builder()
+            .addAll(measurements(100, 101, 100, 102))
+            .addAll(measurements("throughput", "hz", 20, 19, 20, 19))
+            .build());
+    // the quick experiment's higher throughput doesn't count against it
+    assertEquals(ImmutableList.of(sluggish), race.prune().keySet().asList());
+  }
+
+  private static ImmutableList<Measurement> measurements(double... values) {
+    return measurements("runtime", "ns", values);
+  }
+
+  private static ImmutableList<Measurement> measurements(
+      String description, String unit, double... values) {
+    ImmutableList.Builder<Measurement> result = ImmutableList.builder();
+    for (double value : values) {
+      result.add(
+          new Measurement.Builder()
+              .value(Value.create(value, unit))
+              .weight(1)
+              .description(description)
+              .build());
+    }
+    return result.build();
+  }
+
+  static class FooBenchmark {
+    @Benchmark
+    public long myBenchmark(long reps) {
+      return reps;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.core.BenchmarkClassModel.MethodModel;
+import com.google.caliper.json.GsonModule;
+import com.google.caliper.model.Host;
+import com.google.caliper.model.InstrumentSpec;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.model.Run;
+import com.google.caliper.model.Scenario;
+import com.google.caliper.model.Trial;
+import com.google.caliper.model.TrialPosition;
+import com.google.caliper.model.Value;
+import com.google.caliper.model.VmSpec;
+import com.google.caliper.runner.experiment.Experiment;
+import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
+import com.google.caliper.runner.instrument.RuntimeInstrument;
+import com.google.caliper.runner.options.ParsedOptions;
+import com.google.caliper.runner.target.LocalDevice;
+import com.google.caliper.runner.target.Target;
+import com.google.caliper.runner.worker.trial.TrialResult;
+import com.google.caliper.util.InvalidCommandException;
+import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import dagger.Component;
+import java.io.File;
+import java.util.UUID;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link TrialJournal}. */
+@RunWith(JUnit4.class)
+public class TrialJournalTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final Gson gson = DaggerTrialJournalTest_GsonComponent.create().gson();
+  private final Run run =
+      new Run.Builder(UUID.randomUUID()).label("test").startTime(Instant.now()).build();
+
+  private Experiment small;
+  private Experiment large;
+
+  @Before
+  public void setUp() throws Exception {
+    RuntimeInstrument instrument = new RuntimeInstrument(ShortDuration.of(100, NANOSECONDS));
+    InstrumentedMethod method =
+        instrument.createInstrumentedMethod(
+            MethodModel.of(FooBenchmark.class.getDeclaredMethod("myBenchmark", long.class)));
+    Target target = LocalDevice.builder().build().createDefaultTarget();
+    small = Experiment.create(1, method, ImmutableMap.of("size", "1"), target);
+    large = Experiment.create(2, method, ImmutableMap.of("size", "2"), target);
+  }
+
+  @Test
+  public void recordedTrialsAreReadBackWhenResuming() throws Exception {
+    TrialJournal journal = journal("--resume", run.id().toString());
+    journal.open(1, 2);
+    Trial first = trial(small, 1, 10);
+    Trial second = trial(large, 1, 20);
+    Trial third = trial(small, 2, 11);
+    journal.record(new TrialResult(first, small, ImmutableList.<String>of()));
+    journal.record(new TrialResult(second, large, ImmutableList.<String>of()));
+    journal.record(new TrialResult(third, small, ImmutableList.<String>of()));
+
+    ImmutableListMultimap<Experiment, TrialJournal.Entry> completed =
+        journal.completedTrials(ImmutableList.of(small, large));
+    assertEquals(2, completed.get(small).size());
+    assertEquals(first, completed.get(small).get(0).trial);
+    assertEquals(1, completed.get(small).get(0).trialNumber);
+    assertEquals(third, completed.get(small).get(1).trial);
+    assertEquals(2, completed.get(small).get(1).trialNumber);
+    assertEquals(ImmutableList.of(second), trials(completed.get(large)));
+  }
+
+  @Test
+  public void nothingIsReadBackWhenNotResuming() throws Exception {
+    TrialJournal journal = journal();
+    journal.open(1, 2);
+    journal.record(new TrialResult(trial(small, 1, 10), small, ImmutableList.<String>of()));
+    assertTrue(journal.completedTrials(ImmutableList.of(small, large)).isEmpty());
+  }
+
+  @Test
+  public void resumingWithoutJournalFails() throws Exception {
+    TrialJournal journal = journal("--resume", run.id().toString());
+    try {
+      journal.completedTrials(ImmutableList.of(small, large));
+      fail();
+    } catch (InvalidCommandException expected) {
+    }
+  }
+
+  @Test
+  public void truncatedLastLineIsIgnored() throws Exception {
+    TrialJournal journal = journal("--resume", run.id().toString());
+    journal.open(1, 2);
+    Trial first = trial(small, 1, 10);
+    journal.record(new TrialResult(first, small, ImmutableList.<String>of()));
+    journal.record(new TrialResult(trial(small, 2, 11), small, ImmutableList.<String>of()));
+
+    // cut the last line short, as a crash while writing it would
+    String contents = Files.asCharSource(journal.file(), UTF_8).read();
+    int lastLine = contents.lastIndexOf('\n', contents.length() - 2) + 1;
+    Files.asCharSink(journal.file(), UTF_8)
+        .write(contents.substring(0, lastLine + (contents.length() - lastLine) / 2));
+
+    ImmutableListMultimap<Experiment, TrialJournal.Entry> completed =
+        journal.completedTrials(ImmutableList.of(small, large));
+    assertEquals(ImmutableList.of(first), trials(completed.get(small)));
+    assertTrue(completed.get(large).isEmpty());
+  }
+
+  @Test
+  public void trialsOfExperimentsNotSelectedAreIgnored() throws Exception {
+    TrialJournal journal = journal("--resume", run.id().toString());
+    journal.open(1, 2);
+    Trial smallTrial = trial(small, 1, 10);
+    journal.record(new TrialResult(smallTrial, small, ImmutableList.<String>of()));
+    journal.record(new TrialResult(trial(large, 1, 20), large, ImmutableList.<String>of()));
+
+    ImmutableListMultimap<Experiment, TrialJournal.Entry> completed =
+        journal.completedTrials(ImmutableList.of(small));
+    assertEquals(ImmutableList.of(small), completed.keySet().asList());
+    assertEquals(ImmutableList.of(smallTrial), trials(completed.get(small)));
+  }
+
+  @Test
+  public void seedsAreReadBackWhenResuming() throws Exception {
+    TrialJournal original = journal();
+    original.open(17, 42);
+    original.record(new TrialResult(trial(small, 1, 10), small, ImmutableList.<String>of()));
+    assertEquals(Optional.absent(), original.resumedExperimentDesignSeed());
+    assertEquals(Optional.absent(), original.resumedTrialOrderSeed());
+
+    TrialJournal resumed = journal("--resume", run.id().toString());
+    assertEquals(Optional.of(17L), resumed.resumedExperimentDesignSeed());
+    assertEquals(Optional.of(42L), resumed.resumedTrialOrderSeed());
+    // the resumed run adds to the journal without starting it again
+    resumed.open(1, 2);
+    resumed.record(new TrialResult(trial(large, 2, 20), large, ImmutableList.<String>of()));
+    assertEquals(3, Files.readLines(resumed.file(), UTF_8).size());
+    assertEquals(
+        Optional.of(42L), journal("--resume", run.id().toString()).resumedTrialOrderSeed());
+  }
+
+  @Test
+  public void resumingWithoutJournalFailsBeforeReadingSeeds() throws Exception {
+    try {
+      journal("--resume", run.id().toString()).resumedTrialOrderSeed();
+      fail();
+    } catch (InvalidCommandException expected) {
+    }
+  }
+
+  @Test
+  public void deleteRemovesJournal() throws Exception {
+    TrialJournal journal = journal();
+    journal.open(1, 2);
+    journal.record(new TrialResult(trial(small, 1, 10), small, ImmutableList.<String>of()));
+    assertTrue(journal.file().isFile());
+
+    journal.delete();
+    assertFalse(journal.file().exists());
+    // a run that recorded nothing has nothing to delete
+    journal().delete();
+  }
+
+  private TrialJournal journal(String... args) throws Exception {
+    return new TrialJournal(folder.getRoot(), run, gson, ParsedOptions.from(args, false));
+  }
+
+  private Trial trial(Experiment experiment, int number, double nanos) {
+    return new Trial.Builder(UUID.randomUUID())
+        .run(run)
+        .instrumentSpec(
+            new InstrumentSpec.Builder()
+                .className(RuntimeInstrument.class.getName())
+                .addOption("gcBeforeEach", "true"))
+        .scenario(
+            new Scenario.Builder()
+                .host(new Host.Builder().addProperty("os.name", "test"))
+                .vmSpec(new VmSpec.Builder().addOption("-Xmx", "1g"))
+                .benchmarkSpec(experiment.benchmarkSpec()))
+        .addMeasurement(
+            new Measurement.Builder()
+                .value(Value.create(nanos, "ns"))
+                .weight(1)
+                .description("runtime"))
+        .position(
+            new TrialPosition.Builder()
+                .number(number)
+                .order("sequential")
+                .startTime(Instant.now())
+                .cpuAffinity("taskset -c 1")
+                .build())
+        .build();
+  }
+
+  private static ImmutableList<Trial> trials(Iterable<TrialJournal.Entry> entries) {
+    ImmutableList.Builder<Trial> trials = ImmutableList.builder();
+    for (TrialJournal.Entry entry : entries) {
+      trials.add(entry.trial);
+    }
+    return trials.build();
+  }
+
+  @Component(modules = GsonModule.class)
+  interface GsonComponent {
+    Gson gson();
+  }
+
+  static class FooBenchmark {
+    @Benchmark
+    public long myBenchmark(long reps) {
+      return reps;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.api.VmOptions;
+import com.google.caliper.core.BenchmarkClassModel;
+import com.google.caliper.runner.TrialScheduler.Demand;
+import com.google.caliper.runner.target.LocalDevice;
+import com.google.caliper.runner.target.Target;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import dagger.producers.Producer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link TrialScheduler}. */
+@RunWith(JUnit4.class)
+public class TrialSchedulerTest {
+  private static final long GB = 1L << 30;
+
+  /** A trial that is running once it has been started, until it is finished. */
+  private static final class FakeTrial implements Producer<String> {
+    final SettableFuture<String> result = SettableFuture.create();
+    boolean started = false;
+
+    @Override
+    public ListenableFuture<String> get() {
+      started = true;
+      return result;
+    }
+
+    void finish() {
+      result.set("done");
+    }
+  }
+
+  private static Demand parallel(int cores, long memoryBytes) {
+    return new Demand(cores, memoryBytes, false);
+  }
+
+  @Test
+  public void startsTrialsWhileResourcesAreFree() {
+    TrialScheduler scheduler = new TrialScheduler(null, 8, 4, 4 * GB);
+    FakeTrial first = new FakeTrial();
+    FakeTrial second = new FakeTrial();
+    FakeTrial third = new FakeTrial();
+    scheduler.schedule(parallel(1, 2 * GB), first);
+    scheduler.schedule(parallel(1, 2 * GB), second);
+    scheduler.schedule(parallel(1, 2 * GB), third);
+    assertTrue(first.started);
+    assertTrue(second.started);
+    assertFalse(third.started);
+
+    first.finish();
+    assertTrue(third.started);
+  }
+
+  @Test
+  public void limitsParallelismAndCores() {
+    TrialScheduler scheduler = new TrialScheduler(null, 2, 3, -1);
+    FakeTrial first = new FakeTrial();
+    FakeTrial second = new FakeTrial();
+    FakeTrial third = new FakeTrial();
+    scheduler.schedule(parallel(2, 100 * GB), first);
+    scheduler.schedule(parallel(2, 0), second);
+    scheduler.schedule(parallel(1, 0), third);
+    // memory is unknown, so isn't limited, but the second trial needs more cores than are free,
+    // and holds up the third
+    assertTrue(first.started);
+    assertFalse(second.started);
+    assertFalse(third.started);
+
+    first.finish();
+    assertTrue(second.started);
+    assertTrue(third.started);
+  }
+
+  @Test
+  public void exclusiveTrialsRunAlone() throws Exception {
+    TrialScheduler scheduler = new TrialScheduler(null, 8, 8, 8 * GB);
+    FakeTrial first = new FakeTrial();
+    FakeTrial exclusive = new FakeTrial();
+    FakeTrial last = new FakeTrial();
+    scheduler.schedule(parallel(1, GB), first);
+    ListenableFuture<String> exclusiveResult = scheduler.schedule(Demand.EXCLUSIVE, exclusive);
+    scheduler.schedule(parallel(1, GB), last);
+    assertTrue(first.started);
+    assertFalse(exclusive.started);
+
+    first.finish();
+    assertTrue(exclusive.started);
+    assertFalse(last.started);
+
+    exclusive.finish();
+    assertEquals("done", exclusiveResult.get());
+    assertTrue(last.started);
+  }
+
+  @Test
+  public void oversizedTrialRunsAlone() {
+    TrialScheduler scheduler = new TrialScheduler(null, 8, 8, 4 * GB);
+    FakeTrial huge = new FakeTrial();
+    FakeTrial small = new FakeTrial();
+    scheduler.schedule(parallel(1, 16 * GB), huge);
+    scheduler.schedule(parallel(1, GB), small);
+    assertTrue(huge.started);
+    assertFalse(small.started);
+
+    huge.finish();
+    assertTrue(small.started);
+  }
+
+  @Test
+  public void cancelledTrialIsNeverStarted() {
+    TrialScheduler scheduler = new TrialScheduler(null, 1, 8, -1);
+    FakeTrial first = new FakeTrial();
+    FakeTrial cancelled = new FakeTrial();
+    scheduler.schedule(parallel(1, 0), first);
+    scheduler.schedule(parallel(1, 0), cancelled).cancel(true);
+    first.finish();
+    assertFalse(cancelled.started);
+  }
+
+  @Test
+  public void dryRunsWaitForExclusiveTrials() {
+    TrialScheduler scheduler =
+        new TrialScheduler(BenchmarkClassModel.create(FooBenchmark.class), 8, 8, -1);
+    Target target = LocalDevice.builder().build().createDefaultTarget();
+    FakeTrial exclusive = new FakeTrial();
+    FakeTrial firstShard = new FakeTrial();
+    FakeTrial secondShard = new FakeTrial();
+    scheduler.schedule(Demand.EXCLUSIVE, exclusive);
+    scheduler.scheduleDryRun(target, firstShard);
+    scheduler.scheduleDryRun(target, secondShard);
+    assertTrue(exclusive.started);
+    assertFalse(firstShard.started);
+
+    // dry runs take no measurements, so the shards run in parallel with each other
+    exclusive.finish();
+    assertTrue(firstShard.started);
+    assertTrue(secondShard.started);
+  }
+
+  @Test
+  public void dryRunsAreLimitedByTheBenchmarkHeap() {
+    // each shard needs the 3g heap the benchmark asks for, plus an allowance for the rest of the VM
+    TrialScheduler scheduler =
+        new TrialScheduler(BenchmarkClassModel.create(FooBenchmark.class), 8, 8, 8 * GB);
+    Target target = LocalDevice.builder().build().createDefaultTarget();
+    FakeTrial first = new FakeTrial();
+    FakeTrial second = new FakeTrial();
+    FakeTrial third = new FakeTrial();
+    scheduler.scheduleDryRun(target, first);
+    scheduler.scheduleDryRun(target, second);
+    scheduler.scheduleDryRun(target, third);
+    assertTrue(first.started);
+    assertTrue(second.started);
+    assertFalse(third.started);
+
+    second.finish();
+    assertTrue(third.started);
+  }
+
+  @Test
+  public void dryRunsAreLimitedByMaxParallelism() {
+    TrialScheduler scheduler =
+        new TrialScheduler(BenchmarkClassModel.create(FooBenchmark.class), 1, 8, -1);
+    Target target = LocalDevice.builder().build().createDefaultTarget();
+    FakeTrial first = new FakeTrial();
+    FakeTrial second = new FakeTrial();
+    scheduler.scheduleDryRun(target, first);
+    scheduler.scheduleDryRun(target, second);
+    assertTrue(first.started);
+    assertFalse(second.started);
+
+    first.finish();
+    assertTrue(second.started);
+  }
+
+  @Test
+  public void maxHeapBytes() {
+    assertEquals(-1, TrialScheduler.maxHeapBytes(ImmutableList.of("-Xms1g", "-server")));
+    assertEquals(
+        512L << 20, TrialScheduler.maxHeapBytes(ImmutableList.of("-Xmx2g", "-Xmx512m", "-Xms1g")));
+    assertEquals(
+        3 * GB, TrialScheduler.maxHeapBytes(ImmutableList.of("-Xmx1G", "-XX:MaxHeapSize=3G")));
+    assertEquals(4096, TrialScheduler.maxHeapBytes(ImmutableList.of("-Xmx4096", "-Xmxlots")));
+  }
+
+  @VmOptions("-Xmx3g")
+  static class FooBenchmark {
+    @Benchmark
+    public long myBenchmark(long reps) {
+      return reps;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.runner.experiment.ExperimentDesign.Mode;
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link ExperimentDesign}. */
+@RunWith(JUnit4.class)
+public class ExperimentDesignTest {
+  /** Five parameters with six values each: 7,776 combinations. */
+  private static final ImmutableList<ImmutableList<String>> VALUES =
+      ImmutableList.of(
+          ImmutableList.of("a0", "a1", "a2", "a3", "a4", "a5"),
+          ImmutableList.of("b0", "b1", "b2", "b3", "b4", "b5"),
+          ImmutableList.of("c0", "c1", "c2", "c3", "c4", "c5"),
+          ImmutableList.of("d0", "d1", "d2", "d3", "d4", "d5"),
+          ImmutableList.of("e0", "e1", "e2", "e3", "e4", "e5"));
+
+  @Test
+  public void pairwiseCoversEveryPair() {
+    ExperimentDesign design = new ExperimentDesign(Mode.PAIRWISE, 42, Optional.<Integer>absent());
+    ImmutableList<List<String>> combinations = design.sample(VALUES, 1);
+    assertTrue(combinations.size() < 100);
+
+    Set<List<String>> pairs = Sets.newHashSet();
+    for (List<String> combination : combinations) {
+      for (int a = 0; a < combination.size(); a++) {
+        for (int b = a + 1; b < combination.size(); b++) {
+          pairs.add(ImmutableList.of(combination.get(a), combination.get(b)));
+        }
+      }
+    }
+    // 10 pairs of parameters, each with 36 pairs of values
+    assertEquals(360, pairs.size());
+  }
+
+  @Test
+  public void budgetLimitsCombinations() {
+    ExperimentDesign design = new ExperimentDesign(Mode.PAIRWISE, 42, Optional.of(30));
+    // each combination is run as 3 experiments
+    assertEquals(10, design.sample(VALUES, 3).size());
+  }
+
+  @Test
+  public void latinHypercubeUsesValuesEvenly() {
+    ExperimentDesign design = new ExperimentDesign(Mode.LATIN_HYPERCUBE, 7, Optional.of(12));
+    ImmutableList<List<String>> combinations = design.sample(VALUES, 1);
+    assertEquals(12, combinations.size());
+    for (int i = 0; i < VALUES.size(); i++) {
+      Multiset<String> used = HashMultiset.create();
+      for (List<String> combination : combinations) {
+        used.add(combination.get(i));
+      }
+      for (String value : VALUES.get(i)) {
+        assertEquals(2, used.count(value));
+      }
+    }
+  }
+
+  @Test
+  public void sameSeedSameCombinations() {
+    for (Mode mode : ImmutableList.of(Mode.PAIRWISE, Mode.LATIN_HYPERCUBE)) {
+      assertEquals(
+          new ExperimentDesign(mode, 3, Optional.of(20)).sample(VALUES, 1),
+          new ExperimentDesign(mode, 3, Optional.of(20)).sample(VALUES, 1));
+    }
+  }
+}
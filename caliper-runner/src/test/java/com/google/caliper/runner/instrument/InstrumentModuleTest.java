@@ -22,6 +22,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
 import com.google.caliper.Benchmark;
+import com.google.caliper.api.Blackhole;
 import com.google.caliper.core.BenchmarkClassModel;
 import com.google.caliper.core.BenchmarkClassModel.MethodModel;
 import com.google.caliper.model.InstrumentType;
@@ -30,6 +31,8 @@ import com.google.caliper.runner.config.VmType;
 import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
 import com.google.caliper.runner.options.CaliperOptions;
 import com.google.common.collect.ImmutableSet;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -48,6 +51,9 @@ public class InstrumentModuleTest {
 
   @Mock CaliperOptions options;
 
+  private final StringWriter stderrContents = new StringWriter();
+  private final PrintWriter stderr = new PrintWriter(stderrContents, true);
+
   private MethodModel methodA;
   private MethodModel methodB;
   private MethodModel methodC;
@@ -72,7 +78,7 @@ public class InstrumentModuleTest {
             .add(instrumentB.createInstrumentedMethod(methodC))
             .build(),
         InstrumentModule.provideInstrumentedMethods(
-            options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB)));
+            options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB), stderr));
   }
 
   @SuppressWarnings("unchecked")
@@ -86,7 +92,7 @@ public class InstrumentModuleTest {
             .add(instrumentB.createInstrumentedMethod(methodB))
             .build(),
         InstrumentModule.provideInstrumentedMethods(
-            options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB)));
+            options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB), stderr));
     assertEquals(
         new ImmutableSet.Builder<InstrumentedMethod>()
             .add(instrumentA.createInstrumentedMethod(methodA))
@@ -95,7 +101,7 @@ public class InstrumentModuleTest {
             .add(instrumentB.createInstrumentedMethod(methodC))
             .build(),
         InstrumentModule.provideInstrumentedMethods(
-            options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB)));
+            options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB), stderr));
   }
 
   @Test
@@ -103,13 +109,42 @@ public class InstrumentModuleTest {
     when(options.benchmarkMethodNames()).thenReturn(ImmutableSet.of("a", "c", "bad"));
     try {
       InstrumentModule.provideInstrumentedMethods(
-          options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB));
+          options, TEST_BENCHMARK_MODEL, ImmutableSet.of(instrumentA, instrumentB), stderr);
       fail("should have thrown for invalid benchmark method name");
     } catch (Exception expected) {
       assertThat(expected.getMessage()).contains("[bad]");
     }
   }
 
+  @Test
+  public void provideInstrumentedMethods_warnsAboutDiscardedPicobenchmarkResults()
+      throws Exception {
+    when(options.benchmarkMethodNames()).thenReturn(ImmutableSet.<String>of());
+    InstrumentModule.provideInstrumentedMethods(
+        options,
+        BenchmarkClassModel.create(PicoBenchmark.class),
+        ImmutableSet.of(instrumentA, instrumentB),
+        stderr);
+    String warnings = stderrContents.toString();
+    assertThat(warnings).contains("WARNING: discarding returns void");
+    assertThat(warnings).doesNotContain("returning");
+    assertThat(warnings).doesNotContain("consuming");
+    assertEquals(warnings.indexOf("WARNING"), warnings.lastIndexOf("WARNING"));
+  }
+
+  static final class PicoBenchmark {
+    @Benchmark
+    void discarding(long reps) {}
+
+    @Benchmark
+    long returning(long reps) {
+      return reps;
+    }
+
+    @Benchmark
+    void consuming(long reps, Blackhole blackhole) {}
+  }
+
   static final class TestBenchmark {
     @Benchmark
     void a() {}
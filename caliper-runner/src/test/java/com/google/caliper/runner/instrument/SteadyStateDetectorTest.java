@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link SteadyStateDetector}. */
+@RunWith(JUnit4.class)
+public class SteadyStateDetectorTest {
+  private final SteadyStateDetector detector = new SteadyStateDetector();
+
+  @Test
+  public void notSteadyUntilWindowIsFull() {
+    for (int i = 0; i < SteadyStateDetector.WINDOW - 1; i++) {
+      detector.addMeasurement(100);
+      assertFalse(detector.isSteady());
+    }
+    detector.addMeasurement(100);
+    assertTrue(detector.isSteady());
+  }
+
+  @Test
+  public void noisyButFlat() {
+    add(100, 110, 95, 105, 98, 103);
+    assertTrue(detector.isSteady());
+  }
+
+  @Test
+  public void stillSpeedingUp() {
+    add(200, 180, 160, 140, 120, 100);
+    assertFalse(detector.isSteady());
+  }
+
+  @Test
+  public void trendEndsWithinWindow() {
+    add(200, 180, 160, 140, 120, 100);
+    add(100, 101, 99, 100, 100, 100);
+    assertTrue(detector.isSteady());
+  }
+
+  @Test
+  public void compilationRestartsWindow() {
+    add(100, 100, 100, 100, 100, 100);
+    detector.compilationOccurred();
+    assertFalse(detector.isSteady());
+    add(100, 100, 100, 100, 100);
+    assertFalse(detector.isSteady());
+    add(100);
+    assertTrue(detector.isSteady());
+  }
+
+  private void add(double... timesPerRep) {
+    for (double timePerRep : timesPerRep) {
+      detector.addMeasurement(timePerRep);
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
+import java.util.UUID;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -123,6 +124,23 @@ public class ParsedOptionsTest {
     }
   }
 
+  @Test
+  public void testResume() throws InvalidCommandException {
+    UUID id = UUID.randomUUID();
+    CaliperOptions options = ParsedOptions.from(new String[] {"--resume", id.toString()}, false);
+    assertEquals(id, options.resumeRunId().get());
+  }
+
+  @Test
+  public void testResume_invalidRunId() {
+    try {
+      ParsedOptions.from(new String[] {"--resume", "not-a-run"}, false);
+      fail();
+    } catch (InvalidCommandException expected) {
+      assertThat(expected).hasMessageThat().contains("not-a-run");
+    }
+  }
+
   @Test
   public void testDefaults_RequireBenchmarkClassName() throws InvalidCommandException {
     CaliperOptions options = ParsedOptions.from(new String[] {CLASS_NAME}, true);
@@ -204,6 +222,7 @@ public class ParsedOptionsTest {
     assertFalse(options.printConfiguration());
     assertTrue(options.vmArguments().isEmpty());
     assertEquals(0, options.vmNames().size());
+    assertFalse(options.resumeRunId().isPresent());
   }
 
   @Test
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.worker.trial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.runner.worker.trial.TrialOrder.Mode;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link TrialOrder}. */
+@RunWith(JUnit4.class)
+public class TrialOrderTest {
+  private static final ImmutableList<String> EXPERIMENTS = ImmutableList.of("a", "b", "c", "d");
+
+  @Test
+  public void sequential() {
+    assertEquals(
+        ImmutableList.of("a", "b", "c", "d", "a", "b", "c", "d"),
+        new TrialOrder(Mode.SEQUENTIAL, 42).order(EXPERIMENTS, 2));
+  }
+
+  @Test
+  public void shuffledIsReproducibleFromSeed() {
+    ImmutableList<String> order = new TrialOrder(Mode.SHUFFLED, 42).order(EXPERIMENTS, 3);
+    assertEquals(order, new TrialOrder(Mode.SHUFFLED, 42).order(EXPERIMENTS, 3));
+    Multiset<String> trials = HashMultiset.create(order);
+    for (String experiment : EXPERIMENTS) {
+      assertEquals(3, trials.count(experiment));
+    }
+  }
+
+  @Test
+  public void interleavedPutsEveryExperimentInEveryPlace() {
+    int n = EXPERIMENTS.size();
+    List<String> order = new TrialOrder(Mode.INTERLEAVED, 7).order(EXPERIMENTS, n);
+    assertEquals(n * n, order.size());
+    for (int place = 0; place < n; place++) {
+      Set<String> inPlace = new HashSet<>();
+      for (int round = 0; round < n; round++) {
+        inPlace.add(order.get(round * n + place));
+      }
+      assertEquals(ImmutableSet.copyOf(EXPERIMENTS), inPlace);
+    }
+    for (int round = 0; round < n; round++) {
+      assertEquals(
+          ImmutableSet.copyOf(EXPERIMENTS),
+          ImmutableSet.copyOf(order.subList(round * n, round * n + n)));
+    }
+  }
+
+  @Test
+  public void interleavedBalancesWhichExperimentFollowsWhich() {
+    int n = EXPERIMENTS.size();
+    List<String> order = new TrialOrder(Mode.INTERLEAVED, 7).order(EXPERIMENTS, n);
+    Set<String> pairs = new HashSet<>();
+    for (int round = 0; round < n; round++) {
+      for (int place = 1; place < n; place++) {
+        pairs.add(order.get(round * n + place - 1) + order.get(round * n + place));
+      }
+    }
+    // every ordered pair of different experiments, exactly once
+    assertEquals(n * (n - 1), pairs.size());
+  }
+
+  @Test
+  public void interleavedRoundsFollowTheRowsOfTheFullOrder() {
+    int n = EXPERIMENTS.size();
+    TrialOrder trialOrder = new TrialOrder(Mode.INTERLEAVED, 7);
+    List<String> order = trialOrder.order(EXPERIMENTS, n);
+    for (int round = 0; round < n; round++) {
+      assertEquals(
+          order.subList(round * n, round * n + n), trialOrder.orderRound(EXPERIMENTS, round));
+    }
+  }
+
+  @Test
+  public void shuffledRoundsDiffer() {
+    TrialOrder trialOrder = new TrialOrder(Mode.SHUFFLED, 42);
+    Set<List<String>> rounds = new HashSet<>();
+    for (int round = 0; round < 10; round++) {
+      List<String> order = trialOrder.orderRound(EXPERIMENTS, round);
+      assertEquals(ImmutableSet.copyOf(EXPERIMENTS), ImmutableSet.copyOf(order));
+      assertEquals(order, new TrialOrder(Mode.SHUFFLED, 42).orderRound(EXPERIMENTS, round));
+      rounds.add(order);
+    }
+    assertTrue(rounds.size() > 1);
+  }
+}
@@ -25,12 +25,13 @@ import com.google.common.io.Closer;
 import com.google.common.io.Resources;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Member;
 import java.lang.reflect.Modifier;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public final class Util {
@@ -115,23 +116,27 @@ public final class Util {
 
   private static final long FORCE_GC_TIMEOUT_SECS = 2;
 
-  public static void forceGc() {
+  /**
+   * Triggers a full garbage collection and waits for it to complete, returning how long that took.
+   *
+   * <p>Completion is detected by a weakly-reachable sentinel object being cleared. With most
+   * collectors {@link System#gc()} only returns once that has happened; with a concurrent collector
+   * (e.g. {@code -XX:+ExplicitGCInvokesConcurrent}), this waits for the sentinel to be enqueued, up
+   * to {@value #FORCE_GC_TIMEOUT_SECS} seconds.
+   */
+  public static ShortDuration forceGc() {
+    long start = System.nanoTime();
+    ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    WeakReference<Object> sentinel = new WeakReference<Object>(new Object(), queue);
     System.gc();
-    System.runFinalization();
-    final CountDownLatch latch = new CountDownLatch(1);
-    new Object() {
-      @Override
-      protected void finalize() {
-        latch.countDown();
+    if (sentinel.get() != null) {
+      try {
+        queue.remove(TimeUnit.SECONDS.toMillis(FORCE_GC_TIMEOUT_SECS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
-    };
-    System.gc();
-    System.runFinalization();
-    try {
-      latch.await(FORCE_GC_TIMEOUT_SECS, TimeUnit.SECONDS);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
     }
+    return ShortDuration.of(System.nanoTime() - start, TimeUnit.NANOSECONDS);
   }
 
   public static <T> ImmutableBiMap<T, String> assignNames(Set<T> items) {
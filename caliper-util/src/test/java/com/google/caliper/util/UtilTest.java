@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.util;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link Util}. */
+@RunWith(JUnit4.class)
+public class UtilTest {
+  @Test
+  public void forceGc_collectsUnreachableObjects() {
+    WeakReference<Object> garbage = new WeakReference<Object>(new Object());
+    ShortDuration barrierTime = Util.forceGc();
+    assertNull(garbage.get());
+    assertTrue(barrierTime.compareTo(ShortDuration.of(1, TimeUnit.SECONDS)) < 0);
+  }
+}
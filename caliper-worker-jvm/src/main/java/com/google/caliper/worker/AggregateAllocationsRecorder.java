@@ -17,24 +17,54 @@ package com.google.caliper.worker;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Ints;
 import com.google.monitoring.runtime.instrumentation.Sampler;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import javax.inject.Inject;
 
-/** An {@link AllocationRecorder} that records the number and cumulative size of allocation. */
+/**
+ * An {@link AllocationRecorder} that records the number and cumulative size of allocation.
+ *
+ * <p>Each allocating thread counts into its own {@link Cell}, padded so that no two threads' counts
+ * share a cache line. The cells are only summed when a recording starts or stops, so threads
+ * allocating concurrently in a benchmark don't contend on the recorder. The cells of threads that
+ * have died are folded into a running total when summing and dropped, so a benchmark that starts
+ * a new thread for every rep doesn't leave a cell behind for each one.
+ */
 final class AggregateAllocationsRecorder extends AllocationRecorder {
-  private final AtomicInteger allocationCount = new AtomicInteger();
-  private final AtomicLong allocationSize = new AtomicLong();
+  /** The cells of the threads that have allocated, other than those already retired. */
+  private final Queue<Cell> cells = new ConcurrentLinkedQueue<Cell>();
+
+  private final ThreadLocal<Cell> threadCell =
+      new ThreadLocal<Cell>() {
+        @Override
+        protected Cell initialValue() {
+          Cell cell = new Cell(Thread.currentThread());
+          cells.add(cell);
+          return cell;
+        }
+      };
+
+  /** The counts of the cells that have been dropped since their threads died. */
+  private long retiredCount;
+  private long retiredSize;
+
+  private long countAtStart;
+  private long sizeAtStart;
   private volatile boolean recording = false;
 
-  private final Sampler sampler =
+  @VisibleForTesting
+  final Sampler sampler =
       new Sampler() {
         @Override
         public void sampleAllocation(int arrayCount, String desc, Object newObj, long size) {
           if (recording) {
-            allocationCount.getAndIncrement();
-            allocationSize.getAndAdd(size);
+            threadCell.get().add(size);
           }
         }
       };
@@ -47,8 +77,15 @@ final class AggregateAllocationsRecorder extends AllocationRecorder {
   @Override
   protected void doStartRecording() {
     checkState(!recording, "startRecording called, but we were already recording.");
-    allocationCount.set(0);
-    allocationSize.set(0);
+    retireDeadCells();
+    long count = retiredCount;
+    long size = retiredSize;
+    for (Cell cell : cells) {
+      count += cell.count;
+      size += cell.size;
+    }
+    countAtStart = count;
+    sizeAtStart = size;
     recording = true;
   }
 
@@ -56,6 +93,86 @@ final class AggregateAllocationsRecorder extends AllocationRecorder {
   public AllocationStats stopRecording(int reps) {
     checkState(recording, "stopRecording called, but we were not recording.");
     recording = false;
-    return new AllocationStats(allocationCount.get(), allocationSize.get(), reps);
+    retireDeadCells();
+    long count = retiredCount;
+    long size = retiredSize;
+    for (Cell cell : cells) {
+      count += cell.count;
+      size += cell.size;
+    }
+    return new AllocationStats(Ints.checkedCast(count - countAtStart), size - sizeAtStart, reps);
+  }
+
+  /**
+   * Moves the counts of the cells whose threads have died into the retired totals and drops those
+   * cells. A dead thread can't allocate any more, and seeing that it has terminated makes all of
+   * its writes to its cell visible, so its counts are final.
+   */
+  private void retireDeadCells() {
+    for (Iterator<Cell> i = cells.iterator(); i.hasNext(); ) {
+      Cell cell = i.next();
+      Thread owner = cell.owner.get();
+      if (owner == null || !owner.isAlive()) {
+        retiredCount += cell.count;
+        retiredSize += cell.size;
+        i.remove();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int cellCount() {
+    return cells.size();
+  }
+
+  @Override
+  void release() {
+    com.google.monitoring.runtime.instrumentation.AllocationRecorder.removeSampler(sampler);
+  }
+
+  /** Fields that keep the counts of one cell off the cache line of the object header before it. */
+  @SuppressWarnings("unused")
+  private abstract static class LeftPadding {
+    long p0, p1, p2, p3, p4, p5, p6, p7;
+  }
+
+  /**
+   * The counts of a single thread. They are never reset, so that only their owner ever writes to
+   * them; a recording instead subtracts the totals seen when it started.
+   */
+  private abstract static class Counts extends LeftPadding {
+    static final AtomicLongFieldUpdater<Counts> COUNT =
+        AtomicLongFieldUpdater.newUpdater(Counts.class, "count");
+    static final AtomicLongFieldUpdater<Counts> SIZE =
+        AtomicLongFieldUpdater.newUpdater(Counts.class, "size");
+
+    volatile long count;
+    volatile long size;
+
+    /**
+     * Adds an allocation of the given size. Only called by the owning thread, so an ordered store
+     * is enough and there is no need for the fence of a volatile write or a CAS.
+     */
+    final void add(long allocationSize) {
+      COUNT.lazySet(this, count + 1);
+      SIZE.lazySet(this, size + allocationSize);
+    }
+  }
+
+  /**
+   * Fields that keep the counts of one cell off the cache line of whatever is allocated after it.
+   * The padding is split across superclass and subclass because the JVM lays out a class's own
+   * fields in any order it likes, but always after those of its superclass.
+   */
+  @SuppressWarnings("unused")
+  private static final class Cell extends Counts {
+    long q0, q1, q2, q3, q4, q5, q6, q7;
+
+    /** Weakly held so that the cell doesn't keep a dead thread reachable. */
+    final WeakReference<Thread> owner;
+
+    Cell(Thread owner) {
+      this.owner = new WeakReference<Thread>(owner);
+    }
   }
 }
@@ -16,56 +16,78 @@
 package com.google.caliper.worker;
 
 import static com.google.common.base.Preconditions.checkState;
-import static java.util.Arrays.asList;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.caliper.core.Running;
+import com.google.caliper.model.BenchmarkSpec;
+import com.google.caliper.worker.instrument.WorkerInstrument;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
 import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset.Entry;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.AtomicLongMap;
 import com.google.monitoring.runtime.instrumentation.Sampler;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 
 /**
  * An {@link AllocationRecorder} that records every allocation and its location.
  *
- * <p>This recorder is enabled via the {@code trackAllocations} worker option.
+ * <p>This recorder is enabled via the {@code trackAllocations} worker option. Capturing the stack
+ * is what makes it slow, so with the {@code allocationSamplingInterval} option set to N it only
+ * records the location of every Nth allocation, while still counting all of them. The stack is
+ * only walked out as far as the benchmark method (see {@link CapturedStack}), and locations and the
+ * allocations made at them are interned in a {@link FrameTrie}, so sampling an allocation that has
+ * been seen before allocates little more than the stack walk does.
+ *
+ * <p>If the {@code collapsedStacksDir} option is set, the bytes allocated at each location over all
+ * recordings so far are written to a file in that directory after each recording, in the
+ * collapsed-stack format that flame graph tools read.
  */
 final class AllAllocationsRecorder extends AllocationRecorder {
   private final Class<?> benchmarkClass;
   private final String benchmarkMethodName;
+  private final int samplingInterval;
+  private final Optional<File> collapsedStacksFile;
+  private final FrameTrie locations = new FrameTrie();
   private volatile boolean recording = false;
+  private final AtomicInteger allocationCount = new AtomicInteger();
+  private final AtomicLong allocationSize = new AtomicLong();
   private final ConcurrentHashMultiset<Allocation> allocations = ConcurrentHashMultiset.create();
+  private final AtomicLongMap<Allocation> totalBytesByAllocation = AtomicLongMap.create();
+
+  /** Each thread's visitor, reused for every sample the thread takes. */
+  private final ThreadLocal<LocationVisitor> locationVisitor =
+      new ThreadLocal<LocationVisitor>() {
+        @Override
+        protected LocationVisitor initialValue() {
+          return new LocationVisitor();
+        }
+      };
 
-  private final Sampler sampler =
+  @VisibleForTesting
+  final Sampler sampler =
       new Sampler() {
         @Override
         public void sampleAllocation(int arrayCount, String desc, Object newObj, long size) {
           if (recording) {
-            if (arrayCount != -1) {
-              desc = desc + "[" + arrayCount + "]";
+            int index = allocationCount.getAndIncrement();
+            allocationSize.getAndAdd(size);
+            if (index % samplingInterval != 0) {
+              return;
             }
-            // The first item is this line, the second is in AllocationRecorder and the
-            // one before that is the allocating line, so we start at index 2.
-            // We want to grab all lines until we get into the benchmark method.
-            StackTraceElement[] stackTrace = new Exception().getStackTrace();
-            int startIndex = 2;
-            int endIndex = 2;
-            for (int i = startIndex; i < stackTrace.length; i++) {
-              StackTraceElement element = stackTrace[i];
-              if (element
-                  .getClassName()
-                  .startsWith(AllAllocationsRecorder.class.getPackage().getName())) {
-                // Don't track locations up into the worker code, or originating within the worker
-                // code.
-                break;
-              }
-              endIndex = i;
-              if (element.getClassName().equals(benchmarkClass.getName())
-                  && element.getMethodName().equals(benchmarkMethodName)) {
-                // stop logging at the method under test
-                break;
-              }
-            }
-            allocations.add(
-                new Allocation(desc, size, asList(stackTrace).subList(startIndex, endIndex + 1)));
+            // The caller of this method is in AllocationRecorder and the one before that is the
+            // allocating line, so we skip 2 frames.
+            LocationVisitor visitor = locationVisitor.get();
+            visitor.location = locations.root();
+            CapturedStack.walk(2, visitor);
+            allocations.add(visitor.location.allocation(desc, arrayCount, size));
           }
         }
       };
@@ -73,15 +95,28 @@ final class AllAllocationsRecorder extends AllocationRecorder {
   @Inject
   AllAllocationsRecorder(
       @Running.BenchmarkClass Class<?> benchmarkClass,
-      @Running.BenchmarkMethod String benchmarkMethodName) {
+      @Running.BenchmarkMethod String benchmarkMethodName,
+      BenchmarkSpec benchmarkSpec,
+      @WorkerInstrument.Options Map<String, String> options) {
     this.benchmarkClass = benchmarkClass;
     this.benchmarkMethodName = benchmarkMethodName;
+    String samplingInterval = options.get("allocationSamplingInterval");
+    this.samplingInterval =
+        Strings.isNullOrEmpty(samplingInterval) ? 1 : Integer.parseInt(samplingInterval);
+    checkState(this.samplingInterval > 0, "allocationSamplingInterval must be positive");
+    String collapsedStacksDir = options.get("collapsedStacksDir");
+    this.collapsedStacksFile =
+        Strings.isNullOrEmpty(collapsedStacksDir)
+            ? Optional.<File>absent()
+            : Optional.of(new File(collapsedStacksDir, collapsedStacksFileName(benchmarkSpec)));
     com.google.monitoring.runtime.instrumentation.AllocationRecorder.addSampler(sampler);
   }
 
   @Override
   protected void doStartRecording() {
     checkState(!recording, "startRecording called, but we were already recording.");
+    allocationCount.set(0);
+    allocationSize.set(0);
     allocations.clear();
     recording = true;
   }
@@ -90,6 +125,74 @@ final class AllAllocationsRecorder extends AllocationRecorder {
   public AllocationStats stopRecording(int reps) {
     checkState(recording, "stopRecording called, but we were not recording.");
     recording = false;
-    return new AllocationStats(allocations, reps);
+    if (collapsedStacksFile.isPresent()) {
+      for (Entry<Allocation> entry : allocations.entrySet()) {
+        totalBytesByAllocation.addAndGet(
+            entry.getElement(), entry.getElement().getSize() * entry.getCount() * samplingInterval);
+      }
+      writeCollapsedStacks(collapsedStacksFile.get());
+    }
+    return new AllocationStats(
+        allocationCount.get(), allocationSize.get(), allocations, samplingInterval, reps);
+  }
+
+  @Override
+  void release() {
+    com.google.monitoring.runtime.instrumentation.AllocationRecorder.removeSampler(sampler);
+  }
+
+  /**
+   * Writes one line per allocation location and description: the frames from the benchmark method
+   * down to the allocating one, then the description of what was allocated, and the bytes allocated
+   * there.
+   */
+  private void writeCollapsedStacks(File file) {
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<Allocation, Long> entry : totalBytesByAllocation.asMap().entrySet()) {
+      entry.getKey().getLocation().appendCollapsed(builder);
+      builder
+          .append(';')
+          .append(entry.getKey().getDescription())
+          .append(' ')
+          .append(entry.getValue())
+          .append('\n');
+    }
+    try {
+      Files.asCharSink(file, UTF_8).write(builder);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Returns a file name that identifies the benchmark method and its parameters. */
+  private static String collapsedStacksFileName(BenchmarkSpec spec) {
+    StringBuilder name = new StringBuilder(spec.className()).append('.').append(spec.methodName());
+    for (Map.Entry<String, String> parameter : spec.parameters().entrySet()) {
+      name.append('-').append(parameter.getKey()).append('=').append(parameter.getValue());
+    }
+    return name.toString().replaceAll("[^\\w.=-]", "_") + ".collapsed";
+  }
+
+  /**
+   * Follows the frames from an allocation out to the benchmark method, ending at the node of the
+   * trie for that path.
+   */
+  private final class LocationVisitor implements CapturedStack.Visitor {
+    FrameTrie.Node location;
+
+    @Override
+    public boolean visit(StackTraceElement frame) {
+      if (frame.getClassName().startsWith(AllAllocationsRecorder.class.getPackage().getName())) {
+        // Don't track locations up into the worker code, or originating within the worker code.
+        if (location == locations.root()) {
+          location = location.caller(frame);
+        }
+        return false;
+      }
+      location = location.caller(frame);
+      // stop logging at the method under test
+      return !(frame.getClassName().equals(benchmarkClass.getName())
+          && frame.getMethodName().equals(benchmarkMethodName));
+    }
   }
 }
@@ -17,78 +17,69 @@ package com.google.caliper.worker;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Interner;
-import com.google.common.collect.Interners;
-import java.util.Collection;
-import java.util.List;
 
 /**
- * Data about a particular allocation performed by a benchmark. This tracks a human readable
- * description of the allocation (e.g. 'int[23]', 'java.lang.Integer', or 'java.util.ArrayList'),
- * the total size of the allocation in bytes and the location, which is a stringified stack trace of
- * the allocation.
+ * Data about a particular allocation performed by a benchmark. This tracks what was allocated (a
+ * type such as 'java.lang.Integer', and for arrays the length, described as e.g. 'int[23]'), the
+ * total size of the allocation in bytes and the location, which is the interned call path from the
+ * benchmark method to the allocation.
+ *
+ * <p>Allocations are interned by their location (see {@link FrameTrie.Node#allocation}), so
+ * sampling an allocation that has been seen before creates nothing.
  */
 final class Allocation {
-  // While particular lists of STEs can have a lot of variety within a benchmark there don't tend
-  // to be many individually unique STEs.  This can save a lot of memory.
-  // Within a benchmark the code paths should be fairly uniform so it should be safe to just store
-  // these forever.
-  private static final Interner<StackTraceElement> steInterner = Interners.newWeakInterner();
-  private static final Interner<String> descriptionInterner = Interners.newWeakInterner();
-
-  /** Returns the sum of the {@link #size sizes} of the allocations. */
-  static long getTotalSize(Collection<Allocation> allocations) {
-    long totalSize = 0;
-    for (Allocation allocation : allocations) {
-      totalSize += allocation.size;
-    }
-    return totalSize;
-  }
-
-  private final String description;
+  private final String type;
+  private final int arrayLength;
   private final long size;
-  private final ImmutableList<StackTraceElement> location;
+  private final FrameTrie.Node location;
+  // computed once, since it's needed to count every sample of the allocation
+  private final int hashCode;
 
-  Allocation(String description, long size, List<StackTraceElement> location) {
-    this.description = descriptionInterner.intern(description);
+  Allocation(String type, int arrayLength, long size, FrameTrie.Node location) {
+    this.type = type;
+    this.arrayLength = arrayLength;
     this.size = size;
-    ImmutableList.Builder<StackTraceElement> locationBuilder = ImmutableList.builder();
-    for (StackTraceElement ste : location) {
-      locationBuilder.add(steInterner.intern(ste));
-    }
-    this.location = locationBuilder.build();
+    this.location = location;
+    this.hashCode = Objects.hashCode(type, arrayLength, size, location.id());
+  }
+
+  /** Returns whether this is an allocation of the given type, array length and size. */
+  boolean matches(String type, int arrayLength, long size) {
+    return this.arrayLength == arrayLength && this.size == size && this.type.equals(type);
   }
 
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof Allocation) {
       Allocation other = (Allocation) obj;
-      return other.description.equals(description)
-          && other.size == size
-          && other.location.equals(location);
+      return other.matches(type, arrayLength, size) && other.location == location;
     }
     return false;
   }
 
   public String getDescription() {
-    return description;
+    return (arrayLength == -1) ? type : type + "[" + arrayLength + "]";
   }
 
   public long getSize() {
     return size;
   }
 
+  /** Returns the call path that made the allocation. */
+  FrameTrie.Node getLocation() {
+    return location;
+  }
+
   @Override
   public int hashCode() {
-    return Objects.hashCode(description, size, location);
+    return hashCode;
   }
 
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
-    builder.append(description).append(" (").append(size).append(" bytes)\n\tat ");
-    Joiner.on("\n\tat ").appendTo(builder, location);
+    builder.append(getDescription()).append(" (").append(size).append(" bytes)\n\tat ");
+    Joiner.on("\n\tat ").appendTo(builder, location.frames());
     return builder.toString();
   }
 }
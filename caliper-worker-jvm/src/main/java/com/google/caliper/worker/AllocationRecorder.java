@@ -58,4 +58,10 @@ abstract class AllocationRecorder {
    * @param reps The number of reps that the previous set of allocation represents.
    */
   abstract AllocationStats stopRecording(int reps);
+
+  /**
+   * Stops the allocation instrumenter from calling this recorder, once it won't record any more. A
+   * worker VM that runs several trials creates a recorder for each.
+   */
+  abstract void release();
 }
@@ -34,6 +34,7 @@ final class AllocationStats {
   private final long allocationSize;
   private final int reps;
   private final ImmutableMultiset<Allocation> allocations;
+  private final int samplingInterval;
 
   /**
    * Constructs a new {@link AllocationStats} with the given number of allocations ({@code
@@ -41,23 +42,34 @@ final class AllocationStats {
    * of {@code reps} passed to the benchmark method.
    */
   AllocationStats(int allocationCount, long allocationSize, int reps) {
-    this(allocationCount, allocationSize, reps, ImmutableMultiset.<Allocation>of());
+    this(allocationCount, allocationSize, reps, ImmutableMultiset.<Allocation>of(), 1);
   }
 
   /**
-   * Constructs a new {@link AllocationStats} with the given allocations and the number of {@code
-   * reps} passed to the benchmark method.
+   * Constructs a new {@link AllocationStats} with the given number and cumulative size of
+   * allocations, of which every {@code samplingInterval}th one was recorded in {@code
+   * sampledAllocations}, and the number of {@code reps} passed to the benchmark method.
    */
-  AllocationStats(Collection<Allocation> allocations, int reps) {
+  AllocationStats(
+      int allocationCount,
+      long allocationSize,
+      Collection<Allocation> sampledAllocations,
+      int samplingInterval,
+      int reps) {
     this(
-        allocations.size(),
-        Allocation.getTotalSize(allocations),
+        allocationCount,
+        allocationSize,
         reps,
-        ImmutableMultiset.copyOf(allocations));
+        ImmutableMultiset.copyOf(sampledAllocations),
+        samplingInterval);
   }
 
   private AllocationStats(
-      int allocationCount, long allocationSize, int reps, Multiset<Allocation> allocations) {
+      int allocationCount,
+      long allocationSize,
+      int reps,
+      Multiset<Allocation> allocations,
+      int samplingInterval) {
     checkArgument(allocationCount >= 0, "allocationCount (%s) was negative", allocationCount);
     this.allocationCount = allocationCount;
     checkArgument(allocationSize >= 0, "allocationSize (%s) was negative", allocationSize);
@@ -65,6 +77,8 @@ final class AllocationStats {
     checkArgument(reps >= 0, "reps (%s) was negative", reps);
     this.reps = reps;
     this.allocations = Multisets.copyHighestCountFirst(allocations);
+    checkArgument(samplingInterval > 0, "samplingInterval (%s) was not positive", samplingInterval);
+    this.samplingInterval = samplingInterval;
   }
 
   int getAllocationCount() {
@@ -81,15 +95,18 @@ final class AllocationStats {
    * measurement.
    */
   AllocationStats minus(AllocationStats baseline) {
-    for (Entry<Allocation> entry : baseline.allocations.entrySet()) {
-      int superCount = allocations.count(entry.getElement());
-      if (superCount < entry.getCount()) {
-        throw new IllegalStateException(
-            String.format(
-                "Your benchmark appears to have non-deterministic allocation behavior. "
-                    + "Observed %d instance(s) of %s in the baseline but only %d in the actual "
-                    + "measurement",
-                entry.getCount(), entry.getElement(), superCount));
+    // sampled allocations from runs with different numbers of reps needn't line up
+    if (samplingInterval == 1 && baseline.samplingInterval == 1) {
+      for (Entry<Allocation> entry : baseline.allocations.entrySet()) {
+        int superCount = allocations.count(entry.getElement());
+        if (superCount < entry.getCount()) {
+          throw new IllegalStateException(
+              String.format(
+                  "Your benchmark appears to have non-deterministic allocation behavior. "
+                      + "Observed %d instance(s) of %s in the baseline but only %d in the actual "
+                      + "measurement",
+                  entry.getCount(), entry.getElement(), superCount));
+        }
       }
     }
     try {
@@ -97,7 +114,8 @@ final class AllocationStats {
           allocationCount - baseline.allocationCount,
           allocationSize - baseline.allocationSize,
           reps - baseline.reps,
-          Multisets.difference(allocations, baseline.allocations));
+          Multisets.difference(allocations, baseline.allocations),
+          samplingInterval);
     } catch (IllegalArgumentException e) {
       throw new IllegalStateException(
           String.format(
@@ -126,9 +144,14 @@ final class AllocationStats {
   /** Returns a list of {@link Measurement measurements} based on this collection of stats. */
   ImmutableList<Measurement> toMeasurements() {
     for (Entry<Allocation> entry : allocations.entrySet()) {
-      double allocsPerRep = ((double) entry.getCount()) / reps;
+      double allocsPerRep = ((double) entry.getCount()) * samplingInterval / reps;
       System.out.printf("Allocated %f allocs per rep of %s%n", allocsPerRep, entry.getElement());
     }
+    if (samplingInterval > 1 && !allocations.isEmpty()) {
+      System.out.printf(
+          "(Allocations per rep by site are estimated from 1 in %d allocations.)%n",
+          samplingInterval);
+    }
     return ImmutableList.of(
         new Measurement.Builder()
             .value(Value.create(allocationCount, ""))
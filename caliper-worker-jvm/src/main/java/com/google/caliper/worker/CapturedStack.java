@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Walks the frames of the current thread's stack, innermost first, for as long as a {@link
+ * Visitor} wants more.
+ *
+ * <p>{@link Throwable#getStackTrace()} creates a {@link StackTraceElement} for every frame on the
+ * stack, although the allocation recorder only looks at the few between an allocation and the
+ * benchmark method. Where the VM allows it, frames are instead only turned into {@code
+ * StackTraceElement}s as the walk reaches them: through {@code java.lang.StackWalker} on JDK 9 and
+ * later, or JDK 8's {@code sun.misc.JavaLangAccess}. Both are called through method handles, since
+ * neither can be named by code that builds for JDK 8 and runs on both.
+ */
+abstract class CapturedStack {
+  /** Receives the frames of a stack, innermost first. */
+  interface Visitor {
+    /** Visits the next frame out, returning whether to go on to the frame after it. */
+    boolean visit(StackTraceElement frame);
+  }
+
+  /**
+   * The frames of the walk itself, which are skipped: the implementation's {@code walkFrom} and
+   * {@link #walk}.
+   */
+  private static final int OWN_FRAMES = 2;
+
+  private static final CapturedStack INSTANCE = create();
+
+  private static CapturedStack create() {
+    try {
+      return new StackWalkerStack();
+    } catch (Throwable t) {
+      // not JDK 9 or later
+    }
+    try {
+      return new JavaLangAccessStack();
+    } catch (Throwable t) {
+      // not JDK 8 either
+    }
+    return new ThrowableStack();
+  }
+
+  /**
+   * Walks the stack of the current thread, starting {@code skip} frames out from the caller of
+   * this method, until the visitor stops or the outermost frame has been visited.
+   */
+  static void walk(int skip, Visitor visitor) {
+    INSTANCE.walkFrom(OWN_FRAMES + skip, visitor);
+  }
+
+  /**
+   * Walks the stack of the current thread, starting with the frame at the given index, where 0 is
+   * this method.
+   */
+  abstract void walkFrom(int start, Visitor visitor);
+
+  /** Checks that a walk starts at the expected frame, and so skips the right number of frames. */
+  final void checkWalk() {
+    final StackTraceElement[] first = new StackTraceElement[1];
+    walkFrom(
+        1,
+        new Visitor() {
+          @Override
+          public boolean visit(StackTraceElement frame) {
+            first[0] = frame;
+            return false;
+          }
+        });
+    if (first[0] == null
+        || !first[0].getClassName().equals(CapturedStack.class.getName())
+        || !first[0].getMethodName().equals("checkWalk")) {
+      throw new IllegalStateException("Unexpected first frame: " + first[0]);
+    }
+  }
+
+  private static RuntimeException propagate(Throwable t) {
+    throwIfUnchecked(t);
+    throw new AssertionError(t);
+  }
+
+  /** Walks the stack with {@code java.lang.StackWalker}, only decoding the frames it visits. */
+  private static final class StackWalkerStack extends CapturedStack {
+    private final MethodHandle walk;
+    private final MethodHandle toStackTraceElement;
+
+    StackWalkerStack() throws Throwable {
+      Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+      Class<?> stackFrameClass = Class.forName("java.lang.StackWalker$StackFrame");
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Object stackWalker =
+          lookup
+              .findStatic(stackWalkerClass, "getInstance", methodType(stackWalkerClass))
+              .invoke();
+      this.walk =
+          lookup
+              .findVirtual(stackWalkerClass, "walk", methodType(Object.class, Function.class))
+              .bindTo(stackWalker);
+      this.toStackTraceElement =
+          lookup
+              .findVirtual(
+                  stackFrameClass, "toStackTraceElement", methodType(StackTraceElement.class))
+              .asType(methodType(StackTraceElement.class, Object.class));
+      checkWalk();
+    }
+
+    @Override
+    void walkFrom(final int start, final Visitor visitor) {
+      // StackWalker.walk's stream starts at the method that called it: this one.
+      Function<Stream<?>, Object> function =
+          new Function<Stream<?>, Object>() {
+            @Override
+            public Object apply(Stream<?> frames) {
+              Iterator<?> iterator = frames.iterator();
+              for (int i = 0; i < start && iterator.hasNext(); i++) {
+                iterator.next();
+              }
+              try {
+                while (iterator.hasNext()) {
+                  Object frame = iterator.next();
+                  if (!visitor.visit((StackTraceElement) toStackTraceElement.invokeExact(frame))) {
+                    break;
+                  }
+                }
+              } catch (Throwable t) {
+                throw propagate(t);
+              }
+              return null;
+            }
+          };
+      try {
+        Object unused = (Object) walk.invokeExact(function);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+  }
+
+  /**
+   * Walks the stack recorded by a {@link Throwable} with JDK 8's {@code sun.misc.JavaLangAccess},
+   * only decoding the frames it visits.
+   */
+  private static final class JavaLangAccessStack extends CapturedStack {
+    private final MethodHandle getDepth;
+    private final MethodHandle getElement;
+
+    JavaLangAccessStack() throws Throwable {
+      Object javaLangAccess =
+          Class.forName("sun.misc.SharedSecrets").getMethod("getJavaLangAccess").invoke(null);
+      Class<?> javaLangAccessClass = Class.forName("sun.misc.JavaLangAccess");
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      this.getDepth =
+          lookup
+              .findVirtual(
+                  javaLangAccessClass, "getStackTraceDepth", methodType(int.class, Throwable.class))
+              .bindTo(javaLangAccess);
+      this.getElement =
+          lookup
+              .findVirtual(
+                  javaLangAccessClass,
+                  "getStackTraceElement",
+                  methodType(StackTraceElement.class, Throwable.class, int.class))
+              .bindTo(javaLangAccess);
+      checkWalk();
+    }
+
+    @Override
+    void walkFrom(int start, Visitor visitor) {
+      // The throwable's first frame is this method.
+      Throwable throwable = new Throwable();
+      try {
+        int depth = (int) getDepth.invokeExact(throwable);
+        for (int i = start; i < depth; i++) {
+          if (!visitor.visit((StackTraceElement) getElement.invokeExact(throwable, i))) {
+            return;
+          }
+        }
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+  }
+
+  /** Walks the stack recorded by {@link Throwable#getStackTrace()}, which decodes every frame. */
+  private static final class ThrowableStack extends CapturedStack {
+    @Override
+    void walkFrom(int start, Visitor visitor) {
+      // The first frame is this method.
+      StackTraceElement[] frames = new Throwable().getStackTrace();
+      for (int i = start; i < frames.length; i++) {
+        if (!visitor.visit(frames[i])) {
+          return;
+        }
+      }
+    }
+  }
+}
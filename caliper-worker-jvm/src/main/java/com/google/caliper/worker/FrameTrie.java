@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Interns call paths and the allocations made at them. Each path from the root, which stands for an
+ * allocation site, out through its callers (normally up to the benchmark method) is a {@link Node}
+ * with a unique id. A path is built in the order a stack is walked, innermost frame first, so
+ * recording an allocation at a path that has been seen before allocates nothing and equal paths can
+ * be compared by identity.
+ *
+ * <p>Within a benchmark, code paths are fairly uniform, so nodes are kept for the life of the trie.
+ */
+final class FrameTrie {
+  /**
+   * The most distinct allocations interned at one path. Beyond that, such as for arrays of many
+   * different lengths, allocations are created afresh for each sample.
+   */
+  private static final int MAX_ALLOCATIONS_PER_NODE = 16;
+
+  private final AtomicInteger nextId = new AtomicInteger();
+  private final Node root = new Node(null, null);
+
+  /** Returns the node for the empty path. */
+  Node root() {
+    return root;
+  }
+
+  /** Returns the number of nodes in the trie, including the root. */
+  int size() {
+    return nextId.get();
+  }
+
+  /** A call path, identified by its outermost frame and the path it calls down through. */
+  final class Node {
+    private final int id;
+    @Nullable private final Node parent;
+    @Nullable private final StackTraceElement frame;
+    private final ConcurrentMap<StackTraceElement, Node> children =
+        new ConcurrentHashMap<StackTraceElement, Node>();
+    private volatile Allocation[] allocations = new Allocation[0];
+
+    private Node(@Nullable Node parent, @Nullable StackTraceElement frame) {
+      this.id = nextId.getAndIncrement();
+      this.parent = parent;
+      this.frame = frame;
+    }
+
+    /** Returns the path made by the given frame calling down through this one. */
+    Node caller(StackTraceElement frame) {
+      Node child = children.get(frame);
+      if (child == null) {
+        Node newChild = new Node(this, frame);
+        child = children.putIfAbsent(frame, newChild);
+        if (child == null) {
+          child = newChild;
+        }
+      }
+      return child;
+    }
+
+    /**
+     * Returns the allocation of the given type, array length ({@code -1} if it isn't an array) and
+     * size at this path, which is the same instance each time for the first few distinct ones.
+     */
+    Allocation allocation(String type, int arrayLength, long size) {
+      Allocation[] current = allocations;
+      for (Allocation allocation : current) {
+        if (allocation.matches(type, arrayLength, size)) {
+          return allocation;
+        }
+      }
+      synchronized (this) {
+        current = allocations;
+        for (Allocation allocation : current) {
+          if (allocation.matches(type, arrayLength, size)) {
+            return allocation;
+          }
+        }
+        Allocation allocation = new Allocation(type, arrayLength, size, this);
+        if (current.length < MAX_ALLOCATIONS_PER_NODE) {
+          Allocation[] updated = Arrays.copyOf(current, current.length + 1);
+          updated[current.length] = allocation;
+          allocations = updated;
+        }
+        return allocation;
+      }
+    }
+
+    int id() {
+      return id;
+    }
+
+    /** Returns the frames of this path, innermost first. */
+    ImmutableList<StackTraceElement> frames() {
+      ImmutableList.Builder<StackTraceElement> frames = ImmutableList.builder();
+      for (Node node = this; node.parent != null; node = node.parent) {
+        frames.add(node.frame);
+      }
+      return frames.build().reverse();
+    }
+
+    /**
+     * Appends this path in the collapsed-stack format read by flame graph tools: the frames,
+     * outermost first, as {@code class.method} separated by semicolons.
+     */
+    void appendCollapsed(StringBuilder builder) {
+      for (Node node = this; node.parent != null; node = node.parent) {
+        if (node != this) {
+          builder.append(';');
+        }
+        builder.append(node.frame.getClassName()).append('.').append(node.frame.getMethodName());
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "#" + id + " " + frames();
+    }
+  }
+}
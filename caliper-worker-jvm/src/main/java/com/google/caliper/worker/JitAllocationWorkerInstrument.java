@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static com.google.caliper.util.Reflection.getAnnotatedMethods;
+
+import com.google.caliper.api.AfterRep;
+import com.google.caliper.api.BeforeRep;
+import com.google.caliper.core.Running.Benchmark;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.model.Value;
+import com.google.caliper.worker.instrument.BenchmarkInvoker;
+import com.google.caliper.worker.instrument.ThreadAllocationCounter;
+import com.google.caliper.worker.instrument.WorkerInstrument;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Random;
+import javax.inject.Inject;
+
+/**
+ * The {@link WorkerInstrument} for the {@code AllocationInstrument} in {@code jit} mode. Rather
+ * than recording every allocation with the allocation instrumenter in an interpreted VM, this
+ * counts the bytes allocated by the benchmark thread with the JIT enabled, so the results reflect
+ * escape analysis and the other optimizations production code gets. Objects are not counted.
+ *
+ * <p>The benchmark is first run for the warmup duration. Methods that take reps are then measured
+ * with a random number of reps, less the bytes allocated by a call with zero reps. Macrobenchmarks
+ * are measured one invocation at a time, less the bytes allocated by reading the counter, with
+ * their {@code @BeforeRep} and {@code @AfterRep} methods run around each invocation.
+ */
+final class JitAllocationWorkerInstrument extends WorkerInstrument {
+  private static final int WARMUP_REPS = 1000;
+  private static final int MAX_REPS = 10000;
+  private static final int BASELINE_ROUNDS = 5;
+
+  private final ThreadAllocationCounter counter;
+  private final Random random;
+  private final Ticker ticker;
+  private final long warmupNanos;
+  private final Class<?> repsType;
+  private final ImmutableSet<Method> beforeRepMethods;
+  private final ImmutableSet<Method> afterRepMethods;
+  private long baseline;
+
+  @Inject
+  JitAllocationWorkerInstrument(
+      @Benchmark Object benchmark,
+      BenchmarkInvoker invoker,
+      ThreadAllocationCounter counter,
+      Random random,
+      Ticker ticker,
+      @WorkerInstrument.Options Map<String, String> options) {
+    super(benchmark, invoker);
+    this.counter = counter;
+    this.random = random;
+    this.ticker = ticker;
+    this.warmupNanos = Long.parseLong(options.get("warmupNanos"));
+    Class<?>[] parameterTypes = benchmarkMethod.getParameterTypes();
+    int repsParameters =
+        parameterTypes.length - (BenchmarkInvoker.takesBlackhole(benchmarkMethod) ? 1 : 0);
+    this.repsType = (repsParameters == 0) ? void.class : parameterTypes[0];
+    this.beforeRepMethods = getAnnotatedMethods(benchmark.getClass(), BeforeRep.class);
+    this.afterRepMethods = getAnnotatedMethods(benchmark.getClass(), AfterRep.class);
+  }
+
+  private boolean takesReps() {
+    return repsType != void.class;
+  }
+
+  @Override
+  public void bootstrap() throws Exception {
+    long start = ticker.read();
+    do {
+      preMeasure(true);
+      invoke(takesReps() ? WARMUP_REPS : 1);
+      postMeasure();
+    } while (ticker.read() - start < warmupNanos);
+
+    baseline = Long.MAX_VALUE;
+    for (int i = 0; i < BASELINE_ROUNDS; i++) {
+      baseline = Math.min(baseline, allocatedBytes(0));
+    }
+  }
+
+  @Override
+  public void preMeasure(boolean inWarmup) throws Exception {
+    if (!takesReps()) {
+      for (Method beforeRepMethod : beforeRepMethods) {
+        beforeRepMethod.invoke(benchmark);
+      }
+    }
+  }
+
+  @Override
+  public void dryRun() throws Exception {
+    preMeasure(true);
+    invoke(1);
+    postMeasure();
+  }
+
+  @Override
+  public ImmutableList<Measurement> measure() throws Exception {
+    int reps = takesReps() ? random.nextInt(MAX_REPS) + 1 : 1;
+    long bytes = Math.max(0, allocatedBytes(reps) - baseline);
+    return ImmutableList.of(
+        new Measurement.Builder()
+            .value(Value.create(bytes, "B"))
+            .weight(reps)
+            .description("bytes")
+            .build());
+  }
+
+  @Override
+  public void postMeasure() throws Exception {
+    if (!takesReps()) {
+      for (Method afterRepMethod : afterRepMethods) {
+        afterRepMethod.invoke(benchmark);
+      }
+    }
+  }
+
+  private long allocatedBytes(int reps) throws Exception {
+    long before = counter.allocatedBytes();
+    invoke(reps);
+    return counter.allocatedBytes() - before;
+  }
+
+  /** Invokes the benchmark with the given reps, or that many times if it doesn't take reps. */
+  private void invoke(int reps) throws Exception {
+    if (repsType == int.class) {
+      benchmarkInvoker.invoke(benchmark, reps);
+    } else if (repsType == long.class) {
+      benchmarkInvoker.invoke(benchmark, (long) reps);
+    } else {
+      for (int i = 0; i < reps; i++) {
+        benchmarkInvoker.invoke(benchmark);
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.google.caliper.worker;
 
 import com.google.caliper.model.InstrumentType;
 import com.google.caliper.worker.instrument.InstrumentTypeKey;
+import com.google.caliper.worker.instrument.ThreadAllocationCounter;
 import com.google.caliper.worker.instrument.WorkerInstrument;
 import dagger.Binds;
 import dagger.Module;
@@ -43,6 +44,15 @@ abstract class JvmWorkerInstrumentModule {
   abstract WorkerInstrument bindsMacrobenchmarkAllocationWorkerInstrument(
       MacrobenchmarkAllocationWorkerInstrument impl);
 
+  @Binds
+  @IntoMap
+  @InstrumentTypeKey(InstrumentType.ALLOCATION_JIT)
+  abstract WorkerInstrument bindJitAllocationWorkerInstrument(JitAllocationWorkerInstrument impl);
+
+  @Binds
+  abstract ThreadAllocationCounter bindThreadAllocationCounter(
+      MxBeanThreadAllocationCounter counter);
+
   @Provides
   static AllocationRecorder provideAllocationRecorder(
       @WorkerInstrument.Options Map<String, String> workerInstrumentOptions,
@@ -16,6 +16,7 @@
 
 package com.google.caliper.worker;
 
+import com.google.caliper.worker.handler.VmEventMonitor;
 import com.google.caliper.worker.instrument.WorkerInstrumentComponent;
 import dagger.Binds;
 import dagger.Module;
@@ -28,4 +29,7 @@ abstract class JvmWorkerModule {
   @Binds
   abstract WorkerInstrumentComponent.Builder bindInstrumentComponentBuilder(
       JvmWorkerInstrumentComponent.Builder builder);
+
+  @Binds
+  abstract VmEventMonitor bindVmEventMonitor(MxBeanVmEventMonitor monitor);
 }
@@ -21,8 +21,8 @@ import static com.google.caliper.util.Reflection.getAnnotatedMethods;
 import com.google.caliper.api.AfterRep;
 import com.google.caliper.api.BeforeRep;
 import com.google.caliper.core.Running.Benchmark;
-import com.google.caliper.core.Running.BenchmarkMethod;
 import com.google.caliper.model.Measurement;
+import com.google.caliper.worker.instrument.BenchmarkInvoker;
 import com.google.caliper.worker.instrument.WorkerInstrument;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -41,8 +41,8 @@ final class MacrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
 
   @Inject
   MacrobenchmarkAllocationWorkerInstrument(
-      @Benchmark Object benchmark, @BenchmarkMethod Method method, AllocationRecorder recorder) {
-    super(benchmark, method);
+      @Benchmark Object benchmark, BenchmarkInvoker invoker, AllocationRecorder recorder) {
+    super(benchmark, invoker);
     this.recorder = recorder;
     this.beforeRepMethods = getAnnotatedMethods(benchmark.getClass(), BeforeRep.class);
     this.afterRepMethods = getAnnotatedMethods(benchmark.getClass(), AfterRep.class);
@@ -52,7 +52,7 @@ final class MacrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
   public void bootstrap() throws Exception {
     // do one initial measurement and throw away its results
     preMeasure(true);
-    measureAllocations(benchmark, benchmarkMethod);
+    measureAllocations(benchmark, benchmarkInvoker);
     postMeasure();
   }
 
@@ -66,13 +66,13 @@ final class MacrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
   @Override
   public void dryRun() throws Exception {
     preMeasure(true);
-    benchmarkMethod.invoke(benchmark);
+    benchmarkInvoker.invoke(benchmark);
     postMeasure();
   }
 
   @Override
   public ImmutableList<Measurement> measure() throws Exception {
-    return measureAllocations(benchmark, benchmarkMethod).toMeasurements();
+    return measureAllocations(benchmark, benchmarkInvoker).toMeasurements();
   }
 
   @Override
@@ -82,10 +82,15 @@ final class MacrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
     }
   }
 
-  private AllocationStats measureAllocations(Object benchmark, Method method) throws Exception {
+  @Override
+  public void release() {
+    recorder.release();
+  }
+
+  private AllocationStats measureAllocations(Object benchmark, BenchmarkInvoker invoker)
+      throws Exception {
     recorder.startRecording();
-    // Pass null to avoid auto-allocation of a varargs array.
-    method.invoke(benchmark, (Object[]) null);
+    invoker.invoke(benchmark);
     return recorder.stopRecording(1);
   }
 }
@@ -17,10 +17,9 @@
 package com.google.caliper.worker;
 
 import com.google.caliper.core.Running.Benchmark;
-import com.google.caliper.core.Running.BenchmarkMethod;
 import com.google.caliper.model.Measurement;
+import com.google.caliper.worker.instrument.BenchmarkInvoker;
 import com.google.caliper.worker.instrument.WorkerInstrument;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -56,10 +55,10 @@ final class MicrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
   @Inject
   MicrobenchmarkAllocationWorkerInstrument(
       @Benchmark Object benchmark,
-      @BenchmarkMethod Method method,
+      BenchmarkInvoker invoker,
       AllocationRecorder recorder,
       Random random) {
-    super(benchmark, method);
+    super(benchmark, invoker);
     this.random = random;
     this.recorder = recorder;
   }
@@ -70,7 +69,7 @@ final class MicrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
     // itself and also the method invocation path for calling that method.
 
     // warm up the loop in the benchmark method.
-    measureAllocations(benchmark, benchmarkMethod, WARMUP_REPS);
+    measureAllocations(benchmark, benchmarkInvoker, WARMUP_REPS);
 
     // verify that the benchmark is deterministic in terms of the measured allocations.
     verifyBenchmarkIsDeterministic();
@@ -95,7 +94,7 @@ final class MicrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
     AllocationStats baseline = null;
     int matchingSequenceLength = 1;
     for (int i = 0; i < DETERMINISTIC_MEASUREMENT_COUNT; ++i) {
-      AllocationStats stats = measureAllocations(benchmark, benchmarkMethod, 0);
+      AllocationStats stats = measureAllocations(benchmark, benchmarkInvoker, 0);
       history.add(stats);
       if (stats.equals(baseline)) {
         // if consecutive measurements with the same allocation characteristics reaches the
@@ -131,25 +130,29 @@ final class MicrobenchmarkAllocationWorkerInstrument extends WorkerInstrument {
 
   @Override
   public void dryRun() throws Exception {
-    benchmarkMethod.invoke(benchmark, 1);
+    benchmarkInvoker.invoke(benchmark, 1);
   }
 
   @Override
   public Iterable<Measurement> measure() throws Exception {
-    AllocationStats baseline = measureAllocations(benchmark, benchmarkMethod, 0);
+    AllocationStats baseline = measureAllocations(benchmark, benchmarkInvoker, 0);
     // [1, MAX_REPS]
     int measurementReps = random.nextInt(MAX_REPS) + 1;
-    AllocationStats measurement = measureAllocations(benchmark, benchmarkMethod, measurementReps);
+    AllocationStats measurement = measureAllocations(benchmark, benchmarkInvoker, measurementReps);
     return measurement.minus(baseline).toMeasurements();
   }
 
-  private AllocationStats measureAllocations(Object benchmark, Method method, int reps)
-      throws Exception {
-    // do the Integer boxing and the creation of the Object[] outside of the record block, so that
-    // our internal allocations aren't counted in the benchmark's allocations.
-    Object[] args = {reps};
+  @Override
+  public void release() {
+    recorder.release();
+  }
+
+  private AllocationStats measureAllocations(
+      Object benchmark, BenchmarkInvoker invoker, int reps) throws Exception {
+    // the invoker passes reps without boxing it or creating an argument array, so none of our
+    // internal allocations are counted in the benchmark's allocations.
     recorder.startRecording();
-    method.invoke(benchmark, args);
+    invoker.invoke(benchmark, reps);
     return recorder.stopRecording(reps);
   }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import com.google.caliper.util.InvalidCommandException;
+import com.google.caliper.worker.instrument.ThreadAllocationCounter;
+import java.lang.management.ManagementFactory;
+import javax.inject.Inject;
+
+/**
+ * A {@link ThreadAllocationCounter} backed by HotSpot's {@link com.sun.management.ThreadMXBean},
+ * which keeps a running count of the bytes allocated in each thread's TLABs and outside them.
+ */
+final class MxBeanThreadAllocationCounter implements ThreadAllocationCounter {
+  private final com.sun.management.ThreadMXBean threadMxBean;
+
+  @Inject
+  MxBeanThreadAllocationCounter() {
+    java.lang.management.ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMxBean instanceof com.sun.management.ThreadMXBean)) {
+      throw new InvalidCommandException(
+          "This VM's ThreadMXBean (%s) can't count allocated bytes.", threadMxBean.getClass());
+    }
+    this.threadMxBean = (com.sun.management.ThreadMXBean) threadMxBean;
+    if (!this.threadMxBean.isThreadAllocatedMemorySupported()) {
+      throw new InvalidCommandException("This VM doesn't support counting allocated bytes.");
+    }
+    if (!this.threadMxBean.isThreadAllocatedMemoryEnabled()) {
+      this.threadMxBean.setThreadAllocatedMemoryEnabled(true);
+    }
+  }
+
+  @Override
+  public long allocatedBytes() {
+    return threadMxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
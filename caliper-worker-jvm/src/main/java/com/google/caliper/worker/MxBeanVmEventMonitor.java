@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.caliper.bridge.GcLogMessage;
+import com.google.caliper.bridge.HotspotLogMessage;
+import com.google.caliper.bridge.LogMessage;
+import com.google.caliper.util.ShortDuration;
+import com.google.caliper.worker.handler.VmEventMonitor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * A {@link VmEventMonitor} that reads the JVM's garbage collector and compilation MXBeans before
+ * and after each measurement. Unlike parsing {@code -XX:+PrintGC} and {@code
+ * -XX:+PrintCompilation} output, this works the same whatever the JDK's logging format.
+ *
+ * <p>The counters are sampled synchronously rather than listening for GC notifications, which are
+ * delivered on another thread and may arrive only after the measurement has been reported.
+ *
+ * <p>Every collection is reported, since collections stop the benchmark's threads. The compilation
+ * counter, though, is the total for the whole VM, and the compiler threads run alongside the
+ * benchmark, so a little compilation anywhere in the VM, such as of the harness's own code, says
+ * little about the measurement. Compilation is only reported when it took more than {@value
+ * #MAX_COMPILATION_PERCENT}% of the measurement's wall-clock time.
+ */
+final class MxBeanVmEventMonitor implements VmEventMonitor {
+  /** The most compilation time, as a share of a measurement's wall-clock time, not to report. */
+  private static final int MAX_COMPILATION_PERCENT = 1;
+
+  /**
+   * The most compilation time never to report. The counter has a resolution of a millisecond, so a
+   * single millisecond may be no more than the counter ticking over.
+   */
+  private static final long MAX_UNREPORTED_COMPILATION_MILLIS = 1;
+
+  private final List<GarbageCollectorMXBean> collectors;
+  @Nullable private final CompilationMXBean compiler;
+  private final Ticker ticker;
+  private final long[] collectionCounts;
+  private final long[] collectionTimes;
+  private long compilationTime;
+  private long startTick;
+
+  @Inject
+  MxBeanVmEventMonitor() {
+    this(
+        ManagementFactory.getGarbageCollectorMXBeans(),
+        ManagementFactory.getCompilationMXBean(),
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  MxBeanVmEventMonitor(
+      List<GarbageCollectorMXBean> collectors,
+      @Nullable CompilationMXBean compiler,
+      Ticker ticker) {
+    this.collectors = collectors;
+    this.ticker = ticker;
+    this.compiler =
+        (compiler != null && compiler.isCompilationTimeMonitoringSupported()) ? compiler : null;
+    this.collectionCounts = new long[collectors.size()];
+    this.collectionTimes = new long[collectors.size()];
+  }
+
+  @Override
+  public void measurementStarting() {
+    for (int i = 0; i < collectors.size(); i++) {
+      collectionCounts[i] = collectors.get(i).getCollectionCount();
+      collectionTimes[i] = collectors.get(i).getCollectionTime();
+    }
+    if (compiler != null) {
+      compilationTime = compiler.getTotalCompilationTime();
+    }
+    startTick = ticker.read();
+  }
+
+  @Override
+  public ImmutableList<LogMessage> measurementEnded() {
+    ImmutableList.Builder<LogMessage> events = ImmutableList.builder();
+    for (int i = 0; i < collectors.size(); i++) {
+      GarbageCollectorMXBean collector = collectors.get(i);
+      long collections = collector.getCollectionCount() - collectionCounts[i];
+      if (collections > 0) {
+        long millis = Math.max(0, collector.getCollectionTime() - collectionTimes[i]);
+        events.add(
+            new GcLogMessage(
+                typeOf(collector.getName()), ShortDuration.of(millis, MILLISECONDS), collections));
+      }
+    }
+    if (compiler != null) {
+      long millis = compiler.getTotalCompilationTime() - compilationTime;
+      long elapsedMillis = NANOSECONDS.toMillis(ticker.read() - startTick);
+      if (millis > MAX_UNREPORTED_COMPILATION_MILLIS
+          && millis * 100 > elapsedMillis * MAX_COMPILATION_PERCENT) {
+        events.add(new HotspotLogMessage(ShortDuration.of(millis, MILLISECONDS)));
+      }
+    }
+    return events.build();
+  }
+
+  /**
+   * Guesses from a collector's name whether it collects the old generation (or the whole heap), as
+   * the MXBean API doesn't say.
+   */
+  @VisibleForTesting
+  static GcLogMessage.Type typeOf(String collectorName) {
+    return collectorName.contains("Old")
+            || collectorName.contains("MarkSweep")
+            || collectorName.contains("Major")
+        ? GcLogMessage.Type.FULL
+        : GcLogMessage.Type.INCREMENTAL;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.benchmarks;
+
+import com.google.monitoring.runtime.instrumentation.Sampler;
+
+/**
+ * A benchmark whose allocations are reported to a {@link Sampler} by hand, standing in for the
+ * allocation agent. It's outside the worker package, whose frames the allocation recorder doesn't
+ * record.
+ */
+public final class AllocatingBenchmark {
+  private final Sampler sampler;
+
+  public AllocatingBenchmark(Sampler sampler) {
+    this.sampler = sampler;
+  }
+
+  /** The benchmark method, which allocates an {@code int[4]} through {@link #allocate}. */
+  public void timeAllocate(int reps) {
+    for (int i = 0; i < reps; i++) {
+      allocate();
+    }
+  }
+
+  /** Allocates an {@code int[4]} directly in the benchmark method, and another through a helper. */
+  public void timeAllocateTwice(int reps) {
+    for (int i = 0; i < reps; i++) {
+      recordAllocation(4, "int", 32);
+      allocate();
+    }
+  }
+
+  /** The caller of the benchmark method, whose frame should not be recorded. */
+  public void run(String benchmarkMethodName, int reps) {
+    if (benchmarkMethodName.equals("timeAllocate")) {
+      timeAllocate(reps);
+    } else {
+      timeAllocateTwice(reps);
+    }
+  }
+
+  private void allocate() {
+    recordAllocation(4, "int", 32);
+  }
+
+  /** Stands in for the agent's {@code AllocationRecorder.recordAllocation}. */
+  private void recordAllocation(int arrayCount, String desc, long size) {
+    sampler.sampleAllocation(arrayCount, desc, null, size);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the overhead {@link AggregateAllocationsRecorder} adds to each allocation when several
+ * threads allocate at once, by calling its sampler directly from each thread. The {@code shared}
+ * recorder, which counts into a single pair of atomic counters, is the baseline the per-thread
+ * cells should beat as {@code threads} grows.
+ *
+ * <p>Run it with the runtime instrument; the sampler is called by hand, so the allocation agent
+ * isn't needed.
+ */
+public class AggregateAllocationsRecorderBenchmark {
+  /** The recorder to sample allocations with. */
+  public enum Recorder {
+    CELLS {
+      @Override
+      Sampler start(AggregateAllocationsRecorder recorder) {
+        recorder.doStartRecording();
+        return recorder.sampler;
+      }
+    },
+    SHARED {
+      @Override
+      Sampler start(AggregateAllocationsRecorder recorder) {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong size = new AtomicLong();
+        return new Sampler() {
+          @Override
+          public void sampleAllocation(int arrayCount, String desc, Object newObj, long bytes) {
+            count.incrementAndGet();
+            size.addAndGet(bytes);
+          }
+        };
+      }
+    };
+
+    abstract Sampler start(AggregateAllocationsRecorder recorder);
+  }
+
+  @Param({"1", "2", "4", "8"})
+  private int threads;
+
+  @Param private Recorder recorder;
+
+  private AggregateAllocationsRecorder aggregateRecorder;
+  private Sampler sampler;
+  private ExecutorService executor;
+
+  @BeforeExperiment
+  void setUp() {
+    aggregateRecorder = new AggregateAllocationsRecorder();
+    sampler = recorder.start(aggregateRecorder);
+    executor = Executors.newFixedThreadPool(threads);
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    executor.shutdownNow();
+    aggregateRecorder.release();
+  }
+
+  /** Samples {@code reps} allocations on each of the threads. */
+  @Benchmark
+  int sampleAllocations(final int reps) throws Exception {
+    final Object object = new Object();
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < threads; i++) {
+      tasks.add(
+          new Callable<Integer>() {
+            @Override
+            public Integer call() {
+              for (int j = 0; j < reps; j++) {
+                sampler.sampleAllocation(-1, "java/lang/Object", object, 16);
+              }
+              return reps;
+            }
+          });
+    }
+    int dummy = 0;
+    for (Future<Integer> result : executor.invokeAll(tasks)) {
+      dummy += result.get();
+    }
+    return dummy;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests {@link AggregateAllocationsRecorder}, reporting allocations to its sampler by hand since
+ * the allocation agent isn't running.
+ */
+@RunWith(JUnit4.class)
+public class AggregateAllocationsRecorderTest {
+  private final AggregateAllocationsRecorder recorder = new AggregateAllocationsRecorder();
+
+  @After
+  public void releaseRecorder() {
+    recorder.release();
+  }
+
+  @Test
+  public void countsAllocationsOfOneThread() {
+    recorder.doStartRecording();
+    allocate(recorder.sampler, 3, 16);
+    allocate(recorder.sampler, 2, 24);
+    AllocationStats stats = recorder.stopRecording(1);
+    assertEquals(5, stats.getAllocationCount());
+    assertEquals(3 * 16 + 2 * 24, stats.getAllocationSize());
+  }
+
+  @Test
+  public void ignoresAllocationsWhileNotRecording() {
+    allocate(recorder.sampler, 10, 16);
+    recorder.doStartRecording();
+    allocate(recorder.sampler, 1, 16);
+    recorder.stopRecording(1);
+    allocate(recorder.sampler, 10, 16);
+
+    recorder.doStartRecording();
+    allocate(recorder.sampler, 2, 8);
+    AllocationStats stats = recorder.stopRecording(1);
+    // the cells are never reset, but each recording only counts its own allocations
+    assertEquals(2, stats.getAllocationCount());
+    assertEquals(16, stats.getAllocationSize());
+  }
+
+  @Test
+  public void cellsAddUpAcrossThreads() throws Exception {
+    int threads = 8;
+    int allocationsPerThread = 100000;
+    long sizeOfAll = 0;
+    for (int i = 0; i < threads; i++) {
+      sizeOfAll += allocationsPerThread * 8L * (i + 1);
+    }
+
+    recorder.doStartRecording();
+    allocateConcurrently(threads, allocationsPerThread);
+    AllocationStats stats = recorder.stopRecording(1);
+    assertEquals(threads * allocationsPerThread, stats.getAllocationCount());
+    assertEquals(sizeOfAll, stats.getAllocationSize());
+
+    // the cells of the threads that have died still count towards the totals, which the next
+    // recording has to subtract
+    recorder.doStartRecording();
+    allocateConcurrently(threads, allocationsPerThread);
+    allocate(recorder.sampler, 1, 16);
+    stats = recorder.stopRecording(1);
+    assertEquals(threads * allocationsPerThread + 1, stats.getAllocationCount());
+    assertEquals(sizeOfAll + 16, stats.getAllocationSize());
+  }
+
+  @Test
+  public void cellsOfDeadThreadsAreDropped() throws Exception {
+    recorder.doStartRecording();
+    for (int i = 0; i < 10; i++) {
+      allocateConcurrently(1, 10);
+    }
+    allocate(recorder.sampler, 1, 16);
+    AllocationStats stats = recorder.stopRecording(1);
+    assertEquals(10 * 10 + 1, stats.getAllocationCount());
+    assertEquals(10 * 10 * 8 + 16, stats.getAllocationSize());
+    // only the cell of this thread, which is still alive, is kept
+    assertEquals(1, recorder.cellCount());
+
+    // the counts of the dropped cells are still subtracted from the next recording
+    recorder.doStartRecording();
+    allocateConcurrently(1, 10);
+    stats = recorder.stopRecording(1);
+    assertEquals(10, stats.getAllocationCount());
+    assertEquals(10 * 8, stats.getAllocationSize());
+    assertEquals(1, recorder.cellCount());
+  }
+
+  /**
+   * Makes {@code allocationsPerThread} allocations on each of the given number of new threads, all
+   * at once, of 8 bytes each on the first thread, 16 on the second and so on.
+   */
+  private void allocateConcurrently(int threads, final int allocationsPerThread)
+      throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> allocators = new ArrayList<Thread>();
+    for (int i = 0; i < threads; i++) {
+      final int size = 8 * (i + 1);
+      Thread allocator =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  Uninterruptibles.awaitUninterruptibly(start);
+                  allocate(recorder.sampler, allocationsPerThread, size);
+                }
+              });
+      allocator.start();
+      allocators.add(allocator);
+    }
+    start.countDown();
+    for (Thread allocator : allocators) {
+      allocator.join();
+    }
+  }
+
+  private static void allocate(Sampler sampler, int allocations, long size) {
+    for (int i = 0; i < allocations; i++) {
+      sampler.sampleAllocation(-1, "java/lang/Object", null, size);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import com.google.caliper.benchmarks.AllocatingBenchmark;
+import com.google.caliper.model.BenchmarkSpec;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests {@link AllAllocationsRecorder}, reporting allocations to its sampler by hand since the
+ * allocation agent isn't running.
+ */
+@RunWith(JUnit4.class)
+public class AllAllocationsRecorderTest {
+  private static final String BENCHMARK = AllocatingBenchmark.class.getName();
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private AllAllocationsRecorder recorder;
+
+  @After
+  public void releaseRecorder() {
+    if (recorder != null) {
+      recorder.release();
+    }
+  }
+
+  @Test
+  public void recordsPathFromBenchmarkMethodToAllocation() throws Exception {
+    recorder = recorder("timeAllocate", "1");
+    AllocatingBenchmark benchmark = new AllocatingBenchmark(recorder.sampler);
+
+    recorder.doStartRecording();
+    benchmark.run("timeAllocate", 3);
+    AllocationStats stats = recorder.stopRecording(3);
+
+    assertEquals(3, stats.getAllocationCount());
+    assertEquals(96, stats.getAllocationSize());
+    assertEquals(
+        ImmutableList.of(BENCHMARK + ".timeAllocate;" + BENCHMARK + ".allocate;int[4] 96"),
+        collapsedStacks("timeAllocate"));
+  }
+
+  @Test
+  public void separatesPathsAndAccumulatesOverRecordings() throws Exception {
+    recorder = recorder("timeAllocateTwice", "1");
+    AllocatingBenchmark benchmark = new AllocatingBenchmark(recorder.sampler);
+
+    recorder.doStartRecording();
+    benchmark.run("timeAllocateTwice", 1);
+    recorder.stopRecording(1);
+    recorder.doStartRecording();
+    benchmark.run("timeAllocateTwice", 2);
+    AllocationStats stats = recorder.stopRecording(2);
+
+    // only the last recording is counted...
+    assertEquals(4, stats.getAllocationCount());
+    // ...but the collapsed stacks cover all of them
+    assertEquals(
+        ImmutableList.of(
+            BENCHMARK + ".timeAllocateTwice;" + BENCHMARK + ".allocate;int[4] 96",
+            BENCHMARK + ".timeAllocateTwice;int[4] 96"),
+        collapsedStacks("timeAllocateTwice"));
+  }
+
+  @Test
+  public void scalesSampledAllocationsByInterval() throws Exception {
+    recorder = recorder("timeAllocateTwice", "2");
+    AllocatingBenchmark benchmark = new AllocatingBenchmark(recorder.sampler);
+
+    recorder.doStartRecording();
+    benchmark.run("timeAllocateTwice", 3);
+    AllocationStats stats = recorder.stopRecording(3);
+
+    // every allocation is counted, but only every other one (the direct ones) is sampled
+    assertEquals(6, stats.getAllocationCount());
+    assertEquals(192, stats.getAllocationSize());
+    assertEquals(
+        ImmutableList.of(BENCHMARK + ".timeAllocateTwice;int[4] 192"),
+        collapsedStacks("timeAllocateTwice"));
+  }
+
+  @Test
+  public void ignoresAllocationsWhileNotRecording() throws Exception {
+    recorder = recorder("timeAllocate", "1");
+    AllocatingBenchmark benchmark = new AllocatingBenchmark(recorder.sampler);
+
+    benchmark.run("timeAllocate", 5);
+    recorder.doStartRecording();
+    AllocationStats stats = recorder.stopRecording(1);
+
+    assertEquals(0, stats.getAllocationCount());
+    assertEquals(ImmutableList.of(), collapsedStacks("timeAllocate"));
+  }
+
+  private AllAllocationsRecorder recorder(String benchmarkMethodName, String samplingInterval) {
+    return new AllAllocationsRecorder(
+        AllocatingBenchmark.class,
+        benchmarkMethodName,
+        new BenchmarkSpec.Builder().className(BENCHMARK).methodName(benchmarkMethodName).build(),
+        ImmutableMap.of(
+            "allocationSamplingInterval", samplingInterval,
+            "collapsedStacksDir", folder.getRoot().getPath()));
+  }
+
+  /** Returns the lines of the benchmark method's collapsed-stacks file, sorted. */
+  private List<String> collapsedStacks(String benchmarkMethodName) throws Exception {
+    File file = new File(folder.getRoot(), BENCHMARK + "." + benchmarkMethodName + ".collapsed");
+    return Ordering.natural().sortedCopy(Files.readLines(file, UTF_8));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link CapturedStack}. */
+@RunWith(JUnit4.class)
+public class CapturedStackTest {
+  @Test
+  public void walksFromCallerOutward() {
+    List<String> walked = walk(0, Integer.MAX_VALUE);
+    StackTraceElement[] expected = new Throwable().getStackTrace();
+    assertEquals("walk", walked.get(0));
+    assertEquals("walksFromCallerOutward", walked.get(1));
+    // from here out, the walk sees what a stack trace does
+    assertEquals(expected.length, walked.size() - 1);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].getMethodName(), walked.get(i + 1));
+    }
+  }
+
+  @Test
+  public void skipsFrames() {
+    List<String> walked = walk(1, 1);
+    assertEquals(Lists.newArrayList("skipsFrames"), walked);
+  }
+
+  @Test
+  public void stopsWhenTheVisitorDoes() {
+    List<String> walked = walk(0, 2);
+    assertEquals(Lists.newArrayList("walk", "stopsWhenTheVisitorDoes"), walked);
+  }
+
+  /** Returns the method names of up to {@code limit} frames, starting with this one. */
+  private static List<String> walk(int skip, final int limit) {
+    final List<String> methodNames = Lists.newArrayList();
+    CapturedStack.walk(
+        skip,
+        new CapturedStack.Visitor() {
+          @Override
+          public boolean visit(StackTraceElement frame) {
+            methodNames.add(frame.getMethodName());
+            return methodNames.size() < limit;
+          }
+        });
+    return methodNames;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link FrameTrie}. */
+@RunWith(JUnit4.class)
+public class FrameTrieTest {
+  private static final StackTraceElement ALLOCATE = frame("Foo", "allocate", 10);
+  private static final StackTraceElement HELPER = frame("Foo", "helper", 20);
+  private static final StackTraceElement BENCHMARK = frame("FooBenchmark", "timeFoo", 30);
+
+  private final FrameTrie trie = new FrameTrie();
+
+  @Test
+  public void equalPathsAreTheSameNode() {
+    FrameTrie.Node path = trie.root().caller(ALLOCATE).caller(HELPER).caller(BENCHMARK);
+    assertSame(path, trie.root().caller(ALLOCATE).caller(HELPER).caller(BENCHMARK));
+    StackTraceElement equalFrame = frame("Foo", "allocate", 10);
+    assertSame(path, trie.root().caller(equalFrame).caller(HELPER).caller(BENCHMARK));
+    assertEquals(4, trie.size());
+  }
+
+  @Test
+  public void differentPathsAreDifferentNodes() {
+    FrameTrie.Node direct = trie.root().caller(ALLOCATE).caller(BENCHMARK);
+    FrameTrie.Node viaHelper = trie.root().caller(ALLOCATE).caller(HELPER).caller(BENCHMARK);
+    // the same frames at another line are another path
+    FrameTrie.Node otherLine = trie.root().caller(frame("Foo", "allocate", 11)).caller(BENCHMARK);
+    assertNotSame(direct, viaHelper);
+    assertNotSame(direct, otherLine);
+    assertEquals(7, trie.size());
+    assertEquals(3, ImmutableSet.of(direct.id(), viaHelper.id(), otherLine.id()).size());
+  }
+
+  @Test
+  public void framesAreInnermostFirst() {
+    FrameTrie.Node path = trie.root().caller(ALLOCATE).caller(HELPER).caller(BENCHMARK);
+    assertEquals(ImmutableList.of(ALLOCATE, HELPER, BENCHMARK), path.frames());
+    assertEquals(ImmutableList.of(), trie.root().frames());
+  }
+
+  @Test
+  public void collapsedPathIsOutermostFirst() {
+    FrameTrie.Node path = trie.root().caller(ALLOCATE).caller(HELPER).caller(BENCHMARK);
+    StringBuilder builder = new StringBuilder();
+    path.appendCollapsed(builder);
+    assertEquals("FooBenchmark.timeFoo;Foo.helper;Foo.allocate", builder.toString());
+
+    builder = new StringBuilder();
+    trie.root().caller(ALLOCATE).appendCollapsed(builder);
+    assertEquals("Foo.allocate", builder.toString());
+  }
+
+  @Test
+  public void allocationsAreInternedByNode() {
+    FrameTrie.Node path = trie.root().caller(ALLOCATE).caller(BENCHMARK);
+    Allocation object = path.allocation("java/lang/Object", -1, 16);
+    Allocation array = path.allocation("int", 4, 32);
+    assertSame(object, path.allocation("java/lang/Object", -1, 16));
+    assertSame(array, path.allocation("int", 4, 32));
+    assertNotSame(array, path.allocation("int", 5, 40));
+    assertEquals("int[4]", array.getDescription());
+    assertEquals("java/lang/Object", object.getDescription());
+
+    // the same allocation somewhere else is another allocation
+    Allocation elsewhere = trie.root().caller(HELPER).allocation("java/lang/Object", -1, 16);
+    assertNotSame(object, elsewhere);
+    assertFalse(object.equals(elsewhere));
+  }
+
+  @Test
+  public void allocationsBeyondTheInternedOnesAreStillEqual() {
+    FrameTrie.Node path = trie.root().caller(ALLOCATE);
+    for (int length = 0; length < 100; length++) {
+      path.allocation("int", length, 16 + 4 * length);
+    }
+    Allocation first = path.allocation("int", 99, 412);
+    Allocation second = path.allocation("int", 99, 412);
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+  }
+
+  private static StackTraceElement frame(String className, String methodName, int line) {
+    return new StackTraceElement(className, methodName, className + ".java", line);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.caliper.api.AfterRep;
+import com.google.caliper.api.BeforeRep;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.worker.instrument.BenchmarkInvoker;
+import com.google.caliper.worker.instrument.ThreadAllocationCounter;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link JitAllocationWorkerInstrument}. */
+@RunWith(JUnit4.class)
+public class JitAllocationWorkerInstrumentTest {
+  private final AllocatingBenchmark benchmark = new AllocatingBenchmark();
+
+  @Test
+  public void repsBenchmark_bytesPerRepLessBaseline() throws Exception {
+    JitAllocationWorkerInstrument instrument = instrument("micro", int.class);
+    instrument.bootstrap();
+    for (int i = 0; i < 5; i++) {
+      instrument.preMeasure(false);
+      Measurement measurement = Iterables.getOnlyElement(instrument.measure());
+      instrument.postMeasure();
+      assertEquals("bytes", measurement.description());
+      assertEquals("B", measurement.value().unit());
+      assertEquals(
+          AllocatingBenchmark.BYTES_PER_REP * measurement.weight(),
+          measurement.value().magnitude(),
+          0);
+    }
+  }
+
+  @Test
+  public void macrobenchmark_oneInvocationPerMeasurement() throws Exception {
+    JitAllocationWorkerInstrument instrument = instrument("macro");
+    instrument.bootstrap();
+    int beforeReps = benchmark.beforeReps;
+    int afterReps = benchmark.afterReps;
+
+    instrument.preMeasure(false);
+    ImmutableList<Measurement> measurements = ImmutableList.copyOf(instrument.measure());
+    instrument.postMeasure();
+
+    assertEquals(1, measurements.size());
+    assertEquals(1, measurements.get(0).weight(), 0);
+    assertEquals(AllocatingBenchmark.BYTES_PER_REP, measurements.get(0).value().magnitude(), 0);
+    assertEquals(beforeReps + 1, benchmark.beforeReps);
+    assertEquals(afterReps + 1, benchmark.afterReps);
+  }
+
+  private JitAllocationWorkerInstrument instrument(String name, Class<?>... parameterTypes)
+      throws Exception {
+    return new JitAllocationWorkerInstrument(
+        benchmark,
+        BenchmarkInvoker.create(AllocatingBenchmark.class.getMethod(name, parameterTypes)),
+        new ThreadAllocationCounter() {
+          @Override
+          public long allocatedBytes() {
+            return benchmark.allocatedBytes;
+          }
+        },
+        new Random(0),
+        Ticker.systemTicker(),
+        // a single warmup invocation
+        ImmutableMap.of("warmupNanos", "0"));
+  }
+
+  /**
+   * A benchmark that records, rather than performs, a fixed amount of allocation. Calls that take
+   * reps also allocate a fixed amount whatever the reps, which the instrument should subtract.
+   */
+  public static final class AllocatingBenchmark {
+    static final long BYTES_PER_CALL = 40;
+    static final long BYTES_PER_REP = 24;
+
+    long allocatedBytes;
+    int beforeReps;
+    int afterReps;
+
+    public void micro(int reps) {
+      allocatedBytes += BYTES_PER_CALL + BYTES_PER_REP * reps;
+    }
+
+    public void macro() {
+      allocatedBytes += BYTES_PER_REP;
+    }
+
+    @BeforeRep
+    public void beforeRep() {
+      beforeReps++;
+    }
+
+    @AfterRep
+    public void afterRep() {
+      afterReps++;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.bridge.GcLogMessage;
+import com.google.caliper.bridge.HotspotLogMessage;
+import com.google.caliper.bridge.LogMessage;
+import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import javax.management.ObjectName;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link MxBeanVmEventMonitor}. */
+@RunWith(JUnit4.class)
+public class MxBeanVmEventMonitorTest {
+  private final FakeCollector young = new FakeCollector("G1 Young Generation");
+  private final FakeCollector old = new FakeCollector("G1 Old Generation");
+  private final FakeCompiler compiler = new FakeCompiler();
+  private final FakeTicker ticker = new FakeTicker();
+  private final MxBeanVmEventMonitor monitor =
+      new MxBeanVmEventMonitor(
+          ImmutableList.<GarbageCollectorMXBean>of(young, old), compiler, ticker);
+
+  @Test
+  public void quietMeasurementHasNoEvents() {
+    monitor.measurementStarting();
+    ticker.advance(100);
+    assertTrue(monitor.measurementEnded().isEmpty());
+  }
+
+  @Test
+  public void reportsCollectionsOfEachCollector() {
+    young.collections = 3;
+    young.millis = 10;
+    monitor.measurementStarting();
+    young.collections += 2;
+    young.millis += 4;
+    old.collections += 1;
+    old.millis += 50;
+    ticker.advance(100);
+
+    assertEquals(
+        ImmutableList.of(
+            new GcLogMessage(GcLogMessage.Type.INCREMENTAL, ShortDuration.of(4, MILLISECONDS), 2),
+            new GcLogMessage(GcLogMessage.Type.FULL, ShortDuration.of(50, MILLISECONDS), 1)),
+        monitor.measurementEnded());
+  }
+
+  @Test
+  public void ignoresLittleCompilation() {
+    compiler.millis = 1000;
+    monitor.measurementStarting();
+    // 5ms is only 0.5% of the measurement
+    compiler.millis += 5;
+    ticker.advance(1000);
+    assertTrue(monitor.measurementEnded().isEmpty());
+
+    monitor.measurementStarting();
+    // more than 1% of the measurement, but no more than the counter's resolution
+    compiler.millis += 1;
+    ticker.advance(10);
+    assertTrue(monitor.measurementEnded().isEmpty());
+  }
+
+  @Test
+  public void reportsSignificantCompilation() {
+    monitor.measurementStarting();
+    compiler.millis += 20;
+    ticker.advance(1000);
+    ImmutableList<LogMessage> events = monitor.measurementEnded();
+    assertEquals(1, events.size());
+    assertEquals(
+        ShortDuration.of(20, MILLISECONDS),
+        ((HotspotLogMessage) events.get(0)).compilationTime().get());
+  }
+
+  @Test
+  public void collectorTypes() {
+    assertEquals(GcLogMessage.Type.FULL, MxBeanVmEventMonitor.typeOf("PS MarkSweep"));
+    assertEquals(GcLogMessage.Type.FULL, MxBeanVmEventMonitor.typeOf("G1 Old Generation"));
+    assertEquals(GcLogMessage.Type.INCREMENTAL, MxBeanVmEventMonitor.typeOf("PS Scavenge"));
+    assertEquals(GcLogMessage.Type.INCREMENTAL, MxBeanVmEventMonitor.typeOf("Copy"));
+  }
+
+  private static final class FakeTicker extends Ticker {
+    long nanos;
+
+    void advance(long millis) {
+      nanos += MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  private static final class FakeCollector implements GarbageCollectorMXBean {
+    private final String name;
+    long collections;
+    long millis;
+
+    FakeCollector(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public long getCollectionCount() {
+      return collections;
+    }
+
+    @Override
+    public long getCollectionTime() {
+      return millis;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isValid() {
+      return true;
+    }
+
+    @Override
+    public String[] getMemoryPoolNames() {
+      return new String[0];
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+      return null;
+    }
+  }
+
+  private static final class FakeCompiler implements CompilationMXBean {
+    long millis;
+
+    @Override
+    public String getName() {
+      return "fake";
+    }
+
+    @Override
+    public boolean isCompilationTimeMonitoringSupported() {
+      return true;
+    }
+
+    @Override
+    public long getTotalCompilationTime() {
+      return millis;
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+      return null;
+    }
+  }
+}
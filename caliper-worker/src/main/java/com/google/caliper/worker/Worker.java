@@ -17,6 +17,7 @@
 package com.google.caliper.worker;
 
 import com.google.caliper.bridge.FailureLogMessage;
+import com.google.caliper.bridge.TrialRequest;
 import com.google.caliper.bridge.WorkerRequest;
 import com.google.caliper.worker.connection.ClientConnectionService;
 import com.google.caliper.worker.handler.RequestDispatcher;
@@ -37,12 +38,19 @@ final class Worker {
     this.requestDispatcher = requestDispatcher;
   }
 
-  /** Runs the worker. */
+  /**
+   * Runs the worker. After a trial, the worker waits for the runner to either send another trial
+   * request, which it runs in the same VM, or close the connection.
+   */
   public void run() throws IOException {
     clientConnection.startAsync().awaitRunning();
     try {
       WorkerRequest request = (WorkerRequest) clientConnection.receive();
-      requestDispatcher.dispatch(request);
+      while (request != null) {
+        requestDispatcher.dispatch(request);
+        request =
+            request instanceof TrialRequest ? (WorkerRequest) clientConnection.receive() : null;
+      }
     } catch (IOException e) {
       // If an IOException was thrown, it was probably from trying to send something to the
       // runner and failing, so don't bother trying to send *that* to the runner.
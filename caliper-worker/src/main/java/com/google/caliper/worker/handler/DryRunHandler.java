@@ -50,12 +50,15 @@ final class DryRunHandler implements RequestHandler {
     for (ExperimentSpec experiment : dryRunRequest.experiments()) {
       try {
         WorkerInstrument workerInstrument = instrumentFactory.createWorkerInstrument(experiment);
-
-        workerInstrument.setUpBenchmark();
         try {
-          workerInstrument.dryRun();
+          workerInstrument.setUpBenchmark();
+          try {
+            workerInstrument.dryRun();
+          } finally {
+            workerInstrument.tearDownBenchmark();
+          }
         } finally {
-          workerInstrument.tearDownBenchmark();
+          workerInstrument.release();
         }
 
         successes.add(experiment.id());
@@ -20,6 +20,7 @@ import com.google.caliper.bridge.DryRunRequest;
 import com.google.caliper.bridge.TargetInfoRequest;
 import com.google.caliper.bridge.TrialRequest;
 import dagger.Binds;
+import dagger.BindsOptionalOf;
 import dagger.Module;
 import dagger.multibindings.IntoMap;
 
@@ -45,4 +46,7 @@ public abstract class RequestHandlerModule {
   @IntoMap
   @RequestTypeKey(TrialRequest.class)
   abstract RequestHandler bindTrialHandler(TrialHandler handler);
+
+  @BindsOptionalOf
+  abstract VmEventMonitor optionalVmEventMonitor();
 }
@@ -16,17 +16,23 @@
 
 package com.google.caliper.worker.handler;
 
+import com.google.caliper.bridge.LogMessage;
 import com.google.caliper.bridge.ShouldContinueMessage;
 import com.google.caliper.bridge.StartMeasurementLogMessage;
 import com.google.caliper.bridge.StopMeasurementLogMessage;
 import com.google.caliper.bridge.TrialRequest;
 import com.google.caliper.bridge.VmPropertiesLogMessage;
 import com.google.caliper.bridge.WorkerRequest;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
+import com.google.caliper.util.ShortDuration;
 import com.google.caliper.worker.connection.ClientConnectionService;
 import com.google.caliper.worker.instrument.WorkerInstrument;
 import com.google.caliper.worker.instrument.WorkerInstrumentFactory;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.io.Serializable;
 import javax.inject.Inject;
 
 /** Handler for a {@link TrialRequest}. */
@@ -34,12 +40,16 @@ final class TrialHandler implements RequestHandler {
 
   private final ClientConnectionService clientConnection;
   private final WorkerInstrumentFactory instrumentFactory;
+  private final Optional<VmEventMonitor> vmEventMonitor;
 
   @Inject
   TrialHandler(
-      ClientConnectionService clientConnection, WorkerInstrumentFactory instrumentFactory) {
+      ClientConnectionService clientConnection,
+      WorkerInstrumentFactory instrumentFactory,
+      Optional<VmEventMonitor> vmEventMonitor) {
     this.clientConnection = clientConnection;
     this.instrumentFactory = instrumentFactory;
+    this.vmEventMonitor = vmEventMonitor;
   }
 
   @Override
@@ -58,9 +68,15 @@ final class TrialHandler implements RequestHandler {
       boolean isInWarmup = true;
       while (keepMeasuring) {
         workerInstrument.preMeasure(isInWarmup);
-        notifyTrialMeasurementStarting();
+        notifyTrialMeasurementStarting(workerInstrument.takeGcBarrierTime());
         try {
-          ShouldContinueMessage message = notifyTrialMeasurementEnding(workerInstrument.measure());
+          if (vmEventMonitor.isPresent()) {
+            vmEventMonitor.get().measurementStarting();
+          }
+          Iterable<Measurement> measurements = workerInstrument.measure();
+          notifyVmEvents();
+          ShouldContinueMessage message =
+              notifyTrialMeasurementEnding(measurements, workerInstrument.latencyHistogram());
           keepMeasuring = message.shouldContinue();
           isInWarmup = !message.isWarmupComplete();
         } finally {
@@ -68,7 +84,11 @@ final class TrialHandler implements RequestHandler {
         }
       }
     } finally {
-      workerInstrument.tearDownBenchmark();
+      try {
+        workerInstrument.tearDownBenchmark();
+      } finally {
+        workerInstrument.release();
+      }
     }
   }
 
@@ -84,8 +104,26 @@ final class TrialHandler implements RequestHandler {
     clientConnection.send("Measurement phase starting (includes warmup and actual measurement).");
   }
 
-  private void notifyTrialMeasurementStarting() throws IOException {
-    clientConnection.send("About to measure.", new StartMeasurementLogMessage());
+  private void notifyTrialMeasurementStarting(Optional<ShortDuration> gcBarrierTime)
+      throws IOException {
+    clientConnection.send(
+        "About to measure.",
+        gcBarrierTime.isPresent()
+            ? new StartMeasurementLogMessage(gcBarrierTime.get())
+            : new StartMeasurementLogMessage());
+  }
+
+  /**
+   * Reports the GC and JIT events seen during the measurement, before the measurement itself so
+   * that the runner sees them while it considers the measurement to be in progress.
+   */
+  private void notifyVmEvents() throws IOException {
+    if (vmEventMonitor.isPresent()) {
+      ImmutableList<LogMessage> events = vmEventMonitor.get().measurementEnded();
+      if (!events.isEmpty()) {
+        clientConnection.send(events.toArray(new Serializable[0]));
+      }
+    }
   }
 
   /**
@@ -93,9 +131,10 @@ final class TrialHandler implements RequestHandler {
    * from the runner, which lets us know whether to continue measuring and whether we're in the
    * warmup or measurement phase.
    */
-  private ShouldContinueMessage notifyTrialMeasurementEnding(Iterable<Measurement> measurements)
+  private ShouldContinueMessage notifyTrialMeasurementEnding(
+      Iterable<Measurement> measurements, Optional<LatencyHistogram> latencyHistogram)
       throws IOException {
-    clientConnection.send(new StopMeasurementLogMessage(measurements));
+    clientConnection.send(new StopMeasurementLogMessage(measurements, latencyHistogram));
     return (ShouldContinueMessage) clientConnection.receive();
   }
 }
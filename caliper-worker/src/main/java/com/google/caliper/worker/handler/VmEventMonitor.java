@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.handler;
+
+import com.google.caliper.bridge.LogMessage;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Watches the worker VM for events that can interfere with a measurement, such as garbage
+ * collection and JIT compilation, so that they can be reported to the runner directly rather than
+ * parsed from the VM's log output. Bound only for VMs that can provide it.
+ */
+public interface VmEventMonitor {
+  /** Called immediately before the benchmark is measured. */
+  void measurementStarting();
+
+  /**
+   * Called immediately after the benchmark is measured. Returns messages describing the events
+   * that occurred since {@link #measurementStarting()}, which must all be {@link
+   * java.io.Serializable} so they can be sent to the runner.
+   */
+  ImmutableList<LogMessage> measurementEnded();
+}
@@ -17,13 +17,10 @@
 package com.google.caliper.worker.instrument;
 
 import com.google.caliper.core.Running.Benchmark;
-import com.google.caliper.core.Running.BenchmarkMethod;
 import com.google.caliper.model.ArbitraryMeasurement;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.model.Value;
-import com.google.caliper.util.Util;
 import com.google.common.collect.ImmutableSet;
-import java.lang.reflect.Method;
 import java.util.Map;
 import javax.inject.Inject;
 
@@ -36,11 +33,11 @@ final class ArbitraryMeasurementWorkerInstrument extends WorkerInstrument {
   @Inject
   ArbitraryMeasurementWorkerInstrument(
       @Benchmark Object benchmark,
-      @BenchmarkMethod Method method,
+      BenchmarkInvoker invoker,
       @WorkerInstrument.Options Map<String, String> options) {
-    super(benchmark, method);
+    super(benchmark, invoker);
     this.options = new Options(options);
-    ArbitraryMeasurement annotation = method.getAnnotation(ArbitraryMeasurement.class);
+    ArbitraryMeasurement annotation = benchmarkMethod.getAnnotation(ArbitraryMeasurement.class);
     this.unit = annotation.units();
     this.description = annotation.description();
   }
@@ -48,18 +45,18 @@ final class ArbitraryMeasurementWorkerInstrument extends WorkerInstrument {
   @Override
   public void preMeasure(boolean inWarmup) throws Exception {
     if (options.gcBeforeEach && !inWarmup) {
-      Util.forceGc();
+      forceGc();
     }
   }
 
   @Override
   public void dryRun() throws Exception {
-    benchmarkMethod.invoke(benchmark);
+    benchmarkInvoker.invoke(benchmark);
   }
 
   @Override
   public Iterable<Measurement> measure() throws Exception {
-    double measured = (Double) benchmarkMethod.invoke(benchmark);
+    double measured = (Double) benchmarkInvoker.invoke(benchmark);
     return ImmutableSet.of(
         new Measurement.Builder()
             .value(Value.create(measured, unit))
@@ -17,6 +17,7 @@
 package com.google.caliper.worker.instrument;
 
 import com.google.caliper.Param;
+import com.google.caliper.api.Blackhole;
 import com.google.caliper.core.Running.Benchmark;
 import com.google.caliper.core.Running.BenchmarkClass;
 import com.google.caliper.core.UserCodeException;
@@ -26,6 +27,7 @@ import com.google.common.collect.ImmutableSortedMap;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.text.ParseException;
 import javax.inject.Inject;
 
@@ -38,14 +40,17 @@ final class BenchmarkCreator {
   private final Class<?> benchmarkClass;
   private final ImmutableSortedMap<String, String> parameters;
   private final Constructor<?> benchmarkClassCtor;
+  private final Blackhole blackhole;
 
   @Inject
   BenchmarkCreator(
       @BenchmarkClass Class<?> benchmarkClass,
-      @Benchmark ImmutableSortedMap<String, String> parameters) {
+      @Benchmark ImmutableSortedMap<String, String> parameters,
+      Blackhole blackhole) {
     this.benchmarkClass = benchmarkClass;
     this.benchmarkClassCtor = findDefaultConstructor(benchmarkClass);
     this.parameters = parameters;
+    this.blackhole = blackhole;
   }
 
   private static Constructor<?> findDefaultConstructor(Class<?> benchmarkClass) {
@@ -76,7 +81,7 @@ final class BenchmarkCreator {
       throw new UserCodeException(userException);
     }
 
-    // Inject values for the user parameters.
+    // Inject values for the user parameters and any blackholes.
     for (Field field : benchmarkClass.getDeclaredFields()) {
       if (field.isAnnotationPresent(Param.class)) {
         try {
@@ -92,6 +97,14 @@ final class BenchmarkCreator {
         } catch (IllegalAccessException e) {
           throw new AssertionError("already set access");
         }
+      } else if (field.getType() == Blackhole.class
+          && !Modifier.isStatic(field.getModifiers())) {
+        try {
+          field.setAccessible(true);
+          field.set(instance, blackhole);
+        } catch (IllegalAccessException e) {
+          throw new AssertionError("already set access");
+        }
       }
     }
 
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import com.google.caliper.api.Blackhole;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Invokes a benchmark method on a benchmark instance.
+ *
+ * <p>The method is resolved once, when the invoker is created, so that the timed region of a
+ * measurement contains as little invocation machinery as possible. Where {@code java.lang.invoke}
+ * is available the method is bound to a {@link MethodHandle} adapted to the exact shape of the
+ * call, which avoids reflective dispatch, boxing of the {@code reps} argument and allocation of a
+ * varargs array. On VMs without {@code java.lang.invoke} (older Android releases) invocation falls
+ * back to {@link Method#invoke}.
+ *
+ * <p>A benchmark method may declare a {@link Blackhole} as its last parameter. The invoker supplies
+ * it, so callers only ever pass the benchmark instance and the {@code reps} argument, if any.
+ *
+ * <p>Regardless of implementation, an exception thrown by the benchmark method is reported as an
+ * {@link InvocationTargetException} wrapping that exception, just as {@link Method#invoke} would.
+ */
+public abstract class BenchmarkInvoker {
+
+  /** Creates an invoker for the given (accessible) benchmark method. */
+  public static BenchmarkInvoker create(Method method) {
+    return create(method, new Blackhole());
+  }
+
+  /**
+   * Creates an invoker for the given (accessible) benchmark method that passes {@code blackhole}
+   * to the method if it takes one.
+   */
+  public static BenchmarkInvoker create(Method method, Blackhole blackhole) {
+    try {
+      return MethodHandleInvoker.forMethod(method, blackhole);
+    } catch (IllegalAccessException e) {
+      return new ReflectiveInvoker(method, blackhole);
+    } catch (LinkageError e) {
+      // java.lang.invoke isn't supported on this VM
+      return new ReflectiveInvoker(method, blackhole);
+    }
+  }
+
+  /** Returns whether the given benchmark method's last parameter is a {@link Blackhole}. */
+  public static boolean takesBlackhole(Method method) {
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    return parameterTypes.length > 0
+        && parameterTypes[parameterTypes.length - 1] == Blackhole.class;
+  }
+
+  private final Method method;
+
+  BenchmarkInvoker(Method method) {
+    this.method = method;
+  }
+
+  /** Returns the method this invoker invokes. */
+  public final Method method() {
+    return method;
+  }
+
+  /**
+   * Invokes a benchmark method that takes no arguments, returning the value it returned ({@code
+   * null} for a {@code void} method).
+   */
+  public abstract Object invoke(Object benchmark) throws InvocationTargetException;
+
+  /** Invokes a benchmark method that takes a single {@code int} reps argument. */
+  public abstract void invoke(Object benchmark, int reps) throws InvocationTargetException;
+
+  /** Invokes a benchmark method that takes a single {@code long} reps argument. */
+  public abstract void invoke(Object benchmark, long reps) throws InvocationTargetException;
+
+  final IllegalStateException unsupportedShape(String argumentDescription) {
+    return new IllegalStateException(
+        String.format("%s cannot be invoked with %s", method, argumentDescription));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + method + ")";
+  }
+
+  /**
+   * Invokes the benchmark method through a {@link MethodHandle}. Only the handle matching the
+   * method's parameter list is non-null.
+   */
+  private static final class MethodHandleInvoker extends BenchmarkInvoker {
+    private final MethodHandle noArgHandle;
+    private final MethodHandle intRepsHandle;
+    private final MethodHandle longRepsHandle;
+
+    static MethodHandleInvoker forMethod(Method method, Blackhole blackhole)
+        throws IllegalAccessException {
+      MethodHandle handle = MethodHandles.lookup().unreflect(method);
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      if (takesBlackhole(method)) {
+        // parameter 0 of the handle is the receiver
+        handle = MethodHandles.insertArguments(handle, parameterTypes.length, blackhole);
+        parameterTypes = Arrays.copyOf(parameterTypes, parameterTypes.length - 1);
+      }
+      MethodHandle noArg = null;
+      MethodHandle intReps = null;
+      MethodHandle longReps = null;
+      if (parameterTypes.length == 0) {
+        noArg = handle.asType(methodType(Object.class, Object.class));
+      } else if (parameterTypes.length == 1 && parameterTypes[0] == int.class) {
+        intReps = handle.asType(methodType(void.class, Object.class, int.class));
+      } else if (parameterTypes.length == 1 && parameterTypes[0] == long.class) {
+        longReps = handle.asType(methodType(void.class, Object.class, long.class));
+      } else {
+        throw new IllegalArgumentException("Not a benchmark method: " + method);
+      }
+      return new MethodHandleInvoker(method, noArg, intReps, longReps);
+    }
+
+    private MethodHandleInvoker(
+        Method method,
+        MethodHandle noArgHandle,
+        MethodHandle intRepsHandle,
+        MethodHandle longRepsHandle) {
+      super(method);
+      this.noArgHandle = noArgHandle;
+      this.intRepsHandle = intRepsHandle;
+      this.longRepsHandle = longRepsHandle;
+    }
+
+    @Override
+    public Object invoke(Object benchmark) throws InvocationTargetException {
+      if (noArgHandle == null) {
+        throw unsupportedShape("no arguments");
+      }
+      try {
+        return (Object) noArgHandle.invokeExact(benchmark);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    @Override
+    public void invoke(Object benchmark, int reps) throws InvocationTargetException {
+      if (intRepsHandle == null) {
+        throw unsupportedShape("an int");
+      }
+      try {
+        intRepsHandle.invokeExact(benchmark, reps);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    @Override
+    public void invoke(Object benchmark, long reps) throws InvocationTargetException {
+      if (longRepsHandle == null) {
+        throw unsupportedShape("a long");
+      }
+      try {
+        longRepsHandle.invokeExact(benchmark, reps);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+  }
+
+  /** Invokes the benchmark method reflectively. */
+  private static final class ReflectiveInvoker extends BenchmarkInvoker {
+    private final Blackhole blackhole;
+
+    ReflectiveInvoker(Method method, Blackhole blackhole) {
+      super(method);
+      this.blackhole = takesBlackhole(method) ? blackhole : null;
+    }
+
+    @Override
+    public Object invoke(Object benchmark) throws InvocationTargetException {
+      try {
+        if (blackhole != null) {
+          return method().invoke(benchmark, blackhole);
+        }
+        // Pass null to avoid auto-allocation of a varargs array.
+        return method().invoke(benchmark, (Object[]) null);
+      } catch (IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    @Override
+    public void invoke(Object benchmark, int reps) throws InvocationTargetException {
+      try {
+        if (blackhole != null) {
+          method().invoke(benchmark, reps, blackhole);
+        } else {
+          method().invoke(benchmark, reps);
+        }
+      } catch (IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    @Override
+    public void invoke(Object benchmark, long reps) throws InvocationTargetException {
+      try {
+        if (blackhole != null) {
+          method().invoke(benchmark, reps, blackhole);
+        } else {
+          method().invoke(benchmark, reps);
+        }
+      } catch (IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
+}
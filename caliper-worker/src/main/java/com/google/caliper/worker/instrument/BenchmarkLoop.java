@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import com.google.caliper.api.Blackhole;
+
+/**
+ * A loop that calls a benchmark method without a reps parameter a given number of times, passing
+ * each value it returns to a {@link Blackhole}. Implementations are usually generated at runtime by
+ * {@link BenchmarkLoops}; this is public only so that generated classes can implement it.
+ */
+public interface BenchmarkLoop {
+  /**
+   * Calls the benchmark method on {@code benchmark} {@code reps} times. If the method takes a
+   * {@link Blackhole} parameter, {@code blackhole} is passed to it. Exceptions thrown by the
+   * benchmark method propagate unchanged.
+   */
+  void run(Object benchmark, Blackhole blackhole, long reps) throws Throwable;
+}
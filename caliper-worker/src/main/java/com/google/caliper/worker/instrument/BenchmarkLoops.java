@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.caliper.api.Blackhole;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates {@link BenchmarkLoop}s for benchmark methods that take no arguments, or only a {@link
+ * Blackhole}.
+ *
+ * <p>Where possible the loop is a class generated at runtime whose {@code run} method calls the
+ * benchmark method directly with {@code invokevirtual}, so the JIT compiler can inline the
+ * benchmark into the loop exactly as it would for a hand-written {@code reps} loop. The generated
+ * class is defined in a child of the benchmark class' loader, which means it can only call public
+ * methods of public classes; for anything else (or on VMs that can't define JVM classes at runtime)
+ * a loop that calls through the {@link BenchmarkInvoker} is used instead.
+ */
+final class BenchmarkLoops {
+  private static final Logger logger = Logger.getLogger(BenchmarkLoops.class.getName());
+
+  private static final Class<?>[] BLACKHOLE_PARAMETER = {Blackhole.class};
+
+  private BenchmarkLoops() {}
+
+  /**
+   * Returns a loop over the benchmark method of the given invoker, which must take no arguments or
+   * only a {@link Blackhole}.
+   */
+  static BenchmarkLoop create(BenchmarkInvoker invoker) {
+    Method method = invoker.method();
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    checkArgument(
+        parameterTypes.length == 0 || Arrays.equals(parameterTypes, BLACKHOLE_PARAMETER),
+        "%s is not a no-arg benchmark method",
+        method);
+    if (canGenerate(method)) {
+      try {
+        return generate(method);
+      } catch (RuntimeException | LinkageError e) {
+        logger.log(Level.FINE, "Unable to generate a benchmark loop for " + method, e);
+      }
+    }
+    return new InvokerLoop(invoker);
+  }
+
+  @VisibleForTesting
+  static boolean canGenerate(Method method) {
+    return Modifier.isPublic(method.getModifiers())
+        && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+        && !Modifier.isStatic(method.getModifiers());
+  }
+
+  @VisibleForTesting
+  static BenchmarkLoop generate(Method method) {
+    String className = method.getDeclaringClass().getName() + "$CaliperLoop$" + method.getName();
+    byte[] classFile = new LoopClassWriter(className, method).toByteArray();
+    Class<?> loopClass =
+        new LoopClassLoader(method.getDeclaringClass().getClassLoader())
+            .define(className, classFile);
+    try {
+      return (BenchmarkLoop) loopClass.getConstructor().newInstance();
+    } catch (InstantiationException
+        | IllegalAccessException
+        | NoSuchMethodException
+        | InvocationTargetException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * A loop that invokes the benchmark method through a {@link BenchmarkInvoker}. A method that
+   * takes a {@link Blackhole} gets the one bound into the invoker rather than the loop's.
+   */
+  private static final class InvokerLoop implements BenchmarkLoop {
+    private final BenchmarkInvoker invoker;
+
+    InvokerLoop(BenchmarkInvoker invoker) {
+      this.invoker = invoker;
+    }
+
+    @Override
+    public void run(Object benchmark, Blackhole blackhole, long reps) throws Throwable {
+      try {
+        for (long i = 0; i < reps; i++) {
+          blackhole.consume(invoker.invoke(benchmark));
+        }
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Defines generated loop classes. The loop's own API types are always resolved to the classes
+   * seen by the worker, everything else is resolved through the benchmark's class loader.
+   */
+  private static final class LoopClassLoader extends ClassLoader {
+    private static final ImmutableMap<String, Class<?>> HARNESS_CLASSES =
+        ImmutableMap.<String, Class<?>>of(
+            BenchmarkLoop.class.getName(), BenchmarkLoop.class,
+            Blackhole.class.getName(), Blackhole.class);
+
+    LoopClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      Class<?> harnessClass = HARNESS_CLASSES.get(name);
+      return (harnessClass != null) ? harnessClass : super.loadClass(name, resolve);
+    }
+
+    Class<?> define(String name, byte[] classFile) {
+      return defineClass(name, classFile, 0, classFile.length);
+    }
+  }
+
+  /**
+   * Writes the class file for a loop over a single benchmark method. The generated class is
+   * equivalent to:
+   *
+   * <pre>{@code
+   * public final class Benchmark$CaliperLoop$method implements BenchmarkLoop {
+   *   public void run(Object benchmark, Blackhole blackhole, long reps) {
+   *     Benchmark b = (Benchmark) benchmark;
+   *     for (long i = 0; i < reps; i++) {
+   *       blackhole.consume(b.method());  // or b.method(blackhole)
+   *     }
+   *   }
+   * }
+   * }</pre>
+   *
+   * <p>The class file version is 49 (Java 5) so that no stack map frames need to be computed.
+   */
+  private static final class LoopClassWriter {
+    private static final int CLASS_FILE_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int ASTORE = 0x3a;
+    private static final int LCONST_0 = 0x09;
+    private static final int LCONST_1 = 0x0a;
+    private static final int LLOAD = 0x16;
+    private static final int LLOAD_3 = 0x21;
+    private static final int LSTORE = 0x37;
+    private static final int LADD = 0x61;
+    private static final int LCMP = 0x94;
+    private static final int IFGE = 0x9c;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int CHECKCAST = 0xc0;
+
+    // locals of run(): 0 = this, 1 = benchmark, 2 = blackhole, 3-4 = reps
+    private static final int BENCHMARK_LOCAL = 5;
+    private static final int COUNTER_LOCAL = 6;
+    private static final int MAX_LOCALS = 8;
+    private static final int MAX_STACK = 4;
+
+    private static final ImmutableMap<Class<?>, String> CONSUMED_TYPES =
+        new ImmutableMap.Builder<Class<?>, String>()
+            .put(boolean.class, "Z")
+            .put(byte.class, "I")
+            .put(char.class, "I")
+            .put(short.class, "I")
+            .put(int.class, "I")
+            .put(long.class, "J")
+            .put(float.class, "F")
+            .put(double.class, "D")
+            .build();
+
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private int constantPoolCount = 1;
+
+    private final String className;
+    private final Method method;
+
+    LoopClassWriter(String className, Method method) {
+      this.className = className;
+      this.method = method;
+    }
+
+    byte[] toByteArray() {
+      try {
+        return write();
+      } catch (IOException e) {
+        throw new AssertionError(e); // writing to memory
+      }
+    }
+
+    private byte[] write() throws IOException {
+      Class<?> returnType = method.getReturnType();
+      int thisClass = classConstant(internalName(className));
+      int objectClass = classConstant("java/lang/Object");
+      int loopInterface = classConstant(internalName(BenchmarkLoop.class.getName()));
+      int objectInit = methodConstant(objectClass, "<init>", "()V");
+      int codeName = utf8Constant("Code");
+      int initName = utf8Constant("<init>");
+      int initDescriptor = utf8Constant("()V");
+      int runName = utf8Constant("run");
+      int runDescriptor =
+          utf8Constant("(Ljava/lang/Object;" + descriptor(Blackhole.class) + "J)V");
+      boolean passBlackhole = method.getParameterTypes().length == 1;
+      String parameterDescriptor = passBlackhole ? descriptor(Blackhole.class) : "";
+      int benchmarkClass = classConstant(internalName(method.getDeclaringClass().getName()));
+      int benchmarkMethod =
+          methodConstant(
+              benchmarkClass,
+              method.getName(),
+              "(" + parameterDescriptor + ")" + descriptor(returnType));
+      int consumeMethod = 0;
+      if (returnType != void.class) {
+        String consumedType =
+            returnType.isPrimitive() ? CONSUMED_TYPES.get(returnType) : "Ljava/lang/Object;";
+        consumeMethod =
+            methodConstant(
+                classConstant(internalName(Blackhole.class.getName())),
+                "consume",
+                "(" + consumedType + ")V");
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0); // minor version
+      out.writeShort(CLASS_FILE_VERSION);
+      out.writeShort(constantPoolCount);
+      constantPool.flush();
+      constantPoolBytes.writeTo(out);
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(objectClass);
+      out.writeShort(1); // interfaces
+      out.writeShort(loopInterface);
+      out.writeShort(0); // fields
+      out.writeShort(2); // methods
+
+      // public <init>() { super(); }
+      out.writeShort(ACC_PUBLIC);
+      out.writeShort(initName);
+      out.writeShort(initDescriptor);
+      writeCode(
+          out,
+          codeName,
+          1,
+          1,
+          new byte[] {
+            (byte) ALOAD_0,
+            (byte) INVOKESPECIAL,
+            (byte) (objectInit >> 8),
+            (byte) objectInit,
+            (byte) RETURN
+          });
+
+      // public void run(Object benchmark, Blackhole blackhole, long reps)
+      out.writeShort(ACC_PUBLIC);
+      out.writeShort(runName);
+      out.writeShort(runDescriptor);
+      byte[] runCode = runCode(benchmarkClass, benchmarkMethod, passBlackhole, consumeMethod);
+      writeCode(out, codeName, MAX_STACK, MAX_LOCALS, runCode);
+
+      out.writeShort(0); // class attributes
+      out.flush();
+      return bytes.toByteArray();
+    }
+
+    private static byte[] runCode(
+        int benchmarkClass, int benchmarkMethod, boolean passBlackhole, int consumeMethod) {
+      Code code = new Code();
+      code.op(ALOAD_1);
+      code.op(CHECKCAST).u2(benchmarkClass);
+      code.op(ASTORE).u1(BENCHMARK_LOCAL);
+      code.op(LCONST_0);
+      code.op(LSTORE).u1(COUNTER_LOCAL);
+      int loopStart = code.position();
+      code.op(LLOAD).u1(COUNTER_LOCAL);
+      code.op(LLOAD_3);
+      code.op(LCMP);
+      int exitBranch = code.position();
+      code.op(IFGE).u2(0); // patched below
+      if (consumeMethod != 0) {
+        code.op(ALOAD_2);
+      }
+      code.op(ALOAD).u1(BENCHMARK_LOCAL);
+      if (passBlackhole) {
+        code.op(ALOAD_2);
+      }
+      code.op(INVOKEVIRTUAL).u2(benchmarkMethod);
+      if (consumeMethod != 0) {
+        code.op(INVOKEVIRTUAL).u2(consumeMethod);
+      }
+      code.op(LLOAD).u1(COUNTER_LOCAL);
+      code.op(LCONST_1);
+      code.op(LADD);
+      code.op(LSTORE).u1(COUNTER_LOCAL);
+      int backBranch = code.position();
+      code.op(GOTO).u2(loopStart - backBranch);
+      int loopEnd = code.position();
+      code.op(RETURN);
+      byte[] bytes = code.toByteArray();
+      bytes[exitBranch + 1] = (byte) ((loopEnd - exitBranch) >> 8);
+      bytes[exitBranch + 2] = (byte) (loopEnd - exitBranch);
+      return bytes;
+    }
+
+    private static void writeCode(
+        DataOutputStream out, int codeName, int maxStack, int maxLocals, byte[] code)
+        throws IOException {
+      out.writeShort(1); // method attributes
+      out.writeShort(codeName);
+      out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+      out.writeShort(maxStack);
+      out.writeShort(maxLocals);
+      out.writeInt(code.length);
+      out.write(code);
+      out.writeShort(0); // exception table
+      out.writeShort(0); // code attributes
+    }
+
+    private int utf8Constant(String value) throws IOException {
+      constantPool.writeByte(CONSTANT_UTF8);
+      constantPool.writeUTF(value);
+      return constantPoolCount++;
+    }
+
+    private int classConstant(String internalName) throws IOException {
+      int name = utf8Constant(internalName);
+      constantPool.writeByte(CONSTANT_CLASS);
+      constantPool.writeShort(name);
+      return constantPoolCount++;
+    }
+
+    private int methodConstant(int owner, String name, String descriptor) throws IOException {
+      int nameIndex = utf8Constant(name);
+      int descriptorIndex = utf8Constant(descriptor);
+      constantPool.writeByte(CONSTANT_NAME_AND_TYPE);
+      constantPool.writeShort(nameIndex);
+      constantPool.writeShort(descriptorIndex);
+      int nameAndType = constantPoolCount++;
+      constantPool.writeByte(CONSTANT_METHODREF);
+      constantPool.writeShort(owner);
+      constantPool.writeShort(nameAndType);
+      return constantPoolCount++;
+    }
+
+    private static String internalName(String binaryName) {
+      return binaryName.replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> type) {
+      if (type.isPrimitive()) {
+        if (type == void.class) {
+          return "V";
+        } else if (type == boolean.class) {
+          return "Z";
+        } else if (type == long.class) {
+          return "J";
+        } else {
+          return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+        }
+      } else if (type.isArray()) {
+        return internalName(type.getName());
+      } else {
+        return "L" + internalName(type.getName()) + ";";
+      }
+    }
+  }
+
+  /** A growable bytecode buffer. */
+  private static final class Code {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    int position() {
+      return bytes.size();
+    }
+
+    Code op(int opcode) {
+      return u1(opcode);
+    }
+
+    Code u1(int value) {
+      bytes.write(value);
+      return this;
+    }
+
+    Code u2(int value) {
+      bytes.write(value >> 8);
+      bytes.write(value);
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+  }
+}
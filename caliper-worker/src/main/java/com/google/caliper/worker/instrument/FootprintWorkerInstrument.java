@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import com.google.caliper.api.Footprint;
+import com.google.caliper.core.Running.Benchmark;
+import com.google.caliper.memory.ObjectGraphMeasurer;
+import com.google.caliper.memory.ObjectGraphReport;
+import com.google.caliper.memory.ObjectGraphReport.ClassStats;
+import com.google.caliper.memory.ObjectGraphReport.RetainedSubgraph;
+import com.google.caliper.memory.ObjectLayout;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.model.Value;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * Worker for {@link Footprint} methods. Measures the object graph returned by the method, leaving
+ * out instances of the classes it {@linkplain Footprint#exclude() excludes}, and reports the
+ * number of objects, references and primitives in it and an estimate of its size in bytes.
+ *
+ * <p>If the benchmark has a numeric parameter named by the {@code sizeParam} option, the size is
+ * also reported divided by that parameter's value, as the number of bytes per element.
+ *
+ * <p>If the {@code reportTop} option is positive, that many of the classes whose objects take the
+ * most bytes, and of the objects that retain the most bytes, are also reported, to show where the
+ * memory goes.
+ */
+final class FootprintWorkerInstrument extends WorkerInstrument {
+  private final ObjectLayout layout;
+  private final Predicate<Object> acceptor;
+  private final Optional<Long> elements;
+  private final int reportTop;
+
+  @Inject
+  FootprintWorkerInstrument(
+      @Benchmark Object benchmark,
+      BenchmarkInvoker invoker,
+      @Benchmark ImmutableSortedMap<String, String> userParameters,
+      @WorkerInstrument.Options Map<String, String> options) {
+    super(benchmark, invoker);
+    this.layout =
+        new ObjectLayout(
+            Integer.parseInt(options.get("objectHeaderBytes")),
+            Boolean.parseBoolean(options.get("compressedOops")),
+            Integer.parseInt(options.get("objectAlignment")));
+    this.acceptor = excluding(benchmarkMethod.getAnnotation(Footprint.class).exclude());
+    this.elements = elements(userParameters, options.get("sizeParam"));
+    String reportTop = options.get("reportTop");
+    this.reportTop = reportTop == null ? 0 : Integer.parseInt(reportTop);
+  }
+
+  private static Predicate<Object> excluding(Class<?>[] excludedClasses) {
+    List<Predicate<Object>> excluded = new ArrayList<Predicate<Object>>();
+    for (Class<?> excludedClass : excludedClasses) {
+      excluded.add(Predicates.instanceOf(excludedClass));
+    }
+    return Predicates.not(Predicates.or(excluded));
+  }
+
+  private static Optional<Long> elements(
+      ImmutableSortedMap<String, String> userParameters, String sizeParam) {
+    if (sizeParam == null || !userParameters.containsKey(sizeParam)) {
+      return Optional.absent();
+    }
+    try {
+      long elements = Long.parseLong(userParameters.get(sizeParam));
+      return elements > 0 ? Optional.of(elements) : Optional.<Long>absent();
+    } catch (NumberFormatException e) {
+      return Optional.absent();
+    }
+  }
+
+  @Override
+  public void dryRun() throws Exception {
+    ObjectGraphMeasurer.measure(invokeFootprintMethod(), acceptor, layout);
+  }
+
+  @Override
+  public Iterable<Measurement> measure() throws Exception {
+    Object root = invokeFootprintMethod();
+    ObjectGraphMeasurer.Footprint footprint = ObjectGraphMeasurer.measure(root, acceptor, layout);
+    ImmutableList.Builder<Measurement> measurements = ImmutableList.builder();
+    measurements.add(
+        measurement(footprint.getObjects(), "", "objects"),
+        measurement(footprint.getAllReferences(), "", "references"),
+        measurement(footprint.getPrimitives().size(), "", "primitives"),
+        measurement(footprint.getBytes(), "B", "bytes"));
+    if (elements.isPresent()) {
+      measurements.add(
+          measurement((double) footprint.getBytes() / elements.get(), "B", "bytes per element"));
+    }
+    if (reportTop > 0) {
+      ObjectGraphReport report = ObjectGraphReport.create(root, acceptor, layout);
+      for (ClassStats stats : Iterables.limit(report.classHistogram(), reportTop)) {
+        measurements.add(
+            measurement(stats.getBytes(), "B", "bytes in " + stats.getType().getName()));
+      }
+      for (RetainedSubgraph subgraph : report.largestRetainedSubgraphs(reportTop)) {
+        measurements.add(
+            measurement(
+                subgraph.getRetainedBytes(), "B", "bytes retained by " + subgraph.getPath()));
+      }
+    }
+    return measurements.build();
+  }
+
+  private Object invokeFootprintMethod() throws Exception {
+    Object root = benchmarkInvoker.invoke(benchmark);
+    if (root == null) {
+      throw new IllegalStateException(
+          String.format("@Footprint method %s returned null", benchmarkMethod.getName()));
+    }
+    return root;
+  }
+
+  private static Measurement measurement(double value, String unit, String description) {
+    return new Measurement.Builder()
+        .value(Value.create(value, unit))
+        .weight(1)
+        .description(description)
+        .build();
+  }
+}
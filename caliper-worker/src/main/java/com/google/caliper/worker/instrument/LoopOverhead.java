@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import com.google.caliper.api.Blackhole;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * The time taken by the harness around a timed reps loop: reading the ticker, dispatching to the
+ * benchmark method and running the loop itself. It is modeled as a fixed cost plus a cost per rep,
+ * calibrated by timing an equivalent loop around a benchmark that does nothing.
+ */
+final class LoopOverhead {
+  private static final int WARMUP_ROUNDS = 100;
+  private static final int WARMUP_REPS = 10000;
+  private static final int CALIBRATION_ROUNDS = 5;
+  private static final int CALIBRATION_REPS = 1000000;
+
+  private final double fixedNanos;
+  private final double nanosPerRep;
+
+  @VisibleForTesting
+  LoopOverhead(double fixedNanos, double nanosPerRep) {
+    this.fixedNanos = fixedNanos;
+    this.nanosPerRep = nanosPerRep;
+  }
+
+  /** Returns the estimated overhead of timing {@code reps} reps. */
+  double nanosFor(long reps) {
+    return fixedNanos + nanosPerRep * reps;
+  }
+
+  /** Times some number of reps of an empty benchmark, including the ticker reads. */
+  interface EmptyLoop {
+    long time(long reps) throws Exception;
+  }
+
+  /**
+   * Warms up the given empty loop and then fits the overhead model to the fastest times seen for
+   * a single rep and for a large number of reps.
+   */
+  static LoopOverhead calibrate(EmptyLoop loop) throws Exception {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      loop.time(WARMUP_REPS);
+    }
+    long singleRep = Long.MAX_VALUE;
+    long manyReps = Long.MAX_VALUE;
+    for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+      singleRep = Math.min(singleRep, loop.time(1));
+      manyReps = Math.min(manyReps, loop.time(CALIBRATION_REPS));
+    }
+    double nanosPerRep = Math.max(0, (double) (manyReps - singleRep) / (CALIBRATION_REPS - 1));
+    return new LoopOverhead(Math.max(0, singleRep - nanosPerRep), nanosPerRep);
+  }
+
+  /** Returns an empty loop timed like a microbenchmark, which takes an {@code int} reps. */
+  static EmptyLoop intReps(final Ticker ticker) {
+    final BenchmarkInvoker invoker = BenchmarkInvoker.create(emptyMethod("intReps", int.class));
+    final EmptyBenchmark benchmark = new EmptyBenchmark();
+    return new EmptyLoop() {
+      @Override
+      public long time(long reps) throws Exception {
+        long before = ticker.read();
+        invoker.invoke(benchmark, (int) reps);
+        return ticker.read() - before;
+      }
+    };
+  }
+
+  /** Returns an empty loop timed like a picobenchmark, which takes a {@code long} reps. */
+  static EmptyLoop longReps(final Ticker ticker) {
+    final BenchmarkInvoker invoker = BenchmarkInvoker.create(emptyMethod("longReps", long.class));
+    final EmptyBenchmark benchmark = new EmptyBenchmark();
+    return new EmptyLoop() {
+      @Override
+      public long time(long reps) throws Exception {
+        long before = ticker.read();
+        invoker.invoke(benchmark, reps);
+        return ticker.read() - before;
+      }
+    };
+  }
+
+  /** Returns an empty no-arg benchmark run in a generated {@link BenchmarkLoop}. */
+  static EmptyLoop looped(final Ticker ticker, final Blackhole blackhole) {
+    final BenchmarkLoop loop = BenchmarkLoops.create(BenchmarkInvoker.create(emptyMethod("run")));
+    final EmptyBenchmark benchmark = new EmptyBenchmark();
+    return new EmptyLoop() {
+      @Override
+      public long time(long reps) throws Exception {
+        long before = ticker.read();
+        try {
+          loop.run(benchmark, blackhole, reps);
+        } catch (Throwable t) {
+          throw new InvocationTargetException(t);
+        }
+        return ticker.read() - before;
+      }
+    };
+  }
+
+  private static Method emptyMethod(String name, Class<?>... parameterTypes) {
+    try {
+      return EmptyBenchmark.class.getDeclaredMethod(name, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Benchmarks that do nothing. The reps loops keep a running sum so that the loop itself is not
+   * optimized away.
+   */
+  public static final class EmptyBenchmark {
+    public int intReps(int reps) {
+      int sum = 0;
+      for (int i = 0; i < reps; i++) {
+        sum += i;
+      }
+      return sum;
+    }
+
+    public long longReps(long reps) {
+      long sum = 0;
+      for (long i = 0; i < reps; i++) {
+        sum += i;
+      }
+      return sum;
+    }
+
+    public void run() {}
+  }
+}
@@ -22,10 +22,10 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import com.google.caliper.api.AfterRep;
 import com.google.caliper.api.BeforeRep;
 import com.google.caliper.core.Running.Benchmark;
-import com.google.caliper.core.Running.BenchmarkMethod;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.model.Value;
-import com.google.caliper.util.Util;
+import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableSet;
@@ -33,47 +33,67 @@ import java.lang.reflect.Method;
 import java.util.Map;
 import javax.inject.Inject;
 
-/** The {@link WorkerInstrument} implementation for macrobenchmarks. */
+/**
+ * The {@link WorkerInstrument} implementation for macrobenchmarks.
+ *
+ * <p>By default each measurement times a single invocation of the benchmark method. With the
+ * {@code sampleTime} option, each measurement instead invokes the benchmark repeatedly for the
+ * timing interval, timing every invocation individually and recording the latencies in a {@link
+ * LatencyHistogram}. {@code @BeforeRep} and {@code @AfterRep} methods still run around every
+ * invocation, outside of the timed region.
+ */
 final class MacrobenchmarkWorkerInstrument extends WorkerInstrument {
+  private final Ticker ticker;
   private final Stopwatch stopwatch;
   private final ImmutableSet<Method> beforeRepMethods;
   private final ImmutableSet<Method> afterRepMethods;
   private final boolean gcBeforeEach;
+  private final boolean sampleTime;
+  private final long timingIntervalNanos;
+  private final LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+  private LatencyHistogram latencyHistogram;
 
   @Inject
   MacrobenchmarkWorkerInstrument(
       @Benchmark Object benchmark,
-      @BenchmarkMethod Method method,
+      BenchmarkInvoker invoker,
       Ticker ticker,
       @WorkerInstrument.Options Map<String, String> options) {
-    super(benchmark, method);
+    super(benchmark, invoker);
+    this.ticker = ticker;
     this.stopwatch = Stopwatch.createUnstarted(ticker);
     this.beforeRepMethods = getAnnotatedMethods(benchmark.getClass(), BeforeRep.class);
     this.afterRepMethods = getAnnotatedMethods(benchmark.getClass(), AfterRep.class);
     this.gcBeforeEach = Boolean.parseBoolean(options.get("gcBeforeEach"));
+    this.sampleTime = Boolean.parseBoolean(options.get("sampleTime"));
+    this.timingIntervalNanos =
+        sampleTime ? Long.parseLong(options.get("timingIntervalNanos")) : 0;
   }
 
   @Override
   public void preMeasure(boolean inWarmup) throws Exception {
-    for (Method beforeRepMethod : beforeRepMethods) {
-      beforeRepMethod.invoke(benchmark);
+    if (!sampleTime) {
+      runBeforeRepMethods();
     }
     if (gcBeforeEach && !inWarmup) {
-      Util.forceGc();
+      forceGc();
     }
   }
 
   @Override
   public void dryRun() throws Exception {
-    preMeasure(true);
-    benchmarkMethod.invoke(benchmark);
-    postMeasure();
+    runBeforeRepMethods();
+    benchmarkInvoker.invoke(benchmark);
+    runAfterRepMethods();
   }
 
   @Override
   public Iterable<Measurement> measure() throws Exception {
+    if (sampleTime) {
+      return sampleInvocations();
+    }
     stopwatch.start();
-    benchmarkMethod.invoke(benchmark);
+    benchmarkInvoker.invoke(benchmark);
     long nanos = stopwatch.stop().elapsed(NANOSECONDS);
     stopwatch.reset();
     return ImmutableSet.of(
@@ -84,8 +104,52 @@ final class MacrobenchmarkWorkerInstrument extends WorkerInstrument {
             .build());
   }
 
+  /**
+   * Invokes the benchmark until the timing interval has elapsed, recording the latency of each
+   * invocation. Reports the total time spent in the benchmark method, weighted by the number of
+   * invocations, so that the measurement is the mean latency.
+   */
+  private Iterable<Measurement> sampleInvocations() throws Exception {
+    recorder.reset();
+    long totalNanos = 0;
+    long intervalStart = ticker.read();
+    do {
+      runBeforeRepMethods();
+      long start = ticker.read();
+      benchmarkInvoker.invoke(benchmark);
+      long nanos = ticker.read() - start;
+      runAfterRepMethods();
+      recorder.record(nanos);
+      totalNanos += nanos;
+    } while (ticker.read() - intervalStart < timingIntervalNanos);
+    latencyHistogram = recorder.snapshot();
+    return ImmutableSet.of(
+        new Measurement.Builder()
+            .description("runtime")
+            .weight(recorder.totalCount())
+            .value(Value.create(totalNanos, "ns"))
+            .build());
+  }
+
+  @Override
+  public Optional<LatencyHistogram> latencyHistogram() {
+    return Optional.fromNullable(latencyHistogram);
+  }
+
   @Override
   public void postMeasure() throws Exception {
+    if (!sampleTime) {
+      runAfterRepMethods();
+    }
+  }
+
+  private void runBeforeRepMethods() throws Exception {
+    for (Method beforeRepMethod : beforeRepMethods) {
+      beforeRepMethod.invoke(benchmark);
+    }
+  }
+
+  private void runAfterRepMethods() throws Exception {
     for (Method afterRepMethod : afterRepMethods) {
       afterRepMethod.invoke(benchmark);
     }
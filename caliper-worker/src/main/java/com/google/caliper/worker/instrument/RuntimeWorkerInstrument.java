@@ -18,48 +18,81 @@ package com.google.caliper.worker.instrument;
 
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+import com.google.caliper.api.Blackhole;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.caliper.core.Running.Benchmark;
-import com.google.caliper.core.Running.BenchmarkMethod;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.model.Value;
+import com.google.caliper.util.InvalidCommandException;
 import com.google.caliper.util.ShortDuration;
-import com.google.caliper.util.Util;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
 import com.google.common.base.Ticker;
-import com.google.common.collect.ImmutableSet;
-import java.lang.reflect.Method;
+import com.google.common.collect.ImmutableList;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 import java.util.Random;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Provider;
 
-/** A {@link WorkerInstrument} base class for micro and pico benchmarks. */
+/**
+ * A {@link WorkerInstrument} base class for micro and pico benchmarks.
+ *
+ * <p>Before bootstrapping, the overhead of the timing harness is calibrated once per trial with an
+ * equivalent empty loop (see {@link LoopOverhead}). Each measurement reports the raw time as its
+ * value and the time with that overhead subtracted as its corrected value.
+ *
+ * <p>With the {@code measureAllocations} option, each measurement is accompanied by one of the
+ * bytes allocated by the benchmark thread over the same reps, less the bytes allocated by a call
+ * with zero reps.
+ */
 abstract class RuntimeWorkerInstrument extends WorkerInstrument {
   @VisibleForTesting static final int INITIAL_REPS = 100;
+  private static final int ALLOCATION_BASELINE_ROUNDS = 5;
 
   protected final Random random;
   protected final Ticker ticker;
   protected final Options options;
+  @Nullable private final ThreadAllocationCounter allocationCounter;
 
+  private LoopOverhead loopOverhead;
+  private long allocationBaseline;
   private long totalReps;
   private long totalNanos;
   private long nextReps;
 
   RuntimeWorkerInstrument(
       Object benchmark,
-      Method method,
+      BenchmarkInvoker invoker,
       Random random,
       Ticker ticker,
+      Optional<Provider<ThreadAllocationCounter>> allocationCounter,
       Map<String, String> workerOptions) {
-    super(benchmark, method);
+    super(benchmark, invoker);
     this.random = random;
     // TODO(gak): investigate whether or not we can use Stopwatch
     this.ticker = ticker;
     this.options = new Options(workerOptions);
+    if (options.measureAllocations && !allocationCounter.isPresent()) {
+      throw new InvalidCommandException(
+          "This VM can't count allocated bytes, so the measureAllocations option isn't supported.");
+    }
+    this.allocationCounter = options.measureAllocations ? allocationCounter.get().get() : null;
   }
 
   @Override
   public void bootstrap() throws Exception {
+    loopOverhead = LoopOverhead.calibrate(emptyLoop());
+    if (allocationCounter != null) {
+      allocationBaseline = Long.MAX_VALUE;
+      for (int i = 0; i < ALLOCATION_BASELINE_ROUNDS; i++) {
+        long bytesBefore = allocationCounter.allocatedBytes();
+        invokeTimeMethod(0);
+        allocationBaseline =
+            Math.min(allocationBaseline, allocationCounter.allocatedBytes() - bytesBefore);
+      }
+    }
     totalReps = INITIAL_REPS;
     totalNanos = invokeTimeMethod(INITIAL_REPS);
   }
@@ -71,7 +104,7 @@ abstract class RuntimeWorkerInstrument extends WorkerInstrument {
             totalReps, totalNanos, options.timingIntervalNanos, random.nextGaussian());
 
     if (options.gcBeforeEach && !inWarmup) {
-      Util.forceGc();
+      forceGc();
     }
   }
 
@@ -82,22 +115,37 @@ abstract class RuntimeWorkerInstrument extends WorkerInstrument {
 
   @Override
   public Iterable<Measurement> measure() throws Exception {
+    long bytesBefore = (allocationCounter == null) ? 0 : allocationCounter.allocatedBytes();
     long nanos = invokeTimeMethod(nextReps);
+    long bytes = (allocationCounter == null) ? 0 : allocationCounter.allocatedBytes() - bytesBefore;
 
-    Measurement measurement =
+    ImmutableList.Builder<Measurement> measurements = ImmutableList.builder();
+    measurements.add(
         new Measurement.Builder()
             .description("runtime")
             .value(Value.create(nanos, "ns"))
+            .correctedValue(Value.create(nanos - loopOverhead.nanosFor(nextReps), "ns"))
             .weight(nextReps)
-            .build();
+            .build());
+    if (allocationCounter != null) {
+      measurements.add(
+          new Measurement.Builder()
+              .description("bytes")
+              .value(Value.create(Math.max(0, bytes - allocationBaseline), "B"))
+              .weight(nextReps)
+              .build());
+    }
 
     totalReps += nextReps;
     totalNanos += nanos;
-    return ImmutableSet.of(measurement);
+    return measurements.build();
   }
 
   abstract long invokeTimeMethod(long reps) throws Exception;
 
+  /** Returns a loop timed the same way as {@link #invokeTimeMethod}, around an empty benchmark. */
+  abstract LoopOverhead.EmptyLoop emptyLoop();
+
   /**
    * Returns a random number of reps based on a normal distribution around the estimated number of
    * reps for the timing interval. The distribution used has a standard deviation of one fifth of
@@ -114,11 +162,12 @@ abstract class RuntimeWorkerInstrument extends WorkerInstrument {
     @Inject
     Micro(
         @Benchmark Object benchmark,
-        @BenchmarkMethod Method method,
+        BenchmarkInvoker invoker,
         Random random,
         Ticker ticker,
+        Optional<Provider<ThreadAllocationCounter>> allocationCounter,
         @WorkerInstrument.Options Map<String, String> options) {
-      super(benchmark, method, random, ticker, options);
+      super(benchmark, invoker, random, ticker, allocationCounter, options);
     }
 
     @Override
@@ -135,9 +184,14 @@ abstract class RuntimeWorkerInstrument extends WorkerInstrument {
             ShortDuration.of(options.timingIntervalNanos, NANOSECONDS));
       }
       long before = ticker.read();
-      benchmarkMethod.invoke(benchmark, intReps);
+      benchmarkInvoker.invoke(benchmark, intReps);
       return ticker.read() - before;
     }
+
+    @Override
+    LoopOverhead.EmptyLoop emptyLoop() {
+      return LoopOverhead.intReps(ticker);
+    }
   }
 
   /** A {@link Worker} for pico benchmarks. */
@@ -145,28 +199,76 @@ abstract class RuntimeWorkerInstrument extends WorkerInstrument {
     @Inject
     Pico(
         @Benchmark Object benchmark,
-        @BenchmarkMethod Method method,
+        BenchmarkInvoker invoker,
         Random random,
         Ticker ticker,
+        Optional<Provider<ThreadAllocationCounter>> allocationCounter,
         @WorkerInstrument.Options Map<String, String> options) {
-      super(benchmark, method, random, ticker, options);
+      super(benchmark, invoker, random, ticker, allocationCounter, options);
     }
 
     @Override
     long invokeTimeMethod(long reps) throws Exception {
       long before = ticker.read();
-      benchmarkMethod.invoke(benchmark, reps);
+      benchmarkInvoker.invoke(benchmark, reps);
       return ticker.read() - before;
     }
+
+    @Override
+    LoopOverhead.EmptyLoop emptyLoop() {
+      return LoopOverhead.longReps(ticker);
+    }
+  }
+
+  /**
+   * A {@link Worker} for no-arg benchmarks that are run in a {@link BenchmarkLoop}, which calls the
+   * benchmark method {@code reps} times and feeds each result to a {@link Blackhole}. This is
+   * timed just like a pico benchmark.
+   */
+  static final class Looped extends RuntimeWorkerInstrument {
+    private final BenchmarkLoop loop;
+    private final Blackhole blackhole;
+
+    @Inject
+    Looped(
+        @Benchmark Object benchmark,
+        BenchmarkInvoker invoker,
+        Blackhole blackhole,
+        Random random,
+        Ticker ticker,
+        Optional<Provider<ThreadAllocationCounter>> allocationCounter,
+        @WorkerInstrument.Options Map<String, String> options) {
+      super(benchmark, invoker, random, ticker, allocationCounter, options);
+      this.loop = BenchmarkLoops.create(invoker);
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    long invokeTimeMethod(long reps) throws Exception {
+      long before = ticker.read();
+      try {
+        loop.run(benchmark, blackhole, reps);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+      return ticker.read() - before;
+    }
+
+    @Override
+    LoopOverhead.EmptyLoop emptyLoop() {
+      return LoopOverhead.looped(ticker, blackhole);
+    }
   }
 
   private static final class Options {
     long timingIntervalNanos;
     boolean gcBeforeEach;
+    boolean measureAllocations;
 
     Options(Map<String, String> optionMap) {
       this.timingIntervalNanos = Long.parseLong(optionMap.get("timingIntervalNanos"));
       this.gcBeforeEach = Boolean.parseBoolean(optionMap.get("gcBeforeEach"));
+      this.measureAllocations = Boolean.parseBoolean(optionMap.get("measureAllocations"));
     }
   }
 }
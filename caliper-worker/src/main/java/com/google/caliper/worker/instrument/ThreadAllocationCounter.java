@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+/**
+ * Counts the bytes allocated by the current thread. Unlike the allocation instrumenter agent, this
+ * doesn't require running in interpreted mode, so it measures allocation as the JIT-compiled code
+ * (with escape analysis) actually performs it. It only counts bytes, not objects.
+ *
+ * <p>Only bound on VMs that keep such a count, so inject it as an {@code Optional}.
+ */
+public interface ThreadAllocationCounter {
+  /** Returns the total number of bytes allocated by the current thread so far. */
+  long allocatedBytes();
+}
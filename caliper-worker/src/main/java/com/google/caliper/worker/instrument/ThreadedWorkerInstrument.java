@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static com.google.caliper.worker.instrument.RuntimeWorkerInstrument.INITIAL_REPS;
+import static com.google.caliper.worker.instrument.RuntimeWorkerInstrument.calculateTargetReps;
+
+import com.google.caliper.api.Blackhole;
+import com.google.caliper.core.InvalidBenchmarkException;
+import com.google.caliper.core.Running.Benchmark;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.model.Value;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Inject;
+
+/**
+ * The {@link WorkerInstrument} for benchmarks run on several threads at once. Every thread calls
+ * the benchmark method on the same benchmark instance.
+ *
+ * <p>Each measurement starts the configured number of threads, which wait for each other at a
+ * barrier and then each run and time the same number of reps. Threads are started fresh for every
+ * measurement so that no harness thread outlives the trial.
+ */
+final class ThreadedWorkerInstrument extends WorkerInstrument {
+  private final Random random;
+  private final Ticker ticker;
+  private final Blackhole blackhole;
+  private final int threads;
+  private final long timingIntervalNanos;
+  private final boolean gcBeforeEach;
+  private final RepsRunner repsRunner;
+
+  private long totalReps;
+  private long totalNanos;
+  private long nextReps;
+
+  @Inject
+  ThreadedWorkerInstrument(
+      @Benchmark Object benchmark,
+      BenchmarkInvoker invoker,
+      Blackhole blackhole,
+      Random random,
+      Ticker ticker,
+      @WorkerInstrument.Options Map<String, String> options) {
+    super(benchmark, invoker);
+    this.random = random;
+    this.ticker = ticker;
+    this.blackhole = blackhole;
+    this.threads = Integer.parseInt(options.get("threads"));
+    this.timingIntervalNanos = Long.parseLong(options.get("timingIntervalNanos"));
+    this.gcBeforeEach = Boolean.parseBoolean(options.get("gcBeforeEach"));
+    this.repsRunner = createRepsRunner(invoker);
+  }
+
+  @Override
+  public void bootstrap() throws Exception {
+    totalReps = INITIAL_REPS;
+    totalNanos = slowestThreadNanos(runThreads(INITIAL_REPS));
+  }
+
+  @Override
+  public void preMeasure(boolean inWarmup) throws Exception {
+    nextReps =
+        calculateTargetReps(totalReps, totalNanos, timingIntervalNanos, random.nextGaussian());
+    if (gcBeforeEach && !inWarmup) {
+      forceGc();
+    }
+  }
+
+  @Override
+  public void dryRun() throws Exception {
+    runThreads(1);
+  }
+
+  @Override
+  public Iterable<Measurement> measure() throws Exception {
+    long[][] startsAndEnds = runThreads(nextReps);
+    ImmutableList<Measurement> measurements = toMeasurements(nextReps, startsAndEnds);
+    totalReps += nextReps;
+    totalNanos += slowestThreadNanos(startsAndEnds);
+    return measurements;
+  }
+
+  /**
+   * Converts the start and end ticks of each thread's reps into a {@code runtime} measurement per
+   * thread and a single {@code throughput} measurement, in reps per second, over the time from the
+   * first thread starting to the last thread finishing.
+   */
+  @VisibleForTesting
+  static ImmutableList<Measurement> toMeasurements(long reps, long[][] startsAndEnds) {
+    long[] starts = startsAndEnds[0];
+    long[] ends = startsAndEnds[1];
+    ImmutableList.Builder<Measurement> measurements = ImmutableList.builder();
+    long firstStart = Long.MAX_VALUE;
+    long lastEnd = Long.MIN_VALUE;
+    for (int i = 0; i < starts.length; i++) {
+      measurements.add(
+          new Measurement.Builder()
+              .description("runtime")
+              .value(Value.create(ends[i] - starts[i], "ns"))
+              .weight(reps)
+              .build());
+      firstStart = Math.min(firstStart, starts[i]);
+      lastEnd = Math.max(lastEnd, ends[i]);
+    }
+    double wallNanos = Math.max(1, lastEnd - firstStart);
+    double repsPerSecond = (double) reps * starts.length / (wallNanos / 1e9);
+    measurements.add(
+        new Measurement.Builder()
+            .description("throughput")
+            .value(Value.create(repsPerSecond, "ops/s"))
+            .weight(1)
+            .build());
+    return measurements.build();
+  }
+
+  private static long slowestThreadNanos(long[][] startsAndEnds) {
+    long slowest = 0;
+    for (int i = 0; i < startsAndEnds[0].length; i++) {
+      slowest = Math.max(slowest, startsAndEnds[1][i] - startsAndEnds[0][i]);
+    }
+    return slowest;
+  }
+
+  /**
+   * Runs {@code reps} reps on each thread, returning the tick each thread started timing at (index
+   * 0) and finished at (index 1).
+   */
+  private long[][] runThreads(final long reps) throws Exception {
+    repsRunner.checkReps(reps);
+    final long[] starts = new long[threads];
+    final long[] ends = new long[threads];
+    final CyclicBarrier startBarrier = new CyclicBarrier(threads);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] benchmarkThreads = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      final int index = i;
+      benchmarkThreads[i] =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    startBarrier.await();
+                    long start = ticker.read();
+                    repsRunner.run(reps);
+                    ends[index] = ticker.read();
+                    starts[index] = start;
+                  } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                  }
+                }
+              },
+              "caliper-benchmark-thread-" + i);
+      benchmarkThreads[i].setDaemon(true);
+      benchmarkThreads[i].start();
+    }
+    for (Thread thread : benchmarkThreads) {
+      thread.join();
+    }
+    Throwable t = failure.get();
+    if (t instanceof Exception) {
+      throw (Exception) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new InvocationTargetException(t);
+    }
+    return new long[][] {starts, ends};
+  }
+
+  private RepsRunner createRepsRunner(final BenchmarkInvoker invoker) {
+    Class<?>[] parameterTypes = benchmarkMethod.getParameterTypes();
+    if (parameterTypes.length == 0 || parameterTypes[0] == Blackhole.class) {
+      final BenchmarkLoop loop = BenchmarkLoops.create(invoker);
+      return new RepsRunner() {
+        @Override
+        void run(long reps) throws Throwable {
+          try {
+            loop.run(benchmark, blackhole, reps);
+          } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+          }
+        }
+      };
+    } else if (parameterTypes[0] == int.class) {
+      return new RepsRunner() {
+        @Override
+        void checkReps(long reps) throws InvalidBenchmarkException {
+          if (reps != (int) reps) {
+            throw new InvalidBenchmarkException(
+                "%s.%s takes an int for reps, but requires a greater number to fill the timing "
+                    + "interval. Use a long parameter if the benchmarked code is very fast.",
+                benchmark.getClass(),
+                benchmarkMethod.getName());
+          }
+        }
+
+        @Override
+        void run(long reps) throws Throwable {
+          invoker.invoke(benchmark, (int) reps);
+        }
+      };
+    } else {
+      return new RepsRunner() {
+        @Override
+        void run(long reps) throws Throwable {
+          invoker.invoke(benchmark, reps);
+        }
+      };
+    }
+  }
+
+  /** Runs some number of reps of the benchmark method on the calling thread. */
+  private abstract static class RepsRunner {
+    void checkReps(long reps) throws InvalidBenchmarkException {}
+
+    abstract void run(long reps) throws Throwable;
+  }
+}
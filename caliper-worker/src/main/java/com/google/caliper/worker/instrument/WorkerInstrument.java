@@ -23,7 +23,11 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import com.google.caliper.core.Running.AfterExperimentMethods;
 import com.google.caliper.core.Running.BeforeExperimentMethods;
+import com.google.caliper.model.LatencyHistogram;
 import com.google.caliper.model.Measurement;
+import com.google.caliper.util.ShortDuration;
+import com.google.caliper.util.Util;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
@@ -47,11 +51,15 @@ public abstract class WorkerInstrument {
   @Inject @AfterExperimentMethods ImmutableSet<Method> afterExperimentMethods;
 
   protected final Method benchmarkMethod;
+  protected final BenchmarkInvoker benchmarkInvoker;
   protected final Object benchmark;
 
-  protected WorkerInstrument(Object benchmark, Method method) {
+  private Optional<ShortDuration> gcBarrierTime = Optional.absent();
+
+  protected WorkerInstrument(Object benchmark, BenchmarkInvoker benchmarkInvoker) {
     this.benchmark = benchmark;
-    this.benchmarkMethod = method;
+    this.benchmarkMethod = benchmarkInvoker.method();
+    this.benchmarkInvoker = benchmarkInvoker;
   }
 
   /** Initializes the benchmark object. */
@@ -72,6 +80,24 @@ public abstract class WorkerInstrument {
    */
   public void preMeasure(boolean inWarmup) throws Exception {}
 
+  /**
+   * Forces a garbage collection so that the next measurement starts with a quiescent heap, noting
+   * how long that took for {@link #takeGcBarrierTime()}.
+   */
+  protected final void forceGc() {
+    gcBarrierTime = Optional.of(Util.forceGc());
+  }
+
+  /**
+   * Returns how long the garbage collection forced by the last call to {@link
+   * #preMeasure(boolean)} took, if it forced one.
+   */
+  public final Optional<ShortDuration> takeGcBarrierTime() {
+    Optional<ShortDuration> result = gcBarrierTime;
+    gcBarrierTime = Optional.absent();
+    return result;
+  }
+
   /** Called immediately after {@link #measure()}. */
   public void postMeasure() throws Exception {}
 
@@ -81,10 +107,24 @@ public abstract class WorkerInstrument {
   /** Template method for workers that produce multiple measurements. */
   public abstract Iterable<Measurement> measure() throws Exception;
 
+  /**
+   * Returns the latencies of the individual benchmark invocations timed by the last call to {@link
+   * #measure()}, for instruments that time invocations one at a time.
+   */
+  public Optional<LatencyHistogram> latencyHistogram() {
+    return Optional.absent();
+  }
+
   /** Tears down the benchmark object. */
   public final void tearDownBenchmark() throws Exception {
     for (Method method : afterExperimentMethods) {
       method.invoke(benchmark);
     }
   }
+
+  /**
+   * Releases anything the instrument registered with the worker VM, once it has finished its trial
+   * or dry run. The VM may go on to run further requests with other instruments.
+   */
+  public void release() {}
 }
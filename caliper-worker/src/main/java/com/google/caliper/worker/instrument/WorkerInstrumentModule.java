@@ -16,6 +16,7 @@
 
 package com.google.caliper.worker.instrument;
 
+import com.google.caliper.api.Blackhole;
 import com.google.caliper.bridge.ExperimentSpec;
 import com.google.caliper.core.Running.Benchmark;
 import com.google.caliper.core.Running.BenchmarkClass;
@@ -32,6 +33,7 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Primitives;
 import dagger.Binds;
+import dagger.BindsOptionalOf;
 import dagger.Module;
 import dagger.Provides;
 import dagger.Reusable;
@@ -77,6 +79,28 @@ public abstract class WorkerInstrumentModule {
     return method;
   }
 
+  /**
+   * Provides the invoker for the benchmark method. The method handle (or reflective fallback) is
+   * resolved once here so that instruments don't pay for resolution or reflective dispatch inside
+   * their timed regions.
+   */
+  @Provides
+  @Reusable
+  static BenchmarkInvoker provideBenchmarkInvoker(
+      @BenchmarkMethod Method benchmarkMethod, Blackhole blackhole) {
+    return BenchmarkInvoker.create(benchmarkMethod, blackhole);
+  }
+
+  /**
+   * Provides the {@link Blackhole} passed to benchmark methods and injected into benchmark fields.
+   * Nothing depends on every consumer seeing the same instance.
+   */
+  @Provides
+  @Reusable
+  static Blackhole provideBlackhole() {
+    return new Blackhole();
+  }
+
   @Provides
   @BenchmarkMethod
   static String provideBenchmarkMethodName(@BenchmarkMethod Method benchmarkMethod) {
@@ -120,6 +144,11 @@ public abstract class WorkerInstrumentModule {
   abstract WorkerInstrument bindArbitraryMeasurementWorkerInstrument(
       ArbitraryMeasurementWorkerInstrument impl);
 
+  @Binds
+  @IntoMap
+  @InstrumentTypeKey(InstrumentType.FOOTPRINT)
+  abstract WorkerInstrument bindFootprintWorkerInstrument(FootprintWorkerInstrument impl);
+
   @Binds
   @IntoMap
   @InstrumentTypeKey(InstrumentType.RUNTIME_MACRO)
@@ -135,6 +164,20 @@ public abstract class WorkerInstrumentModule {
   @InstrumentTypeKey(InstrumentType.RUNTIME_PICO)
   abstract WorkerInstrument bindRuntimeWorkerInstrumentPico(RuntimeWorkerInstrument.Pico impl);
 
+  @Binds
+  @IntoMap
+  @InstrumentTypeKey(InstrumentType.RUNTIME_LOOPED)
+  abstract WorkerInstrument bindRuntimeWorkerInstrumentLooped(
+      RuntimeWorkerInstrument.Looped impl);
+
+  @Binds
+  @IntoMap
+  @InstrumentTypeKey(InstrumentType.RUNTIME_THREADED)
+  abstract WorkerInstrument bindThreadedWorkerInstrument(ThreadedWorkerInstrument impl);
+
+  @BindsOptionalOf
+  abstract ThreadAllocationCounter optionalThreadAllocationCounter();
+
   @Provides
   static Ticker provideTicker() {
     return Ticker.systemTicker();
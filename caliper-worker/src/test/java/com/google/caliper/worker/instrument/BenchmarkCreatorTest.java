@@ -17,10 +17,12 @@
 package com.google.caliper.worker.instrument;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.caliper.Param;
+import com.google.caliper.api.Blackhole;
 import com.google.caliper.core.UserCodeException;
 import com.google.common.collect.ImmutableSortedMap;
 import org.junit.Test;
@@ -36,7 +38,8 @@ public class BenchmarkCreatorTest {
     BenchmarkCreator creator =
         new BenchmarkCreator(
             PublicDefaultConstructorNoParamBenchmark.class,
-            ImmutableSortedMap.<String, String>of());
+            ImmutableSortedMap.<String, String>of(),
+            new Blackhole());
 
     Object benchmarkInstance = creator.createBenchmarkInstance();
     assertTrue(benchmarkInstance instanceof PublicDefaultConstructorNoParamBenchmark);
@@ -49,7 +52,8 @@ public class BenchmarkCreatorTest {
     BenchmarkCreator creator =
         new BenchmarkCreator(
             PublicDefaultConstructorWithParamBenchmark.class,
-            ImmutableSortedMap.of("byteField", "1", "intField", "2", "stringField", "string"));
+            ImmutableSortedMap.of("byteField", "1", "intField", "2", "stringField", "string"),
+            new Blackhole());
 
     Object benchmarkInstance = creator.createBenchmarkInstance();
     assertTrue(benchmarkInstance instanceof PublicDefaultConstructorWithParamBenchmark);
@@ -68,11 +72,28 @@ public class BenchmarkCreatorTest {
     @Param String stringField;
   }
 
+  @Test
+  public void blackholeFieldBenchmark() {
+    Blackhole blackhole = new Blackhole();
+    BenchmarkCreator creator =
+        new BenchmarkCreator(
+            BlackholeFieldBenchmark.class, ImmutableSortedMap.<String, String>of(), blackhole);
+
+    BlackholeFieldBenchmark benchmark = (BlackholeFieldBenchmark) creator.createBenchmarkInstance();
+    assertSame(blackhole, benchmark.blackhole);
+  }
+
+  public static class BlackholeFieldBenchmark {
+    private Blackhole blackhole;
+  }
+
   @Test
   public void publicNoSuitableConstructorBenchmark() {
     try {
       new BenchmarkCreator(
-          PublicNoSuitableConstructorBenchmark.class, ImmutableSortedMap.<String, String>of());
+          PublicNoSuitableConstructorBenchmark.class,
+          ImmutableSortedMap.<String, String>of(),
+          new Blackhole());
       fail("Expected UserCodeException");
     } catch (UserCodeException e) {
       assertEquals(
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.caliper.api.Blackhole;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link BenchmarkInvoker}. */
+@RunWith(JUnit4.class)
+public class BenchmarkInvokerTest {
+
+  @Test
+  public void invokeNoArgMethod() throws Exception {
+    TestBenchmark benchmark = new TestBenchmark();
+    BenchmarkInvoker invoker = BenchmarkInvoker.create(method("macro"));
+    assertEquals(42.0, invoker.invoke(benchmark));
+    assertEquals(1, benchmark.calls);
+  }
+
+  @Test
+  public void invokeVoidMethod() throws Exception {
+    TestBenchmark benchmark = new TestBenchmark();
+    BenchmarkInvoker invoker = BenchmarkInvoker.create(method("nothing"));
+    assertNull(invoker.invoke(benchmark));
+    assertEquals(1, benchmark.calls);
+  }
+
+  @Test
+  public void invokeIntReps() throws Exception {
+    TestBenchmark benchmark = new TestBenchmark();
+    BenchmarkInvoker invoker = BenchmarkInvoker.create(method("micro", int.class));
+    invoker.invoke(benchmark, 7);
+    assertEquals(7, benchmark.calls);
+  }
+
+  @Test
+  public void invokeLongReps() throws Exception {
+    TestBenchmark benchmark = new TestBenchmark();
+    BenchmarkInvoker invoker = BenchmarkInvoker.create(method("pico", long.class));
+    invoker.invoke(benchmark, 11L);
+    assertEquals(11, benchmark.calls);
+  }
+
+  @Test
+  public void invokeWithBlackhole() throws Exception {
+    TestBenchmark benchmark = new TestBenchmark();
+    Blackhole blackhole = new Blackhole();
+    Method method = method("consuming", long.class, Blackhole.class);
+    BenchmarkInvoker.create(method, blackhole).invoke(benchmark, 5L);
+    assertEquals(5, benchmark.calls);
+    assertSame(blackhole, benchmark.blackhole);
+  }
+
+  @Test
+  public void invokeNonPublicMethod() throws Exception {
+    TestBenchmark benchmark = new TestBenchmark();
+    Method method = method("hidden", long.class);
+    method.setAccessible(true);
+    BenchmarkInvoker.create(method).invoke(benchmark, 3L);
+    assertEquals(3, benchmark.calls);
+  }
+
+  @Test
+  public void userExceptionIsWrapped() throws Exception {
+    BenchmarkInvoker invoker = BenchmarkInvoker.create(method("fail"));
+    try {
+      invoker.invoke(new TestBenchmark());
+      fail();
+    } catch (InvocationTargetException e) {
+      assertSame(TestBenchmark.FAILURE, e.getCause());
+    }
+  }
+
+  @Test
+  public void wrongShapeIsRejected() throws Exception {
+    BenchmarkInvoker invoker = BenchmarkInvoker.create(method("micro", int.class));
+    try {
+      invoker.invoke(new TestBenchmark(), 1L);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static Method method(String name, Class<?>... parameterTypes) throws Exception {
+    return TestBenchmark.class.getDeclaredMethod(name, parameterTypes);
+  }
+
+  public static class TestBenchmark {
+    static final RuntimeException FAILURE = new RuntimeException();
+
+    int calls;
+    Blackhole blackhole;
+
+    public double macro() {
+      calls++;
+      return 42.0;
+    }
+
+    public void nothing() {
+      calls++;
+    }
+
+    public void micro(int reps) {
+      calls += reps;
+    }
+
+    public long pico(long reps) {
+      calls += reps;
+      return calls;
+    }
+
+    public void consuming(long reps, Blackhole blackhole) {
+      this.blackhole = blackhole;
+      for (long i = 0; i < reps; i++) {
+        blackhole.consume(calls++);
+      }
+    }
+
+    void hidden(long reps) {
+      calls += reps;
+    }
+
+    public void fail() {
+      throw FAILURE;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.caliper.api.Blackhole;
+import java.lang.reflect.Method;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link BenchmarkLoops}. */
+@RunWith(JUnit4.class)
+public class BenchmarkLoopsTest {
+
+  @Test
+  public void loopsOverEachReturnType() throws Throwable {
+    for (String name : new String[] {"nothing", "intValue", "longValue", "doubleValue", "text"}) {
+      LoopBenchmark benchmark = new LoopBenchmark();
+      loop(name).run(benchmark, new Blackhole(), 13);
+      assertEquals(name, 13, benchmark.calls);
+    }
+  }
+
+  @Test
+  public void passesBlackhole() throws Throwable {
+    Blackhole blackhole = new Blackhole();
+    LoopBenchmark benchmark = new LoopBenchmark();
+    BenchmarkLoops.create(
+            BenchmarkInvoker.create(
+                LoopBenchmark.class.getDeclaredMethod("withBlackhole", Blackhole.class)))
+        .run(benchmark, blackhole, 4);
+    assertEquals(4, benchmark.calls);
+    assertSame(blackhole, benchmark.lastBlackhole);
+  }
+
+  @Test
+  public void zeroReps() throws Throwable {
+    LoopBenchmark benchmark = new LoopBenchmark();
+    loop("intValue").run(benchmark, new Blackhole(), 0);
+    assertEquals(0, benchmark.calls);
+  }
+
+  @Test
+  public void nonPublicMethodFallsBack() throws Throwable {
+    Method method = LoopBenchmark.class.getDeclaredMethod("hidden");
+    method.setAccessible(true);
+    LoopBenchmark benchmark = new LoopBenchmark();
+    BenchmarkLoops.create(BenchmarkInvoker.create(method)).run(benchmark, new Blackhole(), 5);
+    assertEquals(5, benchmark.calls);
+  }
+
+  @Test
+  public void userExceptionPropagatesUnwrapped() throws Throwable {
+    try {
+      loop("fail").run(new LoopBenchmark(), new Blackhole(), 1);
+      fail();
+    } catch (RuntimeException e) {
+      assertSame(LoopBenchmark.FAILURE, e);
+    }
+  }
+
+  private static BenchmarkLoop loop(String name) throws Exception {
+    return BenchmarkLoops.create(
+        BenchmarkInvoker.create(LoopBenchmark.class.getDeclaredMethod(name)));
+  }
+
+  public static class LoopBenchmark {
+    static final RuntimeException FAILURE = new RuntimeException();
+
+    int calls;
+    Blackhole lastBlackhole;
+
+    public void nothing() {
+      calls++;
+    }
+
+    public int intValue() {
+      return calls++;
+    }
+
+    public long longValue() {
+      return calls++;
+    }
+
+    public double doubleValue() {
+      return calls++;
+    }
+
+    public String text() {
+      calls++;
+      return "text";
+    }
+
+    public boolean withBlackhole(Blackhole blackhole) {
+      lastBlackhole = blackhole;
+      return calls++ == 0;
+    }
+
+    int hidden() {
+      return calls++;
+    }
+
+    public void fail() {
+      throw FAILURE;
+    }
+  }
+}
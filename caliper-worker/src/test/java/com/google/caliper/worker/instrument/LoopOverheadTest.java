@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.api.Blackhole;
+import com.google.common.base.Ticker;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link LoopOverhead}. */
+@RunWith(JUnit4.class)
+public class LoopOverheadTest {
+  @Test
+  public void calibrate_fitsFixedAndPerRepCost() throws Exception {
+    LoopOverhead overhead =
+        LoopOverhead.calibrate(
+            new LoopOverhead.EmptyLoop() {
+              @Override
+              public long time(long reps) {
+                return 40 + 2 * reps;
+              }
+            });
+    assertEquals(42, overhead.nanosFor(1), 0.01);
+    assertEquals(2040, overhead.nanosFor(1000), 0.01);
+  }
+
+  @Test
+  public void calibrate_usesFastestRounds() throws Exception {
+    LoopOverhead overhead =
+        LoopOverhead.calibrate(
+            new LoopOverhead.EmptyLoop() {
+              int calls;
+
+              @Override
+              public long time(long reps) {
+                // every third call is slowed down by an interruption
+                return reps + (++calls % 3 == 0 ? 100000 : 10);
+              }
+            });
+    assertEquals(1010, overhead.nanosFor(1000), 0.01);
+  }
+
+  @Test
+  public void emptyLoopsRun() throws Exception {
+    Ticker ticker = Ticker.systemTicker();
+    for (LoopOverhead.EmptyLoop loop :
+        new LoopOverhead.EmptyLoop[] {
+          LoopOverhead.intReps(ticker),
+          LoopOverhead.longReps(ticker),
+          LoopOverhead.looped(ticker, new Blackhole())
+        }) {
+      assertTrue(loop.time(1000) >= 0);
+    }
+  }
+}
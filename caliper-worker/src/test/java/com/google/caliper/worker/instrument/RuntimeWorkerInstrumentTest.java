@@ -21,9 +21,18 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import com.google.caliper.model.Measurement;
+import com.google.caliper.util.InvalidCommandException;
 import com.google.caliper.util.ShortDuration;
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import java.math.BigDecimal;
+import java.util.Random;
+import javax.inject.Provider;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -61,4 +70,98 @@ public class RuntimeWorkerInstrumentTest {
             INITIAL_REPS, MILLISECONDS.toNanos(100), TIMING_INTERVAL.to(NANOSECONDS), 0.5);
     assertEquals(110, targetReps);
   }
+
+  @Test
+  public void measureAllocations_reportsBytesPerMeasurement() throws Exception {
+    AllocatingBenchmark benchmark = new AllocatingBenchmark();
+    RuntimeWorkerInstrument instrument = picoInstrument(benchmark, "true", counterFor(benchmark));
+    instrument.bootstrap();
+    instrument.preMeasure(false);
+    ImmutableList<Measurement> measurements = ImmutableList.copyOf(instrument.measure());
+    assertEquals(2, measurements.size());
+    Measurement runtime = measurements.get(0);
+    Measurement bytes = measurements.get(1);
+    assertEquals("runtime", runtime.description());
+    assertEquals("bytes", bytes.description());
+    assertEquals("B", bytes.value().unit());
+    assertEquals(runtime.weight(), bytes.weight(), 0);
+    // the bytes allocated by every call, whatever the reps, are subtracted as the baseline
+    assertEquals(
+        AllocatingBenchmark.BYTES_PER_REP * bytes.weight(), bytes.value().magnitude(), 0);
+  }
+
+  @Test
+  public void measureAllocations_offByDefault() throws Exception {
+    AllocatingBenchmark benchmark = new AllocatingBenchmark();
+    RuntimeWorkerInstrument instrument =
+        picoInstrument(benchmark, "false", counterFor(benchmark));
+    instrument.bootstrap();
+    instrument.preMeasure(false);
+    ImmutableList<Measurement> measurements = ImmutableList.copyOf(instrument.measure());
+    assertEquals(1, measurements.size());
+    assertEquals("runtime", measurements.get(0).description());
+  }
+
+  @Test
+  public void measureAllocations_unsupportedWithoutCounter() throws Exception {
+    try {
+      picoInstrument(
+          new AllocatingBenchmark(),
+          "true",
+          Optional.<Provider<ThreadAllocationCounter>>absent());
+      fail();
+    } catch (InvalidCommandException expected) {
+    }
+  }
+
+  private static RuntimeWorkerInstrument picoInstrument(
+      AllocatingBenchmark benchmark,
+      String measureAllocations,
+      Optional<Provider<ThreadAllocationCounter>> allocationCounter)
+      throws Exception {
+    return new RuntimeWorkerInstrument.Pico(
+        benchmark,
+        BenchmarkInvoker.create(AllocatingBenchmark.class.getMethod("pico", long.class)),
+        new Random(0),
+        Ticker.systemTicker(),
+        allocationCounter,
+        ImmutableMap.of(
+            "timingIntervalNanos",
+            String.valueOf(MILLISECONDS.toNanos(1)),
+            "gcBeforeEach",
+            "false",
+            "measureAllocations",
+            measureAllocations));
+  }
+
+  /** Returns a counter of the bytes the given benchmark claims to have allocated. */
+  private static Optional<Provider<ThreadAllocationCounter>> counterFor(
+      final AllocatingBenchmark benchmark) {
+    final ThreadAllocationCounter counter =
+        new ThreadAllocationCounter() {
+          @Override
+          public long allocatedBytes() {
+            return benchmark.allocatedBytes;
+          }
+        };
+    return Optional.<Provider<ThreadAllocationCounter>>of(
+        new Provider<ThreadAllocationCounter>() {
+          @Override
+          public ThreadAllocationCounter get() {
+            return counter;
+          }
+        });
+  }
+
+  /** A benchmark that records, rather than performs, a fixed amount of allocation. */
+  public static final class AllocatingBenchmark {
+    static final long BYTES_PER_CALL = 40;
+    static final long BYTES_PER_REP = 24;
+
+    long allocatedBytes;
+
+    public void pico(long reps) {
+      allocatedBytes += BYTES_PER_CALL + BYTES_PER_REP * reps;
+    }
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.worker.instrument;
+
+import static com.google.caliper.worker.instrument.ThreadedWorkerInstrument.toMeasurements;
+import static org.junit.Assert.assertEquals;
+
+import com.google.caliper.model.Measurement;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link ThreadedWorkerInstrument}. */
+@RunWith(JUnit4.class)
+public class ThreadedWorkerInstrumentTest {
+
+  @Test
+  public void toMeasurements_perThreadRuntimeAndThroughput() {
+    // two threads, each running 1000 reps; the first from 0-1000ns, the second from 500-2500ns
+    ImmutableList<Measurement> measurements =
+        toMeasurements(1000, new long[][] {{0, 500}, {1000, 2500}});
+    assertEquals(3, measurements.size());
+
+    Measurement first = measurements.get(0);
+    assertEquals("runtime", first.description());
+    assertEquals(1000, first.value().magnitude(), 0);
+    assertEquals("ns", first.value().unit());
+    assertEquals(1000, first.weight(), 0);
+
+    Measurement second = measurements.get(1);
+    assertEquals("runtime", second.description());
+    assertEquals(2000, second.value().magnitude(), 0);
+
+    // 2000 reps in 2500ns
+    Measurement throughput = measurements.get(2);
+    assertEquals("throughput", throughput.description());
+    assertEquals("ops/s", throughput.value().unit());
+    assertEquals(8e8, throughput.value().magnitude(), 1);
+    assertEquals(1, throughput.weight(), 0);
+  }
+}
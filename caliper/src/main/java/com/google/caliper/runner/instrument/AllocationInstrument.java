@@ -18,6 +18,7 @@ package com.google.caliper.runner.instrument;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.logging.Level.SEVERE;
 
 import com.google.caliper.Benchmark;
@@ -28,6 +29,8 @@ import com.google.caliper.model.InstrumentType;
 import com.google.caliper.runner.config.SupportsVmType;
 import com.google.caliper.runner.config.VmConfig;
 import com.google.caliper.runner.config.VmType;
+import com.google.caliper.util.InvalidCommandException;
+import com.google.caliper.util.ShortDuration;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
@@ -44,8 +47,11 @@ import java.util.logging.Logger;
  * is the number of times to execute the guts of the benchmark method, and it must be public and
  * non-static.
  *
- * <p>Note that the allocation instruments reports a "worst case" for allocation in that it reports
- * the bytes and objects allocated in interpreted mode (no JIT).
+ * <p>Note that by default the allocation instruments reports a "worst case" for allocation in that
+ * it reports the bytes and objects allocated in interpreted mode (no JIT). In {@code jit} mode it
+ * instead counts the bytes (but not objects) allocated by the benchmark thread after a warmup with
+ * the JIT enabled, which reflects allocations eliminated by escape analysis. The runtime instrument
+ * can also report those bytes alongside its timings with its {@code measureAllocations} option.
  */
 @SupportsVmType(VmType.JVM)
 public final class AllocationInstrument extends Instrument {
@@ -56,6 +62,28 @@ public final class AllocationInstrument extends Instrument {
    */
   private static final String TRACK_ALLOCATIONS_OPTION = "trackAllocations";
 
+  /**
+   * Either {@code instrumented}, to record allocations with the allocation instrumenter agent in
+   * interpreted mode, or {@code jit}, to count the bytes allocated by JIT-compiled code.
+   */
+  private static final String MODE_OPTION = "mode";
+
+  /**
+   * When tracking allocations, only capture the location of one in this many allocations. All
+   * allocations are still counted.
+   */
+  private static final String ALLOCATION_SAMPLING_INTERVAL_OPTION = "allocationSamplingInterval";
+
+  /**
+   * When tracking allocations, a directory to write the bytes allocated at each location to, in the
+   * collapsed-stack format read by flame graph tools. One file is written per benchmark method and
+   * parameter combination.
+   */
+  private static final String COLLAPSED_STACKS_DIR_OPTION = "collapsedStacksDir";
+
+  /** How long to run the benchmark before measuring in {@code jit} mode. */
+  private static final String WARMUP_OPTION = "warmup";
+
   /**
    * Valid names for the Premain-Class for the allocation instrumenter. This changed between 3.0 and
    * 3.1.0.
@@ -79,6 +107,9 @@ public final class AllocationInstrument extends Instrument {
       throws InvalidBenchmarkException {
     checkNotNull(benchmarkMethod);
     checkArgument(isBenchmarkMethod(benchmarkMethod));
+    if (isJitMode()) {
+      return new JitAllocationInstrumentedMethod(benchmarkMethod);
+    }
     try {
       switch (BenchmarkMethods.Type.of(benchmarkMethod)) {
         case MACRO:
@@ -104,7 +135,7 @@ public final class AllocationInstrument extends Instrument {
 
     @Override
     public ImmutableMap<String, String> workerOptions() {
-      return ImmutableMap.of(TRACK_ALLOCATIONS_OPTION, options.get(TRACK_ALLOCATIONS_OPTION));
+      return instrumentedWorkerOptions();
     }
 
     @Override
@@ -119,12 +150,68 @@ public final class AllocationInstrument extends Instrument {
     }
   }
 
+  private ImmutableMap<String, String> instrumentedWorkerOptions() {
+    return ImmutableMap.of(
+        TRACK_ALLOCATIONS_OPTION,
+        options.get(TRACK_ALLOCATIONS_OPTION),
+        ALLOCATION_SAMPLING_INTERVAL_OPTION,
+        Strings.nullToEmpty(options.get(ALLOCATION_SAMPLING_INTERVAL_OPTION)),
+        COLLAPSED_STACKS_DIR_OPTION,
+        Strings.nullToEmpty(options.get(COLLAPSED_STACKS_DIR_OPTION)));
+  }
+
+  private boolean isJitMode() {
+    String mode = Strings.nullToEmpty(options.get(MODE_OPTION));
+    switch (mode) {
+      case "":
+      case "instrumented":
+        return false;
+      case "jit":
+        return true;
+      default:
+        throw new InvalidCommandException(
+            "Invalid value for the %s option of the allocation instrument: %s "
+                + "(expected instrumented or jit)",
+            MODE_OPTION, mode);
+    }
+  }
+
+  private final class JitAllocationInstrumentedMethod extends InstrumentedMethod {
+    JitAllocationInstrumentedMethod(MethodModel benchmarkMethod) {
+      super(benchmarkMethod);
+    }
+
+    @Override
+    public ImmutableMap<String, String> workerOptions() {
+      return ImmutableMap.of(
+          WARMUP_OPTION + "Nanos",
+          String.valueOf(ShortDuration.valueOf(options.get(WARMUP_OPTION)).to(NANOSECONDS)));
+    }
+
+    @Override
+    public InstrumentType type() {
+      return InstrumentType.ALLOCATION_JIT;
+    }
+
+    @Override
+    public MeasurementCollectingVisitor getMeasurementCollectingVisitor() {
+      return new Instrument.DefaultMeasurementCollectingVisitor(ImmutableSet.of("bytes"));
+    }
+  }
+
   @Override
   public boolean parallelizable() {
     // Assuming there is enough memory it should be fine to run these in parallel.
     return true;
   }
 
+  @Override
+  public boolean workersReusable() {
+    // Counting allocations doesn't depend on what has run in the VM before, but whether the JIT
+    // eliminates them does.
+    return !isJitMode();
+  }
+
   private final class MacroAllocationInstrumentedMethod extends InstrumentedMethod {
     MacroAllocationInstrumentedMethod(MethodModel benchmarkMethod) {
       super(benchmarkMethod);
@@ -132,7 +219,7 @@ public final class AllocationInstrument extends Instrument {
 
     @Override
     public ImmutableMap<String, String> workerOptions() {
-      return ImmutableMap.of(TRACK_ALLOCATIONS_OPTION, options.get(TRACK_ALLOCATIONS_OPTION));
+      return instrumentedWorkerOptions();
     }
 
     @Override
@@ -149,7 +236,13 @@ public final class AllocationInstrument extends Instrument {
 
   @Override
   public ImmutableSet<String> instrumentOptions() {
-    return ImmutableSet.of(ALLOCATION_AGENT_JAR_OPTION, TRACK_ALLOCATIONS_OPTION);
+    return ImmutableSet.of(
+        ALLOCATION_AGENT_JAR_OPTION,
+        TRACK_ALLOCATIONS_OPTION,
+        ALLOCATION_SAMPLING_INTERVAL_OPTION,
+        COLLAPSED_STACKS_DIR_OPTION,
+        MODE_OPTION,
+        WARMUP_OPTION);
   }
 
   private static Optional<File> findAllocationInstrumentJarOnClasspath() throws IOException {
@@ -177,10 +270,13 @@ public final class AllocationInstrument extends Instrument {
 
   /**
    * This instrument's worker requires the allocationinstrumenter agent jar, specified on the worker
-   * VM's command line with "-javaagent:[jarfile]".
+   * VM's command line with "-javaagent:[jarfile]", unless it's running in {@code jit} mode.
    */
   @Override
   public ImmutableSet<String> getExtraCommandLineArgs(VmConfig vmConfig) {
+    if (isJitMode()) {
+      return ImmutableSet.of();
+    }
     String agentJar = options.get(ALLOCATION_AGENT_JAR_OPTION);
     if (Strings.isNullOrEmpty(agentJar)) {
       try {
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import com.google.caliper.api.SkipThisScenarioException;
+import com.google.caliper.core.UserCodeException;
+import com.google.caliper.model.ArbitraryMeasurement;
+import com.google.caliper.model.Trial;
+import com.google.caliper.runner.testing.CaliperTestWatcher;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Integration tests for dry runs split into shards, each run by its own worker (see {@code
+ * runner.dryRunShardSize}).
+ */
+@RunWith(JUnit4.class)
+public class DryRunShardingTest {
+  @Rule public final CaliperTestWatcher runner = new CaliperTestWatcher();
+
+  @Test
+  public void survivingExperimentsKeepTheirOrder() throws Exception {
+    runner
+        .forBenchmark(SkippingBenchmark.class)
+        .instrument("arbitrary")
+        .options(
+            "-Crunner.dryRunShardSize=1",
+            "-Crunner.maxParallelism=6",
+            "-Crunner.trialOrder=sequential",
+            "--trials",
+            "1")
+        .run();
+    // Trials are numbered in the order of the experiments that survived the dry run, which must be
+    // the order they were selected in, however the shards happened to finish.
+    List<String> sizesByTrialNumber = Lists.newArrayList("", "", "");
+    for (Trial trial : runner.trials()) {
+      sizesByTrialNumber.set(
+          trial.position().get().number() - 1,
+          trial.scenario().benchmarkSpec().parameters().get("size"));
+    }
+    assertEquals(ImmutableList.of("2", "4", "6"), sizesByTrialNumber);
+    assertTrue(runner.getStdout().toString().contains("3 experiments were skipped."));
+  }
+
+  @Test
+  public void failingShardCancelsTheOthers() throws Exception {
+    try {
+      runner
+          .forBenchmark(FailingBenchmark.class)
+          .instrument("arbitrary")
+          .options("-Crunner.dryRunShardSize=1", "-Crunner.maxParallelism=1")
+          .run();
+      fail("Expected UserCodeException");
+    } catch (UserCodeException expected) {
+      // the failing shard's own error is the one surfaced
+      String stackTrace = Throwables.getStackTraceAsString(expected);
+      assertTrue(stackTrace, stackTrace.contains("size 1 is broken"));
+    }
+    // The shards run one at a time. Once the first has failed, at most the one that was started
+    // in its place gets a worker before the rest are cancelled.
+    int dryRunWorkers = 0;
+    for (File runDirectory : runner.workerOutputDirectory().listFiles()) {
+      for (File log : runDirectory.listFiles()) {
+        if (log.getName().startsWith("dry-run-")) {
+          dryRunWorkers++;
+        }
+      }
+    }
+    assertTrue("dry-run workers: " + dryRunWorkers, dryRunWorkers <= 2);
+  }
+
+  /** Skips the odd sizes; the smaller the size, the longer its dry run takes. */
+  public static class SkippingBenchmark {
+    @Param({"1", "2", "3", "4", "5", "6"})
+    int size;
+
+    @BeforeExperiment
+    void setUp() throws InterruptedException {
+      if (size % 2 == 1) {
+        throw new SkipThisScenarioException();
+      }
+      Thread.sleep((6 - size) * 300);
+    }
+
+    @ArbitraryMeasurement(units = "hz", description = "size")
+    public double size() {
+      return size;
+    }
+  }
+
+  /** Fails for the first size. */
+  public static class FailingBenchmark {
+    @Param({"1", "2", "3", "4", "5", "6"})
+    int size;
+
+    @BeforeExperiment
+    void setUp() {
+      if (size == 1) {
+        throw new IllegalStateException("size 1 is broken");
+      }
+    }
+
+    @ArbitraryMeasurement(units = "hz", description = "size")
+    public double size() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.caliper.Param;
+import com.google.caliper.model.ArbitraryMeasurement;
+import com.google.caliper.model.Trial;
+import com.google.caliper.model.VmSpec;
+import com.google.caliper.runner.testing.CaliperTestWatcher;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.UUID;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs a benchmark through the real {@link JvmCaliperRunnerComponent}, so that bindings that only
+ * fail when they're resolved (such as a dependency cycle broken by a {@code Provider}) fail here.
+ */
+@RunWith(JUnit4.class)
+public class JvmCaliperRunnerComponentTest {
+  @Rule public final CaliperTestWatcher runner = new CaliperTestWatcher();
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void trialsRecordTheExperimentDesign() throws Exception {
+    runner
+        .forBenchmark(TestBenchmark.class)
+        .instrument("arbitrary")
+        .options("-Crunner.experimentDesign=pairwise", "-Crunner.experimentDesignSeed=5")
+        .run();
+    ImmutableList<Trial> trials = runner.trials();
+    assertFalse(trials.isEmpty());
+    UUID runId = trials.get(0).run().id();
+    for (Trial trial : trials) {
+      assertEquals(runId, trial.run().id());
+      assertEquals("pairwise (seed 5)", trial.run().experimentDesign());
+    }
+  }
+
+  @Test
+  public void completedRunDeletesItsJournal() throws Exception {
+    runner
+        .forBenchmark(TestBenchmark.class)
+        .instrument("arbitrary")
+        .options("--directory", folder.getRoot().getPath(), "--trials", "2")
+        .run();
+    UUID runId = runner.trials().get(0).run().id();
+    File journalDirectory = new File(folder.getRoot(), "journal");
+    // the trials were journaled...
+    assertTrue(journalDirectory.isDirectory());
+    // ...but the journal is gone now that the run is complete
+    assertFalse(new File(journalDirectory, runId + ".json").exists());
+  }
+
+  @Test
+  public void pinnedTrialsRecordTheirCpusInTheirPosition() throws Exception {
+    assumeTrue(new File("/usr/bin/taskset").canExecute());
+    runner
+        .forBenchmark(TestBenchmark.class)
+        .instrument("arbitrary")
+        .options(
+            "-Crunner.cpuAffinity=taskset",
+            "-Crunner.reservedCpus=0",
+            "-Crunner.maxParallelism=1")
+        .run();
+    ImmutableList<Trial> trials = runner.trials();
+    assertFalse(trials.isEmpty());
+    VmSpec vmSpec = trials.get(0).scenario().vmSpec();
+    for (Trial trial : trials) {
+      assertEquals("taskset -c 0", trial.position().get().cpuAffinity());
+      // the affinity doesn't make the trials' VMs look any different
+      assertEquals(vmSpec, trial.scenario().vmSpec());
+    }
+  }
+
+  public static class TestBenchmark {
+    @Param({"1", "2", "3"})
+    int a;
+
+    @Param({"1", "2", "3"})
+    int b;
+
+    @Param({"1", "2", "3"})
+    int c;
+
+    @ArbitraryMeasurement(units = "hz", description = "sum")
+    public double sum() {
+      return a + b + c;
+    }
+  }
+}
@@ -15,16 +15,20 @@
 package com.google.caliper.runner.instrument;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import com.google.caliper.AfterExperiment;
 import com.google.caliper.BeforeExperiment;
 import com.google.caliper.Benchmark;
 import com.google.caliper.api.AfterRep;
 import com.google.caliper.api.BeforeRep;
+import com.google.caliper.core.BenchmarkClassModel.MethodModel;
+import com.google.caliper.model.InstrumentType;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.model.Trial;
 import com.google.caliper.runner.config.VmConfig;
 import com.google.caliper.runner.config.VmType;
+import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
 import com.google.caliper.runner.testing.CaliperTestWatcher;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
@@ -66,6 +70,51 @@ public class AllocationInstrumentTest {
     fakeJar.delete();
   }
 
+  @Test
+  public void getExtraCommandLineArgs_jitMode() throws Exception {
+    AllocationInstrument instrument = new AllocationInstrument();
+    instrument.setOptions(ImmutableMap.of("mode", "jit"));
+    VmConfig vmConfig =
+        VmConfig.builder()
+            .name("foo")
+            .type(VmType.JVM)
+            .home(System.getProperty("java.home"))
+            .build();
+    assertEquals(ImmutableSet.of(), instrument.getExtraCommandLineArgs(vmConfig));
+  }
+
+  @Test
+  public void createInstrumentedMethod_jitMode() throws Exception {
+    AllocationInstrument instrument = new AllocationInstrument();
+    instrument.setOptions(ImmutableMap.of("mode", "jit", "warmup", "2s"));
+    InstrumentedMethod instrumentedMethod =
+        instrument.createInstrumentedMethod(
+            MethodModel.of(TestBenchmark.class.getMethod("compressionSize", int.class)));
+    assertEquals(InstrumentType.ALLOCATION_JIT, instrumentedMethod.type());
+    assertEquals(
+        ImmutableMap.of("warmupNanos", "2000000000"), instrumentedMethod.workerOptions());
+  }
+
+  @Test
+  public void jitMode() throws Exception {
+    runner
+        .forBenchmark(ArrayListGrowthBenchmark.class)
+        .instrument("allocation")
+        .options(
+            "-Cinstrument.allocation.options.mode=jit",
+            "-Cinstrument.allocation.options.warmup=100ms")
+        .run();
+    Trial trial = Iterables.getOnlyElement(runner.trials());
+    ImmutableListMultimap<String, Measurement> measurementsByDescription =
+        Measurement.indexByDescription(trial.measurements());
+    assertEquals(ImmutableSet.of("bytes"), measurementsByDescription.keySet());
+    for (Measurement byteMeasurement : measurementsByDescription.get("bytes")) {
+      assertEquals("B", byteMeasurement.value().unit());
+      // growing the list copies its array, which escape analysis can't eliminate
+      assertTrue(byteMeasurement.value().magnitude() / byteMeasurement.weight() > 0);
+    }
+  }
+
   @Test
   public void intrinsics() throws Exception {
     runner.forBenchmark(ArrayListGrowthBenchmark.class).instrument("allocation").run();
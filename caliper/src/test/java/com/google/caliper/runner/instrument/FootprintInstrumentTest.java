@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.caliper.Param;
+import com.google.caliper.api.Footprint;
+import com.google.caliper.model.Measurement;
+import com.google.caliper.runner.testing.CaliperTestWatcher;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Integration tests for the {@link FootprintInstrument}. */
+@RunWith(JUnit4.class)
+public class FootprintInstrumentTest {
+  @Rule public final CaliperTestWatcher runner = new CaliperTestWatcher();
+
+  @Test
+  public void measuresReturnedObjectGraph() throws Exception {
+    runner.forBenchmark(TestBenchmark.class).instrument("footprint").run();
+    ImmutableListMultimap<String, Measurement> measurements =
+        Measurement.indexByDescription(Iterables.getOnlyElement(runner.trials()).measurements());
+    // an ArrayList, its Object[10] and 4 Longs, but not the Element
+    assertEquals(6.0, value(measurements, "objects"), 0);
+    // 24 + 56 + 4 * 24 with the default compressed layout
+    assertEquals(176.0, value(measurements, "bytes"), 0);
+    assertEquals(44.0, value(measurements, "bytes per element"), 0);
+  }
+
+  private static double value(
+      ImmutableListMultimap<String, Measurement> measurements, String description) {
+    return Iterables.getOnlyElement(measurements.get(description)).value().magnitude();
+  }
+
+  static final class Element {}
+
+  public static class TestBenchmark {
+    @Param({"4"})
+    int size;
+
+    @Footprint(exclude = Element.class)
+    public List<Object> list() {
+      List<Object> list = new ArrayList<Object>();
+      for (int i = 0; i < size; i++) {
+        list.add(Long.valueOf(1000 + i));
+      }
+      list.add(new Element());
+      return list;
+    }
+  }
+}
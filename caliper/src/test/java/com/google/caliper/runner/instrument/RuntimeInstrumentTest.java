@@ -17,6 +17,7 @@
 package com.google.caliper.runner.instrument;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -26,11 +27,16 @@ import static org.junit.Assert.fail;
 import com.google.caliper.Benchmark;
 import com.google.caliper.api.BeforeRep;
 import com.google.caliper.api.Macrobenchmark;
+import com.google.caliper.bridge.GcLogMessage;
+import com.google.caliper.bridge.HotspotLogMessage;
+import com.google.caliper.bridge.StartMeasurementLogMessage;
+import com.google.caliper.bridge.StopMeasurementLogMessage;
 import com.google.caliper.core.BenchmarkClassModel.MethodModel;
 import com.google.caliper.core.InvalidBenchmarkException;
 import com.google.caliper.model.InstrumentType;
 import com.google.caliper.model.Measurement;
 import com.google.caliper.model.Trial;
+import com.google.caliper.model.Value;
 import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
 import com.google.caliper.runner.testing.CaliperTestWatcher;
 import com.google.caliper.util.ShortDuration;
@@ -38,6 +44,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.math.LinearTransformation;
 import com.google.common.math.PairedStatsAccumulator;
@@ -67,7 +74,12 @@ public class RuntimeInstrumentTest {
   @Test
   public void isBenchmarkMethod() {
     assertEquals(
-        ImmutableSet.of("macrobenchmark", "microbenchmark", "picobenchmark", "integerParam"),
+        ImmutableSet.of(
+            "macrobenchmark",
+            "annotatedMacrobenchmark",
+            "microbenchmark",
+            "picobenchmark",
+            "integerParam"),
         FluentIterable.from(Arrays.asList(RuntimeBenchmark.class.getDeclaredMethods()))
             .transform(
                 new Function<Method, MethodModel>() {
@@ -120,6 +132,44 @@ public class RuntimeInstrumentTest {
     assertEquals(InstrumentType.RUNTIME_PICO, instrumentedMethod.type());
   }
 
+  @Test
+  public void createInstrumentedMethod_autoLoop() throws Exception {
+    instrument.setOptions(ImmutableMap.of("autoLoop", "true"));
+    MethodModel benchmarkMethod = runtimeBenchmarkMethod("macrobenchmark");
+    InstrumentedMethod instrumentedMethod = instrument.createInstrumentedMethod(benchmarkMethod);
+    assertEquals(benchmarkMethod, instrumentedMethod.benchmarkMethod());
+    assertEquals(InstrumentType.RUNTIME_LOOPED, instrumentedMethod.type());
+  }
+
+  @Test
+  public void createInstrumentedMethod_autoLoopSkipsMacrobenchmarkAnnotation() throws Exception {
+    instrument.setOptions(ImmutableMap.of("autoLoop", "true"));
+    MethodModel benchmarkMethod = runtimeBenchmarkMethod("annotatedMacrobenchmark");
+    InstrumentedMethod instrumentedMethod = instrument.createInstrumentedMethod(benchmarkMethod);
+    assertEquals(InstrumentType.RUNTIME_MACRO, instrumentedMethod.type());
+  }
+
+  @Test
+  public void createInstrumentedMethod_measureAllocations() throws Exception {
+    instrument.setOptions(
+        ImmutableMap.of(
+            "measureAllocations", "true", "timingInterval", "100ms", "gcBeforeEach", "false"));
+    InstrumentedMethod instrumentedMethod =
+        instrument.createInstrumentedMethod(runtimeBenchmarkMethod("microbenchmark", int.class));
+    assertEquals("true", instrumentedMethod.workerOptions().get("measureAllocations"));
+  }
+
+  @Test
+  public void createInstrumentedMethod_measureAllocationsUnsupportedForMacrobenchmarks()
+      throws Exception {
+    instrument.setOptions(ImmutableMap.of("measureAllocations", "true"));
+    try {
+      instrument.createInstrumentedMethod(runtimeBenchmarkMethod("macrobenchmark"));
+      fail();
+    } catch (InvalidBenchmarkException expected) {
+    }
+  }
+
   @Test
   public void createInstrumentedMethod_badParam() throws Exception {
     MethodModel benchmarkMethod = runtimeBenchmarkMethod("integerParam", Integer.class);
@@ -160,6 +210,167 @@ public class RuntimeInstrumentTest {
     }
   }
 
+  @Test
+  public void measurementCollector_stopsAtTargetPrecision() throws Exception {
+    MeasurementCollectingVisitor collector =
+        adaptiveCollector(ImmutableMap.of("targetPrecision", "1%", "maxMeasurements", "50"));
+    double[] nanosPerRep = {100, 101, 99, 100, 100};
+    for (int i = 0; i < nanosPerRep.length; i++) {
+      assertFalse(collector.isDoneCollecting());
+      measure(collector, nanosPerRep[i]);
+    }
+    assertTrue(collector.isDoneCollecting());
+    assertEquals(5, collector.getMeasurements().size());
+    assertThat(collector.getMessages().get(0)).startsWith("Took 5 measurements");
+  }
+
+  @Test
+  public void measurementCollector_noisyBenchmarkStopsAtMaxMeasurements() throws Exception {
+    MeasurementCollectingVisitor collector =
+        adaptiveCollector(ImmutableMap.of("targetPrecision", "1%", "maxMeasurements", "8"));
+    for (int i = 0; i < 8; i++) {
+      assertFalse(collector.isDoneCollecting());
+      measure(collector, i % 2 == 0 ? 50 : 150);
+    }
+    assertTrue(collector.isDoneCollecting());
+    assertThat(collector.getMessages().get(0)).startsWith("WARNING: Stopped at the maximum of 8");
+  }
+
+  @Test
+  public void measurementCollector_fixedCountWithoutTargetPrecision() throws Exception {
+    MeasurementCollectingVisitor collector =
+        adaptiveCollector(ImmutableMap.of("targetPrecision", "0", "maxMeasurements", "50"));
+    for (int i = 0; i < 5; i++) {
+      measure(collector, i % 2 == 0 ? 50 : 150);
+    }
+    assertTrue(collector.isDoneCollecting());
+    assertTrue(collector.getMessages().isEmpty());
+  }
+
+  @Test
+  public void measurementCollector_allocationsDoNotCountAsRuntimeMeasurements() throws Exception {
+    MeasurementCollectingVisitor collector =
+        adaptiveCollector(ImmutableMap.of("targetPrecision", "0", "maxMeasurements", "50"));
+    for (int i = 0; i < 5; i++) {
+      assertFalse(collector.isDoneCollecting());
+      new StartMeasurementLogMessage().accept(collector);
+      new StopMeasurementLogMessage(
+              ImmutableList.of(
+                  new Measurement.Builder()
+                      .description("runtime")
+                      .value(Value.create(100000, "ns"))
+                      .weight(1000)
+                      .build(),
+                  new Measurement.Builder()
+                      .description("bytes")
+                      .value(Value.create(16000, "B"))
+                      .weight(1000)
+                      .build()))
+          .accept(collector);
+    }
+    assertTrue(collector.isDoneCollecting());
+    assertEquals(10, collector.getMeasurements().size());
+  }
+
+  @Test
+  public void measurementCollector_discardsMeasurementsInterferedWithByGc() throws Exception {
+    MeasurementCollectingVisitor collector =
+        adaptiveCollector(ImmutableMap.of("targetPrecision", "0", "maxMeasurements", "50"));
+    for (int i = 0; i < 10; i++) {
+      assertFalse(collector.isDoneCollecting());
+      measureWithGc(collector, i % 2 == 0, 100);
+    }
+    assertTrue(collector.isDoneCollecting());
+    assertEquals(5, collector.getMeasurements().size());
+    assertEquals(
+        ImmutableList.of("ERROR: GC occurred during timing. Measurements were discarded."),
+        collector.getMessages());
+  }
+
+  @Test
+  public void measurementCollector_warmupEndsEarlyAtSteadyState() throws Exception {
+    MeasurementCollectingVisitor collector = warmupCollector("0s");
+    for (int i = 0; i < 5; i++) {
+      measure(collector, 100);
+      assertFalse(collector.isWarmupComplete());
+    }
+    // a compilation means the benchmark may not be steady yet, so the window starts over
+    new HotspotLogMessage(ShortDuration.of(1, MILLISECONDS)).accept(collector);
+    for (int i = 0; i < SteadyStateDetector.WINDOW - 1; i++) {
+      measure(collector, 100);
+      assertFalse(collector.isWarmupComplete());
+    }
+    measure(collector, 100);
+    // far less than the 10s warmup has been spent in the benchmark method
+    assertTrue(collector.isWarmupComplete());
+
+    measure(collector, 100);
+    assertThat(collector.getMessages().get(0)).startsWith("Warmup reached a steady state");
+  }
+
+  @Test
+  public void measurementCollector_steadyStateWarmupLastsAtLeastMinWarmup() throws Exception {
+    // each measurement spends 100us in the benchmark method
+    MeasurementCollectingVisitor collector = warmupCollector("1ms");
+    for (int i = 0; i < 9; i++) {
+      measure(collector, 100);
+      assertFalse(collector.isWarmupComplete());
+    }
+    measure(collector, 100);
+    assertTrue(collector.isWarmupComplete());
+  }
+
+  /** Returns a collector with a long warmup, which only a steady state can end early. */
+  private MeasurementCollectingVisitor warmupCollector(String minWarmup) throws Exception {
+    instrument.setOptions(
+        ImmutableMap.<String, String>builder()
+            .put("targetPrecision", "0")
+            .put("maxMeasurements", "50")
+            .put("measurements", "5")
+            .put("warmup", "10s")
+            .put("minWarmup", minWarmup)
+            .put("maxWarmupWallTime", "10m")
+            .build());
+    return instrument
+        .createInstrumentedMethod(runtimeBenchmarkMethod("picobenchmark", long.class))
+        .getMeasurementCollectingVisitor();
+  }
+
+  private static void measureWithGc(
+      MeasurementCollectingVisitor collector, boolean gc, double nanosPerRep) {
+    new StartMeasurementLogMessage().accept(collector);
+    if (gc) {
+      new GcLogMessage(GcLogMessage.Type.INCREMENTAL, ShortDuration.of(1, MILLISECONDS), 1)
+          .accept(collector);
+    }
+    new StopMeasurementLogMessage(
+            ImmutableList.of(
+                new Measurement.Builder()
+                    .description("runtime")
+                    .value(Value.create(nanosPerRep * 1000, "ns"))
+                    .weight(1000)
+                    .build()))
+        .accept(collector);
+  }
+
+  private MeasurementCollectingVisitor adaptiveCollector(ImmutableMap<String, String> options)
+      throws Exception {
+    instrument.setOptions(
+        ImmutableMap.<String, String>builder()
+            .putAll(options)
+            .put("measurements", "5")
+            .put("warmup", "0s")
+            .put("maxWarmupWallTime", "10m")
+            .build());
+    return instrument
+        .createInstrumentedMethod(runtimeBenchmarkMethod("picobenchmark", long.class))
+        .getMeasurementCollectingVisitor();
+  }
+
+  private static void measure(MeasurementCollectingVisitor collector, double nanosPerRep) {
+    measureWithGc(collector, false, nanosPerRep);
+  }
+
   private static MethodModel runtimeBenchmarkMethod(String name, Class<?>... parameterTypes)
       throws NoSuchMethodException {
     return MethodModel.of(RuntimeBenchmark.class.getDeclaredMethod(name, parameterTypes));
@@ -170,6 +381,9 @@ public class RuntimeInstrumentTest {
     @Benchmark
     void macrobenchmark() {}
 
+    @Macrobenchmark
+    void annotatedMacrobenchmark() {}
+
     @Benchmark
     void microbenchmark(int reps) {}
 
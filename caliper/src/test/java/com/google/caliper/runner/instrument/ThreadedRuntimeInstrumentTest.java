@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.instrument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.api.Macrobenchmark;
+import com.google.caliper.core.BenchmarkClassModel.MethodModel;
+import com.google.caliper.core.InvalidBenchmarkException;
+import com.google.caliper.model.InstrumentType;
+import com.google.caliper.runner.instrument.Instrument.InstrumentedMethod;
+import com.google.caliper.util.InvalidCommandException;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link ThreadedRuntimeInstrument}. */
+@RunWith(JUnit4.class)
+public class ThreadedRuntimeInstrumentTest {
+  private ThreadedRuntimeInstrument instrument;
+
+  @Before
+  public void createInstrument() {
+    instrument = new ThreadedRuntimeInstrument();
+    instrument.setOptions(
+        ImmutableMap.of("threads", "4", "timingInterval", "100ms", "gcBeforeEach", "false"));
+  }
+
+  @Test
+  public void createInstrumentedMethod() throws Exception {
+    MethodModel[] methods = {
+      method("macrobenchmark"),
+      method("microbenchmark", int.class),
+      method("picobenchmark", long.class)
+    };
+    for (MethodModel method : methods) {
+      InstrumentedMethod instrumentedMethod = instrument.createInstrumentedMethod(method);
+      assertEquals(InstrumentType.RUNTIME_THREADED, instrumentedMethod.type());
+      assertEquals(
+          ImmutableMap.of(
+              "threads", "4", "timingIntervalNanos", "100000000", "gcBeforeEach", "false"),
+          instrumentedMethod.workerOptions());
+    }
+  }
+
+  @Test
+  public void isBenchmarkMethod_notMacrobenchmark() throws Exception {
+    assertFalse(instrument.isBenchmarkMethod(method("annotatedMacrobenchmark")));
+  }
+
+  @Test
+  public void createInstrumentedMethod_measureAllocationsUnsupported() throws Exception {
+    instrument.setOptions(ImmutableMap.of("threads", "4", "measureAllocations", "true"));
+    try {
+      instrument.createInstrumentedMethod(method("microbenchmark", int.class));
+      fail();
+    } catch (InvalidBenchmarkException expected) {
+    }
+  }
+
+  @Test
+  public void badThreads() throws Exception {
+    instrument.setOptions(ImmutableMap.of("threads", "0"));
+    try {
+      instrument.threads();
+      fail();
+    } catch (InvalidCommandException expected) {
+    }
+  }
+
+  private static MethodModel method(String name, Class<?>... parameterTypes) throws Exception {
+    return MethodModel.of(ThreadedBenchmark.class.getDeclaredMethod(name, parameterTypes));
+  }
+
+  @SuppressWarnings("unused")
+  private static class ThreadedBenchmark {
+    @Benchmark
+    void macrobenchmark() {}
+
+    @Macrobenchmark
+    void annotatedMacrobenchmark() {}
+
+    @Benchmark
+    void microbenchmark(int reps) {}
+
+    @Benchmark
+    long picobenchmark(long reps) {
+      return reps;
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.google.caliper.runner.testing.FakeWorkerSpec;
 import com.google.caliper.runner.testing.FakeWorkers;
 import com.google.caliper.runner.worker.WorkerSpec;
 import com.google.caliper.runner.worker.trial.TrialSpec;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -103,7 +104,8 @@ public class LocalDeviceTest {
             ImmutableMap.<String, String>of(),
             target);
     BenchmarkClassModel benchmarkClass = BenchmarkClassModel.create(TestBenchmark.class);
-    ImmutableList<String> commandLine = createCommand(experiment, benchmarkClass);
+    ImmutableList<String> commandLine =
+        createCommand(experiment, benchmarkClass, Optional.<CpuAffinity>absent());
     assertThat(commandLine.get(0)).startsWith(System.getProperty("java.home") + "/bin/java");
     assertThat(commandLine).contains("--doTheHustle");
     assertThat(commandLine).contains("-cp");
@@ -116,6 +118,25 @@ public class LocalDeviceTest {
     assertEquals("com.google.caliper.worker.WorkerMain", commandLine.get(commandLine.size() - 4));
   }
 
+  @Test
+  public void pinnedArgsTest() throws Exception {
+    MethodModel method = MethodModel.of(TestBenchmark.class.getDeclaredMethods()[0]);
+    Target target = device.createDefaultTarget();
+    Experiment experiment =
+        Experiment.create(
+            1,
+            new AllocationInstrument().createInstrumentedMethod(method),
+            ImmutableMap.<String, String>of(),
+            target);
+    BenchmarkClassModel benchmarkClass = BenchmarkClassModel.create(TestBenchmark.class);
+    CpuAffinity affinity =
+        CpuAffinity.create(CpuAffinity.Command.TASKSET, ImmutableList.of(2, 3, 4, 7));
+    ImmutableList<String> commandLine =
+        createCommand(experiment, benchmarkClass, Optional.of(affinity));
+    assertEquals(ImmutableList.of("taskset", "-c", "2-4,7"), commandLine.subList(0, 3));
+    assertEquals(target.vmExecutablePath(), commandLine.get(3));
+  }
+
   @Test
   public void shutdownHook_awaitExit() throws Exception {
     WorkerSpec spec = FakeWorkerSpec.builder(FakeWorkers.Exit.class).setArgs("0").build();
@@ -153,8 +174,11 @@ public class LocalDeviceTest {
   }
 
   private ImmutableList<String> createCommand(
-      Experiment experiment, BenchmarkClassModel benchmarkClass) {
-    WorkerSpec spec = new TrialSpec(TRIAL_ID, PORT_NUMBER, experiment, benchmarkClass, 1);
+      Experiment experiment,
+      BenchmarkClassModel benchmarkClass,
+      Optional<CpuAffinity> cpuAffinity) {
+    WorkerSpec spec =
+        new TrialSpec(TRIAL_ID, PORT_NUMBER, experiment, benchmarkClass, 1, cpuAffinity);
     return device.createCommand(spec);
   }
 
@@ -16,6 +16,7 @@ package com.google.caliper.runner.testing;
 
 import com.google.caliper.bridge.WorkerRequest;
 import com.google.caliper.runner.worker.WorkerSpec;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import java.util.UUID;
 
@@ -24,11 +25,17 @@ public final class FakeWorkerSpec extends WorkerSpec {
 
   private final String mainClass;
   private final ImmutableList<String> vmOptions;
+  private final Optional<String> reuseKey;
 
-  private FakeWorkerSpec(Class<?> mainClass, Iterable<String> vmOptions, Iterable<String> args) {
+  private FakeWorkerSpec(
+      Class<?> mainClass,
+      Iterable<String> vmOptions,
+      Iterable<String> args,
+      Optional<String> reuseKey) {
     super(FakeWorkers.getTarget(), UUID.randomUUID(), args);
     this.mainClass = mainClass.getName();
     this.vmOptions = ImmutableList.copyOf(vmOptions);
+    this.reuseKey = reuseKey;
   }
 
   @Override
@@ -41,6 +48,11 @@ public final class FakeWorkerSpec extends WorkerSpec {
     return mainClass;
   }
 
+  @Override
+  public Optional<String> reuseKey() {
+    return reuseKey;
+  }
+
   @Override
   public WorkerRequest request() {
     return new FakeRequest();
@@ -62,6 +74,7 @@ public final class FakeWorkerSpec extends WorkerSpec {
     private final Class<?> mainClass;
     private ImmutableList<String> vmOptions = ImmutableList.of();
     private ImmutableList<String> args = ImmutableList.of();
+    private Optional<String> reuseKey = Optional.absent();
 
     private Builder(Class<?> mainClass) {
       this.mainClass = mainClass;
@@ -81,8 +94,13 @@ public final class FakeWorkerSpec extends WorkerSpec {
       return this;
     }
 
+    public Builder setReuseKey(String reuseKey) {
+      this.reuseKey = Optional.of(reuseKey);
+      return this;
+    }
+
     public FakeWorkerSpec build() {
-      return new FakeWorkerSpec(mainClass, vmOptions, args);
+      return new FakeWorkerSpec(mainClass, vmOptions, args, reuseKey);
     }
   }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.worker;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.bridge.LogMessage;
+import com.google.caliper.bridge.OpenedSocket;
+import com.google.caliper.model.ArbitraryMeasurement;
+import com.google.caliper.model.Trial;
+import com.google.caliper.runner.config.CaliperConfig;
+import com.google.caliper.runner.target.Device;
+import com.google.caliper.runner.target.LocalDevice;
+import com.google.caliper.runner.testing.CaliperTestWatcher;
+import com.google.caliper.runner.testing.FakeWorkerSpec;
+import com.google.caliper.runner.testing.FakeWorkers;
+import com.google.caliper.runner.testing.FakeWorkers.DummyLogMessage;
+import com.google.caliper.runner.worker.Worker.StreamItem.Kind;
+import com.google.caliper.util.Parser;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.Service.State;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link WorkerPool}. */
+@RunWith(JUnit4.class)
+public class WorkerPoolTest {
+  @Rule public final CaliperTestWatcher runner = new CaliperTestWatcher();
+
+  private final Parser<LogMessage> parser =
+      new Parser<LogMessage>() {
+        @Override
+        public LogMessage parse(final CharSequence text) throws ParseException {
+          return new DummyLogMessage(text.toString());
+        }
+      };
+  private final Device device = LocalDevice.builder().build();
+  private final List<ServerSocket> serverSockets = Lists.newArrayList();
+  private final List<Worker> workers = Lists.newArrayList();
+
+  @Before
+  public void startDevice() {
+    device.startAsync().awaitRunning();
+  }
+
+  @After
+  public void stopWorkers() throws Exception {
+    for (Worker worker : workers) {
+      if (worker.isRunning()) {
+        exit(worker);
+      }
+    }
+    for (ServerSocket serverSocket : serverSockets) {
+      serverSocket.close();
+    }
+    device.stopAsync().awaitTerminated();
+  }
+
+  @Test
+  public void disabledPoolReusesNothing() throws Exception {
+    WorkerPool pool = pool("false");
+    WorkerSpec spec = spec("key");
+    assertFalse(pool.reuses(spec));
+    assertFalse(pool.take(spec).isPresent());
+  }
+
+  @Test
+  public void specsWithoutKeyAreNotReused() throws Exception {
+    WorkerPool pool = pool("true");
+    WorkerSpec spec = FakeWorkerSpec.builder(FakeWorkers.SocketEchoClient.class).build();
+    assertFalse(pool.reuses(spec));
+    assertFalse(pool.take(spec).isPresent());
+  }
+
+  @Test
+  public void takesParkedWorkerWithSameKey() throws Exception {
+    WorkerPool pool = pool("true");
+    Worker worker = startWorker("a");
+    pool.park(spec("a"), worker);
+
+    assertFalse(pool.take(spec("b")).isPresent());
+    assertSame(worker, pool.take(spec("a")).get());
+    // a worker is only handed out once
+    assertFalse(pool.take(spec("a")).isPresent());
+  }
+
+  @Test
+  public void skipsWorkersThatDiedWhileIdle() throws Exception {
+    WorkerPool pool = pool("true");
+    Worker live = startWorker("a");
+    Worker dead = startWorker("a");
+    pool.park(spec("a"), live);
+    pool.park(spec("a"), dead);
+    exit(dead);
+
+    assertSame(live, pool.take(spec("a")).get());
+    assertFalse(pool.take(spec("a")).isPresent());
+  }
+
+  @Test
+  public void shutDownStopsIdleWorkers() throws Exception {
+    WorkerPool pool = pool("true");
+    pool.startAsync().awaitRunning();
+    Worker worker = startWorker("a");
+    pool.park(spec("a"), worker);
+
+    pool.stopAsync().awaitTerminated(30, SECONDS);
+    // closing the socket tells the echo client to exit, which it does cleanly
+    assertEquals(State.TERMINATED, worker.state());
+    assertFalse(pool.take(spec("a")).isPresent());
+  }
+
+  @Test
+  public void parkingMoreThanTheMaximumStopsTheLongestIdleWorker() throws Exception {
+    WorkerPool pool = pool("true", "1");
+    Worker first = startWorker("a");
+    Worker second = startWorker("b");
+    pool.park(spec("a"), first);
+    pool.park(spec("b"), second);
+
+    first.awaitTerminated(30, SECONDS);
+    assertFalse(pool.take(spec("a")).isPresent());
+    assertSame(second, pool.take(spec("b")).get());
+  }
+
+  @Test
+  public void idleWorkersAreStoppedWhenNoPendingRequestNeedsThem() throws Exception {
+    WorkerPool pool = pool("true");
+    pool.addPendingRequest("a");
+    pool.addPendingRequest("a");
+    pool.addPendingRequest("b");
+    Worker a = startWorker("a");
+    Worker b = startWorker("b");
+    pool.park(spec("a"), a);
+    pool.park(spec("b"), b);
+
+    // another request for "a" is still pending
+    pool.removePendingRequest("a");
+    assertTrue(a.isRunning());
+
+    pool.removePendingRequest("a");
+    a.awaitTerminated(30, SECONDS);
+    assertFalse(pool.take(spec("a")).isPresent());
+    assertSame(b, pool.take(spec("b")).get());
+  }
+
+  @Test
+  public void reusedWorkerRunsSeveralTrials() throws Exception {
+    runner
+        .forBenchmark(TestBenchmark.class)
+        .instrument("arbitrary")
+        .options("--trials", "3", "-Crunner.reuseWorkers=true", "-Crunner.maxParallelism=1")
+        .run();
+    List<Integer> priorWorkerTrials = Lists.newArrayList();
+    for (Trial trial : runner.trials()) {
+      priorWorkerTrials.add(trial.position().get().priorWorkerTrials());
+      assertEquals(1.0, trial.measurements().get(0).value().magnitude(), 0);
+    }
+    Collections.sort(priorWorkerTrials);
+    assertEquals(ImmutableList.of(0, 1, 2), priorWorkerTrials);
+  }
+
+  private static WorkerPool pool(String reuseWorkers) throws Exception {
+    return pool(reuseWorkers, "4");
+  }
+
+  private static WorkerPool pool(String reuseWorkers, String maxIdleWorkers) throws Exception {
+    return new WorkerPool(
+        new CaliperConfig(
+            ImmutableMap.of(
+                "runner.reuseWorkers", reuseWorkers, "runner.maxIdleWorkers", maxIdleWorkers)));
+  }
+
+  private static WorkerSpec spec(String reuseKey) {
+    return FakeWorkerSpec.builder(FakeWorkers.SocketEchoClient.class)
+        .setReuseKey(reuseKey)
+        .build();
+  }
+
+  /** Closes the worker's socket, which tells the echo client to exit, and waits for it to. */
+  private static void exit(Worker worker) throws Exception {
+    worker.closeWriter();
+    while (worker.readItem(10, SECONDS).kind() != Kind.EOF) {}
+    worker.awaitTerminated(10, SECONDS);
+  }
+
+  /** Starts a worker for an echo client that runs until its socket is closed. */
+  @SuppressWarnings("resource")
+  private Worker startWorker(String reuseKey) throws Exception {
+    final ServerSocket serverSocket = new ServerSocket(0);
+    serverSockets.add(serverSocket);
+    WorkerSpec echoSpec =
+        FakeWorkerSpec.builder(FakeWorkers.SocketEchoClient.class)
+            .setArgs(Integer.toString(serverSocket.getLocalPort()))
+            .setReuseKey(reuseKey)
+            .build();
+    WorkerOutputLogger output =
+        new WorkerOutputLogger(
+            new WorkerOutputFactory() {
+              @Override
+              public FileAndWriter getOutputFile(String fileName) {
+                return new FileAndWriter(
+                    new File("/tmp/not-a-file"), new PrintWriter(new StringWriter(), true));
+              }
+
+              @Override
+              public void persistFile(File f) {
+                throw new UnsupportedOperationException();
+              }
+            },
+            echoSpec);
+    output.open();
+
+    ListenableFutureTask<OpenedSocket> openSocketTask =
+        ListenableFutureTask.create(
+            new Callable<OpenedSocket>() {
+              @Override
+              public OpenedSocket call() throws Exception {
+                return OpenedSocket.fromSocket(serverSocket.accept());
+              }
+            });
+    Thread opener = new Thread(openSocketTask, "SocketOpener");
+    opener.setDaemon(true);
+    opener.start();
+
+    Worker worker = new Worker(echoSpec, device, openSocketTask, parser, output);
+    workers.add(worker);
+    worker.startAsync().awaitRunning();
+    assertEquals(new DummyLogMessage("start"), worker.readItem(10, SECONDS).content());
+    assertTrue(worker.isRunning());
+    return worker;
+  }
+
+  public static class TestBenchmark {
+    @ArbitraryMeasurement(units = "hz", description = "fake measurement")
+    public double measure() {
+      return 1.0;
+    }
+  }
+}
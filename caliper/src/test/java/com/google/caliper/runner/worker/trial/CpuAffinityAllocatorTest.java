@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.caliper.runner.worker.trial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.caliper.runner.target.CpuAffinity;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests {@link CpuAffinityAllocator}. */
+@RunWith(JUnit4.class)
+public class CpuAffinityAllocatorTest {
+
+  @Test
+  public void splitsUnreservedCpusBetweenParallelTrials() {
+    CpuAffinityAllocator allocator =
+        new CpuAffinityAllocator(Optional.of(CpuAffinity.Command.TASKSET), 8, 1, 3);
+    ImmutableList<String> cpuLists =
+        ImmutableList.of(
+            allocator.acquire().get().cpuList(),
+            allocator.acquire().get().cpuList(),
+            allocator.acquire().get().cpuList());
+    assertEquals(ImmutableList.of("1-2", "3-4", "5-6"), cpuLists);
+    assertFalse(allocator.acquire().isPresent());
+  }
+
+  @Test
+  public void releasedCpusAreReused() {
+    CpuAffinityAllocator allocator =
+        new CpuAffinityAllocator(Optional.of(CpuAffinity.Command.NUMACTL), 4, 2, 1);
+    Optional<CpuAffinity> affinity = allocator.acquire();
+    assertEquals("numactl --physcpubind=2-3 --localalloc", affinity.get().toString());
+    assertFalse(allocator.acquire().isPresent());
+    allocator.release(affinity);
+    assertEquals(affinity, allocator.acquire());
+  }
+
+  @Test
+  public void leaseIsReleasedOnce() {
+    CpuAffinityAllocator allocator =
+        new CpuAffinityAllocator(Optional.of(CpuAffinity.Command.TASKSET), 5, 1, 2);
+    CpuAffinityAllocator.Lease lease = allocator.lease();
+    assertEquals("1-2", lease.affinity().get().cpuList());
+    lease.release();
+    lease.release();
+    assertEquals(2, allocator.available().size());
+
+    CpuAffinityAllocator.Lease unpinned = allocator.unpinnedLease();
+    assertFalse(unpinned.affinity().isPresent());
+    unpinned.release();
+    assertEquals(2, allocator.available().size());
+  }
+
+  @Test
+  public void doesNotPinWithoutEnoughCpus() {
+    CpuAffinityAllocator allocator =
+        new CpuAffinityAllocator(Optional.of(CpuAffinity.Command.TASKSET), 2, 1, 2);
+    assertTrue(allocator.available().isEmpty());
+    assertFalse(allocator.acquire().isPresent());
+  }
+
+  @Test
+  public void doesNotPinWithoutCommand() {
+    CpuAffinityAllocator allocator =
+        new CpuAffinityAllocator(Optional.<CpuAffinity.Command>absent(), 16, 1, 2);
+    assertFalse(allocator.acquire().isPresent());
+  }
+}